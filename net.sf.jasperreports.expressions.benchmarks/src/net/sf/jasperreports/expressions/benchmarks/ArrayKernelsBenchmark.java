@@ -0,0 +1,143 @@
+package net.sf.jasperreports.expressions.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.expressions.functions.ArrayKernels;
+import net.sf.jasperreports.expressions.functions.MathFunctions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the array and columnar functions in {@link MathFunctions}, with the scalar
+ * {@link ArrayKernels} and with the optional ones.
+ *
+ * <p>
+ * The optional Vector API kernels are only used when running on Java 17 or later with
+ * <code>-jvmArgsAppend --add-modules=jdk.incubator.vector</code>, otherwise both values of
+ * <code>optionalKernels</code> measure the scalar loops.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ArrayKernelsBenchmark
+{
+
+	@State(Scope.Benchmark)
+	public static class Kernels
+	{
+		@Param({"false", "true"})
+		private String optionalKernels;
+
+		@Setup
+		public void setup()
+		{
+			// read by the functions on the first call, each value runs in its own fork
+			DefaultJasperReportsContext.getInstance().setProperty(ArrayKernels.PROPERTY_OPTIONAL_KERNELS, optionalKernels);
+		}
+	}
+
+	@Param({"64", "100000"})
+	private int size;
+
+	private int[] intValues;
+	private long[] longValues;
+	private double[] doubleValues;
+	private double[] factors;
+	private double[] doubleResults;
+	private int[] intResults;
+
+	@Setup
+	public void setup(Kernels kernels)
+	{
+		Random random = new Random(42);
+		intValues = new int[size];
+		longValues = new long[size];
+		doubleValues = new double[size];
+		factors = new double[size];
+		doubleResults = new double[size];
+		intResults = new int[size];
+		for (int i = 0; i < size; i++)
+		{
+			int value = random.nextInt(100000) - 50000;
+			intValues[i] = value;
+			longValues[i] = value * 1000000L;
+			doubleValues[i] = value / 100d;
+			factors[i] = 1 + (random.nextDouble() - 0.5) / 1000;
+		}
+	}
+
+	@Benchmark
+	public Long sumInt()
+	{
+		return MathFunctions.SUM(intValues);
+	}
+
+	@Benchmark
+	public Number sumLong()
+	{
+		return MathFunctions.SUM(longValues);
+	}
+
+	@Benchmark
+	public Number sumDouble()
+	{
+		return MathFunctions.SUM(doubleValues);
+	}
+
+	@Benchmark
+	public Number productDouble()
+	{
+		return MathFunctions.PRODUCT(factors);
+	}
+
+	@Benchmark
+	public int maxInt()
+	{
+		return MathFunctions.MAX(intValues);
+	}
+
+	@Benchmark
+	public double minDouble()
+	{
+		return MathFunctions.MIN(doubleValues);
+	}
+
+	@Benchmark
+	public double[] absDouble()
+	{
+		return MathFunctions.ABS(doubleValues, doubleResults);
+	}
+
+	@Benchmark
+	public double[] sqrt()
+	{
+		return MathFunctions.SQRT(factors, doubleResults);
+	}
+
+	@Benchmark
+	public double[] floor()
+	{
+		return MathFunctions.FLOOR(doubleValues, doubleResults);
+	}
+
+	@Benchmark
+	public int[] sign()
+	{
+		return MathFunctions.SIGN(doubleValues, intResults);
+	}
+}
@@ -0,0 +1,49 @@
+package net.sf.jasperreports.expressions.benchmarks;
+
+import java.io.File;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the functions benchmarks with the GC profiler, so that both the throughput and the
+ * allocation rate of each function are reported, and writes the results as JSON.
+ *
+ * <p>
+ * Usage: <code>java -jar target/benchmarks.jar [JMH options]</code>. The results are written to
+ * <code>jmh-result.json</code> unless a different file is specified with the <code>-rff</code> option;
+ * JMH options can also be used to select the benchmarks, for instance <code>java -jar target/benchmarks.jar Math</code>.
+ */
+public final class BenchmarksRunner
+{
+
+	public static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException
+	{
+		CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		OptionsBuilder builder = new OptionsBuilder();
+		if (commandLineOptions.getIncludes().isEmpty())
+		{
+			builder.include(BenchmarksRunner.class.getPackage().getName() + ".*");
+		}
+		Options options = builder
+				.parent(commandLineOptions)
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result(commandLineOptions.getResult().orElse(new File(DEFAULT_RESULT_FILE).getPath()))
+				.build();
+		new Runner(options).run();
+	}
+
+	private BenchmarksRunner()
+	{
+		// Prevents instantiation
+	}
+}
@@ -0,0 +1,354 @@
+package net.sf.jasperreports.expressions.benchmarks;
+
+import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.expressions.functions.DateFields;
+import net.sf.jasperreports.expressions.functions.DateTimeFunctions;
+import net.sf.jasperreports.expressions.functions.DateTimeMillisFunctions;
+import net.sf.jasperreports.expressions.functions.HolidayCalendar;
+import net.sf.jasperreports.types.date.DateRange;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the functions in {@link DateTimeFunctions}.
+ *
+ * <p>
+ * The functions accepting a generic date object are measured with each of the
+ * supported input kinds: {@link Date}, {@link Long} milliseconds, {@link String} in the
+ * default format of the locale, ISO-8601 {@link String} and {@link LocalDateTime}.
+ * The functions doing calendar arithmetic are also measured with each backend
+ * selected by the {@link DateTimeFunctions#PROPERTY_DATE_BACKEND} property.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DateTimeFunctionsBenchmark
+{
+
+	public enum DateKind
+	{
+		DATE, LONG, STRING, ISO_STRING, LOCAL_DATE_TIME
+	}
+
+	@State(Scope.Benchmark)
+	public static class Backend
+	{
+		@Param({"joda", "epoch"})
+		private String name;
+
+		@Setup
+		public void setup()
+		{
+			// read by the functions on the first call, each value runs in its own fork
+			DefaultJasperReportsContext.getInstance().setProperty(DateTimeFunctions.PROPERTY_DATE_BACKEND, name);
+		}
+	}
+
+	@Param({"DATE", "LONG", "STRING", "ISO_STRING", "LOCAL_DATE_TIME"})
+	private DateKind dateKind;
+
+	private Date date;
+	private Object startDate;
+	private Object endDate;
+	private Object longRangeEndDate;
+	private StringBuilder output;
+	private HolidayCalendar holidays;
+	private long dateMillis;
+	private DateFields dateFields;
+	private int[] fields;
+	private long[] millisColumn;
+	private int[] intResults;
+
+	@Setup
+	public void setup()
+	{
+		Calendar calendar = Calendar.getInstance();
+		calendar.clear();
+		calendar.set(2013, Calendar.MARCH, 14, 10, 30, 0);
+		date = calendar.getTime();
+		startDate = toDateObject(date);
+		calendar.add(Calendar.DAY_OF_YEAR, 90);
+		endDate = toDateObject(calendar.getTime());
+		calendar.add(Calendar.YEAR, 3);
+		longRangeEndDate = toDateObject(calendar.getTime());
+		output = new StringBuilder(64);
+		dateMillis = date.getTime();
+		dateFields = DateFields.getDefault();
+		fields = new int[DateFields.FIELDS_COUNT];
+		millisColumn = new long[64];
+		for (int i = 0; i < millisColumn.length; i++)
+		{
+			// a date every 11 days and 7 hours
+			millisColumn[i] = dateMillis + i * ((11 * 24 + 7) * 3600000L);
+		}
+		intResults = new int[millisColumn.length];
+		List<Date> holidayDates = new ArrayList<Date>();
+		calendar.setTime(date);
+		for (int i = 0; i < 40; i++)
+		{
+			// roughly ten holidays per year
+			calendar.add(Calendar.DAY_OF_YEAR, 37);
+			holidayDates.add(calendar.getTime());
+		}
+		holidays = HolidayCalendar.forDates(holidayDates);
+	}
+
+	private Object toDateObject(Date value)
+	{
+		switch (dateKind)
+		{
+			case LONG:
+				return value.getTime();
+			case STRING:
+				// the format parsed by the functions
+				return new SimpleDateFormat().format(value);
+			case ISO_STRING:
+				return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").format(value);
+			case LOCAL_DATE_TIME:
+				return LocalDateTime.ofInstant(value.toInstant(), ZoneId.systemDefault());
+			default:
+				return value;
+		}
+	}
+
+	@Benchmark
+	public Date today()
+	{
+		return DateTimeFunctions.TODAY();
+	}
+
+	@Benchmark
+	public Date now()
+	{
+		return DateTimeFunctions.NOW();
+	}
+
+	@Benchmark
+	public Integer year()
+	{
+		return DateTimeFunctions.YEAR(startDate);
+	}
+
+	@Benchmark
+	public int yearMillis()
+	{
+		return DateTimeMillisFunctions.YEAR(dateMillis);
+	}
+
+	@Benchmark
+	public int[] yearColumn()
+	{
+		return DateTimeMillisFunctions.YEAR(millisColumn, intResults);
+	}
+
+	@Benchmark
+	public int yearMonthDay()
+	{
+		return dateFields.getYearMonthDay(dateMillis);
+	}
+
+	@Benchmark
+	public int[] allFields()
+	{
+		dateFields.getFields(dateMillis, fields);
+		return fields;
+	}
+
+	@Benchmark
+	public Integer month()
+	{
+		return DateTimeFunctions.MONTH(startDate);
+	}
+
+	@Benchmark
+	public Integer day()
+	{
+		return DateTimeFunctions.DAY(startDate);
+	}
+
+	@Benchmark
+	public Integer weekday()
+	{
+		return DateTimeFunctions.WEEKDAY(startDate);
+	}
+
+	@Benchmark
+	public Integer weekdaySundayFirst()
+	{
+		return DateTimeFunctions.WEEKDAY(startDate, true);
+	}
+
+	@Benchmark
+	public Integer hour()
+	{
+		return DateTimeFunctions.HOUR(startDate);
+	}
+
+	@Benchmark
+	public Integer minute()
+	{
+		return DateTimeFunctions.MINUTE(startDate);
+	}
+
+	@Benchmark
+	public Integer second()
+	{
+		return DateTimeFunctions.SECOND(startDate);
+	}
+
+	@Benchmark
+	public Date dateFromFields()
+	{
+		return DateTimeFunctions.DATE(2013, 3, 14);
+	}
+
+	@Benchmark
+	public Long dateValue()
+	{
+		return DateTimeFunctions.DATEVALUE(startDate);
+	}
+
+	@Benchmark
+	public String time()
+	{
+		return DateTimeFunctions.TIME(10, 30, 15);
+	}
+
+	@Benchmark
+	public String timePattern()
+	{
+		return DateTimeFunctions.TIME(10, 30, 15, "HH:mm:ss");
+	}
+
+	@Benchmark
+	public Date edate(Backend backend)
+	{
+		return DateTimeFunctions.EDATE(startDate, 3);
+	}
+
+	@Benchmark
+	public Date workday()
+	{
+		return DateTimeFunctions.WORKDAY(startDate, 20);
+	}
+
+	@Benchmark
+	public Integer networkdays()
+	{
+		return DateTimeFunctions.NETWORKDAYS(startDate, endDate);
+	}
+
+	@Benchmark
+	public Integer networkdaysLongRange()
+	{
+		return DateTimeFunctions.NETWORKDAYS(startDate, longRangeEndDate);
+	}
+
+	@Benchmark
+	public Date workdayHolidays()
+	{
+		return DateTimeFunctions.WORKDAY(startDate, 250, holidays);
+	}
+
+	@Benchmark
+	public Integer networkdaysHolidays()
+	{
+		return DateTimeFunctions.NETWORKDAYS(startDate, longRangeEndDate, holidays);
+	}
+
+	@Benchmark
+	public Integer days(Backend backend)
+	{
+		return DateTimeFunctions.DAYS(startDate, endDate);
+	}
+
+	@Benchmark
+	public Integer daysInMonth(Backend backend)
+	{
+		return DateTimeFunctions.DAYSINMONTH(startDate);
+	}
+
+	@Benchmark
+	public Integer daysInYear(Backend backend)
+	{
+		return DateTimeFunctions.DAYSINYEAR(startDate);
+	}
+
+	@Benchmark
+	public Integer weeks(Backend backend)
+	{
+		return DateTimeFunctions.WEEKS(startDate, endDate);
+	}
+
+	@Benchmark
+	public Integer weeksInYear(Backend backend)
+	{
+		return DateTimeFunctions.WEEKSINYEAR(startDate);
+	}
+
+	@Benchmark
+	public Integer weekNum(Backend backend)
+	{
+		return DateTimeFunctions.WEEKNUM(startDate);
+	}
+
+	@Benchmark
+	public Integer months(Backend backend)
+	{
+		return DateTimeFunctions.MONTHS(startDate, longRangeEndDate);
+	}
+
+	@Benchmark
+	public Integer years(Backend backend)
+	{
+		return DateTimeFunctions.YEARS(startDate, longRangeEndDate);
+	}
+
+	@Benchmark
+	public Boolean isLeapYear(Backend backend)
+	{
+		return DateTimeFunctions.ISLEAPYEAR(startDate);
+	}
+
+	@Benchmark
+	public String dateFormat()
+	{
+		return DateTimeFunctions.DATEFORMAT(date, "yyyy-MM-dd HH:mm");
+	}
+
+	@Benchmark
+	public Appendable dateFormatAppendable()
+	{
+		output.setLength(0);
+		return DateTimeFunctions.DATEFORMAT(date, "yyyy-MM-dd HH:mm", output);
+	}
+
+	@Benchmark
+	public DateRange dateRange()
+	{
+		return DateTimeFunctions.DATERANGE(date);
+	}
+
+}
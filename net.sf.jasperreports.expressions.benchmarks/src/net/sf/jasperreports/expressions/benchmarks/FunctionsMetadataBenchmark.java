@@ -0,0 +1,127 @@
+package net.sf.jasperreports.expressions.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JasperReportsContext;
+import net.sf.jasperreports.engine.SimpleJasperReportsContext;
+import net.sf.jasperreports.expressions.annotations.JRExprAnnotationsUtils;
+import net.sf.jasperreports.expressions.annotations.JRExprFunctionBean;
+import net.sf.jasperreports.expressions.annotations.JRExprFunctionInvoker;
+import net.sf.jasperreports.expressions.annotations.JRExprFunctionMetadata;
+import net.sf.jasperreports.expressions.functions.DateTimeFunctions;
+import net.sf.jasperreports.expressions.functions.MathFunctions;
+import net.sf.jasperreports.expressions.functions.TextFunctions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the retrieval of the function descriptors through {@link JRExprAnnotationsUtils},
+ * and for the invocation of functions through {@link JRExprFunctionInvoker}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FunctionsMetadataBenchmark
+{
+
+	private JasperReportsContext context;
+	private JRExprFunctionInvoker mathInvoker;
+	private Number[] numbers;
+	private Object[] numbersColumn;
+
+	@Setup
+	public void setup()
+	{
+		context = DefaultJasperReportsContext.getInstance();
+		mathInvoker = JRExprAnnotationsUtils.getInstance(context).getFunctionInvoker(MathFunctions.class);
+		numbers = new Number[]{1, 2L, 3.5d, 4.5f};
+		numbersColumn = new Object[64];
+		for (int i = 0; i < numbersColumn.length; i++)
+		{
+			numbersColumn[i] = i % 2 == 0 ? (Object) (i - 32) : (Object) ((i - 32) / 4d);
+		}
+	}
+
+	/**
+	 * Cached lookup, as done by the designer on each request.
+	 */
+	@Benchmark
+	public List<JRExprFunctionBean> getFunctionsListCached()
+	{
+		return JRExprAnnotationsUtils.getInstance(context).getFunctionsList(TextFunctions.class);
+	}
+
+	/**
+	 * Lookup with a new context each time, building the function beans from scratch.
+	 */
+	@Benchmark
+	public List<JRExprFunctionBean> getFunctionsListUncached()
+	{
+		return JRExprAnnotationsUtils.getInstance(new SimpleJasperReportsContext()).getFunctionsList(TextFunctions.class);
+	}
+
+	/**
+	 * Retrieval of the raw metadata, from the generated descriptor when present.
+	 */
+	@Benchmark
+	public List<JRExprFunctionMetadata> getFunctionsMetadata()
+	{
+		return JRExprAnnotationsUtils.getInstance(context).getFunctionsMetadata(DateTimeFunctions.class);
+	}
+
+	@Benchmark
+	public Object invokeSum()
+	{
+		return mathInvoker.invoke("SUM", (Object[]) numbers);
+	}
+
+	@Benchmark
+	public Object invokeAbs()
+	{
+		return mathInvoker.invoke("ABS", numbers[2]);
+	}
+
+	/**
+	 * Evaluation of a column of values with a call for each row.
+	 */
+	@Benchmark
+	public Object[] invokeAbsRows()
+	{
+		Object[] results = new Object[numbersColumn.length];
+		for (int i = 0; i < numbersColumn.length; i++)
+		{
+			results[i] = mathInvoker.invoke("ABS", numbersColumn[i]);
+		}
+		return results;
+	}
+
+	/**
+	 * Evaluation of the same column with the bulk entry point.
+	 */
+	@Benchmark
+	public Object[] invokeAbsBulk()
+	{
+		return mathInvoker.invokeBulk("ABS", numbersColumn.length, numbersColumn);
+	}
+
+	@Benchmark
+	public Object directSum()
+	{
+		return MathFunctions.SUM(numbers);
+	}
+
+}
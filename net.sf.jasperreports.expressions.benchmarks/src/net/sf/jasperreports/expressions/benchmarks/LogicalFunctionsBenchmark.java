@@ -0,0 +1,88 @@
+package net.sf.jasperreports.expressions.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import net.sf.jasperreports.expressions.functions.LogicalFunctions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the functions in {@link LogicalFunctions}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LogicalFunctionsBenchmark
+{
+
+	private Boolean[] allTrue;
+	private Boolean[] allFalse;
+	private Boolean condition;
+	private Object value1;
+	private Object value2;
+
+	@Setup
+	public void setup()
+	{
+		allTrue = new Boolean[]{true, true, true, true, true, true, true, true};
+		allFalse = new Boolean[]{false, false, false, false, false, false, false, false};
+		condition = Boolean.TRUE;
+		value1 = "Customer";
+		value2 = new StringBuilder("Custom").append("er").toString();
+	}
+
+	@Benchmark
+	public Boolean and()
+	{
+		return LogicalFunctions.AND(allTrue);
+	}
+
+	@Benchmark
+	public Boolean or()
+	{
+		return LogicalFunctions.OR(allFalse);
+	}
+
+	@Benchmark
+	public Boolean falseValue()
+	{
+		return LogicalFunctions.FALSE();
+	}
+
+	@Benchmark
+	public Boolean trueValue()
+	{
+		return LogicalFunctions.TRUE();
+	}
+
+	@Benchmark
+	public Boolean not()
+	{
+		return LogicalFunctions.NOT(condition);
+	}
+
+	@Benchmark
+	public Object ifThenElse()
+	{
+		return LogicalFunctions.IF(condition, value1, value2);
+	}
+
+	@Benchmark
+	public Boolean equals()
+	{
+		return LogicalFunctions.EQUALS(value1, value2);
+	}
+
+}
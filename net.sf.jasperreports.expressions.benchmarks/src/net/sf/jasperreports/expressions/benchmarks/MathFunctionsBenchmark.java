@@ -0,0 +1,342 @@
+package net.sf.jasperreports.expressions.benchmarks;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.jasperreports.expressions.functions.MathFunctions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the functions in {@link MathFunctions}.
+ *
+ * <p>
+ * The aggregates are called with the number of values of a typical detail band group,
+ * and with a mix of {@link Number} subclasses as produced by the data sources.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MathFunctionsBenchmark
+{
+
+	private static final int VALUES_COUNT = 64;
+
+	private static final BigInteger BIG_FACT_NUMBER = BigInteger.valueOf(200);
+
+	private Number[] mixedNumbers;
+	private Number[] integers;
+	private Number[] longs;
+	private Number[] doubles;
+	private Number[] factors;
+	private int[] intValues;
+	private long[] longValues;
+	private double[] doubleValues;
+	private double[] doubleResults;
+	private List<Number> integerList;
+	private Integer integer;
+	private Long negativeLong;
+	private Double decimal;
+	private Float floatNumber;
+	private BigDecimal bigDecimal;
+
+	@Setup
+	public void setup()
+	{
+		Random random = new Random(42);
+		mixedNumbers = new Number[VALUES_COUNT];
+		integers = new Number[VALUES_COUNT];
+		longs = new Number[VALUES_COUNT];
+		doubles = new Number[VALUES_COUNT];
+		intValues = new int[VALUES_COUNT];
+		longValues = new long[VALUES_COUNT];
+		doubleValues = new double[VALUES_COUNT];
+		doubleResults = new double[VALUES_COUNT];
+		for (int i = 0; i < VALUES_COUNT; i++)
+		{
+			int value = random.nextInt(100000) - 50000;
+			switch (i % 5)
+			{
+				case 0:
+					mixedNumbers[i] = Integer.valueOf(value);
+					break;
+				case 1:
+					mixedNumbers[i] = Long.valueOf(value * 1000L);
+					break;
+				case 2:
+					mixedNumbers[i] = Double.valueOf(value / 100d);
+					break;
+				case 3:
+					mixedNumbers[i] = Float.valueOf(value / 10f);
+					break;
+				default:
+					mixedNumbers[i] = new BigDecimal(value).movePointLeft(2);
+			}
+			integers[i] = Integer.valueOf(value);
+			longs[i] = Long.valueOf(value * 1000000L);
+			doubles[i] = Double.valueOf(value / 100d);
+			intValues[i] = value;
+			longValues[i] = value * 1000000L;
+			doubleValues[i] = value / 100d;
+		}
+		integerList = new ArrayList<Number>(Arrays.asList(integers));
+		factors = new Number[]{1.01d, 0.99d, 1.02f, 2, 1L, new BigDecimal("1.005"), 0.98d, 1.03d};
+		integer = 123456;
+		negativeLong = -9876543210L;
+		decimal = 12345.678d;
+		floatNumber = 98.76f;
+		bigDecimal = new BigDecimal("-1234567.891");
+	}
+
+	@Benchmark
+	public Number absInteger()
+	{
+		return MathFunctions.ABS(integer);
+	}
+
+	@Benchmark
+	public Number absLong()
+	{
+		return MathFunctions.ABS(negativeLong);
+	}
+
+	@Benchmark
+	public Number absBigDecimal()
+	{
+		return MathFunctions.ABS(bigDecimal);
+	}
+
+	@Benchmark
+	public Long fact()
+	{
+		return MathFunctions.FACT(18);
+	}
+
+	@Benchmark
+	public BigInteger factBig()
+	{
+		return MathFunctions.FACT(BIG_FACT_NUMBER);
+	}
+
+	@Benchmark
+	public Number combin()
+	{
+		return MathFunctions.COMBIN(60, 30);
+	}
+
+	@Benchmark
+	public Number permut()
+	{
+		return MathFunctions.PERMUT(100, 12);
+	}
+
+	@Benchmark
+	public Boolean isEven()
+	{
+		return MathFunctions.ISEVEN(integer);
+	}
+
+	@Benchmark
+	public Boolean isOdd()
+	{
+		return MathFunctions.ISODD(decimal);
+	}
+
+	@Benchmark
+	public Number product()
+	{
+		return MathFunctions.PRODUCT(factors);
+	}
+
+	@Benchmark
+	public Double rand()
+	{
+		return MathFunctions.RAND();
+	}
+
+	@Benchmark
+	public Integer randBetween()
+	{
+		return MathFunctions.RANDBETWEEN(1, 1000);
+	}
+
+	@Benchmark
+	public Integer sign()
+	{
+		return MathFunctions.SIGN(bigDecimal);
+	}
+
+	@Benchmark
+	public Number sqrt()
+	{
+		return MathFunctions.SQRT(decimal);
+	}
+
+	@Benchmark
+	public Number sumMixed()
+	{
+		return MathFunctions.SUM(mixedNumbers);
+	}
+
+	@Benchmark
+	public Number sumIntegers()
+	{
+		return MathFunctions.SUM(integers);
+	}
+
+	@Benchmark
+	public Number sumLongs()
+	{
+		return MathFunctions.SUM(longs);
+	}
+
+	@Benchmark
+	public Number sumDoubles()
+	{
+		return MathFunctions.SUM(doubles);
+	}
+
+	@Benchmark
+	public Number sumExactLongs()
+	{
+		return MathFunctions.SUM_EXACT(longs);
+	}
+
+	@Benchmark
+	public Number sumExactMixed()
+	{
+		return MathFunctions.SUM_EXACT(mixedNumbers);
+	}
+
+	@Benchmark
+	public Number productExact()
+	{
+		return MathFunctions.PRODUCT_EXACT(factors);
+	}
+
+	@Benchmark
+	public Long sumIntArray()
+	{
+		return MathFunctions.SUM(intValues);
+	}
+
+	@Benchmark
+	public Number sumLongArray()
+	{
+		return MathFunctions.SUM(longValues);
+	}
+
+	@Benchmark
+	public Number sumDoubleArray()
+	{
+		return MathFunctions.SUM(doubleValues);
+	}
+
+	@Benchmark
+	public Number sumDoubleColumnRange()
+	{
+		return MathFunctions.SUM(doubleValues, VALUES_COUNT / 4, VALUES_COUNT);
+	}
+
+	@Benchmark
+	public double[] absDoubleColumn()
+	{
+		return MathFunctions.ABS(doubleValues, doubleResults);
+	}
+
+	@Benchmark
+	public Number sumIterable()
+	{
+		return MathFunctions.SUM(integerList);
+	}
+
+	@Benchmark
+	public Number productDoubleArray()
+	{
+		return MathFunctions.PRODUCT(doubleValues);
+	}
+
+	@Benchmark
+	public Number sumArguments()
+	{
+		return MathFunctions.SUM(integer, negativeLong, decimal, floatNumber);
+	}
+
+	@Benchmark
+	public Number minMixed()
+	{
+		return MathFunctions.MIN(mixedNumbers);
+	}
+
+	@Benchmark
+	public Number minIntegers()
+	{
+		return MathFunctions.MIN(integers);
+	}
+
+	@Benchmark
+	public int minIntArray()
+	{
+		return MathFunctions.MIN(intValues);
+	}
+
+	@Benchmark
+	public Number minIterable()
+	{
+		return MathFunctions.MIN(integerList);
+	}
+
+	@Benchmark
+	public Number maxMixed()
+	{
+		return MathFunctions.MAX(mixedNumbers);
+	}
+
+	@Benchmark
+	public Number maxLongs()
+	{
+		return MathFunctions.MAX(longs);
+	}
+
+	@Benchmark
+	public long maxLongArray()
+	{
+		return MathFunctions.MAX(longValues);
+	}
+
+	@Benchmark
+	public double maxDoubleArray()
+	{
+		return MathFunctions.MAX(doubleValues);
+	}
+
+	@Benchmark
+	public Double floor()
+	{
+		return MathFunctions.FLOOR(floatNumber);
+	}
+
+	@Benchmark
+	public Double ceil()
+	{
+		return MathFunctions.CEIL(decimal);
+	}
+
+}
@@ -0,0 +1,102 @@
+package net.sf.jasperreports.expressions.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.expressions.functions.LogicalFunctions;
+import net.sf.jasperreports.expressions.functions.MathFunctions;
+import net.sf.jasperreports.expressions.functions.ParallelAggregation;
+import net.sf.jasperreports.expressions.functions.TextFunctions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the aggregate functions on collections large enough to be split among
+ * the threads of {@link ParallelAggregation}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParallelAggregationBenchmark
+{
+
+	private static final int VALUES_COUNT = 1000000;
+
+	@State(Scope.Benchmark)
+	public static class Threads
+	{
+		@Param({"1", "4"})
+		private String count;
+
+		@Setup
+		public void setup()
+		{
+			// read by the functions on the first call, each value runs in its own fork
+			DefaultJasperReportsContext.getInstance().setProperty(ParallelAggregation.PROPERTY_THREADS, count);
+		}
+	}
+
+	private List<Number> numbers;
+	private List<Boolean> booleans;
+	private List<String> strings;
+
+	@Setup
+	public void setup(Threads threads)
+	{
+		Random random = new Random(42);
+		Number[] values = new Number[VALUES_COUNT];
+		Boolean[] flags = new Boolean[VALUES_COUNT];
+		String[] texts = new String[VALUES_COUNT];
+		for (int i = 0; i < VALUES_COUNT; i++)
+		{
+			double value = (random.nextInt(100000) - 50000) / 100d;
+			values[i] = i % 2 == 0 ? (Number) Double.valueOf(value) : (Number) Integer.valueOf((int) value);
+			flags[i] = Boolean.TRUE;
+			texts[i] = Integer.toString(i);
+		}
+		numbers = new ArrayList<Number>(Arrays.asList(values));
+		booleans = new ArrayList<Boolean>(Arrays.asList(flags));
+		strings = new ArrayList<String>(Arrays.asList(texts));
+	}
+
+	@Benchmark
+	public Number sum()
+	{
+		return MathFunctions.SUM(numbers);
+	}
+
+	@Benchmark
+	public Number max()
+	{
+		return MathFunctions.MAX(numbers);
+	}
+
+	@Benchmark
+	public Boolean and()
+	{
+		return LogicalFunctions.AND(booleans);
+	}
+
+	@Benchmark
+	public String concatenate()
+	{
+		return TextFunctions.CONCATENATE(strings);
+	}
+}
@@ -0,0 +1,299 @@
+package net.sf.jasperreports.expressions.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import net.sf.jasperreports.expressions.functions.TextFunctions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the functions in {@link TextFunctions}.
+ *
+ * <p>
+ * The texts have the size of the values usually found in report text fields:
+ * short codes and names, and descriptions of a few hundred characters.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TextFunctionsBenchmark
+{
+
+	private static final String SENTENCE = "the quick brown fox jumps over the lazy dog while the invoice total is computed. ";
+
+	private String description;
+	private String upperDescription;
+	private String paddedName;
+	private String controlText;
+	private String name;
+	private String code;
+	private String[] addressParts;
+	private String[] nameColumn;
+	private String[] nameResults;
+	private Integer integerNumber;
+	private Double amount;
+	private String amountText;
+	private Object value;
+
+	@Setup
+	public void setup()
+	{
+		StringBuilder descriptionBuilder = new StringBuilder();
+		for (int i = 0; i < 4; i++)
+		{
+			descriptionBuilder.append(SENTENCE);
+		}
+		description = descriptionBuilder.toString();
+		upperDescription = description.toUpperCase();
+		paddedName = "    \t  Jasper Reports Customer Name  \t   ";
+		controlText = "Line one\r\nLine\ttwo\u0007 with bell\u0000 and null" + SENTENCE;
+		name = "Jasper Reports Customer Name";
+		code = "INV-2013-000042";
+		addressParts = new String[]{"1234 Main Street", ", ", "Suite 500", ", ", "San Francisco", ", ", "CA", " ", "94105"};
+		nameColumn = new String[64];
+		for (int i = 0; i < nameColumn.length; i++)
+		{
+			nameColumn[i] = i % 8 == 0 ? null : name + " " + i;
+		}
+		nameResults = new String[nameColumn.length];
+		integerNumber = 255;
+		amount = 1234567.891d;
+		amountText = "1234567.891";
+		value = description;
+	}
+
+	@Benchmark
+	public String base()
+	{
+		return TextFunctions.BASE(integerNumber, 16);
+	}
+
+	@Benchmark
+	public String baseMinLength()
+	{
+		return TextFunctions.BASE(integerNumber, 2, 16);
+	}
+
+	@Benchmark
+	public String charFromCode()
+	{
+		return TextFunctions.CHAR(65);
+	}
+
+	@Benchmark
+	public String clean()
+	{
+		return TextFunctions.CLEAN(controlText);
+	}
+
+	@Benchmark
+	public String cleanUnchanged()
+	{
+		return TextFunctions.CLEAN(description);
+	}
+
+	@Benchmark
+	public Integer code()
+	{
+		return TextFunctions.CODE(name);
+	}
+
+	@Benchmark
+	public String concatenate()
+	{
+		return TextFunctions.CONCATENATE(addressParts);
+	}
+
+	@Benchmark
+	public Boolean exact()
+	{
+		return TextFunctions.EXACT(description, upperDescription);
+	}
+
+	@Benchmark
+	public Double doubleValue()
+	{
+		return TextFunctions.DOUBLE_VALUE(amountText);
+	}
+
+	@Benchmark
+	public Integer find()
+	{
+		return TextFunctions.FIND(description, "lazy dog");
+	}
+
+	@Benchmark
+	public Integer findFrom()
+	{
+		return TextFunctions.FIND(description, "lazy dog", 100);
+	}
+
+	@Benchmark
+	public String fixed()
+	{
+		return TextFunctions.FIXED(amount, 2);
+	}
+
+	@Benchmark
+	public String fixedOmitSeparators()
+	{
+		return TextFunctions.FIXED(amount, 3, true);
+	}
+
+	@Benchmark
+	public Float floatValue()
+	{
+		return TextFunctions.FLOAT_VALUE(amountText);
+	}
+
+	@Benchmark
+	public Integer integerValue()
+	{
+		return TextFunctions.INTEGER_VALUE("1234567");
+	}
+
+	@Benchmark
+	public String left()
+	{
+		return TextFunctions.LEFT(code, 3);
+	}
+
+	@Benchmark
+	public Integer len()
+	{
+		return TextFunctions.LEN(description);
+	}
+
+	@Benchmark
+	public Long longValue()
+	{
+		return TextFunctions.LONG_VALUE("9876543210");
+	}
+
+	@Benchmark
+	public String lower()
+	{
+		return TextFunctions.LOWER(upperDescription);
+	}
+
+	@Benchmark
+	public String ltrim()
+	{
+		return TextFunctions.LTRIM(paddedName);
+	}
+
+	@Benchmark
+	public String ltrimUnchanged()
+	{
+		return TextFunctions.LTRIM(name);
+	}
+
+	@Benchmark
+	public String mid()
+	{
+		return TextFunctions.MID(code, 5, 4);
+	}
+
+	@Benchmark
+	public String proper()
+	{
+		return TextFunctions.PROPER(description);
+	}
+
+	@Benchmark
+	public String replace()
+	{
+		return TextFunctions.REPLACE(description, 5, 5, "slow");
+	}
+
+	@Benchmark
+	public String rept()
+	{
+		return TextFunctions.REPT("-=", 40);
+	}
+
+	@Benchmark
+	public String right()
+	{
+		return TextFunctions.RIGHT(code, 6);
+	}
+
+	@Benchmark
+	public String rtrim()
+	{
+		return TextFunctions.RTRIM(paddedName);
+	}
+
+	@Benchmark
+	public String rtrimUnchanged()
+	{
+		return TextFunctions.RTRIM(name);
+	}
+
+	@Benchmark
+	public Integer search()
+	{
+		return TextFunctions.SEARCH("invoice", description);
+	}
+
+	@Benchmark
+	public Integer searchFrom()
+	{
+		return TextFunctions.SEARCH("invoice", description, 100);
+	}
+
+	@Benchmark
+	public String substitute()
+	{
+		return TextFunctions.SUBSTITUTE(description, "the", "a");
+	}
+
+	@Benchmark
+	public String substituteOccurrence()
+	{
+		return TextFunctions.SUBSTITUTE(description, "the", "a", 3);
+	}
+
+	@Benchmark
+	public String t()
+	{
+		return TextFunctions.T(value);
+	}
+
+	@Benchmark
+	public String text()
+	{
+		return TextFunctions.TEXT(amount, "#,##0.00");
+	}
+
+	@Benchmark
+	public String trim()
+	{
+		return TextFunctions.TRIM(paddedName);
+	}
+
+	@Benchmark
+	public String upper()
+	{
+		return TextFunctions.UPPER(description);
+	}
+
+	@Benchmark
+	public String[] upperColumn()
+	{
+		return TextFunctions.UPPER(nameColumn, nameResults);
+	}
+
+}
@@ -0,0 +1,306 @@
+package net.sf.jasperreports.expressions.functions.vector;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+import net.sf.jasperreports.expressions.functions.ArrayKernels;
+
+/**
+ * Implementation of the {@link ArrayKernels} based on the JDK Vector API (<code>jdk.incubator.vector</code>).
+ *
+ * <p>
+ * The loops work on the preferred vector size of the platform, the values that do not fill
+ * a whole vector are processed by scalar loops. The implementation is registered as a service,
+ * it is used when the library is on the classpath and the JVM is started with
+ * <code>--add-modules jdk.incubator.vector</code>.
+ *
+ * <p>
+ * The results are the same of the scalar loops, except for the <code>double</code> sums and the products,
+ * which are computed on several partial results at once: the rounding can differ in the last bits,
+ * and the overflow of an intermediate product can differ for values close to the limits of <code>double</code>.
+ */
+public final class VectorArrayKernels extends ArrayKernels {
+
+	private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+	// ints with the same number of lanes as the longs and the doubles, for the conversions
+	private static final VectorSpecies<Integer> HALF_INTS =
+			VectorSpecies.of(int.class, VectorShape.forBitSize(LONGS.vectorBitSize()/2));
+
+
+	@Override
+	public String getName(){
+		return "vector";
+	}
+
+	/**
+	 * Returns <code>true</code> if the platform supports vectors of at least two <code>double</code> values.
+	 */
+	@Override
+	public boolean isSupported(){
+		return DOUBLES.length()>1;
+	}
+
+	@Override
+	public long sum(int[] values, int from, int to){
+		LongVector sums=LongVector.zero(LONGS);
+		int i=from;
+		for (int bound=from+HALF_INTS.loopBound(to-from);i<bound;i+=HALF_INTS.length()){
+			sums=sums.add((LongVector) IntVector.fromArray(HALF_INTS, values, i).convertShape(VectorOperators.I2L, LONGS, 0));
+		}
+		long result=sums.reduceLanes(VectorOperators.ADD);
+		for (;i<to;i++){
+			result+=values[i];
+		}
+		return result;
+	}
+
+	@Override
+	public long sum(long[] values, int from, int to){
+		LongVector highSums=LongVector.zero(LONGS);
+		LongVector lowSums=LongVector.zero(LONGS);
+		int i=from;
+		for (int bound=from+LONGS.loopBound(to-from);i<bound;i+=LONGS.length()){
+			LongVector vector=LongVector.fromArray(LONGS, values, i);
+			highSums=highSums.add(vector.lanewise(VectorOperators.ASHR, 32));
+			lowSums=lowSums.add(vector.and(0xFFFFFFFFL));
+		}
+		long highSum=highSums.reduceLanes(VectorOperators.ADD);
+		long lowSum=lowSums.reduceLanes(VectorOperators.ADD);
+		for (;i<to;i++){
+			highSum+=values[i]>>32;
+			lowSum+=values[i]&0xFFFFFFFFL;
+		}
+		return exactSum(highSum, lowSum);
+	}
+
+	@Override
+	public double sum(double[] values, int from, int to){
+		DoubleVector sums=DoubleVector.zero(DOUBLES);
+		int i=from;
+		for (int bound=from+DOUBLES.loopBound(to-from);i<bound;i+=DOUBLES.length()){
+			sums=sums.add(DoubleVector.fromArray(DOUBLES, values, i));
+		}
+		double result=sums.reduceLanes(VectorOperators.ADD);
+		for (;i<to;i++){
+			result+=values[i];
+		}
+		return result;
+	}
+
+	@Override
+	public double product(int[] values, int from, int to){
+		DoubleVector products=DoubleVector.broadcast(DOUBLES, 1);
+		int i=from;
+		for (int bound=from+HALF_INTS.loopBound(to-from);i<bound;i+=HALF_INTS.length()){
+			products=products.mul((DoubleVector) IntVector.fromArray(HALF_INTS, values, i).convertShape(VectorOperators.I2D, DOUBLES, 0));
+		}
+		double result=products.reduceLanes(VectorOperators.MUL);
+		for (;i<to;i++){
+			result*=values[i];
+		}
+		return result;
+	}
+
+	@Override
+	public double product(long[] values, int from, int to){
+		DoubleVector products=DoubleVector.broadcast(DOUBLES, 1);
+		int i=from;
+		for (int bound=from+LONGS.loopBound(to-from);i<bound;i+=LONGS.length()){
+			products=products.mul((DoubleVector) LongVector.fromArray(LONGS, values, i).convertShape(VectorOperators.L2D, DOUBLES, 0));
+		}
+		double result=products.reduceLanes(VectorOperators.MUL);
+		for (;i<to;i++){
+			result*=values[i];
+		}
+		return result;
+	}
+
+	@Override
+	public double product(double[] values, int from, int to){
+		DoubleVector products=DoubleVector.broadcast(DOUBLES, 1);
+		int i=from;
+		for (int bound=from+DOUBLES.loopBound(to-from);i<bound;i+=DOUBLES.length()){
+			products=products.mul(DoubleVector.fromArray(DOUBLES, values, i));
+		}
+		double result=products.reduceLanes(VectorOperators.MUL);
+		for (;i<to;i++){
+			result*=values[i];
+		}
+		return result;
+	}
+
+	@Override
+	public int min(int[] values, int from, int to){
+		IntVector mins=IntVector.broadcast(INTS, values[from]);
+		int i=from;
+		for (int bound=from+INTS.loopBound(to-from);i<bound;i+=INTS.length()){
+			mins=mins.min(IntVector.fromArray(INTS, values, i));
+		}
+		int min=mins.reduceLanes(VectorOperators.MIN);
+		for (;i<to;i++){
+			if(values[i]<min){
+				min=values[i];
+			}
+		}
+		return min;
+	}
+
+	@Override
+	public long min(long[] values, int from, int to){
+		LongVector mins=LongVector.broadcast(LONGS, values[from]);
+		int i=from;
+		for (int bound=from+LONGS.loopBound(to-from);i<bound;i+=LONGS.length()){
+			mins=mins.min(LongVector.fromArray(LONGS, values, i));
+		}
+		long min=mins.reduceLanes(VectorOperators.MIN);
+		for (;i<to;i++){
+			if(values[i]<min){
+				min=values[i];
+			}
+		}
+		return min;
+	}
+
+	@Override
+	public double min(double[] values, int from, int to){
+		if(Double.isNaN(values[from])){
+			return values[from];
+		}
+		DoubleVector mins=DoubleVector.broadcast(DOUBLES, values[from]);
+		int i=from;
+		for (int bound=from+DOUBLES.loopBound(to-from);i<bound;i+=DOUBLES.length()){
+			DoubleVector vector=DoubleVector.fromArray(DOUBLES, values, i);
+			mins=mins.blend(vector, vector.compare(VectorOperators.LT, mins));
+		}
+		double min=mins.reduceLanes(VectorOperators.MIN);
+		for (;i<to;i++){
+			if(values[i]<min){
+				min=values[i];
+			}
+		}
+		if(min==0){
+			// the lanes skip NaN values as the < operator does, but equal zeros can be found in any order
+			return getScalar().min(values, from, to);
+		}
+		return min;
+	}
+
+	@Override
+	public int max(int[] values, int from, int to){
+		IntVector maxs=IntVector.broadcast(INTS, values[from]);
+		int i=from;
+		for (int bound=from+INTS.loopBound(to-from);i<bound;i+=INTS.length()){
+			maxs=maxs.max(IntVector.fromArray(INTS, values, i));
+		}
+		int max=maxs.reduceLanes(VectorOperators.MAX);
+		for (;i<to;i++){
+			if(values[i]>max){
+				max=values[i];
+			}
+		}
+		return max;
+	}
+
+	@Override
+	public long max(long[] values, int from, int to){
+		LongVector maxs=LongVector.broadcast(LONGS, values[from]);
+		int i=from;
+		for (int bound=from+LONGS.loopBound(to-from);i<bound;i+=LONGS.length()){
+			maxs=maxs.max(LongVector.fromArray(LONGS, values, i));
+		}
+		long max=maxs.reduceLanes(VectorOperators.MAX);
+		for (;i<to;i++){
+			if(values[i]>max){
+				max=values[i];
+			}
+		}
+		return max;
+	}
+
+	@Override
+	public double max(double[] values, int from, int to){
+		if(Double.isNaN(values[from])){
+			return values[from];
+		}
+		DoubleVector maxs=DoubleVector.broadcast(DOUBLES, values[from]);
+		int i=from;
+		for (int bound=from+DOUBLES.loopBound(to-from);i<bound;i+=DOUBLES.length()){
+			DoubleVector vector=DoubleVector.fromArray(DOUBLES, values, i);
+			maxs=maxs.blend(vector, vector.compare(VectorOperators.GT, maxs));
+		}
+		double max=maxs.reduceLanes(VectorOperators.MAX);
+		for (;i<to;i++){
+			if(values[i]>max){
+				max=values[i];
+			}
+		}
+		if(max==0){
+			// see min(double[], int, int)
+			return getScalar().max(values, from, to);
+		}
+		return max;
+	}
+
+	@Override
+	public void abs(int[] values, int[] result, int length){
+		int i=0;
+		for (int bound=INTS.loopBound(length);i<bound;i+=INTS.length()){
+			IntVector.fromArray(INTS, values, i).abs().intoArray(result, i);
+		}
+		for (;i<length;i++){
+			result[i]=Math.abs(values[i]);
+		}
+	}
+
+	@Override
+	public void abs(long[] values, long[] result, int length){
+		int i=0;
+		for (int bound=LONGS.loopBound(length);i<bound;i+=LONGS.length()){
+			LongVector.fromArray(LONGS, values, i).abs().intoArray(result, i);
+		}
+		for (;i<length;i++){
+			result[i]=Math.abs(values[i]);
+		}
+	}
+
+	@Override
+	public void abs(double[] values, double[] result, int length){
+		int i=0;
+		for (int bound=DOUBLES.loopBound(length);i<bound;i+=DOUBLES.length()){
+			DoubleVector.fromArray(DOUBLES, values, i).abs().intoArray(result, i);
+		}
+		for (;i<length;i++){
+			result[i]=Math.abs(values[i]);
+		}
+	}
+
+	/*
+	 * The JIT compiler already produces code for the scalar loops of the following functions
+	 * that is as fast as, or faster than, the Vector API versions.
+	 */
+	@Override
+	public void sign(double[] values, int[] result, int length){
+		getScalar().sign(values, result, length);
+	}
+
+	@Override
+	public void sqrt(double[] values, double[] result, int length){
+		getScalar().sqrt(values, result, length);
+	}
+
+	@Override
+	public void floor(double[] values, double[] result, int length){
+		getScalar().floor(values, result, length);
+	}
+
+	@Override
+	public void ceil(double[] values, double[] result, int length){
+		getScalar().ceil(values, result, length);
+	}
+
+}
@@ -0,0 +1,358 @@
+package net.sf.jasperreports.expressions.functions;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JRPropertiesUtil;
+
+/**
+ * Loops on primitive arrays used by the array and columnar versions of the functions in {@link MathFunctions}.
+ *
+ * <p>
+ * The default implementation uses plain scalar loops. Optional implementations, like the one based on the
+ * JDK Vector API contained in the <code>net.sf.jasperreports.expressions.functions.vector</code> library,
+ * are found through {@link ServiceLoader}: the first one that can be loaded in the running JVM is used,
+ * otherwise the scalar loops are used. Optional implementations can be disabled by the
+ * {@link #PROPERTY_OPTIONAL_KERNELS} property.
+ *
+ * <p>
+ * The arguments are checked by the callers, the methods only contain the loops.
+ * Implementations must give the same results of the scalar loops, except for the rounding of the
+ * floating point sums and products, which can be computed in a different order.
+ */
+public abstract class ArrayKernels {
+
+	/**
+	 * Property specifying whether the optional implementations found on the classpath should be used
+	 * (<code>true</code> by default).
+	 */
+	public static final String PROPERTY_OPTIONAL_KERNELS = "net.sf.jasperreports.expression.functions.math.optional.kernels";
+
+	private static final ArrayKernels SCALAR = new ScalarKernels();
+
+	private static volatile ArrayKernels instance;
+
+	/**
+	 * Returns the implementation used by the functions.
+	 */
+	public static ArrayKernels getInstance(){
+		ArrayKernels kernels = instance;
+		if(kernels==null){
+			kernels = loadKernels();
+			instance = kernels;
+		}
+		return kernels;
+	}
+
+	/**
+	 * Returns the scalar implementation.
+	 */
+	public static ArrayKernels getScalar(){
+		return SCALAR;
+	}
+
+	private static ArrayKernels loadKernels(){
+		String optionalKernels = JRPropertiesUtil.getInstance(DefaultJasperReportsContext.getInstance())
+				.getProperty(PROPERTY_OPTIONAL_KERNELS);
+		if(optionalKernels==null || Boolean.parseBoolean(optionalKernels)){
+			Iterator<ArrayKernels> providers = ServiceLoader.load(ArrayKernels.class, ArrayKernels.class.getClassLoader()).iterator();
+			while(true){
+				try {
+					if(!providers.hasNext()){
+						break;
+					}
+					ArrayKernels kernels = providers.next();
+					if(kernels.isSupported()){
+						return kernels;
+					}
+				} catch (ServiceConfigurationError e) {
+					// not usable in this JVM, for example because of a missing module
+				} catch (LinkageError e) {
+					// same as above
+				}
+			}
+		}
+		return SCALAR;
+	}
+
+	/**
+	 * Returns the name of the implementation.
+	 */
+	public abstract String getName();
+
+	/**
+	 * Checks whether the implementation can be used in the running JVM.
+	 */
+	public boolean isSupported(){
+		return true;
+	}
+
+	public abstract long sum(int[] values, int from, int to);
+
+	/**
+	 * Returns the sum of the values in a range.
+	 * The result does not depend on the order of the additions: intermediate overflows are allowed,
+	 * as long as the final sum fits a <code>long</code>.
+	 *
+	 * @throws ArithmeticException if the sum does not fit a <code>long</code>
+	 * @see #exactSum(long, long)
+	 */
+	public abstract long sum(long[] values, int from, int to);
+
+	public abstract double sum(double[] values, int from, int to);
+
+	public abstract double product(int[] values, int from, int to);
+
+	public abstract double product(long[] values, int from, int to);
+
+	public abstract double product(double[] values, int from, int to);
+
+	/**
+	 * Returns the minimum value in a not empty range.
+	 */
+	public abstract int min(int[] values, int from, int to);
+
+	public abstract long min(long[] values, int from, int to);
+
+	/**
+	 * Returns the minimum value in a not empty range, as done by a loop on the <code>&lt;</code> operator:
+	 * <code>NaN</code> values are skipped (unless the first one), and the first of equal zeros is returned.
+	 */
+	public abstract double min(double[] values, int from, int to);
+
+	/**
+	 * Returns the maximum value in a not empty range.
+	 */
+	public abstract int max(int[] values, int from, int to);
+
+	public abstract long max(long[] values, int from, int to);
+
+	/**
+	 * Returns the maximum value in a not empty range, as done by a loop on the <code>&gt;</code> operator.
+	 */
+	public abstract double max(double[] values, int from, int to);
+
+	/**
+	 * Stores the absolute values of the first <code>length</code> values into the result array.
+	 */
+	public abstract void abs(int[] values, int[] result, int length);
+
+	public abstract void abs(long[] values, long[] result, int length);
+
+	public abstract void abs(double[] values, double[] result, int length);
+
+	/**
+	 * Stores the signs (-1, 0 or 1) of the first <code>length</code> values into the result array,
+	 * 0 for <code>NaN</code> values.
+	 */
+	public abstract void sign(double[] values, int[] result, int length);
+
+	public abstract void sqrt(double[] values, double[] result, int length);
+
+	public abstract void floor(double[] values, double[] result, int length);
+
+	public abstract void ceil(double[] values, double[] result, int length);
+
+	/**
+	 * Combines the separate sums of the high and low halves of some <code>long</code> values
+	 * (<code>value&gt;&gt;32</code> and <code>value&amp;0xFFFFFFFFL</code>) into their sum.
+	 * The halves of less than 2<sup>31</sup> values can be summed without overflows,
+	 * in any order, so that the overflow of the whole sum can be detected at the end.
+	 *
+	 * @throws ArithmeticException if the sum does not fit a <code>long</code>
+	 */
+	protected static long exactSum(long highSum, long lowSum){
+		long high=highSum+(lowSum>>>32);
+		if(high<Integer.MIN_VALUE || high>Integer.MAX_VALUE){
+			throw new ArithmeticException("long overflow");
+		}
+		return (high<<32)|(lowSum&0xFFFFFFFFL);
+	}
+
+	/*
+	 * Plain loops, the legacy behavior.
+	 */
+	private static final class ScalarKernels extends ArrayKernels {
+
+		@Override
+		public String getName(){
+			return "scalar";
+		}
+
+		@Override
+		public long sum(int[] values, int from, int to){
+			long result=0;
+			for (int i=from;i<to;i++){
+				result+=values[i];
+			}
+			return result;
+		}
+
+		@Override
+		public long sum(long[] values, int from, int to){
+			long highSum=0;
+			long lowSum=0;
+			for (int i=from;i<to;i++){
+				highSum+=values[i]>>32;
+				lowSum+=values[i]&0xFFFFFFFFL;
+			}
+			return exactSum(highSum, lowSum);
+		}
+
+		@Override
+		public double sum(double[] values, int from, int to){
+			double result=0;
+			for (int i=from;i<to;i++){
+				result+=values[i];
+			}
+			return result;
+		}
+
+		@Override
+		public double product(int[] values, int from, int to){
+			double result=1;
+			for (int i=from;i<to;i++){
+				result*=values[i];
+			}
+			return result;
+		}
+
+		@Override
+		public double product(long[] values, int from, int to){
+			double result=1;
+			for (int i=from;i<to;i++){
+				result*=values[i];
+			}
+			return result;
+		}
+
+		@Override
+		public double product(double[] values, int from, int to){
+			double result=1;
+			for (int i=from;i<to;i++){
+				result*=values[i];
+			}
+			return result;
+		}
+
+		@Override
+		public int min(int[] values, int from, int to){
+			int min=values[from];
+			for (int i=from+1;i<to;i++){
+				if(values[i]<min){
+					min=values[i];
+				}
+			}
+			return min;
+		}
+
+		@Override
+		public long min(long[] values, int from, int to){
+			long min=values[from];
+			for (int i=from+1;i<to;i++){
+				if(values[i]<min){
+					min=values[i];
+				}
+			}
+			return min;
+		}
+
+		@Override
+		public double min(double[] values, int from, int to){
+			double min=values[from];
+			for (int i=from+1;i<to;i++){
+				if(values[i]<min){
+					min=values[i];
+				}
+			}
+			return min;
+		}
+
+		@Override
+		public int max(int[] values, int from, int to){
+			int max=values[from];
+			for (int i=from+1;i<to;i++){
+				if(values[i]>max){
+					max=values[i];
+				}
+			}
+			return max;
+		}
+
+		@Override
+		public long max(long[] values, int from, int to){
+			long max=values[from];
+			for (int i=from+1;i<to;i++){
+				if(values[i]>max){
+					max=values[i];
+				}
+			}
+			return max;
+		}
+
+		@Override
+		public double max(double[] values, int from, int to){
+			double max=values[from];
+			for (int i=from+1;i<to;i++){
+				if(values[i]>max){
+					max=values[i];
+				}
+			}
+			return max;
+		}
+
+		@Override
+		public void abs(int[] values, int[] result, int length){
+			for (int i=0;i<length;i++){
+				result[i]=Math.abs(values[i]);
+			}
+		}
+
+		@Override
+		public void abs(long[] values, long[] result, int length){
+			for (int i=0;i<length;i++){
+				result[i]=Math.abs(values[i]);
+			}
+		}
+
+		@Override
+		public void abs(double[] values, double[] result, int length){
+			for (int i=0;i<length;i++){
+				result[i]=Math.abs(values[i]);
+			}
+		}
+
+		@Override
+		public void sign(double[] values, int[] result, int length){
+			for (int i=0;i<length;i++){
+				// same as (int) Math.signum, without branches
+				double value=values[i];
+				result[i]=(value>0 ? 1 : 0) - (value<0 ? 1 : 0);
+			}
+		}
+
+		@Override
+		public void sqrt(double[] values, double[] result, int length){
+			for (int i=0;i<length;i++){
+				result[i]=Math.sqrt(values[i]);
+			}
+		}
+
+		@Override
+		public void floor(double[] values, double[] result, int length){
+			for (int i=0;i<length;i++){
+				result[i]=Math.floor(values[i]);
+			}
+		}
+
+		@Override
+		public void ceil(double[] values, double[] result, int length){
+			for (int i=0;i<length;i++){
+				result[i]=Math.ceil(values[i]);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,35 @@
+package net.sf.jasperreports.expressions.functions;
+
+/**
+ * Argument checks for the columnar versions of the functions, which work on whole arrays
+ * of values instead of a single value per call.
+ *
+ * <p>
+ * The checks are done before the loops, so that the loops themselves only contain
+ * the computation and can be optimized by the JIT compiler.
+ */
+final class Columns {
+
+	private Columns(){
+		// Prevents instantiation
+	}
+
+	/**
+	 * Checks that <code>[from, to)</code> is a valid range of a column.
+	 */
+	static void checkRange(int length, int from, int to){
+		if(from<0 || to>length || from>to){
+			throw new IndexOutOfBoundsException("Invalid range [" + from + ", " + to + ") for a column of " + length + " values");
+		}
+	}
+
+	/**
+	 * Checks that the result column can contain the results for all the values of a column.
+	 */
+	static void checkResult(int length, int resultLength){
+		if(resultLength<length){
+			throw new IndexOutOfBoundsException("The result column has " + resultLength + " elements, " + length + " are needed");
+		}
+	}
+
+}
@@ -0,0 +1,34 @@
+package net.sf.jasperreports.expressions.functions;
+
+/**
+ * Sum of <code>double</code> values with the compensation of the rounding errors
+ * (the Kahan-Babuska-Neumaier summation), used by the <code>SUM</code> function for the lists
+ * split by {@link ParallelAggregation}.
+ *
+ * <p>
+ * The error of the result does not grow with the number of values, as it does with a plain loop.
+ * Partial sums of consecutive ranges of values can be combined by {@link #add(CompensatedSum)}.
+ */
+final class CompensatedSum {
+
+	private double sum;
+	private double compensation;
+
+	void add(double value){
+		double total=sum+value;
+		compensation+=Math.abs(sum)>=Math.abs(value) ? (sum-total)+value : (value-total)+sum;
+		sum=total;
+	}
+
+	void add(CompensatedSum other){
+		add(other.sum);
+		compensation+=other.compensation;
+	}
+
+	double getResult(){
+		double result=sum+compensation;
+		// the compensation is NaN when infinite values have been added, the plain sum is right
+		return Double.isNaN(result) ? sum : result;
+	}
+
+}
@@ -0,0 +1,345 @@
+package net.sf.jasperreports.expressions.functions;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+
+import org.joda.time.DateTimeZone;
+
+/**
+ * Extracts the calendar fields of an instant, expressed as epoch millis, in a time zone.
+ *
+ * <p>
+ * The fields are computed with arithmetic on the local millis, without creating {@link Calendar}
+ * instances, and give the same results as a {@link GregorianCalendar} in the same time zone.
+ * The zone offsets are cached for periods of about 18 hours, so that the time zone rules are looked up
+ * only when a new period is found (or when the offset changes during the period).
+ * Instants before the Gregorian cutover are handled by a {@link GregorianCalendar}.
+ *
+ * <p>
+ * Instances are thread-safe.
+ */
+public final class DateFields {
+
+	/**
+	 * Property specifying the ID of the time zone used by the date/time functions and by the {@link DateParser}
+	 * when no evaluation context with a time zone is bound, to parse, create, format dates and extract their fields.
+	 * If not set, the default time zone of the JVM is used. The property is read from the default 
+	 * JasperReports context on each call, changes apply to the next calls.
+	 */
+	public static final String PROPERTY_TIME_ZONE = "net.sf.jasperreports.expression.functions.time.zone";
+
+	public static final int YEAR = 0;
+	public static final int MONTH = 1;
+	public static final int DAY_OF_MONTH = 2;
+	public static final int HOUR_OF_DAY = 3;
+	public static final int MINUTE = 4;
+	public static final int SECOND = 5;
+	public static final int MILLISECOND = 6;
+	public static final int DAY_OF_WEEK = 7;
+
+	/**
+	 * Size of the array to pass to {@link #getFields(long, int[])}.
+	 */
+	public static final int FIELDS_COUNT = 8;
+
+	private static final long MILLIS_PER_DAY = EpochDays.MILLIS_PER_DAY;
+
+	// default cutover of GregorianCalendar, 1582-10-15T00:00:00Z
+	private static final long GREGORIAN_CUTOVER = -12219292800000L;
+
+	private static final int OFFSETS_CACHE_SIZE = 1024;
+
+	// the offsets are cached for periods of 2^26 millis, a shift is cheaper than a division
+	private static final int OFFSETS_PERIOD_SHIFT = 26;
+
+	// the maximum change of offset in a transition
+	private static final long MAX_TRANSITION_MILLIS = 3L * 60 * 60 * 1000;
+
+	private static volatile ConfiguredFields configuredFields;
+	private static volatile DateFields defaultFields;
+
+	private final TimeZone timeZone;
+	private volatile DateTimeZone dateTimeZone;
+	// each entry contains the period (upper bits) and the offset of the whole period (lower bits)
+	private final AtomicLongArray offsets;
+
+	private DateFields(TimeZone timeZone){
+		this.timeZone = (TimeZone) timeZone.clone();
+		this.offsets = new AtomicLongArray(OFFSETS_CACHE_SIZE);
+		for(int i=0; i<OFFSETS_CACHE_SIZE; i++){
+			// no period maps to this entry
+			offsets.set(i, entry(i+1, 0));
+		}
+	}
+
+	/**
+	 * Returns the instance for the specified time zone.
+	 */
+	public static DateFields forTimeZone(TimeZone timeZone){
+		DateFields fields = defaultFields;
+		if(fields!=null && fields.timeZone.getID().equals(timeZone.getID()) && fields.timeZone.hasSameRules(timeZone)){
+			return fields;
+		}
+		return new DateFields(timeZone);
+	}
+
+	/**
+	 * Returns the instance used by the date/time functions when no evaluation context with a time zone is bound,
+	 * for the time zone specified by the {@link #PROPERTY_TIME_ZONE} property or for the default time zone.
+	 */
+	public static DateFields getDefault(){
+		String zoneId = DefaultJasperReportsContext.getInstance().getProperty(PROPERTY_TIME_ZONE);
+		if(zoneId!=null && zoneId.trim().length()>0){
+			ConfiguredFields configured = configuredFields;
+			if(configured==null || !configured.zoneId.equals(zoneId)){
+				configured = new ConfiguredFields(zoneId, new DateFields(TimeZone.getTimeZone(zoneId.trim())));
+				configuredFields = configured;
+			}
+			return configured.fields;
+		}
+		TimeZone timeZone = TimeZone.getDefault();
+		DateFields fields = defaultFields;
+		if(fields==null || !fields.timeZone.getID().equals(timeZone.getID())){
+			fields = new DateFields(timeZone);
+			defaultFields = fields;
+		}
+		return fields;
+	}
+
+	public TimeZone getTimeZone(){
+		return (TimeZone) timeZone.clone();
+	}
+
+	/*
+	 * Returns the time zone without copying it, it must not be modified.
+	 */
+	TimeZone getSharedTimeZone(){
+		return timeZone;
+	}
+
+	/*
+	 * Returns the Joda-Time zone with the same ID.
+	 */
+	DateTimeZone getDateTimeZone(){
+		DateTimeZone zone = dateTimeZone;
+		if(zone==null){
+			zone = DateTimeZone.forTimeZone(timeZone);
+			dateTimeZone = zone;
+		}
+		return zone;
+	}
+
+	/**
+	 * Returns the offset of the time zone at the specified instant.
+	 */
+	public int getOffset(long millis){
+		long period = millis >> OFFSETS_PERIOD_SHIFT;
+		int index = (int) (period & (OFFSETS_CACHE_SIZE-1));
+		long entry = offsets.get(index);
+		if((entry>>32)==period){
+			return (int) entry;
+		}
+		int offset = timeZone.getOffset(millis);
+		long periodStart = period << OFFSETS_PERIOD_SHIFT;
+		if(period==(int) period
+				&& timeZone.getOffset(periodStart)==offset
+				&& timeZone.getOffset(periodStart + (1L << OFFSETS_PERIOD_SHIFT) - 1)==offset){
+			// the offset does not change during the period
+			offsets.lazySet(index, entry(period, offset));
+		}
+		return offset;
+	}
+
+	private static long entry(long period, int offset){
+		return (period<<32) | (offset & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Returns the local millis of the instant, that is the millis plus the zone offset.
+	 */
+	public long toLocalMillis(long millis){
+		return millis + getOffset(millis);
+	}
+
+	/**
+	 * Returns the instant of the specified local millis. As done by Joda-Time, local times
+	 * in a gap are moved forward, and the earlier instant is chosen for local times in an overlap.
+	 */
+	public long toUTCMillis(long localMillis){
+		int offsetLocal = getOffset(localMillis);
+		long adjusted = localMillis - offsetLocal;
+		int offsetAdjusted = getOffset(adjusted);
+		if(offsetLocal!=offsetAdjusted){
+			if(offsetLocal<offsetAdjusted && getOffset(localMillis - offsetAdjusted)!=offsetAdjusted){
+				// in a gap
+				return adjusted;
+			}
+			return localMillis - offsetAdjusted;
+		}
+		// the offset before a possible transition, if greater the local time can be in an overlap
+		int offsetBefore = getOffset(adjusted - MAX_TRANSITION_MILLIS);
+		if(offsetBefore>offsetLocal && getOffset(localMillis - offsetBefore)==offsetBefore){
+			return localMillis - offsetBefore;
+		}
+		return adjusted;
+	}
+
+	public int getYear(long millis){
+		if(millis<GREGORIAN_CUTOVER) return getCalendarField(millis, Calendar.YEAR);
+		return getYearMonthDay(millis)/10000;
+	}
+
+	/**
+	 * Returns the month, from 1 (January) to 12 (December).
+	 */
+	public int getMonth(long millis){
+		if(millis<GREGORIAN_CUTOVER) return getCalendarField(millis, Calendar.MONTH)+1;
+		return getYearMonthDay(millis)/100%100;
+	}
+
+	public int getDayOfMonth(long millis){
+		if(millis<GREGORIAN_CUTOVER) return getCalendarField(millis, Calendar.DAY_OF_MONTH);
+		return getYearMonthDay(millis)%100;
+	}
+
+	public int getHourOfDay(long millis){
+		return (int) (millisOfDay(millis)/(60*60*1000));
+	}
+
+	public int getMinute(long millis){
+		return (int) (millisOfDay(millis)/(60*1000)%60);
+	}
+
+	public int getSecond(long millis){
+		return (int) (millisOfDay(millis)/1000%60);
+	}
+
+	public int getMillisecond(long millis){
+		return (int) (millisOfDay(millis)%1000);
+	}
+
+	/**
+	 * Returns the day of week.
+	 *
+	 * @param sundayFirst if <code>true</code> the days are numbered from 1 (Sunday) to 7 (Saturday),
+	 * 	as {@link Calendar#DAY_OF_WEEK}, otherwise from 1 (Monday) to 7 (Sunday)
+	 */
+	public int getDayOfWeek(long millis, boolean sundayFirst){
+		int dayOfWeek = EpochDays.dayOfWeek(EpochDays.fromLocalMillis(toLocalMillis(millis)));
+		if(sundayFirst){
+			return dayOfWeek==7 ? 1 : dayOfWeek+1;
+		}
+		return dayOfWeek;
+	}
+
+	/**
+	 * Returns year, month (1-12) and day of month in a single value, encoded as <code>yyyyMMdd</code>
+	 * (for instance 20130314). The encoding assumes a positive year.
+	 */
+	public int getYearMonthDay(long millis){
+		if(millis<GREGORIAN_CUTOVER){
+			int[] fields = new int[FIELDS_COUNT];
+			getFields(millis, fields);
+			return fields[YEAR]*10000 + fields[MONTH]*100 + fields[DAY_OF_MONTH];
+		}
+		long epochDay = EpochDays.fromLocalMillis(toLocalMillis(millis));
+		return EpochDays.toYearMonthDay(epochDay);
+	}
+
+	/**
+	 * Computes all the fields of the instant at once.
+	 *
+	 * @param millis the instant
+	 * @param fields the array receiving the fields, indexed by the {@link #YEAR}, {@link #MONTH} (1-12),
+	 * {@link #DAY_OF_MONTH}, {@link #HOUR_OF_DAY}, {@link #MINUTE}, {@link #SECOND}, {@link #MILLISECOND} and
+	 * {@link #DAY_OF_WEEK} (1 for Monday, 7 for Sunday) constants
+	 */
+	public void getFields(long millis, int[] fields){
+		if(millis<GREGORIAN_CUTOVER){
+			Calendar calendar = new GregorianCalendar(timeZone);
+			calendar.setTimeInMillis(millis);
+			fields[YEAR] = calendar.get(Calendar.YEAR);
+			if(calendar.get(Calendar.ERA)==GregorianCalendar.BC){
+				fields[YEAR] = 1-fields[YEAR];
+			}
+			fields[MONTH] = calendar.get(Calendar.MONTH)+1;
+			fields[DAY_OF_MONTH] = calendar.get(Calendar.DAY_OF_MONTH);
+			fields[HOUR_OF_DAY] = calendar.get(Calendar.HOUR_OF_DAY);
+			fields[MINUTE] = calendar.get(Calendar.MINUTE);
+			fields[SECOND] = calendar.get(Calendar.SECOND);
+			fields[MILLISECOND] = calendar.get(Calendar.MILLISECOND);
+			int dayOfWeek = calendar.get(Calendar.DAY_OF_WEEK);
+			fields[DAY_OF_WEEK] = dayOfWeek==Calendar.SUNDAY ? 7 : dayOfWeek-1;
+			return;
+		}
+		long localMillis = toLocalMillis(millis);
+		long epochDay = EpochDays.fromLocalMillis(localMillis);
+		int yearMonthDay = EpochDays.toYearMonthDay(epochDay);
+		fields[YEAR] = yearMonthDay/10000;
+		fields[MONTH] = yearMonthDay/100%100;
+		fields[DAY_OF_MONTH] = yearMonthDay%100;
+		int millisOfDay = (int) (localMillis - epochDay*MILLIS_PER_DAY);
+		fields[HOUR_OF_DAY] = millisOfDay/(60*60*1000);
+		fields[MINUTE] = millisOfDay/(60*1000)%60;
+		fields[SECOND] = millisOfDay/1000%60;
+		fields[MILLISECOND] = millisOfDay%1000;
+		fields[DAY_OF_WEEK] = EpochDays.dayOfWeek(epochDay);
+	}
+
+	/**
+	 * Returns the value of a field, identified by a {@link Calendar} field constant
+	 * (only <code>YEAR</code>, <code>MONTH</code>, <code>DAY_OF_MONTH</code>, <code>HOUR_OF_DAY</code>,
+	 * <code>MINUTE</code>, <code>SECOND</code>, <code>MILLISECOND</code> and <code>DAY_OF_WEEK</code>
+	 * are supported), with the same value returned by a {@link GregorianCalendar}.
+	 */
+	public int getCalendarField(long millis, int calendarField){
+		if(millis<GREGORIAN_CUTOVER){
+			Calendar calendar = new GregorianCalendar(timeZone);
+			calendar.setTimeInMillis(millis);
+			return calendar.get(calendarField);
+		}
+		switch(calendarField){
+			case Calendar.YEAR:
+				return getYear(millis);
+			case Calendar.MONTH:
+				return getMonth(millis)-1;
+			case Calendar.DAY_OF_MONTH:
+				return getDayOfMonth(millis);
+			case Calendar.HOUR_OF_DAY:
+				return getHourOfDay(millis);
+			case Calendar.MINUTE:
+				return getMinute(millis);
+			case Calendar.SECOND:
+				return getSecond(millis);
+			case Calendar.MILLISECOND:
+				return getMillisecond(millis);
+			case Calendar.DAY_OF_WEEK:
+				return getDayOfWeek(millis, true);
+			default:
+				throw new IllegalArgumentException("Unsupported calendar field: " + calendarField);
+		}
+	}
+
+	private long millisOfDay(long millis){
+		return EpochDays.floorMod(toLocalMillis(millis), MILLIS_PER_DAY);
+	}
+
+	/*
+	 * The instance for the time zone property, with the value of the property it was created for.
+	 */
+	private static final class ConfiguredFields {
+
+		private final String zoneId;
+		private final DateFields fields;
+
+		private ConfiguredFields(String zoneId, DateFields fields){
+			this.zoneId = zoneId;
+			this.fields = fields;
+		}
+	}
+
+}
@@ -0,0 +1,148 @@
+package net.sf.jasperreports.expressions.functions;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.sf.jasperreports.expressions.functions.errors.JRExpressionFunctionException;
+
+/**
+ * Converts the objects accepted as dates by the date/time functions into epoch millis.
+ *
+ * <p>
+ * Supported objects are {@link Date} and its subclasses (like <code>java.sql.Date</code> and
+ * <code>java.sql.Timestamp</code>), <code>Long</code> millis, strings (parsed by {@link DateParser})
+ * and, when running on Java 8 or later, the <code>java.time</code> types <code>Instant</code>,
+ * <code>ZonedDateTime</code>, <code>OffsetDateTime</code>, <code>LocalDate</code> and <code>LocalDateTime</code>.
+ * Local dates and times are interpreted in the time zone of {@link FunctionContext#getDateFields()}.
+ * The <code>java.time</code> types are accessed by reflection, since the library is compiled for older Java versions.
+ */
+final class DateObjects {
+
+	/**
+	 * Value returned when an object can not be converted.
+	 */
+	static final long NO_DATE = Long.MIN_VALUE;
+
+	private static final String JAVA_TIME_PACKAGE = "java.time.";
+
+	private static final Map<Class<?>, TemporalConverter> CONVERTERS = new ConcurrentHashMap<Class<?>, TemporalConverter>();
+
+	private DateObjects(){
+		// Prevents instantiation
+	}
+
+	/**
+	 * Returns the epoch millis of a date object, {@link #NO_DATE} if the object is <code>null</code>
+	 * or can not be converted.
+	 */
+	static long toMillis(Object dateObject){
+		if(dateObject==null){
+			return NO_DATE;
+		}
+		else if(dateObject instanceof Date){
+			return ((Date)dateObject).getTime();
+		}
+		else if(dateObject instanceof Long){
+			return (Long)dateObject;
+		}
+		else if(dateObject instanceof String){
+			Date date = DateParser.getDefault().parse((String)dateObject);
+			return date==null ? NO_DATE : date.getTime();
+		}
+		else if(dateObject.getClass().getName().startsWith(JAVA_TIME_PACKAGE)){
+			return getConverter(dateObject.getClass()).toMillis(dateObject);
+		}
+		return NO_DATE;
+	}
+
+	private static TemporalConverter getConverter(Class<?> temporalClass){
+		TemporalConverter converter = CONVERTERS.get(temporalClass);
+		if(converter==null){
+			converter = createConverter(temporalClass);
+			CONVERTERS.put(temporalClass, converter);
+		}
+		return converter;
+	}
+
+	private static TemporalConverter createConverter(Class<?> temporalClass){
+		try {
+			String name = temporalClass.getName().substring(JAVA_TIME_PACKAGE.length());
+			if("Instant".equals(name)){
+				return new TemporalConverter(TemporalConverter.INSTANT, temporalClass.getMethod("toEpochMilli"), null);
+			}
+			if("ZonedDateTime".equals(name) || "OffsetDateTime".equals(name)){
+				Method toInstant = temporalClass.getMethod("toInstant");
+				return new TemporalConverter(TemporalConverter.DATE_TIME, toInstant, toInstant.getReturnType().getMethod("toEpochMilli"));
+			}
+			if("LocalDate".equals(name)){
+				return new TemporalConverter(TemporalConverter.LOCAL_DATE, temporalClass.getMethod("toEpochDay"), null);
+			}
+			if("LocalDateTime".equals(name)){
+				Method toLocalDate = temporalClass.getMethod("toLocalDate");
+				Method toLocalTime = temporalClass.getMethod("toLocalTime");
+				return new TemporalConverter(TemporalConverter.LOCAL_DATE_TIME,
+						toLocalDate, toLocalDate.getReturnType().getMethod("toEpochDay"),
+						toLocalTime, toLocalTime.getReturnType().getMethod("toNanoOfDay"));
+			}
+		} catch (NoSuchMethodException e) {
+			// not supported
+		}
+		return TemporalConverter.UNSUPPORTED;
+	}
+
+	/*
+	 * Converts a java.time object by calling its methods by reflection.
+	 */
+	private static final class TemporalConverter {
+
+		static final int NONE = 0;
+		static final int INSTANT = 1;
+		static final int DATE_TIME = 2;
+		static final int LOCAL_DATE = 3;
+		static final int LOCAL_DATE_TIME = 4;
+
+		static final TemporalConverter UNSUPPORTED = new TemporalConverter(NONE, null, null);
+
+		private final int kind;
+		private final Method[] methods;
+
+		TemporalConverter(int kind, Method... methods){
+			this.kind = kind;
+			this.methods = methods;
+		}
+
+		long toMillis(Object temporal){
+			switch(kind){
+				case INSTANT:
+					return (Long) invoke(methods[0], temporal);
+				case DATE_TIME:
+					return (Long) invoke(methods[1], invoke(methods[0], temporal));
+				case LOCAL_DATE:{
+					long epochDay = (Long) invoke(methods[0], temporal);
+					return FunctionContext.getDateFields().toUTCMillis(epochDay*EpochDays.MILLIS_PER_DAY);
+				}
+				case LOCAL_DATE_TIME:{
+					long epochDay = (Long) invoke(methods[1], invoke(methods[0], temporal));
+					long nanoOfDay = (Long) invoke(methods[3], invoke(methods[2], temporal));
+					return FunctionContext.getDateFields().toUTCMillis(epochDay*EpochDays.MILLIS_PER_DAY + nanoOfDay/1000000);
+				}
+				default:
+					return NO_DATE;
+			}
+		}
+
+		private static Object invoke(Method method, Object target){
+			try {
+				return method.invoke(target);
+			} catch (IllegalAccessException e) {
+				throw new JRExpressionFunctionException(e);
+			} catch (InvocationTargetException e) {
+				throw new JRExpressionFunctionException(e.getCause());
+			}
+		}
+	}
+
+}
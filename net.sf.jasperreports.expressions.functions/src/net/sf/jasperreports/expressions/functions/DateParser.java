@@ -0,0 +1,351 @@
+package net.sf.jasperreports.expressions.functions;
+
+import java.text.DateFormat;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringTokenizer;
+import java.util.TimeZone;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JRPropertiesUtil;
+import net.sf.jasperreports.expressions.annotations.JRExprEvaluationContext;
+
+/**
+ * Parser used to convert text values into dates in the date/time functions.
+ *
+ * <p>
+ * A parser tries, in order:
+ * <ul>
+ * 	<li>the ISO-8601 formats <code>yyyy-MM-dd</code>, <code>yyyy-MM-dd'T'HH:mm[:ss[.SSS]]</code>
+ * 	(a space can also separate the date and the time) with an optional <code>Z</code> or
+ * 	<code>&plusmn;HH[:mm]</code> offset, handled by a hand-written parser;</li>
+ * 	<li>the configured list of {@link SimpleDateFormat} patterns, starting from the one that last matched.</li>
+ * </ul>
+ * The patterns are applied in non-lenient mode and must match the whole text (leading and
+ * trailing whitespaces are ignored), so that the result does not depend on the order of the attempts.
+ * Texts accepted by the lenient <code>SimpleDateFormat</code> used before, like out of range days or months
+ * and trailing text, are rejected. Each parser remembers the pattern that last matched, {@link #forColumn()}
+ * gives separate parsers for the columns or call sites whose values have different formats.
+ * Dates without an explicit offset are interpreted in the time zone of the {@link JRExprEvaluationContext},
+ * or in the default time zone.
+ *
+ * <p>
+ * The default parser uses the patterns specified by the {@link #PROPERTY_PATTERNS} property,
+ * or the default <code>SimpleDateFormat</code> pattern of the locale of the {@link JRExprEvaluationContext}
+ * (the default locale if not set).
+ * Parsers are thread-safe.
+ */
+public final class DateParser {
+
+	/**
+	 * Property specifying the ordered list of patterns used by the default parser,
+	 * separated by {@link #PATTERNS_SEPARATOR}.
+	 */
+	public static final String PROPERTY_PATTERNS = "net.sf.jasperreports.expression.functions.date.parse.patterns";
+
+	public static final String PATTERNS_SEPARATOR = "|";
+
+	/*
+	 * First full year of the Gregorian calendar (the default cutover is in October 1582).
+	 */
+	private static final int GREGORIAN_START_YEAR = 1583;
+
+	private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+	private static final FormatCache<FormatCache.Key, SimpleDateFormat> FORMATS =
+			new FormatCache<FormatCache.Key, SimpleDateFormat>(){
+				@Override
+				protected SimpleDateFormat createFormat(FormatCache.Key key){
+					SimpleDateFormat format = new SimpleDateFormat(key.getPattern(), key.getLocale());
+					format.setTimeZone(TimeZone.getTimeZone(key.getZoneId()));
+					format.setLenient(false);
+					return format;
+				}
+			};
+
+	// key of the default parser cached in the evaluation context
+	private static final Object DEFAULT_PARSER_KEY = new Object();
+
+	private static volatile DateParser defaultParser;
+
+	private final Locale locale;
+	private final boolean isoFormats;
+	private final String[] patterns;
+	private volatile int lastMatched;
+
+	/**
+	 * Creates a parser for the ISO-8601 formats and the specified patterns.
+	 *
+	 * @param locale the locale used by the patterns
+	 * @param patterns the ordered list of {@link SimpleDateFormat} patterns
+	 */
+	public DateParser(Locale locale, String... patterns){
+		this(locale, true, patterns);
+	}
+
+	/**
+	 * @param locale the locale used by the patterns
+	 * @param isoFormats whether the ISO-8601 formats should be recognized
+	 * @param patterns the ordered list of {@link SimpleDateFormat} patterns
+	 */
+	public DateParser(Locale locale, boolean isoFormats, String... patterns){
+		if(locale==null){
+			throw new IllegalArgumentException("The locale must be specified");
+		}
+		this.locale = locale;
+		this.isoFormats = isoFormats;
+		this.patterns = patterns.clone();
+	}
+
+	/**
+	 * Returns the parser used by the date/time functions.
+	 */
+	public static DateParser getDefault(){
+		JRExprEvaluationContext context = JRExprEvaluationContext.getCurrent();
+		if(context!=null && context.getLocale()!=null){
+			// created once for the context, the locale of concurrent contexts can differ
+			DateParser parser = (DateParser) context.getCached(DEFAULT_PARSER_KEY);
+			if(parser==null){
+				Locale locale = context.getLocale();
+				parser = (DateParser) context.cache(DEFAULT_PARSER_KEY, new DateParser(locale, getDefaultPatterns(locale)));
+			}
+			return parser;
+		}
+		DateParser parser = defaultParser;
+		Locale locale = Locale.getDefault();
+		if(parser==null || !parser.locale.equals(locale)){
+			parser = new DateParser(locale, getDefaultPatterns(locale));
+			defaultParser = parser;
+		}
+		return parser;
+	}
+
+	private static String[] getDefaultPatterns(Locale locale){
+		String patterns = JRPropertiesUtil.getInstance(DefaultJasperReportsContext.getInstance()).getProperty(PROPERTY_PATTERNS);
+		if(patterns==null || patterns.trim().length()==0){
+			// the legacy behavior
+			return new String[]{((SimpleDateFormat) DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT, locale)).toPattern()};
+		}
+		List<String> patternsList = new ArrayList<String>();
+		for(StringTokenizer tkz = new StringTokenizer(patterns, PATTERNS_SEPARATOR); tkz.hasMoreTokens();){
+			String pattern = tkz.nextToken().trim();
+			if(pattern.length()>0){
+				patternsList.add(pattern);
+			}
+		}
+		return patternsList.toArray(new String[patternsList.size()]);
+	}
+
+	/**
+	 * Returns a parser with the same formats, remembering the pattern that last matched separately from this one.
+	 * The values of a column or call site usually have the same format, which their parser tries first.
+	 */
+	public DateParser forColumn(){
+		return new DateParser(locale, isoFormats, patterns);
+	}
+
+	public Locale getLocale(){
+		return locale;
+	}
+
+	public String[] getPatterns(){
+		return patterns.clone();
+	}
+
+	/**
+	 * Parses the specified text.
+	 *
+	 * @param text the text to parse
+	 * @return the parsed date, <code>null</code> if the text is <code>null</code> or does not match any format
+	 */
+	public Date parse(String text){
+		if(text==null){
+			return null;
+		}
+		String trimmedText = text.trim();
+		TimeZone timeZone = FunctionContext.getTimeZone();
+		if(isoFormats){
+			long millis = parseISO(trimmedText, timeZone);
+			if(millis!=Long.MIN_VALUE){
+				return new Date(millis);
+			}
+		}
+		if(patterns.length==0){
+			return null;
+		}
+		String zoneId = timeZone.getID();
+		int first = lastMatched;
+		Date date = parse(trimmedText, patterns[first], zoneId);
+		for(int i=0; date==null && i<patterns.length; i++){
+			if(i!=first){
+				date = parse(trimmedText, patterns[i], zoneId);
+				if(date!=null){
+					lastMatched = i;
+				}
+			}
+		}
+		return date;
+	}
+
+	private Date parse(String text, String pattern, String zoneId){
+		SimpleDateFormat format = FORMATS.getFormat(new FormatCache.Key(locale, pattern, zoneId, 0));
+		ParsePosition position = new ParsePosition(0);
+		Date date = format.parse(text, position);
+		if(!format.getTimeZone().getID().equals(zoneId)){
+			// parsing a zone can change the format time zone
+			format.setTimeZone(TimeZone.getTimeZone(zoneId));
+		}
+		if(date==null || position.getIndex()!=text.length()){
+			return null;
+		}
+		return date;
+	}
+
+	/*
+	 * Parses the ISO-8601 formats, returns Long.MIN_VALUE if the text is not in a supported format.
+	 */
+	static long parseISO(String text, TimeZone timeZone){
+		int length = text.length();
+		if(length<10 || text.charAt(4)!='-' || text.charAt(7)!='-'){
+			return Long.MIN_VALUE;
+		}
+		int year = parseDigits(text, 0, 4);
+		int month = parseDigits(text, 5, 2);
+		int day = parseDigits(text, 8, 2);
+		if(year<0 || month<1 || month>12 || day<1 || day>daysInMonth(year, month)){
+			return Long.MIN_VALUE;
+		}
+		int hour = 0;
+		int minute = 0;
+		int second = 0;
+		int millis = 0;
+		int pos = 10;
+		if(pos<length && (text.charAt(pos)=='T' || text.charAt(pos)==' ')){
+			if(pos+6>length || text.charAt(pos+3)!=':'){
+				return Long.MIN_VALUE;
+			}
+			hour = parseDigits(text, pos+1, 2);
+			minute = parseDigits(text, pos+4, 2);
+			pos += 6;
+			if(pos<length && text.charAt(pos)==':'){
+				second = parseDigits(text, pos+1, 2);
+				pos += 3;
+				if(pos<length && (text.charAt(pos)=='.' || text.charAt(pos)==',')){
+					pos++;
+					int digits = 0;
+					while(pos<length && Character.isDigit(text.charAt(pos))){
+						if(digits<3){
+							millis = millis*10 + (text.charAt(pos)-'0');
+						}
+						digits++;
+						pos++;
+					}
+					if(digits==0){
+						return Long.MIN_VALUE;
+					}
+					for(; digits<3; digits++){
+						millis *= 10;
+					}
+				}
+			}
+			if(hour<0 || hour>23 || minute<0 || minute>59 || second<0 || second>59){
+				return Long.MIN_VALUE;
+			}
+		}
+		long localMillis = localMillis(year, month, day, hour, minute, second, millis);
+		if(pos==length){
+			return toUTC(localMillis, timeZone);
+		}
+		char c = text.charAt(pos);
+		if(c=='Z' && pos+1==length){
+			return localMillis;
+		}
+		if(c=='+' || c=='-'){
+			int offsetHours = parseDigits(text, pos+1, 2);
+			int offsetMinutes = 0;
+			pos += 3;
+			if(pos<length && text.charAt(pos)==':'){
+				pos++;
+			}
+			if(pos<length){
+				offsetMinutes = parseDigits(text, pos, 2);
+				pos += 2;
+			}
+			if(pos!=length || offsetHours<0 || offsetHours>23 || offsetMinutes<0 || offsetMinutes>59){
+				return Long.MIN_VALUE;
+			}
+			long offset = (offsetHours*60L + offsetMinutes)*60*1000;
+			return c=='+' ? localMillis - offset : localMillis + offset;
+		}
+		return Long.MIN_VALUE;
+	}
+
+	/*
+	 * Returns the millis of a local date time, as if it was in UTC.
+	 */
+	private static long localMillis(int year, int month, int day, int hour, int minute, int second, int millis){
+		if(year<GREGORIAN_START_YEAR){
+			// consistent with the Julian calendar used by GregorianCalendar before the cutover
+			GregorianCalendar calendar = new GregorianCalendar(UTC);
+			calendar.clear();
+			calendar.set(year, month-1, day, hour, minute, second);
+			calendar.set(Calendar.MILLISECOND, millis);
+			return calendar.getTimeInMillis();
+		}
+		return EpochDays.fromDate(year, month, day) * EpochDays.MILLIS_PER_DAY
+				+ ((hour*60L + minute)*60 + second)*1000 + millis;
+	}
+
+	/*
+	 * Parses a fixed number of digits, returns -1 if they are not all digits.
+	 */
+	private static int parseDigits(String text, int start, int count){
+		if(start+count>text.length()){
+			return -1;
+		}
+		int value = 0;
+		for(int i=start; i<start+count; i++){
+			char c = text.charAt(i);
+			if(c<'0' || c>'9'){
+				return -1;
+			}
+			value = value*10 + (c-'0');
+		}
+		return value;
+	}
+
+	/*
+	 * Converts a local time into UTC millis, using the offset in effect at that time.
+	 */
+	private static long toUTC(long localMillis, TimeZone timeZone){
+		int offset = timeZone.getOffset(localMillis - timeZone.getRawOffset());
+		int actualOffset = timeZone.getOffset(localMillis - offset);
+		return localMillis - actualOffset;
+	}
+
+	static boolean isLeapYear(int year){
+		if(year<GREGORIAN_START_YEAR){
+			// Julian calendar
+			return year%4==0;
+		}
+		return (year%4==0 && year%100!=0) || year%400==0;
+	}
+
+	static int daysInMonth(int year, int month){
+		switch(month){
+			case 2:
+				return isLeapYear(year) ? 29 : 28;
+			case 4: case 6: case 9: case 11:
+				return 30;
+			default:
+				return 31;
+		}
+	}
+
+}
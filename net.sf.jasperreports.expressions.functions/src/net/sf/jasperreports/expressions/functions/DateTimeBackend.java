@@ -0,0 +1,348 @@
+package net.sf.jasperreports.expressions.functions;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JRPropertiesUtil;
+
+import org.joda.time.DateTime;
+import org.joda.time.Days;
+import org.joda.time.Months;
+import org.joda.time.Weeks;
+import org.joda.time.Years;
+
+/**
+ * Calendar arithmetic used by the date/time functions, on instants expressed as epoch millis.
+ *
+ * <p>
+ * Two implementations are available, selected by the {@link DateTimeFunctions#PROPERTY_DATE_BACKEND} property:
+ * <ul>
+ * 	<li><code>joda</code> (the default): uses Joda-Time {@link DateTime} objects in the time zone of the functions,
+ * 	the one of the evaluation context or of the {@link DateFields#PROPERTY_TIME_ZONE} property;</li>
+ * 	<li><code>epoch</code>: works on the local millis given by a {@link DateFields} for the same zone, with the
+ * 	rules of the Joda-Time ISO chronology (proleptic Gregorian calendar, ISO weeks), without creating any object.
+ * 	Dates before year 1 are delegated to Joda-Time.</li>
+ * </ul>
+ */
+abstract class DateTimeBackend {
+
+	static final String JODA = "joda";
+	static final String EPOCH = "epoch";
+
+	private static volatile DateTimeBackend configuredBackend;
+
+	/**
+	 * Returns the backend configured by the {@link DateTimeFunctions#PROPERTY_DATE_BACKEND} property.
+	 */
+	static DateTimeBackend getDefault(){
+		DateTimeBackend backend = configuredBackend;
+		if(backend==null){
+			String name = JRPropertiesUtil.getInstance(DefaultJasperReportsContext.getInstance())
+					.getProperty(DateTimeFunctions.PROPERTY_DATE_BACKEND);
+			backend = forName(name);
+			configuredBackend = backend;
+		}
+		return backend;
+	}
+
+	/**
+	 * Returns the backend with the specified name, the Joda-Time one if the name is <code>null</code> or unknown.
+	 */
+	static DateTimeBackend forName(String name){
+		return name!=null && EPOCH.equalsIgnoreCase(name.trim()) ? EpochBackend.INSTANCE : JodaBackend.INSTANCE;
+	}
+
+	abstract long plusMonths(long millis, int months);
+
+	abstract int daysBetween(long startMillis, long endMillis);
+
+	abstract int weeksBetween(long startMillis, long endMillis);
+
+	abstract int monthsBetween(long startMillis, long endMillis);
+
+	abstract int yearsBetween(long startMillis, long endMillis);
+
+	abstract int daysInMonth(long millis);
+
+	abstract int daysInYear(long millis);
+
+	abstract int weeksInWeekyear(long millis);
+
+	abstract int weekOfWeekyear(long millis);
+
+	abstract boolean isLeapYear(long millis);
+
+	/*
+	 * Joda-Time implementation, the legacy behavior.
+	 */
+	static final class JodaBackend extends DateTimeBackend {
+
+		static final JodaBackend INSTANCE = new JodaBackend();
+
+		private static DateTime dateTime(long millis){
+			return new DateTime(millis, FunctionContext.getDateTimeZone());
+		}
+
+		@Override
+		long plusMonths(long millis, int months){
+			return dateTime(millis).plusMonths(months).getMillis();
+		}
+
+		@Override
+		int daysBetween(long startMillis, long endMillis){
+			return Days.daysBetween(dateTime(startMillis), dateTime(endMillis)).getDays();
+		}
+
+		@Override
+		int weeksBetween(long startMillis, long endMillis){
+			return Weeks.weeksBetween(dateTime(startMillis), dateTime(endMillis)).getWeeks();
+		}
+
+		@Override
+		int monthsBetween(long startMillis, long endMillis){
+			return Months.monthsBetween(dateTime(startMillis), dateTime(endMillis)).getMonths();
+		}
+
+		@Override
+		int yearsBetween(long startMillis, long endMillis){
+			return Years.yearsBetween(dateTime(startMillis), dateTime(endMillis)).getYears();
+		}
+
+		@Override
+		int daysInMonth(long millis){
+			return dateTime(millis).dayOfMonth().getMaximumValue();
+		}
+
+		@Override
+		int daysInYear(long millis){
+			return dateTime(millis).dayOfYear().getMaximumValue();
+		}
+
+		@Override
+		int weeksInWeekyear(long millis){
+			return dateTime(millis).weekOfWeekyear().getMaximumValue();
+		}
+
+		@Override
+		int weekOfWeekyear(long millis){
+			return dateTime(millis).getWeekOfWeekyear();
+		}
+
+		@Override
+		boolean isLeapYear(long millis){
+			return dateTime(millis).year().isLeap();
+		}
+	}
+
+	/*
+	 * Arithmetic on the local millis, following the algorithms of the Joda-Time ISO chronology.
+	 */
+	static final class EpochBackend extends DateTimeBackend {
+
+		static final EpochBackend INSTANCE = new EpochBackend();
+
+		private static final long MILLIS_PER_DAY = EpochDays.MILLIS_PER_DAY;
+		private static final long MILLIS_PER_WEEK = 7 * MILLIS_PER_DAY;
+		// local millis of 0001-01-01T00:00, earlier dates are delegated to Joda-Time
+		private static final long MIN_LOCAL_MILLIS = EpochDays.fromDate(1, 1, 1) * MILLIS_PER_DAY;
+		// 60 days, the remainder of the year after which a leap day can be found
+		private static final long FEB_29 = (31L + 29 - 1) * MILLIS_PER_DAY;
+
+		private DateFields getFields(){
+			return FunctionContext.getDateFields();
+		}
+
+		private static boolean isSupported(long localMillis){
+			return localMillis>=MIN_LOCAL_MILLIS;
+		}
+
+		@Override
+		long plusMonths(long millis, int months){
+			if(months==0){
+				return millis;
+			}
+			DateFields fields = getFields();
+			long local = fields.toLocalMillis(millis);
+			if(!isSupported(local)){
+				return JodaBackend.INSTANCE.plusMonths(millis, months);
+			}
+			long epochDay = EpochDays.fromLocalMillis(local);
+			int ymd = EpochDays.toYearMonthDay(epochDay);
+			long monthIndex = year(ymd)*12L + (month(ymd)-1) + months;
+			int year = (int) EpochDays.floorDiv(monthIndex, 12);
+			int month = (int) EpochDays.floorMod(monthIndex, 12) + 1;
+			if(year<1){
+				return JodaBackend.INSTANCE.plusMonths(millis, months);
+			}
+			int day = Math.min(day(ymd), daysInMonth(year, month));
+			long resultLocal = EpochDays.fromDate(year, month, day)*MILLIS_PER_DAY + (local - epochDay*MILLIS_PER_DAY);
+			return fields.toUTCMillis(resultLocal);
+		}
+
+		@Override
+		int daysBetween(long startMillis, long endMillis){
+			DateFields fields = getFields();
+			return (int) ((fields.toLocalMillis(endMillis) - fields.toLocalMillis(startMillis)) / MILLIS_PER_DAY);
+		}
+
+		@Override
+		int weeksBetween(long startMillis, long endMillis){
+			DateFields fields = getFields();
+			return (int) ((fields.toLocalMillis(endMillis) - fields.toLocalMillis(startMillis)) / MILLIS_PER_WEEK);
+		}
+
+		@Override
+		int monthsBetween(long startMillis, long endMillis){
+			DateFields fields = getFields();
+			long start = fields.toLocalMillis(startMillis);
+			long end = fields.toLocalMillis(endMillis);
+			if(!isSupported(start) || !isSupported(end)){
+				return JodaBackend.INSTANCE.monthsBetween(startMillis, endMillis);
+			}
+			return end<start ? -monthsDifference(start, end) : monthsDifference(end, start);
+		}
+
+		/*
+		 * Months from the subtrahend to the (not lower) minuend local millis.
+		 */
+		private static int monthsDifference(long minuend, long subtrahend){
+			long minuendDay = EpochDays.fromLocalMillis(minuend);
+			long subtrahendDay = EpochDays.fromLocalMillis(subtrahend);
+			int minuendYmd = EpochDays.toYearMonthDay(minuendDay);
+			int subtrahendYmd = EpochDays.toYearMonthDay(subtrahendDay);
+			int difference = (year(minuendYmd) - year(subtrahendYmd))*12 + month(minuendYmd) - month(subtrahendYmd);
+			int minuendDom = day(minuendYmd);
+			int subtrahendDom = day(subtrahendYmd);
+			if(minuendDom==daysInMonth(year(minuendYmd), month(minuendYmd)) && subtrahendDom>minuendDom){
+				// the minuend is the last day of a shorter month
+				subtrahend -= (subtrahendDom - minuendDom)*MILLIS_PER_DAY;
+			}
+			// remainders from the start of the months
+			long minuendRem = minuend - (minuendDay - minuendDom + 1)*MILLIS_PER_DAY;
+			long subtrahendRem = subtrahend - (subtrahendDay - subtrahendDom + 1)*MILLIS_PER_DAY;
+			if(minuendRem<subtrahendRem){
+				difference--;
+			}
+			return difference;
+		}
+
+		@Override
+		int yearsBetween(long startMillis, long endMillis){
+			DateFields fields = getFields();
+			long start = fields.toLocalMillis(startMillis);
+			long end = fields.toLocalMillis(endMillis);
+			if(!isSupported(start) || !isSupported(end)){
+				return JodaBackend.INSTANCE.yearsBetween(startMillis, endMillis);
+			}
+			return end<start ? -yearsDifference(start, end) : yearsDifference(end, start);
+		}
+
+		/*
+		 * Years from the subtrahend to the (not lower) minuend local millis.
+		 */
+		private static int yearsDifference(long minuend, long subtrahend){
+			int minuendYear = year(EpochDays.toYearMonthDay(EpochDays.fromLocalMillis(minuend)));
+			int subtrahendYear = year(EpochDays.toYearMonthDay(EpochDays.fromLocalMillis(subtrahend)));
+			long minuendRem = minuend - EpochDays.fromDate(minuendYear, 1, 1)*MILLIS_PER_DAY;
+			long subtrahendRem = subtrahend - EpochDays.fromDate(subtrahendYear, 1, 1)*MILLIS_PER_DAY;
+			// balance the leap days
+			if(subtrahendRem>=FEB_29){
+				if(isLeapYear(subtrahendYear)){
+					if(!isLeapYear(minuendYear)){
+						subtrahendRem -= MILLIS_PER_DAY;
+					}
+				}
+				else if(minuendRem>=FEB_29 && isLeapYear(minuendYear)){
+					minuendRem -= MILLIS_PER_DAY;
+				}
+			}
+			int difference = minuendYear - subtrahendYear;
+			if(minuendRem<subtrahendRem){
+				difference--;
+			}
+			return difference;
+		}
+
+		@Override
+		int daysInMonth(long millis){
+			long local = getFields().toLocalMillis(millis);
+			if(!isSupported(local)){
+				return JodaBackend.INSTANCE.daysInMonth(millis);
+			}
+			int ymd = EpochDays.toYearMonthDay(EpochDays.fromLocalMillis(local));
+			return daysInMonth(year(ymd), month(ymd));
+		}
+
+		@Override
+		int daysInYear(long millis){
+			long local = getFields().toLocalMillis(millis);
+			if(!isSupported(local)){
+				return JodaBackend.INSTANCE.daysInYear(millis);
+			}
+			return isLeapYear(year(EpochDays.toYearMonthDay(EpochDays.fromLocalMillis(local)))) ? 366 : 365;
+		}
+
+		@Override
+		int weeksInWeekyear(long millis){
+			long local = getFields().toLocalMillis(millis);
+			if(!isSupported(local)){
+				return JodaBackend.INSTANCE.weeksInWeekyear(millis);
+			}
+			int weekyear = year(EpochDays.toYearMonthDay(thursdayOfWeek(EpochDays.fromLocalMillis(local))));
+			// a year has 53 weeks when it starts on a Thursday, or on a Wednesday in a leap year
+			int firstDayOfWeek = EpochDays.dayOfWeek(EpochDays.fromDate(weekyear, 1, 1));
+			return firstDayOfWeek==4 || (firstDayOfWeek==3 && isLeapYear(weekyear)) ? 53 : 52;
+		}
+
+		@Override
+		int weekOfWeekyear(long millis){
+			long local = getFields().toLocalMillis(millis);
+			if(!isSupported(local)){
+				return JodaBackend.INSTANCE.weekOfWeekyear(millis);
+			}
+			// the ISO week belongs to the year of its Thursday
+			long thursday = thursdayOfWeek(EpochDays.fromLocalMillis(local));
+			int weekyear = year(EpochDays.toYearMonthDay(thursday));
+			return (int) ((thursday - EpochDays.fromDate(weekyear, 1, 1)) / 7) + 1;
+		}
+
+		@Override
+		boolean isLeapYear(long millis){
+			long local = getFields().toLocalMillis(millis);
+			if(!isSupported(local)){
+				return JodaBackend.INSTANCE.isLeapYear(millis);
+			}
+			return isLeapYear(year(EpochDays.toYearMonthDay(EpochDays.fromLocalMillis(local))));
+		}
+
+		private static long thursdayOfWeek(long epochDay){
+			return epochDay - EpochDays.dayOfWeek(epochDay) + 4;
+		}
+
+		private static int year(int ymd){
+			return ymd/10000;
+		}
+
+		private static int month(int ymd){
+			return ymd/100%100;
+		}
+
+		private static int day(int ymd){
+			return ymd%100;
+		}
+
+		private static boolean isLeapYear(int year){
+			return (year%4==0 && year%100!=0) || year%400==0;
+		}
+
+		private static int daysInMonth(int year, int month){
+			switch(month){
+				case 2:
+					return isLeapYear(year) ? 29 : 28;
+				case 4: case 6: case 9: case 11:
+					return 30;
+				default:
+					return 31;
+			}
+		}
+	}
+
+}
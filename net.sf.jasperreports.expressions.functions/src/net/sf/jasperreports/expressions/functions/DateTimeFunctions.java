@@ -2,26 +2,23 @@ package net.sf.jasperreports.expressions.functions;
 
 import static net.sf.jasperreports.expressions.functions.CategoryKeys.DATE_TIME;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.io.IOException;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.GregorianCalendar;
 
 import net.sf.jasperreports.expressions.annotations.JRExprFunction;
 import net.sf.jasperreports.expressions.annotations.JRExprFunctionCategories;
 import net.sf.jasperreports.expressions.annotations.JRExprFunctionParameter;
 import net.sf.jasperreports.expressions.annotations.JRExprFunctionParameters;
+import net.sf.jasperreports.expressions.annotations.JRExprFunctionPurity;
+import net.sf.jasperreports.expressions.functions.errors.JRExpressionFunctionException;
 import net.sf.jasperreports.types.date.DateRange;
 import net.sf.jasperreports.types.date.DateRangeBuilder;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeConstants;
-import org.joda.time.Days;
+import org.joda.time.DateTimeZone;
 import org.joda.time.LocalTime;
-import org.joda.time.Months;
-import org.joda.time.Weeks;
-import org.joda.time.Years;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 
@@ -32,25 +29,54 @@ import org.joda.time.format.DateTimeFormatter;
  * @author Massimo Rabbi (mrabbi@users.sourceforge.net)
  *
  */
+@JRExprFunctionPurity(deterministic=false)
 public final class DateTimeFunctions {
 	
+	/**
+	 * Property selecting the implementation of the calendar arithmetic used by the date/time functions
+	 * like {@link #EDATE(Object, Integer)}, {@link #DAYS(Object, Object)} or {@link #WEEKNUM(Object)}.
+	 * Allowed values are <code>joda</code> (the default), using Joda-Time objects, and <code>epoch</code>,
+	 * computing the results on the epoch millis without creating intermediate objects.
+	 */
+	public static final String PROPERTY_DATE_BACKEND = "net.sf.jasperreports.expression.functions.date.backend";
+	
+	private static final FormatCache<FormatCache.Key, DateTimeFormatter> DATE_FORMATTERS = 
+			new FormatCache<FormatCache.Key, DateTimeFormatter>(FormatCache.DEFAULT_MAX_SIZE, true) {
+				@Override
+				protected DateTimeFormatter createFormat(FormatCache.Key key){
+					DateTimeFormatter formatter = DateTimeFormat.forPattern(key.getPattern()).withLocale(key.getLocale());
+					return key.getZoneId()==null ? formatter : formatter.withZone(DateTimeZone.forID(key.getZoneId()));
+				}
+			};
+	
+	/**
+	 * Returns the cache of the formatters used by the {@link #DATEFORMAT(Date, String)} and
+	 * {@link #TIME(Integer, Integer, Integer, String)} functions, exposing the hit and miss counters.
+	 * The Joda-Time formatters are immutable, so the cache is shared among all the threads.
+	 */
+	public static FormatCache<FormatCache.Key, DateTimeFormatter> getDateFormatCache(){
+		return DATE_FORMATTERS;
+	}
+	
 	// ===================== TODAY function ===================== //
 	@JRExprFunction(name="TODAY",description="Returns the current date as date object.")
 	@JRExprFunctionCategories({DATE_TIME})
 	public static Date TODAY(){
-		return new Date();
+		return new Date(FunctionContext.currentTimeMillis());
 	}
 	
 	// ===================== NOW function ===================== //
 	@JRExprFunction(name="NOW",description="Returns the current instant as date object.")
 	@JRExprFunctionCategories({DATE_TIME})
 	public static Date NOW(){
-		return new Date();
+		return new Date(FunctionContext.currentTimeMillis());
 	}
 	
 	// ===================== YEAR function ===================== //
 	@JRExprFunction(name="YEAR",description="Returns the year of a given date. " +
-			"Date object can be a String, long value (millis) or Date instance itself.")
+			"Date object can be a String, long value (millis) or Date instance itself. " +
+			"A String must be an ISO-8601 date (yyyy-MM-dd[THH:mm:ss]) or match exactly a configured date pattern, " +
+			"by default the short date and time pattern of the locale, otherwise the result is null.")
 	@JRExprFunctionCategories({DATE_TIME})
 	@JRExprFunctionParameters({
 		@JRExprFunctionParameter(name="Date object",description="The object representing the date.")})
@@ -60,17 +86,22 @@ public final class DateTimeFunctions {
 	
 	// ===================== MONTH function ===================== //
 	@JRExprFunction(name="MONTH",description="Returns the month of a given date. " +
-			"Date object can be a String, long value (millis) or Date instance itself.")
+			"Date object can be a String, long value (millis) or Date instance itself. " +
+			"A String must be an ISO-8601 date (yyyy-MM-dd[THH:mm:ss]) or match exactly a configured date pattern, " +
+			"by default the short date and time pattern of the locale, otherwise the result is null.")
 	@JRExprFunctionCategories({DATE_TIME})
 	@JRExprFunctionParameters({
 		@JRExprFunctionParameter(name="Date object",description="The object representing the date.")})
 	public static Integer MONTH(Object dateObject){
-		return getCalendarFieldFromDate(dateObject,Calendar.MONTH)+1;	// January is 0
+		Integer month = getCalendarFieldFromDate(dateObject,Calendar.MONTH);
+		return month!=null ? month+1 : null;	// January is 0
 	}
 	
 	// ===================== DAY function ===================== //
 	@JRExprFunction(name="DAY",description="Returns the day of a given date. " +
-			"Date object can be a String, long value (millis) or Date instance itself.")
+			"Date object can be a String, long value (millis) or Date instance itself. " +
+			"A String must be an ISO-8601 date (yyyy-MM-dd[THH:mm:ss]) or match exactly a configured date pattern, " +
+			"by default the short date and time pattern of the locale, otherwise the result is null.")
 	@JRExprFunctionCategories({DATE_TIME})
 	@JRExprFunctionParameters({
 		@JRExprFunctionParameter(name="Date object",description="The object representing the date.")})
@@ -80,7 +111,9 @@ public final class DateTimeFunctions {
 	
 	// ===================== WEEKDAY function ===================== //
 	@JRExprFunction(name="WEEKDAY",description="Returns the day of the week for a given date. " +
-			"Date object can be a String, long value (millis) or Date instance itself.")
+			"Date object can be a String, long value (millis) or Date instance itself. " +
+			"A String must be an ISO-8601 date (yyyy-MM-dd[THH:mm:ss]) or match exactly a configured date pattern, " +
+			"by default the short date and time pattern of the locale, otherwise the result is null.")
 	@JRExprFunctionCategories({DATE_TIME})
 	@JRExprFunctionParameters({
 		@JRExprFunctionParameter(name="Date object",description="The object representing the date."),
@@ -112,7 +145,9 @@ public final class DateTimeFunctions {
 	
 	// ===================== HOUR function ===================== //
 	@JRExprFunction(name="HOUR",description="Returns the hour (0-23) of the day for a given date. " +
-			"Date object can be a String, long value (millis) or Date instance itself.")
+			"Date object can be a String, long value (millis) or Date instance itself. " +
+			"A String must be an ISO-8601 date (yyyy-MM-dd[THH:mm:ss]) or match exactly a configured date pattern, " +
+			"by default the short date and time pattern of the locale, otherwise the result is null.")
 	@JRExprFunctionCategories({DATE_TIME})
 	@JRExprFunctionParameters({
 		@JRExprFunctionParameter(name="Date object",description="The object representing the date.")})
@@ -122,7 +157,9 @@ public final class DateTimeFunctions {
 
 	// ===================== MINUTE function ===================== //
 	@JRExprFunction(name="MINUTE",description="Returns the minute (0-59) of the hour for a given date. " +
-			"Date object can be a String, long value (millis) or Date instance itself.")
+			"Date object can be a String, long value (millis) or Date instance itself. " +
+			"A String must be an ISO-8601 date (yyyy-MM-dd[THH:mm:ss]) or match exactly a configured date pattern, " +
+			"by default the short date and time pattern of the locale, otherwise the result is null.")
 	@JRExprFunctionCategories({DATE_TIME})
 	@JRExprFunctionParameters({
 		@JRExprFunctionParameter(name="Date object",description="The object representing the date.")})
@@ -132,7 +169,9 @@ public final class DateTimeFunctions {
 	
 	// ===================== SECOND function ===================== //
 	@JRExprFunction(name="SECOND",description="Returns the second (0-59) of the minute for a given date. " +
-			"Date object can be a String, long value (millis) or Date instance itself.")
+			"Date object can be a String, long value (millis) or Date instance itself. " +
+			"A String must be an ISO-8601 date (yyyy-MM-dd[THH:mm:ss]) or match exactly a configured date pattern, " +
+			"by default the short date and time pattern of the locale, otherwise the result is null.")
 	@JRExprFunctionCategories({DATE_TIME})
 	@JRExprFunctionParameters({
 		@JRExprFunctionParameter(name="Date object",description="The object representing the date.")})
@@ -149,12 +188,14 @@ public final class DateTimeFunctions {
 		@JRExprFunctionParameter(name="Day",description="The day of the new date.")})
 	public static Date DATE(Integer year, Integer month, Integer dayOfMonth){
 		if(year==null || month==null || dayOfMonth==null) return null;
-		DateTime dt=new DateTime(year,month,dayOfMonth,0,0,0);
+		DateTime dt=new DateTime(year,month,dayOfMonth,0,0,0,0,FunctionContext.getDateTimeZone());
 		return dt.toDate();
 	}
 	
 	// ===================== DATEVALUE function ===================== //
-	@JRExprFunction(name="DATEVALUE",description="Gives the corresponding numeric value (long milliseconds) for a specified date object.")
+	@JRExprFunction(name="DATEVALUE",description="Gives the corresponding numeric value (long milliseconds) for a specified date object. " +
+			"A String must be an ISO-8601 date (yyyy-MM-dd[THH:mm:ss]) or match exactly a configured date pattern, " +
+			"by default the short date and time pattern of the locale, otherwise the result is null.")
 	@JRExprFunctionCategories({DATE_TIME})
 	@JRExprFunctionParameters({
 		@JRExprFunctionParameter(name="Date object",description="The object representing the date.")})
@@ -185,8 +226,8 @@ public final class DateTimeFunctions {
 		else{
 			try{
 				// Try to convert to a pattern
-				DateTimeFormatter dtf = DateTimeFormat.forPattern(timePattern);
-				return lt.toString(dtf);
+				DateTimeFormatter dtf = getTimeFormatter(timePattern);
+				return dtf.print(lt);
 			}
 			catch (IllegalArgumentException ex){
 				// Fallback to the default solution
@@ -202,14 +243,12 @@ public final class DateTimeFunctions {
 		@JRExprFunctionParameter(name="Date object",description="The object representing the date."),
 		@JRExprFunctionParameter(name="Months",description="The number of months after the given date.")})
 	public static Date EDATE(Object dateObject, Integer months){
-		Date convertedDate = convertDateObject(dateObject);
-		if(convertedDate==null){
+		long millis = DateObjects.toMillis(dateObject);
+		if(millis==DateObjects.NO_DATE){
 			return null;
 		}
 		else{
-			DateTime dt=new DateTime(convertedDate);
-			dt = dt.plusMonths(months);
-			return dt.toDate();
+			return new Date(DateTimeBackend.getDefault().plusMonths(millis, months));
 		}
 	}
 	
@@ -219,25 +258,31 @@ public final class DateTimeFunctions {
 	@JRExprFunctionCategories({DATE_TIME})
 	@JRExprFunctionParameters({
 		@JRExprFunctionParameter(name="Date object",description="The object representing the date."),
-		@JRExprFunctionParameter(name="Working days",description="The number of days after the given date.")})
+		@JRExprFunctionParameter(name="Working days",description="The number of days after the given date."),
+		@JRExprFunctionParameter(name="Holidays",description="The holiday calendar, containing additional non working days.")})
 	public static Date WORKDAY(Object dateObject, Integer workdays){
+		return WORKDAY(dateObject, workdays, HolidayCalendar.EMPTY);
+	}
+	
+	public static Date WORKDAY(Object dateObject, Integer workdays, HolidayCalendar holidays){
 		Date convertedDate = convertDateObject(dateObject);
 		if(convertedDate==null){
 			return null;
 		}
 		else{
-			DateTime cursorDT=new DateTime(convertedDate);
 			int remainingDays=workdays;
-			while(remainingDays>0){
-				int dayOfWeek = cursorDT.getDayOfWeek();
-				if(!(dayOfWeek==DateTimeConstants.SATURDAY || 
-						dayOfWeek==DateTimeConstants.SUNDAY)){
-					// Decrement remaining days only when it is not Saturday or Sunday
-					remainingDays--;
-				}
-				cursorDT=cursorDT.plusDays(1);
+			long millis=convertedDate.getTime();
+			if(remainingDays<=0){
+				return new Date(millis);
 			}
-			return cursorDT.toDate();
+			DateTimeZone zone=FunctionContext.getDateTimeZone();
+			long localMillis=zone.convertUTCToLocal(millis);
+			long startDay=EpochDays.fromLocalMillis(localMillis);
+			// The given date is counted when it is a working day,
+			// and the result is the day after the last counted working day.
+			long lastWorkingDay=(holidays!=null ? holidays : HolidayCalendar.EMPTY).nthWorkingDay(startDay, remainingDays);
+			long resultLocalMillis=localMillis + (lastWorkingDay+1-startDay)*EpochDays.MILLIS_PER_DAY;
+			return new Date(zone.convertLocalToUTC(resultLocalMillis, false, millis));
 		}
 	}
 	
@@ -247,32 +292,36 @@ public final class DateTimeFunctions {
 	@JRExprFunctionCategories({DATE_TIME})
 	@JRExprFunctionParameters({
 		@JRExprFunctionParameter(name="Start date",description="The initial date."),
-		@JRExprFunctionParameter(name="End date",description="The end date.")})
+		@JRExprFunctionParameter(name="End date",description="The end date."),
+		@JRExprFunctionParameter(name="Holidays",description="The holiday calendar, containing additional non working days.")})
 	public static Integer NETWORKDAYS(Object startDate, Object endDate){
+		return NETWORKDAYS(startDate, endDate, HolidayCalendar.EMPTY);
+	}
+	
+	public static Integer NETWORKDAYS(Object startDate, Object endDate, HolidayCalendar holidays){
 		Date startDateObj = convertDateObject(startDate);
 		Date endDateObj = convertDateObject(endDate);
 		if(startDateObj==null || endDateObj==null){
 			return null;
 		}
 		else{
-			DateTime cursorDateTime=new DateTime(startDateObj);
-			DateTime endDateTime=new DateTime(endDateObj);
-			int workingDays=0;
-			if(cursorDateTime.isAfter(endDateTime)){
+			long startMillis=startDateObj.getTime();
+			long endMillis=endDateObj.getTime();
+			if(startMillis>endMillis){
 				// Swap data information
-				DateTime tmp=cursorDateTime;
-				cursorDateTime=endDateTime;
-				endDateTime=tmp;
+				long tmp=startMillis;
+				startMillis=endMillis;
+				endMillis=tmp;
 			}
-			while (Days.daysBetween(cursorDateTime, endDateTime).getDays()>0){
-				int dayOfWeek = cursorDateTime.getDayOfWeek();
-				if(!(dayOfWeek==DateTimeConstants.SATURDAY || 
-						dayOfWeek==DateTimeConstants.SUNDAY)){
-					workingDays++;
-				}
-				cursorDateTime=cursorDateTime.plusDays(1);
+			DateTimeZone zone=FunctionContext.getDateTimeZone();
+			long startLocalMillis=zone.convertUTCToLocal(startMillis);
+			// Only whole days are considered, as done by Days.daysBetween
+			long days=(zone.convertUTCToLocal(endMillis)-startLocalMillis)/EpochDays.MILLIS_PER_DAY;
+			if(days<=0){
+				return 0;
 			}
-			return workingDays;
+			long startDay=EpochDays.fromLocalMillis(startLocalMillis);
+			return (int) (holidays!=null ? holidays : HolidayCalendar.EMPTY).countWorkingDays(startDay, startDay+days);
 		}
 	}
 	
@@ -283,15 +332,13 @@ public final class DateTimeFunctions {
 		@JRExprFunctionParameter(name="Start date",description="The initial date."),
 		@JRExprFunctionParameter(name="End date",description="The end date.")})
 	public static Integer DAYS(Object startDate, Object endDate){
-		Date startDateObj = convertDateObject(startDate);
-		Date endDateObj = convertDateObject(endDate);
-		if(startDateObj==null || endDateObj==null){
+		long startMillis = DateObjects.toMillis(startDate);
+		long endMillis = DateObjects.toMillis(endDate);
+		if(startMillis==DateObjects.NO_DATE || endMillis==DateObjects.NO_DATE){
 			return null;
 		}
 		else{
-			DateTime dt1=new DateTime(startDateObj);
-			DateTime dt2=new DateTime(endDateObj);
-			return Days.daysBetween(dt1, dt2).getDays();
+			return DateTimeBackend.getDefault().daysBetween(startMillis, endMillis);
 		}
 	}
 	
@@ -301,13 +348,12 @@ public final class DateTimeFunctions {
 	@JRExprFunctionParameters({
 		@JRExprFunctionParameter(name="Selected date",description="The date to check.")})
 	public static Integer DAYSINMONTH(Object dateObj){
-		Date date = convertDateObject(dateObj);
-		if(date==null){
+		long millis = DateObjects.toMillis(dateObj);
+		if(millis==DateObjects.NO_DATE){
 			return null;
 		}
 		else{
-			DateTime dt=new DateTime(date);
-			return dt.dayOfMonth().getMaximumValue();
+			return DateTimeBackend.getDefault().daysInMonth(millis);
 		}
 	}
 	
@@ -317,13 +363,12 @@ public final class DateTimeFunctions {
 	@JRExprFunctionParameters({
 		@JRExprFunctionParameter(name="Selected date",description="The date to check.")})
 	public static Integer DAYSINYEAR(Object dateObj){
-		Date date = convertDateObject(dateObj);
-		if(date==null){
+		long millis = DateObjects.toMillis(dateObj);
+		if(millis==DateObjects.NO_DATE){
 			return null;
 		}
 		else{
-			DateTime dt=new DateTime(date);
-			return dt.dayOfYear().getMaximumValue();
+			return DateTimeBackend.getDefault().daysInYear(millis);
 		}
 	}
 	
@@ -334,15 +379,13 @@ public final class DateTimeFunctions {
 		@JRExprFunctionParameter(name="Start date",description="The initial date."),
 		@JRExprFunctionParameter(name="End date",description="The end date.")})
 	public static Integer WEEKS(Object startDate, Object endDate){
-		Date startDateObj = convertDateObject(startDate);
-		Date endDateObj = convertDateObject(endDate);
-		if(startDateObj==null || endDateObj==null){
+		long startMillis = DateObjects.toMillis(startDate);
+		long endMillis = DateObjects.toMillis(endDate);
+		if(startMillis==DateObjects.NO_DATE || endMillis==DateObjects.NO_DATE){
 			return null;
 		}
 		else{
-			DateTime dt1=new DateTime(startDateObj);
-			DateTime dt2=new DateTime(endDateObj);
-			return Weeks.weeksBetween(dt1, dt2).getWeeks();
+			return DateTimeBackend.getDefault().weeksBetween(startMillis, endMillis);
 		}
 	}
 	
@@ -352,13 +395,12 @@ public final class DateTimeFunctions {
 	@JRExprFunctionParameters({
 		@JRExprFunctionParameter(name="Selected date",description="The date to check.")})
 	public static Integer WEEKSINYEAR(Object dateObj){
-		Date date = convertDateObject(dateObj);
-		if(date==null){
+		long millis = DateObjects.toMillis(dateObj);
+		if(millis==DateObjects.NO_DATE){
 			return null;
 		}
 		else{
-			DateTime dt=new DateTime(date);
-			return dt.weekOfWeekyear().getMaximumValue();
+			return DateTimeBackend.getDefault().weeksInWeekyear(millis);
 		}
 	}
 	
@@ -368,13 +410,12 @@ public final class DateTimeFunctions {
 	@JRExprFunctionParameters({
 		@JRExprFunctionParameter(name="Selected date",description="The date to check.")})
 	public static Integer WEEKNUM(Object dateObj){
-		Date date = convertDateObject(dateObj);
-		if(date==null){
+		long millis = DateObjects.toMillis(dateObj);
+		if(millis==DateObjects.NO_DATE){
 			return null;
 		}
 		else{
-			DateTime dt=new DateTime(date);
-			return dt.getWeekOfWeekyear();
+			return DateTimeBackend.getDefault().weekOfWeekyear(millis);
 		}
 	}
 	
@@ -385,15 +426,13 @@ public final class DateTimeFunctions {
 		@JRExprFunctionParameter(name="Start date",description="The initial date."),
 		@JRExprFunctionParameter(name="End date",description="The end date.")})
 	public static Integer MONTHS(Object startDate, Object endDate){
-		Date startDateObj = convertDateObject(startDate);
-		Date endDateObj = convertDateObject(endDate);
-		if(startDateObj==null || endDateObj==null){
+		long startMillis = DateObjects.toMillis(startDate);
+		long endMillis = DateObjects.toMillis(endDate);
+		if(startMillis==DateObjects.NO_DATE || endMillis==DateObjects.NO_DATE){
 			return null;
 		}
 		else{
-			DateTime dt1=new DateTime(startDateObj);
-			DateTime dt2=new DateTime(endDateObj);
-			return Months.monthsBetween(dt1, dt2).getMonths();
+			return DateTimeBackend.getDefault().monthsBetween(startMillis, endMillis);
 		}
 	}
 	
@@ -404,15 +443,13 @@ public final class DateTimeFunctions {
 		@JRExprFunctionParameter(name="Start date",description="The initial date."),
 		@JRExprFunctionParameter(name="End date",description="The end date.")})
 	public static Integer YEARS(Object startDate, Object endDate){
-		Date startDateObj = convertDateObject(startDate);
-		Date endDateObj = convertDateObject(endDate);
-		if(startDateObj==null || endDateObj==null){
+		long startMillis = DateObjects.toMillis(startDate);
+		long endMillis = DateObjects.toMillis(endDate);
+		if(startMillis==DateObjects.NO_DATE || endMillis==DateObjects.NO_DATE){
 			return null;
 		}
 		else{
-			DateTime dt1=new DateTime(startDateObj);
-			DateTime dt2=new DateTime(endDateObj);
-			return Years.yearsBetween(dt1, dt2).getYears();
+			return DateTimeBackend.getDefault().yearsBetween(startMillis, endMillis);
 		}
 	}
 	
@@ -422,13 +459,12 @@ public final class DateTimeFunctions {
 	@JRExprFunctionParameters({
 		@JRExprFunctionParameter(name="Selected date",description="The date to check.")})
 	public static Boolean ISLEAPYEAR(Object dateObj){
-		Date date = convertDateObject(dateObj);
-		if(date==null){
+		long millis = DateObjects.toMillis(dateObj);
+		if(millis==DateObjects.NO_DATE){
 			return null;
 		}
 		else{
-			DateTime dt=new DateTime(date);
-			return dt.year().isLeap();
+			return DateTimeBackend.getDefault().isLeapYear(millis);
 		}
 	}
 	
@@ -443,12 +479,25 @@ public final class DateTimeFunctions {
 			return null;
 		}
 		else{
-			DateTimeFormatter formatter = DateTimeFormat.forPattern(formatPattern);
-			DateTime dt = new DateTime(dateObj);
-			return dt.toString(formatter);
+			return getDateFormatter(formatPattern).print(dateObj.getTime());
 		}
 	}
 	
+	/*
+	 * Appends the formatted date to the specified output, in order to build 
+	 * the text without intermediate strings. Nothing is appended for a null date. 
+	 */
+	public static Appendable DATEFORMAT(Date dateObj, String formatPattern, Appendable output){
+		if(dateObj!=null){
+			try {
+				getDateFormatter(formatPattern).printTo(output, dateObj.getTime());
+			} catch (IOException e) {
+				throw new JRExpressionFunctionException("Unable to write the formatted date.", e);
+			}
+		}
+		return output;
+	}
+	
 	// ===================== DATERANGE function ===================== //
 	@JRExprFunction(name="DATERANGE",description="Allows to create a JasperReports DateRange instance " +
 			"starting from either a String expression or a Date instance.")
@@ -474,29 +523,31 @@ public final class DateTimeFunctions {
 	
 	/*
 	 * This methods tries to convert a generic object into a java.util.Date instance.
-	 * Supported types are for now String, Long values (time millis) and Date subtypes
-	 * like for example java.sql.Date.
+	 * Supported types are for now String (see DateParser), Long values (time millis), Date subtypes
+	 * like for example java.sql.Date and the java.time types (see DateObjects).
 	 */
 	private static Date convertDateObject(Object dateObject){
-		if(dateObject==null){
-			return null;
-		}
-		else if(dateObject instanceof String){
-			SimpleDateFormat simpleFormat=new SimpleDateFormat();
-			try {
-				return simpleFormat.parse((String)dateObject);
-			} catch (ParseException e) {
-				// Unable to parse the string as Date
-				return null;
-			}
-		}
-		else if(dateObject instanceof Long){
-			return new Date((Long)dateObject);
-		}
-		else if(dateObject instanceof Date){
+		if(dateObject instanceof Date){
 			return (Date)dateObject;
 		}
-		return null;
+		long millis = DateObjects.toMillis(dateObject);
+		return millis==DateObjects.NO_DATE ? null : new Date(millis);
+	}
+	
+	/*
+	 * Returns the cached formatter for a date pattern, using the locale and time zone of the context.
+	 */
+	private static DateTimeFormatter getDateFormatter(String formatPattern){
+		return DATE_FORMATTERS.getFormat(new FormatCache.Key(
+				FunctionContext.getLocale(), formatPattern, FunctionContext.getDateTimeZone().getID(), 0));
+	}
+	
+	/*
+	 * Returns the cached formatter for a time pattern, using the locale of the context.
+	 * Local times do not depend on the time zone.
+	 */
+	private static DateTimeFormatter getTimeFormatter(String timePattern){
+		return DATE_FORMATTERS.getFormat(new FormatCache.Key(FunctionContext.getLocale(), timePattern, null, 0));
 	}
 	
 	/*
@@ -504,14 +555,11 @@ public final class DateTimeFunctions {
 	 * from an input date object.
 	 */
 	private static Integer getCalendarFieldFromDate(Object dateObject,int field){
-		Date convertedDate = convertDateObject(dateObject);
-		if(convertedDate==null) {
+		long millis = DateObjects.toMillis(dateObject);
+		if(millis==DateObjects.NO_DATE){
 			return null;
 		}
-		else{
-			Calendar cal=new GregorianCalendar();
-			cal.setTime(convertedDate);
-			return cal.get(field);			
-		}
+		// same values of a GregorianCalendar, without creating one
+		return FunctionContext.getDateFields().getCalendarField(millis, field);
 	}
 }
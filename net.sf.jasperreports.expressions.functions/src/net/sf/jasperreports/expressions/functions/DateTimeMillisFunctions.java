@@ -0,0 +1,95 @@
+package net.sf.jasperreports.expressions.functions;
+
+/**
+ * Versions of the date field functions of {@link DateTimeFunctions} that work on time millis,
+ * without allocating objects.
+ *
+ * <p>
+ * They are kept out of {@link DateTimeFunctions} because they are not functions on their own,
+ * and overloads with primitive parameters would make the parameter types of the functions
+ * collected through reflection depend on the order of the methods. The fields are computed in
+ * the time zone of the {@link net.sf.jasperreports.expressions.annotations.JRExprEvaluationContext},
+ * or in the default time zone.
+ */
+public final class DateTimeMillisFunctions {
+
+	private DateTimeMillisFunctions(){
+		// Prevents instantiation
+	}
+
+	// ===================== YEAR function ===================== //
+	public static int YEAR(long dateMillis){
+		return FunctionContext.getDateFields().getYear(dateMillis);
+	}
+
+	/*
+	 * Columnar version, stores the years of a column of time millis into the result column and returns it.
+	 */
+	public static int[] YEAR(long[] datesMillis, int[] result){
+		Columns.checkResult(datesMillis.length, result.length);
+		DateFields fields=FunctionContext.getDateFields();
+		for(int i=0;i<datesMillis.length;i++){
+			result[i]=fields.getYear(datesMillis[i]);
+		}
+		return result;
+	}
+
+	// ===================== MONTH function ===================== //
+	public static int MONTH(long dateMillis){
+		return FunctionContext.getDateFields().getMonth(dateMillis);
+	}
+
+	/*
+	 * Columnar version, stores the months of a column of time millis into the result column and returns it.
+	 */
+	public static int[] MONTH(long[] datesMillis, int[] result){
+		Columns.checkResult(datesMillis.length, result.length);
+		DateFields fields=FunctionContext.getDateFields();
+		for(int i=0;i<datesMillis.length;i++){
+			result[i]=fields.getMonth(datesMillis[i]);
+		}
+		return result;
+	}
+
+	// ===================== DAY function ===================== //
+	public static int DAY(long dateMillis){
+		return FunctionContext.getDateFields().getDayOfMonth(dateMillis);
+	}
+
+	/*
+	 * Columnar version, stores the days of a column of time millis into the result column and returns it.
+	 */
+	public static int[] DAY(long[] datesMillis, int[] result){
+		Columns.checkResult(datesMillis.length, result.length);
+		DateFields fields=FunctionContext.getDateFields();
+		for(int i=0;i<datesMillis.length;i++){
+			result[i]=fields.getDayOfMonth(datesMillis[i]);
+		}
+		return result;
+	}
+
+	// ===================== WEEKDAY function ===================== //
+	public static int WEEKDAY(long dateMillis){
+		return WEEKDAY(dateMillis, false);
+	}
+
+	public static int WEEKDAY(long dateMillis, boolean isSundayFirstDay){
+		return FunctionContext.getDateFields().getDayOfWeek(dateMillis, isSundayFirstDay);
+	}
+
+	// ===================== HOUR function ===================== //
+	public static int HOUR(long dateMillis){
+		return FunctionContext.getDateFields().getHourOfDay(dateMillis);
+	}
+
+	// ===================== MINUTE function ===================== //
+	public static int MINUTE(long dateMillis){
+		return FunctionContext.getDateFields().getMinute(dateMillis);
+	}
+
+	// ===================== SECOND function ===================== //
+	public static int SECOND(long dateMillis){
+		return FunctionContext.getDateFields().getSecond(dateMillis);
+	}
+
+}
@@ -0,0 +1,144 @@
+package net.sf.jasperreports.expressions.functions;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Arithmetic on epoch days (the number of days from 1970-01-01) in the proleptic Gregorian calendar,
+ * used by the date/time functions to avoid calendar objects.
+ */
+final class EpochDays {
+
+	static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+	private static final int DATES_CACHE_SIZE = 1024;
+
+	// each entry contains the epoch day (upper bits) and its yyyyMMdd encoded date (lower bits)
+	private static final AtomicLongArray DATES_CACHE = new AtomicLongArray(DATES_CACHE_SIZE);
+
+	static {
+		for(int i=0; i<DATES_CACHE_SIZE; i++){
+			// no epoch day maps to this entry
+			DATES_CACHE.set(i, ((long) (i+1))<<32);
+		}
+	}
+
+	private EpochDays(){
+		// Prevents instantiation
+	}
+
+	/**
+	 * Returns the epoch day of the specified local millis (that is the UTC millis plus the zone offset).
+	 */
+	static long fromLocalMillis(long localMillis){
+		return floorDiv(localMillis, MILLIS_PER_DAY);
+	}
+
+	/**
+	 * Returns the epoch day of the specified date.
+	 * 
+	 * @param month the month (1-12)
+	 */
+	static long fromDate(int year, int month, int day){
+		long y = month<=2 ? year-1 : year;
+		long era = (y>=0 ? y : y-399)/400;
+		long yearOfEra = y - era*400;
+		long dayOfYear = (153*(month + (month>2 ? -3 : 9)) + 2)/5 + day - 1;
+		long dayOfEra = yearOfEra*365 + yearOfEra/4 - yearOfEra/100 + dayOfYear;
+		return era*146097 + dayOfEra - 719468;
+	}
+
+	/**
+	 * Returns the ISO day of week (1 for Monday, 7 for Sunday) of an epoch day.
+	 */
+	static int dayOfWeek(long epochDay){
+		// 1970-01-01 was a Thursday
+		return (int) floorMod(epochDay + 3, 7) + 1;
+	}
+
+	static boolean isWeekend(long epochDay){
+		return dayOfWeek(epochDay)>5;
+	}
+
+	/**
+	 * Returns the number of days from Monday to Friday in the range <code>[fromEpochDay, fromEpochDay+days)</code>.
+	 */
+	static long countWeekdays(long fromEpochDay, long days){
+		if(days<=0){
+			return 0;
+		}
+		int offset = dayOfWeek(fromEpochDay)-1;
+		return (days/7)*5 + weekdaysFromMonday(offset + (int) (days%7)) - weekdaysFromMonday(offset);
+	}
+
+	/*
+	 * Number of weekdays in the first days (at most 13) of a week starting on Monday.
+	 */
+	private static int weekdaysFromMonday(int days){
+		return (days/7)*5 + Math.min(days%7, 5);
+	}
+
+	/**
+	 * Returns the n-th day from Monday to Friday (n starting from 1) on or after the specified epoch day.
+	 */
+	static long nthWeekday(long fromEpochDay, long n){
+		long day = fromEpochDay;
+		int dayOfWeek = dayOfWeek(day);
+		if(dayOfWeek>5){
+			// move to the next Monday
+			day += 8-dayOfWeek;
+			dayOfWeek = 1;
+		}
+		long remaining = n-1;
+		long days = (remaining/5)*7;
+		int rest = (int) (remaining%5);
+		if(dayOfWeek+rest>5){
+			// skip a weekend
+			days += 2;
+		}
+		return day + days + rest;
+	}
+
+	/*
+	 * Converts an epoch day into the yyyyMMdd encoded date, in the proleptic Gregorian calendar.
+	 * The recent conversions are cached, since reports usually handle close dates.
+	 */
+	static int toYearMonthDay(long epochDay){
+		int index = (int) (epochDay & (DATES_CACHE_SIZE-1));
+		long entry = DATES_CACHE.get(index);
+		if((entry>>32)==epochDay){
+			return (int) entry;
+		}
+		int ymd = computeYearMonthDay(epochDay);
+		if(epochDay==(int) epochDay){
+			DATES_CACHE.lazySet(index, (epochDay<<32) | (ymd & 0xFFFFFFFFL));
+		}
+		return ymd;
+	}
+
+	private static int computeYearMonthDay(long epochDay){
+		long z = epochDay + 719468;
+		long era = (z>=0 ? z : z-146096)/146097;
+		// the values inside an era fit in an int, whose divisions by constants are cheaper
+		int dayOfEra = (int) (z - era*146097);
+		int yearOfEra = (dayOfEra - dayOfEra/1460 + dayOfEra/36524 - dayOfEra/146096)/365;
+		int dayOfYear = dayOfEra - (365*yearOfEra + yearOfEra/4 - yearOfEra/100);
+		int mp = (5*dayOfYear + 2)/153;
+		int day = dayOfYear - (153*mp + 2)/5 + 1;
+		int month = mp<10 ? mp+3 : mp-9;
+		int year = (int) (yearOfEra + era*400 + (month<=2 ? 1 : 0));
+		return year*10000 + month*100 + day;
+	}
+
+	static long floorDiv(long x, long y){
+		long q = x/y;
+		if((x%y!=0) && ((x^y)<0)){
+			q--;
+		}
+		return q;
+	}
+
+	static long floorMod(long x, long y){
+		return x - floorDiv(x, y)*y;
+	}
+
+}
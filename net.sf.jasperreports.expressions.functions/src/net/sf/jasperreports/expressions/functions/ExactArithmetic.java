@@ -0,0 +1,291 @@
+package net.sf.jasperreports.expressions.functions;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sf.jasperreports.expressions.functions.errors.JRExpressionFunctionException;
+
+/**
+ * Exact arithmetic used by the {@link MathFunctions} aggregates.
+ *
+ * <p>
+ * Numbers are accumulated without going through <code>double</code>, and the result
+ * type is widened only when needed:
+ * <ul>
+ * 	<li>integral numbers (<code>Byte</code>, <code>Short</code>, <code>Integer</code>, <code>Long</code>)
+ * 	are accumulated as a primitive <code>long</code> and give a <code>Long</code>;</li>
+ * 	<li>if the <code>long</code> accumulator overflows, or a <code>BigInteger</code> is found,
+ * 	the result is a <code>BigInteger</code>;</li>
+ * 	<li>if a <code>BigDecimal</code>, <code>Float</code>, <code>Double</code> or any other number is found,
+ * 	the result is a <code>BigDecimal</code>. Floating point numbers are converted using their
+ * 	canonical string representation (see {@link BigDecimal#valueOf(double)}).</li>
+ * </ul>
+ */
+final class ExactArithmetic {
+
+	private ExactArithmetic(){
+		// Prevents instantiation
+	}
+
+	/**
+	 * Returns the exact sum of the specified numbers, <code>null</code> if there are none.
+	 */
+	static Number sum(Number[] numbers){
+		if(numbers.length==0) return null;
+		Accumulator accumulator=new Accumulator(0);
+		for (int i=0;i<numbers.length;i++){
+			accumulator.add(numbers[i]);
+		}
+		return accumulator.getResult();
+	}
+
+	/**
+	 * Returns the exact sum of the specified numbers, <code>null</code> if there are none.
+	 */
+	static Number sum(Iterable<? extends Number> numbers){
+		Accumulator accumulator=new Accumulator(0);
+		boolean empty=true;
+		for (Number number : numbers){
+			accumulator.add(number);
+			empty=false;
+		}
+		return empty ? null : accumulator.getResult();
+	}
+
+	/**
+	 * Returns the exact product of the specified numbers, <code>null</code> if there are none.
+	 */
+	static Number product(Number[] numbers){
+		if(numbers.length==0) return null;
+		Accumulator accumulator=new Accumulator(1);
+		for (int i=0;i<numbers.length;i++){
+			accumulator.multiply(numbers[i]);
+		}
+		return accumulator.getResult();
+	}
+
+	/**
+	 * Returns the exact product of the specified numbers, <code>null</code> if there are none.
+	 */
+	static Number product(Iterable<? extends Number> numbers){
+		Accumulator accumulator=new Accumulator(1);
+		boolean empty=true;
+		for (Number number : numbers){
+			accumulator.multiply(number);
+			empty=false;
+		}
+		return empty ? null : accumulator.getResult();
+	}
+
+	/**
+	 * Returns the exact sum of the values in a range, <code>null</code> if it is empty.
+	 */
+	static Number sum(long[] values, int from, int to){
+		if(from==to) return null;
+		Accumulator accumulator=new Accumulator(0);
+		for (int i=from;i<to;i++){
+			accumulator.add(values[i]);
+		}
+		return accumulator.getResult();
+	}
+
+	/**
+	 * Returns the exact sum of the values in a range, <code>null</code> if it is empty.
+	 */
+	static Number sum(double[] values, int from, int to){
+		if(from==to) return null;
+		Accumulator accumulator=new Accumulator(0);
+		for (int i=from;i<to;i++){
+			accumulator.add(Double.valueOf(values[i]));
+		}
+		return accumulator.getResult();
+	}
+
+	/**
+	 * Returns the exact product of the values, <code>null</code> if there are none.
+	 */
+	static Number product(int[] values){
+		if(values.length==0) return null;
+		Accumulator accumulator=new Accumulator(1);
+		for (int i=0;i<values.length;i++){
+			accumulator.multiply(values[i]);
+		}
+		return accumulator.getResult();
+	}
+
+	/**
+	 * Returns the exact product of the values, <code>null</code> if there are none.
+	 */
+	static Number product(long[] values){
+		if(values.length==0) return null;
+		Accumulator accumulator=new Accumulator(1);
+		for (int i=0;i<values.length;i++){
+			accumulator.multiply(values[i]);
+		}
+		return accumulator.getResult();
+	}
+
+	/**
+	 * Returns the exact product of the values, <code>null</code> if there are none.
+	 */
+	static Number product(double[] values){
+		if(values.length==0) return null;
+		Accumulator accumulator=new Accumulator(1);
+		for (int i=0;i<values.length;i++){
+			accumulator.multiply(Double.valueOf(values[i]));
+		}
+		return accumulator.getResult();
+	}
+
+	/**
+	 * Compares two numbers, without losing precision when they are both integral
+	 * or when one of them is a <code>BigDecimal</code> or <code>BigInteger</code>.
+	 */
+	static int compare(Number n1, Number n2){
+		if(isIntegral(n1) && isIntegral(n2)){
+			long l1=n1.longValue();
+			long l2=n2.longValue();
+			return l1<l2 ? -1 : (l1==l2 ? 0 : 1);
+		}
+		if((isBig(n1) || isBig(n2)) && isFinite(n1) && isFinite(n2)){
+			return toBigDecimal(n1).compareTo(toBigDecimal(n2));
+		}
+		double d1=n1.doubleValue();
+		double d2=n2.doubleValue();
+		return d1<d2 ? -1 : (d1>d2 ? 1 : 0);
+	}
+
+	static boolean isIntegral(Number number){
+		return number instanceof Integer || number instanceof Long
+				|| number instanceof Short || number instanceof Byte
+				|| number instanceof AtomicInteger || number instanceof AtomicLong;
+	}
+
+	static boolean isBig(Number number){
+		return number instanceof BigDecimal || number instanceof BigInteger;
+	}
+
+	private static boolean isFinite(Number number){
+		if(number instanceof Double || number instanceof Float){
+			double value=number.doubleValue();
+			return !Double.isNaN(value) && !Double.isInfinite(value);
+		}
+		return true;
+	}
+
+	static BigDecimal toBigDecimal(Number number){
+		if(number instanceof BigDecimal) return (BigDecimal) number;
+		if(number instanceof BigInteger) return new BigDecimal((BigInteger) number);
+		if(isIntegral(number)) return BigDecimal.valueOf(number.longValue());
+		if(!isFinite(number)){
+			throw new JRExpressionFunctionException("Unable to use the value " + number + " in an exact calculation.");
+		}
+		if(number instanceof Float) return new BigDecimal(number.toString());
+		if(number instanceof Double) return BigDecimal.valueOf(number.doubleValue());
+		// fall-back for other number types
+		return new BigDecimal(number.toString());
+	}
+
+	/**
+	 * Mutable accumulator that keeps the running value in the narrowest exact representation:
+	 * a <code>long</code> while possible, then a <code>BigInteger</code> or a <code>BigDecimal</code>.
+	 */
+	static final class Accumulator {
+
+		private long longValue;
+		private BigInteger bigIntegerValue;
+		private BigDecimal bigDecimalValue;
+
+		Accumulator(long initialValue){
+			this.longValue=initialValue;
+		}
+
+		void add(Number number){
+			if(bigDecimalValue!=null){
+				bigDecimalValue=bigDecimalValue.add(toBigDecimal(number));
+			}
+			else if(isIntegral(number)){
+				add(number.longValue());
+			}
+			else if(number instanceof BigInteger){
+				bigIntegerValue=currentBigInteger().add((BigInteger) number);
+			}
+			else{
+				bigDecimalValue=currentBigDecimal().add(toBigDecimal(number));
+			}
+		}
+
+		void multiply(Number number){
+			if(bigDecimalValue!=null){
+				bigDecimalValue=bigDecimalValue.multiply(toBigDecimal(number));
+			}
+			else if(isIntegral(number)){
+				multiply(number.longValue());
+			}
+			else if(number instanceof BigInteger){
+				bigIntegerValue=currentBigInteger().multiply((BigInteger) number);
+			}
+			else{
+				bigDecimalValue=currentBigDecimal().multiply(toBigDecimal(number));
+			}
+		}
+
+		void add(long value){
+			if(bigDecimalValue!=null){
+				bigDecimalValue=bigDecimalValue.add(BigDecimal.valueOf(value));
+			}
+			else if(bigIntegerValue!=null){
+				bigIntegerValue=bigIntegerValue.add(BigInteger.valueOf(value));
+			}
+			else{
+				long result=longValue+value;
+				if(((longValue^result)&(value^result))<0){
+					// overflow
+					bigIntegerValue=BigInteger.valueOf(longValue).add(BigInteger.valueOf(value));
+				}
+				else{
+					longValue=result;
+				}
+			}
+		}
+
+		void multiply(long value){
+			if(bigDecimalValue!=null){
+				bigDecimalValue=bigDecimalValue.multiply(BigDecimal.valueOf(value));
+			}
+			else if(bigIntegerValue!=null){
+				bigIntegerValue=bigIntegerValue.multiply(BigInteger.valueOf(value));
+			}
+			else{
+				long result=longValue*value;
+				long absProduct=Math.abs(longValue)|Math.abs(value);
+				if((absProduct>>>31)!=0
+						&& ((value!=0 && result/value!=longValue) || (longValue==Long.MIN_VALUE && value==-1))){
+					// overflow
+					bigIntegerValue=BigInteger.valueOf(longValue).multiply(BigInteger.valueOf(value));
+				}
+				else{
+					longValue=result;
+				}
+			}
+		}
+
+		private BigInteger currentBigInteger(){
+			return bigIntegerValue!=null ? bigIntegerValue : BigInteger.valueOf(longValue);
+		}
+
+		private BigDecimal currentBigDecimal(){
+			return bigIntegerValue!=null ? new BigDecimal(bigIntegerValue) : BigDecimal.valueOf(longValue);
+		}
+
+		Number getResult(){
+			if(bigDecimalValue!=null) return bigDecimalValue;
+			if(bigIntegerValue!=null) return bigIntegerValue;
+			return longValue;
+		}
+
+	}
+
+}
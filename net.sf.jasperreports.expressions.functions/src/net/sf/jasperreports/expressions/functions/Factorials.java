@@ -0,0 +1,208 @@
+package net.sf.jasperreports.expressions.functions;
+
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Factorials and binomial coefficients used by the <code>FACT</code>, <code>COMBIN</code> and
+ * <code>PERMUT</code> functions.
+ *
+ * <p>
+ * The values that fit a <code>long</code> are read from precomputed tables: the factorials up to 20!
+ * and the binomial coefficients up to 66 elements. The larger factorials are computed as
+ * <code>BigInteger</code> values, multiplying the halves of the range of factors recursively so that
+ * the operands have similar sizes, and are cached up to {@link #MAX_CACHED_FACTORIAL}. A factorial that
+ * is not cached is computed from the largest smaller one that is.
+ *
+ * <p>
+ * The <code>BigInteger</code> values are limited to the products of at most {@link #MAX_BIG_FACTORS} numbers,
+ * as their size and the time to compute them grow with the number of factors.
+ */
+final class Factorials {
+
+	/**
+	 * Largest number whose factorial fits a <code>long</code>.
+	 */
+	static final int MAX_LONG_FACTORIAL = 20;
+
+	/**
+	 * Largest number of elements whose binomial coefficients all fit a <code>long</code>.
+	 */
+	static final int MAX_LONG_BINOMIAL = 66;
+
+	/**
+	 * Largest number whose factorial is cached.
+	 */
+	static final int MAX_CACHED_FACTORIAL = 1024;
+
+	/**
+	 * Largest number of factors of a <code>BigInteger</code> factorial, binomial coefficient or number of permutations.
+	 */
+	static final int MAX_BIG_FACTORS = 100000;
+
+	// ranges with fewer factors are multiplied in a loop
+	private static final int PRODUCT_SPLIT_THRESHOLD = 16;
+
+	private static final long[] LONG_FACTORIALS = new long[MAX_LONG_FACTORIAL+1];
+
+	// rows of the Pascal triangle, the coefficients of n elements start at n*(n+1)/2
+	private static final long[] LONG_BINOMIALS = new long[(MAX_LONG_BINOMIAL+1)*(MAX_LONG_BINOMIAL+2)/2];
+
+	private static final AtomicReferenceArray<BigInteger> BIG_FACTORIALS = new AtomicReferenceArray<BigInteger>(MAX_CACHED_FACTORIAL+1);
+
+	static {
+		LONG_FACTORIALS[0]=1;
+		for(int i=1;i<=MAX_LONG_FACTORIAL;i++){
+			LONG_FACTORIALS[i]=LONG_FACTORIALS[i-1]*i;
+		}
+		for(int n=0;n<=MAX_LONG_BINOMIAL;n++){
+			int row=n*(n+1)/2;
+			LONG_BINOMIALS[row]=1;
+			LONG_BINOMIALS[row+n]=1;
+			int previousRow=row-n;
+			for(int k=1;k<n;k++){
+				LONG_BINOMIALS[row+k]=LONG_BINOMIALS[previousRow+k-1]+LONG_BINOMIALS[previousRow+k];
+			}
+		}
+	}
+
+	private Factorials(){
+		// Prevents instantiation
+	}
+
+	/**
+	 * Returns the factorial of a number between 0 and {@link #MAX_LONG_FACTORIAL}.
+	 */
+	static long longFactorial(int n){
+		return LONG_FACTORIALS[n];
+	}
+
+	/**
+	 * Returns the factorial of a non negative number.
+	 */
+	static BigInteger bigFactorial(int n){
+		if(n<=MAX_LONG_FACTORIAL){
+			return BigInteger.valueOf(LONG_FACTORIALS[n]);
+		}
+		int known=Math.min(n, MAX_CACHED_FACTORIAL);
+		BigInteger knownFactorial=BIG_FACTORIALS.get(known);
+		while(knownFactorial==null && known>MAX_LONG_FACTORIAL+1){
+			knownFactorial=BIG_FACTORIALS.get(--known);
+		}
+		if(knownFactorial==null){
+			known=MAX_LONG_FACTORIAL;
+			knownFactorial=BigInteger.valueOf(LONG_FACTORIALS[known]);
+		}
+		if(known==n){
+			return knownFactorial;
+		}
+		if(n>MAX_CACHED_FACTORIAL && known<MAX_CACHED_FACTORIAL){
+			// caches the largest factorial, for the next larger numbers
+			knownFactorial=bigFactorial(MAX_CACHED_FACTORIAL);
+			known=MAX_CACHED_FACTORIAL;
+		}
+		BigInteger result=knownFactorial.multiply(product(known+1, n));
+		if(n<=MAX_CACHED_FACTORIAL){
+			// concurrent threads compute the same value, any of them can be kept
+			BIG_FACTORIALS.lazySet(n, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of ways to choose <code>k</code> elements among <code>n</code>,
+	 * <code>-1</code> if it does not fit a <code>long</code>. The arguments must satisfy <code>0&lt;=k&lt;=n</code>.
+	 */
+	static long longBinomial(int n, int k){
+		if(n<=MAX_LONG_BINOMIAL){
+			return LONG_BINOMIALS[n*(n+1)/2+k];
+		}
+		k=Math.min(k, n-k);
+		long result=1;
+		for(int i=1;i<=k;i++){
+			// C(n-k+i, i) = C(n-k+i-1, i-1) * (n-k+i) / i, dividing first by the common factors to avoid overflows
+			long factor=n-k+i;
+			long gcd=gcd(result, i);
+			long multiplier=factor/(i/gcd);
+			long multiplicand=result/gcd;
+			if(multiplicand>Long.MAX_VALUE/multiplier){
+				return -1;
+			}
+			result=multiplicand*multiplier;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of ways to choose <code>k</code> elements among <code>n</code>.
+	 * The arguments must satisfy <code>0&lt;=k&lt;=n</code>.
+	 */
+	static BigInteger bigBinomial(int n, int k){
+		long result=longBinomial(n, k);
+		if(result>=0){
+			return BigInteger.valueOf(result);
+		}
+		k=Math.min(k, n-k);
+		return product(n-k+1, n).divide(bigFactorial(k));
+	}
+
+	/**
+	 * Returns the number of ordered arrangements of <code>k</code> elements among <code>n</code>,
+	 * <code>-1</code> if it does not fit a <code>long</code>. The arguments must satisfy <code>0&lt;=k&lt;=n</code>.
+	 */
+	static long longPermutations(int n, int k){
+		if(n<=MAX_LONG_FACTORIAL){
+			return LONG_FACTORIALS[n]/LONG_FACTORIALS[n-k];
+		}
+		long result=1;
+		for(int factor=n-k+1;factor<=n;factor++){
+			if(result>Long.MAX_VALUE/factor){
+				return -1;
+			}
+			result*=factor;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of ordered arrangements of <code>k</code> elements among <code>n</code>.
+	 * The arguments must satisfy <code>0&lt;=k&lt;=n</code>.
+	 */
+	static BigInteger bigPermutations(int n, int k){
+		long result=longPermutations(n, k);
+		if(result>=0){
+			return BigInteger.valueOf(result);
+		}
+		return product(n-k+1, n);
+	}
+
+	/*
+	 * Returns the product of the numbers from low to high, both inclusive (1 if the range is empty).
+	 */
+	private static BigInteger product(int low, int high){
+		if(high-low<PRODUCT_SPLIT_THRESHOLD){
+			BigInteger result=BigInteger.ONE;
+			long partial=1;
+			for(long factor=low;factor<=high;factor++){
+				if(partial>Long.MAX_VALUE/factor){
+					result=result.multiply(BigInteger.valueOf(partial));
+					partial=1;
+				}
+				partial*=factor;
+			}
+			return result.multiply(BigInteger.valueOf(partial));
+		}
+		int middle=(low+high)>>>1;
+		return product(low, middle).multiply(product(middle+1, high));
+	}
+
+	private static long gcd(long a, long b){
+		while(b!=0){
+			long t=a%b;
+			a=b;
+			b=t;
+		}
+		return a;
+	}
+
+}
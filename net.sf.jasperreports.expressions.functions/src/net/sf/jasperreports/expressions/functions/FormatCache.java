@@ -0,0 +1,231 @@
+package net.sf.jasperreports.expressions.functions;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of formatter instances used by the function libraries.
+ *
+ * <p>
+ * The JDK formatters are not thread-safe, so by default each thread has its own formatters:
+ * the cache keeps a small LRU map for each thread, and a formatter obtained through
+ * {@link #getFormat(Object)} must only be used by the calling thread.
+ * Immutable formatters (like the Joda-Time ones) can instead be kept in a single LRU map
+ * shared among all the threads, see {@link #FormatCache(int, boolean)}.
+ * The hit and miss counters are always shared among all the threads.
+ *
+ * @param <K> the type of the keys identifying the formatters
+ * @param <F> the type of the cached formatters
+ */
+public abstract class FormatCache<K, F> {
+
+	public static final int DEFAULT_MAX_SIZE = 64;
+
+	private final int maxSize;
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final Map<K, F> sharedFormats;
+	private final ThreadLocal<Map<K, F>> threadFormats;
+
+	protected FormatCache(){
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * @param maxSize the maximum number of formatters kept for each thread
+	 */
+	protected FormatCache(int maxSize){
+		this(maxSize, false);
+	}
+
+	/**
+	 * @param maxSize the maximum number of formatters kept (for each thread, unless the formatters are thread-safe)
+	 * @param threadSafeFormats whether the formatters are thread-safe and can be shared among threads
+	 */
+	protected FormatCache(int maxSize, boolean threadSafeFormats){
+		if(maxSize <= 0){
+			throw new IllegalArgumentException("The maximum size of the cache must be positive");
+		}
+		this.maxSize = maxSize;
+		if(threadSafeFormats){
+			this.sharedFormats = createLRUMap();
+			this.threadFormats = null;
+		}
+		else{
+			this.sharedFormats = null;
+			this.threadFormats = new ThreadLocal<Map<K, F>>(){
+				@Override
+				protected Map<K, F> initialValue(){
+					return createLRUMap();
+				}
+			};
+		}
+	}
+
+	private Map<K, F> createLRUMap(){
+		return new LinkedHashMap<K, F>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, F> eldest){
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Returns the formatter for the specified key, creating it if not already cached
+	 * for the current thread.
+	 *
+	 * @param key the formatter key
+	 * @return a formatter that must be used only by the calling thread, unless the formatters are thread-safe
+	 */
+	public F getFormat(K key){
+		if(sharedFormats != null){
+			F format;
+			synchronized (sharedFormats){
+				format = sharedFormats.get(key);
+			}
+			if(format == null){
+				missCount.incrementAndGet();
+				// created outside the lock, concurrent misses on the same key are harmless
+				format = createFormat(key);
+				synchronized (sharedFormats){
+					sharedFormats.put(key, format);
+				}
+			}
+			else{
+				hitCount.incrementAndGet();
+			}
+			return format;
+		}
+		Map<K, F> formats = threadFormats.get();
+		F format = formats.get(key);
+		if(format == null){
+			missCount.incrementAndGet();
+			format = createFormat(key);
+			formats.put(key, format);
+		}
+		else{
+			hitCount.incrementAndGet();
+		}
+		return format;
+	}
+
+	/**
+	 * Creates the formatter for the specified key.
+	 */
+	protected abstract F createFormat(K key);
+
+	/**
+	 * Removes the cached formatters (only the ones of the current thread, unless the formatters are thread-safe).
+	 */
+	public void clear(){
+		if(sharedFormats != null){
+			synchronized (sharedFormats){
+				sharedFormats.clear();
+			}
+		}
+		else{
+			threadFormats.remove();
+		}
+	}
+
+	public int getMaxSize(){
+		return maxSize;
+	}
+
+	/**
+	 * Returns the number of requests served by a cached formatter.
+	 */
+	public long getHitCount(){
+		return hitCount.get();
+	}
+
+	/**
+	 * Returns the number of requests that needed the creation of a new formatter.
+	 */
+	public long getMissCount(){
+		return missCount.get();
+	}
+
+	/**
+	 * Resets the hit and miss counters.
+	 */
+	public void resetStatistics(){
+		hitCount.set(0);
+		missCount.set(0);
+	}
+
+	/**
+	 * Key made of a locale, an optional pattern, an optional time zone ID and an optional set of integer options,
+	 * usable by most formatter caches.
+	 */
+	public static final class Key {
+
+		private final Locale locale;
+		private final String pattern;
+		private final String zoneId;
+		private final int options;
+		private final int hash;
+
+		public Key(Locale locale, String pattern, int options){
+			this(locale, pattern, null, options);
+		}
+
+		public Key(Locale locale, String pattern, String zoneId, int options){
+			this.locale = locale;
+			this.pattern = pattern;
+			this.zoneId = zoneId;
+			this.options = options;
+			int h = locale == null ? 0 : locale.hashCode();
+			h = 31 * h + (pattern == null ? 0 : pattern.hashCode());
+			h = 31 * h + (zoneId == null ? 0 : zoneId.hashCode());
+			this.hash = 31 * h + options;
+		}
+
+		public Locale getLocale(){
+			return locale;
+		}
+
+		public String getPattern(){
+			return pattern;
+		}
+
+		public String getZoneId(){
+			return zoneId;
+		}
+
+		public int getOptions(){
+			return options;
+		}
+
+		@Override
+		public int hashCode(){
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj){
+			if(this == obj){
+				return true;
+			}
+			if(!(obj instanceof Key)){
+				return false;
+			}
+			Key key = (Key) obj;
+			return hash == key.hash && options == key.options
+					&& (locale == null ? key.locale == null : locale.equals(key.locale))
+					&& (pattern == null ? key.pattern == null : pattern.equals(key.pattern))
+					&& (zoneId == null ? key.zoneId == null : zoneId.equals(key.zoneId));
+		}
+
+		@Override
+		public String toString(){
+			return "{locale: " + locale + ", pattern: " + pattern + ", zone: " + zoneId + ", options: " + options + "}";
+		}
+	}
+
+}
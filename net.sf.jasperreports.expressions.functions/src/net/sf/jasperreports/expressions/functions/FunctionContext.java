@@ -0,0 +1,107 @@
+package net.sf.jasperreports.expressions.functions;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+import net.sf.jasperreports.expressions.annotations.JRExprEvaluationContext;
+
+import org.joda.time.DateTimeZone;
+
+/**
+ * Clock, locale and time zone used by the functions: the ones of the {@link JRExprEvaluationContext}
+ * bound to the current thread, or, when no context is bound, the clock and the locale of the JVM and the
+ * time zone of {@link DateFields#getDefault()}, the one of the {@link DateFields#PROPERTY_TIME_ZONE} property
+ * or the default one of the JVM. All the date/time functions and the {@link DateParser} use the same time zone.
+ * Nothing binds a context during a fill unless the caller does, on each thread that fills the report,
+ * see {@link JRExprEvaluationContext}.
+ *
+ * <p>
+ * The objects derived from the time zone of a context are created once and cached in the context,
+ * so that the functions called for each record do not look up the default zone.
+ */
+final class FunctionContext {
+
+	// keys of the objects cached in the evaluation context
+	private static final Object DATE_TIME_ZONE_KEY = new Object();
+	private static final Object DATE_FIELDS_KEY = new Object();
+	private static final Object PARALLEL_AGGREGATION_KEY = new Object();
+
+	private FunctionContext(){
+		// Prevents instantiation
+	}
+
+	static long currentTimeMillis(){
+		JRExprEvaluationContext context=JRExprEvaluationContext.getCurrent();
+		return context!=null ? context.getCurrentTimeMillis() : System.currentTimeMillis();
+	}
+
+	/**
+	 * Returns the parallel aggregation configured by the {@link net.sf.jasperreports.engine.JasperReportsContext}
+	 * of the context, or {@link ParallelAggregation#getDefault()}.
+	 */
+	static ParallelAggregation getParallelAggregation(){
+		JRExprEvaluationContext context=JRExprEvaluationContext.getCurrent();
+		if(context==null || context.getJasperReportsContext()==null) return ParallelAggregation.getDefault();
+		ParallelAggregation aggregation=(ParallelAggregation) context.getCached(PARALLEL_AGGREGATION_KEY);
+		if(aggregation==null){
+			aggregation=(ParallelAggregation) context.cache(PARALLEL_AGGREGATION_KEY, 
+					ParallelAggregation.getInstance(context.getJasperReportsContext()));
+		}
+		return aggregation;
+	}
+
+	static Locale getLocale(){
+		JRExprEvaluationContext context=JRExprEvaluationContext.getCurrent();
+		Locale locale=context!=null ? context.getLocale() : null;
+		return locale!=null ? locale : Locale.getDefault();
+	}
+
+	/**
+	 * Returns the time zone, that must not be modified.
+	 */
+	static TimeZone getTimeZone(){
+		JRExprEvaluationContext context=getZonedContext();
+		return context!=null ? context.getTimeZone() : DateFields.getDefault().getSharedTimeZone();
+	}
+
+	static DateTimeZone getDateTimeZone(){
+		JRExprEvaluationContext context=getZonedContext();
+		if(context==null) return DateFields.getDefault().getDateTimeZone();
+		DateTimeZone zone=(DateTimeZone) context.getCached(DATE_TIME_ZONE_KEY);
+		if(zone==null){
+			zone=(DateTimeZone) context.cache(DATE_TIME_ZONE_KEY, DateTimeZone.forTimeZone(getTimeZone()));
+		}
+		return zone;
+	}
+
+	/**
+	 * Returns the date fields for the time zone of the context, or {@link DateFields#getDefault()}.
+	 */
+	static DateFields getDateFields(){
+		DateFields fields=getContextDateFields();
+		return fields!=null ? fields : DateFields.getDefault();
+	}
+
+	/**
+	 * Returns the date fields for the time zone of the context, <code>null</code> if no context
+	 * with a time zone is bound.
+	 */
+	private static DateFields getContextDateFields(){
+		JRExprEvaluationContext context=getZonedContext();
+		if(context==null) return null;
+		DateFields fields=(DateFields) context.getCached(DATE_FIELDS_KEY);
+		if(fields==null){
+			fields=(DateFields) context.cache(DATE_FIELDS_KEY, DateFields.forTimeZone(getTimeZone()));
+		}
+		return fields;
+	}
+
+	/*
+	 * Returns the current context if it specifies the time zone.
+	 */
+	private static JRExprEvaluationContext getZonedContext(){
+		JRExprEvaluationContext context=JRExprEvaluationContext.getCurrent();
+		return context!=null && context.getTimeZone()!=null ? context : null;
+	}
+
+}
@@ -0,0 +1,161 @@
+package net.sf.jasperreports.expressions.functions;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+
+import org.joda.time.DateTimeZone;
+
+/**
+ * Immutable set of holidays, used by the {@link DateTimeFunctions#WORKDAY(Object, Integer, HolidayCalendar)}
+ * and {@link DateTimeFunctions#NETWORKDAYS(Object, Object, HolidayCalendar)} functions.
+ *
+ * <p>
+ * The holidays are kept as a sorted array of epoch days (the number of days from 1970-01-01),
+ * so that checking a day or counting the holidays in a range only needs a binary search.
+ */
+public final class HolidayCalendar {
+
+	public static final HolidayCalendar EMPTY = new HolidayCalendar(new long[0]);
+
+	private final long[] holidays;
+	// holidays falling from Monday to Friday
+	private final long[] weekdayHolidays;
+
+	private HolidayCalendar(long[] sortedEpochDays){
+		this.holidays = sortedEpochDays;
+		int count = 0;
+		for(int i=0; i<sortedEpochDays.length; i++){
+			if(!EpochDays.isWeekend(sortedEpochDays[i])){
+				count++;
+			}
+		}
+		this.weekdayHolidays = new long[count];
+		count = 0;
+		for(int i=0; i<sortedEpochDays.length; i++){
+			if(!EpochDays.isWeekend(sortedEpochDays[i])){
+				weekdayHolidays[count++] = sortedEpochDays[i];
+			}
+		}
+	}
+
+	/**
+	 * Creates a calendar from a list of epoch days (the number of days from 1970-01-01).
+	 * The days do not need to be sorted and can contain duplicates.
+	 */
+	public static HolidayCalendar forEpochDays(long... epochDays){
+		long[] sorted = epochDays.clone();
+		Arrays.sort(sorted);
+		int count = 0;
+		for(int i=0; i<sorted.length; i++){
+			if(count==0 || sorted[count-1]!=sorted[i]){
+				sorted[count++] = sorted[i];
+			}
+		}
+		return new HolidayCalendar(count==sorted.length ? sorted : Arrays.copyOf(sorted, count));
+	}
+
+	/**
+	 * Creates a calendar from a list of dates, whose days are computed in the time zone of the evaluation context.
+	 */
+	public static HolidayCalendar forDates(Date... dates){
+		return forDates(Arrays.asList(dates));
+	}
+
+	/**
+	 * Creates a calendar from a collection of dates, whose days are computed in the time zone of the evaluation context.
+	 * Null elements are ignored.
+	 */
+	public static HolidayCalendar forDates(Collection<? extends Date> dates){
+		DateTimeZone zone = FunctionContext.getDateTimeZone();
+		long[] epochDays = new long[dates.size()];
+		int count = 0;
+		for(Date date : dates){
+			if(date!=null){
+				epochDays[count++] = toEpochDay(date.getTime(), zone);
+			}
+		}
+		return forEpochDays(count==epochDays.length ? epochDays : Arrays.copyOf(epochDays, count));
+	}
+
+	static long toEpochDay(long millis, DateTimeZone zone){
+		return EpochDays.fromLocalMillis(millis + zone.getOffset(millis));
+	}
+
+	/**
+	 * Returns the number of holidays in the calendar.
+	 */
+	public int size(){
+		return holidays.length;
+	}
+
+	/**
+	 * Returns the sorted epoch days of the holidays.
+	 */
+	public long[] getEpochDays(){
+		return holidays.clone();
+	}
+
+	/**
+	 * Checks whether the specified epoch day is a holiday.
+	 */
+	public boolean isHoliday(long epochDay){
+		return Arrays.binarySearch(holidays, epochDay)>=0;
+	}
+
+	/**
+	 * Checks whether the specified date is a holiday, using the time zone of the evaluation context.
+	 */
+	public boolean isHoliday(Date date){
+		return isHoliday(toEpochDay(date.getTime(), FunctionContext.getDateTimeZone()));
+	}
+
+	/**
+	 * Returns the number of holidays falling from Monday to Friday in the range
+	 * <code>[fromEpochDay, toEpochDay)</code>.
+	 */
+	public int countWeekdayHolidays(long fromEpochDay, long toEpochDay){
+		if(toEpochDay<=fromEpochDay || weekdayHolidays.length==0){
+			return 0;
+		}
+		return insertionPoint(weekdayHolidays, toEpochDay) - insertionPoint(weekdayHolidays, fromEpochDay);
+	}
+
+	/*
+	 * Returns the index of the first element not lower than the key.
+	 */
+	private static int insertionPoint(long[] values, long key){
+		int index = Arrays.binarySearch(values, key);
+		return index>=0 ? index : -index-1;
+	}
+
+	/**
+	 * Returns the number of working days (from Monday to Friday and not holidays) in the range
+	 * <code>[fromEpochDay, toEpochDay)</code>.
+	 */
+	public long countWorkingDays(long fromEpochDay, long toEpochDay){
+		if(toEpochDay<=fromEpochDay){
+			return 0;
+		}
+		return EpochDays.countWeekdays(fromEpochDay, toEpochDay-fromEpochDay)
+				- countWeekdayHolidays(fromEpochDay, toEpochDay);
+	}
+
+	/**
+	 * Returns the n-th working day (n starting from 1) on or after the specified epoch day.
+	 */
+	public long nthWorkingDay(long fromEpochDay, long n){
+		long day = EpochDays.nthWeekday(fromEpochDay, n);
+		int holidaysCount = 0;
+		while(true){
+			// the count only grows, and stops at the first day with n working days before
+			int count = countWeekdayHolidays(fromEpochDay, day+1);
+			if(count==holidaysCount){
+				return day;
+			}
+			holidaysCount = count;
+			day = EpochDays.nthWeekday(fromEpochDay, n+holidaysCount);
+		}
+	}
+
+}
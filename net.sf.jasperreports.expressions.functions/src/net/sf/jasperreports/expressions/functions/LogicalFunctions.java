@@ -1,10 +1,16 @@
 package net.sf.jasperreports.expressions.functions;
 
 import static net.sf.jasperreports.expressions.functions.CategoryKeys.LOGICAL;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import net.sf.jasperreports.expressions.annotations.JRExprFunction;
 import net.sf.jasperreports.expressions.annotations.JRExprFunctionCategories;
 import net.sf.jasperreports.expressions.annotations.JRExprFunctionParameter;
 import net.sf.jasperreports.expressions.annotations.JRExprFunctionParameters;
+import net.sf.jasperreports.expressions.annotations.JRExprFunctionPurity;
+import net.sf.jasperreports.expressions.annotations.JRExprLazyArgument;
 
 /**
  * This class should maintain all functions that allows logic decisions, and belong to the category {@link CategoryKeys#LOGICAL}.
@@ -12,8 +18,12 @@ import net.sf.jasperreports.expressions.annotations.JRExprFunctionParameters;
  * @author Massimo Rabbi (mrabbi@users.sourceforge.net)
  *
  */
+@JRExprFunctionPurity
 public final class LogicalFunctions {
 	
+	// mask of the indexes at which the chunks check whether an earlier chunk has already decided the result
+	private static final int SHORT_CIRCUIT_CHECK_MASK = 1023;
+	
 	// ===================== AND function ===================== //
 	@JRExprFunction(name="AND",description="Returns true if all arguments are considered true, false otherwise. " +
 			"Argument must be a logical result or a direct boolean value.")
@@ -22,6 +32,11 @@ public final class LogicalFunctions {
 		@JRExprFunctionParameter(name="Argument",description="A boolean expression or value.")})
 	public static Boolean AND(Boolean ... arguments){
 		if(arguments.length==0) return null;
+		ParallelAggregation aggregation=FunctionContext.getParallelAggregation();
+		if(aggregation.isSplit(arguments.length)){
+			int index=splitIndexOf(aggregation, arguments, false);
+			return index<0 ? true : arguments[index].booleanValue();
+		}
 		boolean result=true;
 		for(Boolean arg : arguments){
 			result=result && arg;
@@ -30,6 +45,33 @@ public final class LogicalFunctions {
 		}
 		return result;
 	}
+	
+	public static Boolean AND(Iterable<Boolean> arguments){
+		if(arguments==null) return null;
+		Boolean[] values=toSplitArray(arguments);
+		if(values!=null) return AND(values);
+		boolean empty=true;
+		for(Boolean arg : arguments){
+			// Stops at first false argument
+			if (!arg) return false;
+			empty=false;
+		}
+		return empty ? null : true;
+	}
+	
+	/*
+	 * Lazy version, the arguments following the first false one are not evaluated. 
+	 * The arguments are only read, the generic array cannot cause heap pollution (no @SafeVarargs in Java 6).
+	 */
+	@SuppressWarnings("unchecked")
+	public static Boolean AND(JRExprLazyArgument<Boolean> ... arguments){
+		if(arguments.length==0) return null;
+		for(JRExprLazyArgument<Boolean> arg : arguments){
+			// Stops at first false argument
+			if (!arg.evaluate()) return false;
+		}
+		return true;
+	}
 
 	// ===================== FALSE function ===================== //
 	@JRExprFunction(name="FALSE",description="Returns the logical value FALSE.")
@@ -67,6 +109,11 @@ public final class LogicalFunctions {
 		@JRExprFunctionParameter(name="Argument",description="A boolean expression or value.")})
 	public static Boolean OR(Boolean ... arguments){
 		if(arguments.length==0) return null;
+		ParallelAggregation aggregation=FunctionContext.getParallelAggregation();
+		if(aggregation.isSplit(arguments.length)){
+			int index=splitIndexOf(aggregation, arguments, true);
+			return index<0 ? false : arguments[index].booleanValue();
+		}
 		boolean result=false;
 		for(Boolean arg : arguments){
 			result=result || arg;
@@ -76,6 +123,33 @@ public final class LogicalFunctions {
 		return result;
 	}
 	
+	public static Boolean OR(Iterable<Boolean> arguments){
+		if(arguments==null) return null;
+		Boolean[] values=toSplitArray(arguments);
+		if(values!=null) return OR(values);
+		boolean empty=true;
+		for(Boolean arg : arguments){
+			// Stops at first true argument
+			if (arg) return true;
+			empty=false;
+		}
+		return empty ? null : false;
+	}
+	
+	/*
+	 * Lazy version, the arguments following the first true one are not evaluated. 
+	 * The arguments are only read, the generic array cannot cause heap pollution (no @SafeVarargs in Java 6).
+	 */
+	@SuppressWarnings("unchecked")
+	public static Boolean OR(JRExprLazyArgument<Boolean> ... arguments){
+		if(arguments.length==0) return null;
+		for(JRExprLazyArgument<Boolean> arg : arguments){
+			// Stops at first true argument
+			if (arg.evaluate()) return true;
+		}
+		return false;
+	}
+	
 	// ===================== IF function ===================== //
 	@JRExprFunction(name="IF",description="Returns one of two values, depending on a test condition.")
 	@JRExprFunctionCategories({LOGICAL})
@@ -88,6 +162,16 @@ public final class LogicalFunctions {
 		return test ? value1 : value2; 
 	}
 	
+	/*
+	 * Lazy version, only the returned value is evaluated. 
+	 * It is also chosen for null values, since it is more specific.
+	 */
+	public static Object IF(Boolean test, JRExprLazyArgument<?> value1, JRExprLazyArgument<?> value2){
+		if(test==null) return null;
+		JRExprLazyArgument<?> value=test ? value1 : value2;
+		return value!=null ? value.evaluate() : null; 
+	}
+	
 	// ===================== EQUALS function ===================== //
 	@JRExprFunction(name="EQUALS",description="Checks if the two specified objects are equals.")
 	@JRExprFunctionCategories({LOGICAL})
@@ -103,4 +187,44 @@ public final class LogicalFunctions {
 		}
 		return true;	// both null
 	}	
+	
+	/*
+	 * Returns the arguments of a collection large enough to be split in chunks, null otherwise.
+	 */
+	private static Boolean[] toSplitArray(Iterable<Boolean> arguments){
+		if(arguments instanceof Collection){
+			Collection<Boolean> collection=(Collection<Boolean>) arguments;
+			if(FunctionContext.getParallelAggregation().isSplit(collection.size())){
+				return collection.toArray(new Boolean[collection.size()]);
+			}
+		}
+		return null;
+	}
+	
+	/*
+	 * Returns the index of the first argument that is null or has the specified value, -1 if none.
+	 * Once an argument is found, the following chunks stop scanning.
+	 */
+	private static int splitIndexOf(ParallelAggregation aggregation, final Boolean[] arguments, final boolean value){
+		final AtomicInteger first=new AtomicInteger(Integer.MAX_VALUE);
+		aggregation.run(arguments.length, new ParallelAggregation.Chunks() {
+			public void compute(int chunk, int from, int to){
+				for (int i=from;i<to;i++){
+					if((i & SHORT_CIRCUIT_CHECK_MASK)==0 && first.get()<from){
+						return;
+					}
+					Boolean argument=arguments[i];
+					if(argument==null || argument.booleanValue()==value){
+						int current;
+						while(i<(current=first.get()) && !first.compareAndSet(current, i)){
+							// retries
+						}
+						return;
+					}
+				}
+			}
+		});
+		int index=first.get();
+		return index==Integer.MAX_VALUE ? -1 : index;
+	}
 }
@@ -0,0 +1,240 @@
+package net.sf.jasperreports.expressions.functions;
+
+import net.sf.jasperreports.expressions.annotations.JRExprAccumulator;
+
+/**
+ * Accumulators computing the <code>SUM</code>, <code>PRODUCT</code>, <code>MIN</code> and <code>MAX</code>
+ * functions of {@link MathFunctions} one value at a time, for instance over the records of a report fill.
+ *
+ * <p>
+ * Each accumulator keeps a constant amount of state and gives the same result of the function called
+ * with all the values, with two exceptions: the <code>double</code> sum is compensated as for the lists
+ * split by {@link ParallelAggregation}, and the result is <code>null</code> when no values have been added,
+ * for <code>MIN</code> and <code>MAX</code> too. The exact arithmetic is used when enabled by
+ * {@link MathFunctions#PROPERTY_EXACT_ARITHMETIC}. Null values are not allowed.
+ */
+public final class MathAccumulators {
+
+	private MathAccumulators(){
+		// Prevents instantiation
+	}
+
+	private static void checkNotNull(Number value){
+		if(value==null) throw new IllegalArgumentException("No null element are allowed");
+	}
+
+	/**
+	 * Accumulator of the <code>SUM</code> function.
+	 */
+	public static final class Sum implements JRExprAccumulator {
+
+		private final ExactArithmetic.Accumulator exact;
+		private final CompensatedSum sum;
+		private boolean empty=true;
+
+		public Sum(){
+			if(MathFunctions.isExactArithmetic()){
+				exact=new ExactArithmetic.Accumulator(0);
+				sum=null;
+			}
+			else{
+				exact=null;
+				sum=new CompensatedSum();
+			}
+		}
+
+		public void add(long value){
+			if(exact!=null) exact.add(value);
+			else sum.add(value);
+			empty=false;
+		}
+
+		public void add(double value){
+			if(exact!=null) exact.add(value);
+			else sum.add(value);
+			empty=false;
+		}
+
+		public void add(Number value){
+			checkNotNull(value);
+			if(exact!=null) exact.add(value);
+			else sum.add(value.doubleValue());
+			empty=false;
+		}
+
+		public void merge(JRExprAccumulator other){
+			Sum sumOther=(Sum) other;
+			if(sumOther.empty) return;
+			if(exact!=null) exact.add(sumOther.exact.getResult());
+			else sum.add(sumOther.sum);
+			empty=false;
+		}
+
+		public Number result(){
+			if(empty) return null;
+			return exact!=null ? exact.getResult() : sum.getResult();
+		}
+	}
+
+	/**
+	 * Accumulator of the <code>PRODUCT</code> function.
+	 */
+	public static final class Product implements JRExprAccumulator {
+
+		private final ExactArithmetic.Accumulator exact;
+		private double product=1;
+		private boolean empty=true;
+
+		public Product(){
+			exact=MathFunctions.isExactArithmetic() ? new ExactArithmetic.Accumulator(1) : null;
+		}
+
+		public void add(long value){
+			if(exact!=null) exact.multiply(value);
+			else product*=value;
+			empty=false;
+		}
+
+		public void add(double value){
+			if(exact!=null) exact.multiply(value);
+			else product*=value;
+			empty=false;
+		}
+
+		public void add(Number value){
+			checkNotNull(value);
+			if(exact!=null) exact.multiply(value);
+			else product*=value.doubleValue();
+			empty=false;
+		}
+
+		public void merge(JRExprAccumulator other){
+			Product productOther=(Product) other;
+			if(productOther.empty) return;
+			if(exact!=null) exact.multiply(productOther.exact.getResult());
+			else product*=productOther.product;
+			empty=false;
+		}
+
+		public Number result(){
+			if(empty) return null;
+			return exact!=null ? exact.getResult() : (Number) product;
+		}
+	}
+
+	/**
+	 * Accumulator of the <code>MIN</code> function.
+	 */
+	public static final class Min extends Extreme {
+
+		public Min(){
+			super(-1);
+		}
+	}
+
+	/**
+	 * Accumulator of the <code>MAX</code> function.
+	 */
+	public static final class Max extends Extreme {
+
+		public Max(){
+			super(1);
+		}
+	}
+
+	/*
+	 * Minimum (direction -1) or maximum (direction 1), comparing the values as ExactArithmetic.compare does.
+	 * The primitive values are compared without boxing them, they are boxed only when they replace the extreme.
+	 */
+	abstract static class Extreme implements JRExprAccumulator {
+
+		private final int direction;
+		private Number extreme;
+		private long longExtreme;
+		private double doubleExtreme;
+		private boolean integral;
+		private boolean big;
+		// the type shared by all the values, null if they have different types
+		private Class<?> commonType;
+
+		Extreme(int direction){
+			this.direction=direction;
+		}
+
+		public void add(long value){
+			if(extreme==null){
+				replace(Long.valueOf(value));
+				commonType=Long.class;
+				return;
+			}
+			int comparison;
+			if(integral) comparison=value<longExtreme ? -1 : (value==longExtreme ? 0 : 1);
+			else if(!big) comparison=compare(value, doubleExtreme);
+			else comparison=ExactArithmetic.compare(Long.valueOf(value), extreme);
+			if(comparison*direction>0){
+				replace(Long.valueOf(value));
+			}
+			if(commonType!=Long.class) commonType=null;
+		}
+
+		public void add(double value){
+			if(extreme==null){
+				replace(Double.valueOf(value));
+				commonType=Double.class;
+				return;
+			}
+			int comparison;
+			if(!big) comparison=compare(value, doubleExtreme);
+			else comparison=ExactArithmetic.compare(Double.valueOf(value), extreme);
+			if(comparison*direction>0){
+				replace(Double.valueOf(value));
+			}
+			if(commonType!=Double.class) commonType=null;
+		}
+
+		public void add(Number value){
+			checkNotNull(value);
+			if(extreme==null){
+				replace(value);
+				commonType=value.getClass();
+				return;
+			}
+			if(ExactArithmetic.compare(value, extreme)*direction>0){
+				replace(value);
+			}
+			if(commonType!=value.getClass()) commonType=null;
+		}
+
+		public void merge(JRExprAccumulator other){
+			Extreme extremeOther=(Extreme) other;
+			if(extremeOther.extreme==null) return;
+			if(extreme==null){
+				replace(extremeOther.extreme);
+				commonType=extremeOther.commonType;
+				return;
+			}
+			if(ExactArithmetic.compare(extremeOther.extreme, extreme)*direction>0){
+				replace(extremeOther.extreme);
+			}
+			if(commonType!=extremeOther.commonType) commonType=null;
+		}
+
+		public Number result(){
+			if(extreme==null) return null;
+			return MathFunctions.fixNumberReturnType(extreme, commonType);
+		}
+
+		private void replace(Number value){
+			extreme=value;
+			integral=ExactArithmetic.isIntegral(value);
+			big=ExactArithmetic.isBig(value);
+			longExtreme=value.longValue();
+			doubleExtreme=value.doubleValue();
+		}
+
+		private static int compare(double d1, double d2){
+			return d1<d2 ? -1 : (d1>d2 ? 1 : 0);
+		}
+	}
+
+}
@@ -1,10 +1,18 @@
 package net.sf.jasperreports.expressions.functions;
 
 import static net.sf.jasperreports.expressions.functions.CategoryKeys.MATH;
+
+import java.math.BigInteger;
+import java.util.Collection;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JRPropertiesUtil;
 import net.sf.jasperreports.expressions.annotations.JRExprFunction;
+import net.sf.jasperreports.expressions.annotations.JRExprFunctionAccumulator;
 import net.sf.jasperreports.expressions.annotations.JRExprFunctionCategories;
 import net.sf.jasperreports.expressions.annotations.JRExprFunctionParameter;
 import net.sf.jasperreports.expressions.annotations.JRExprFunctionParameters;
+import net.sf.jasperreports.expressions.annotations.JRExprFunctionPurity;
 import net.sf.jasperreports.expressions.functions.errors.JRExpressionFunctionException;
 
 /**
@@ -13,8 +21,30 @@ import net.sf.jasperreports.expressions.functions.errors.JRExpressionFunctionExc
  * @author Massimo Rabbi (mrabbi@users.sourceforge.net)
  *
  */
+@JRExprFunctionPurity
 public final class MathFunctions {
 	
+	/**
+	 * Property that, when set to <code>true</code>, makes the {@link #SUM(Number...)} and {@link #PRODUCT(Number...)}
+	 * functions (and their <code>Iterable</code> variants) use exact arithmetic, as {@link #SUM_EXACT(Number...)}
+	 * and {@link #PRODUCT_EXACT(Number...)} do. It is read once from the default JasperReports context.
+	 */
+	public static final String PROPERTY_EXACT_ARITHMETIC = "net.sf.jasperreports.expression.functions.math.exact.arithmetic";
+	
+	private static volatile Boolean exactArithmetic;
+	
+	/*
+	 * Returns whether the exact arithmetic is enabled by default.
+	 */
+	static boolean isExactArithmetic(){
+		Boolean exact=exactArithmetic;
+		if(exact==null){
+			exact=JRPropertiesUtil.getInstance(DefaultJasperReportsContext.getInstance()).getBooleanProperty(PROPERTY_EXACT_ARITHMETIC);
+			exactArithmetic=exact;
+		}
+		return exact;
+	}
+	
 	// ===================== ABS function ===================== //
 	@JRExprFunction(name="ABS",description="Returns the absolute value of a number.")
 	@JRExprFunctionParameters({
@@ -44,6 +74,52 @@ public final class MathFunctions {
 		}
 	}
 	
+	/*
+	 * Columnar version, stores the absolute values of a column into the result column 
+	 * (that can be the column itself) and returns it.
+	 */
+	public static double[] ABS(double[] column, double[] result){
+		Columns.checkResult(column.length, result.length);
+		ArrayKernels.getInstance().abs(column, result, column.length);
+		return result;
+	}
+	
+	public static long[] ABS(long[] column, long[] result){
+		Columns.checkResult(column.length, result.length);
+		ArrayKernels.getInstance().abs(column, result, column.length);
+		return result;
+	}
+	
+	public static int[] ABS(int[] column, int[] result){
+		Columns.checkResult(column.length, result.length);
+		ArrayKernels.getInstance().abs(column, result, column.length);
+		return result;
+	}
+	
+	// ===================== COMBIN function ===================== //
+	@JRExprFunction(name="COMBIN",description="Returns the number of combinations of a given number of elements, " +
+			"the binomial coefficient. The result is a Long value, or a BigInteger one when too large. " +
+			"An error is raised when the smaller of the chosen and remaining elements is more than 100000.")
+	@JRExprFunctionParameters({
+			@JRExprFunctionParameter(name="Elements",description="The number of elements."),
+			@JRExprFunctionParameter(name="Chosen elements",description="The number of elements in each combination.")})
+	@JRExprFunctionCategories({MATH})
+	public static Number COMBIN(Integer number, Integer chosenNumber){
+		if(number==null || chosenNumber==null) {
+			return null;
+		}
+		checkCombinatorics(number, chosenNumber);
+		long result=Factorials.longBinomial(number, chosenNumber);
+		if(result>=0) {
+			return result;
+		}
+		if(Math.min(chosenNumber, number-chosenNumber)>Factorials.MAX_BIG_FACTORS){
+			throw new JRExpressionFunctionException("Unable to calculate the combinations of " + chosenNumber + 
+					" elements among " + number + ", the result is too large.");
+		}
+		return Factorials.bigBinomial(number, chosenNumber);
+	}
+	
 	// ===================== FACT function ===================== //
 	@JRExprFunction(name="FACT",description="Returns the factorial of a number")
 	@JRExprFunctionParameters({
@@ -56,13 +132,28 @@ public final class MathFunctions {
 		if(number<0){
 			throw new JRExpressionFunctionException("Unable to calculate the factorial number of a negative number.");
 		}
-		else{
-	       Long result = 1l;
-	       for (int i = 1; i <= number; ++i) {
-	    	   result *= i;
-	       }
-	       return result;
+		if(number>Factorials.MAX_LONG_FACTORIAL){
+			throw new JRExpressionFunctionException("Unable to calculate the factorial number of " + number + 
+					", the result is too large for a Long value.");
 		}
+		return Factorials.longFactorial(number);
+	}
+	
+	/*
+	 * BigInteger version, for the numbers whose factorial does not fit a Long value, up to 100000. 
+	 */
+	public static BigInteger FACT(BigInteger number){
+		if(number==null) {
+			return null;
+		}
+		if(number.signum()<0){
+			throw new JRExpressionFunctionException("Unable to calculate the factorial number of a negative number.");
+		}
+		if(number.compareTo(BigInteger.valueOf(Factorials.MAX_BIG_FACTORS))>0){
+			throw new JRExpressionFunctionException("Unable to calculate the factorial number of " + number + 
+					", the result is too large.");
+		}
+		return Factorials.bigFactorial(number.intValue());
 	}
 	
 	// ===================== ISEVEN function ===================== //
@@ -95,25 +186,124 @@ public final class MathFunctions {
 		}
 	}
 	
+	// ===================== PERMUT function ===================== //
+	@JRExprFunction(name="PERMUT",description="Returns the number of permutations of a given number of elements " +
+			"chosen among a set of elements. The result is a Long value, or a BigInteger one when too large. " +
+			"An error is raised when the result does not fit a Long value and the chosen elements are more than 100000.")
+	@JRExprFunctionParameters({
+			@JRExprFunctionParameter(name="Elements",description="The number of elements."),
+			@JRExprFunctionParameter(name="Chosen elements",description="The number of elements in each permutation.")})
+	@JRExprFunctionCategories({MATH})
+	public static Number PERMUT(Integer number, Integer chosenNumber){
+		if(number==null || chosenNumber==null) {
+			return null;
+		}
+		checkCombinatorics(number, chosenNumber);
+		long result=Factorials.longPermutations(number, chosenNumber);
+		if(result>=0) {
+			return result;
+		}
+		if(chosenNumber>Factorials.MAX_BIG_FACTORS){
+			throw new JRExpressionFunctionException("Unable to calculate the permutations of " + chosenNumber + 
+					" elements among " + number + ", the result is too large.");
+		}
+		return Factorials.bigPermutations(number, chosenNumber);
+	}
+	
 	// ===================== PRODUCT function ===================== //
 	@JRExprFunction(name="PRODUCT",description="Returns the product of a list of numbers")
 	@JRExprFunctionParameters({
 			@JRExprFunctionParameter(name="Number",description="Argument")})
 	@JRExprFunctionCategories({MATH})
+	@JRExprFunctionAccumulator(MathAccumulators.Product.class)
 	public static Number PRODUCT(Number ...numbers){
 		if(numbers.length==0) return null;		
+		if(isExactArithmetic()) return ExactArithmetic.product(numbers);
+		ParallelAggregation aggregation=FunctionContext.getParallelAggregation();
+		if(aggregation.isSplit(numbers.length)) return splitProduct(aggregation, numbers);
 		double result=1;
 		for (int i=0;i<numbers.length;i++){
 			result*=numbers[i].doubleValue();
 		}
 		return result;
 	}
+	
+	public static Number PRODUCT(Iterable<? extends Number> numbers){
+		if(numbers==null) return null;
+		if(isExactArithmetic()) return ExactArithmetic.product(numbers);
+		Number[] values=toSplitArray(numbers);
+		if(values!=null) return PRODUCT(values);
+		double result=1;
+		boolean empty=true;
+		for (Number number : numbers){
+			result*=number.doubleValue();
+			empty=false;
+		}
+		return empty ? null : result;
+	}
+	
+	/*
+	 * Array versions. As the other versions, they return null when there are no numbers,
+	 * a Double otherwise, or the exact product when exact arithmetic is enabled.
+	 */
+	public static Number PRODUCT(int[] numbers){
+		if(numbers.length==0) return null;
+		if(isExactArithmetic()) return ExactArithmetic.product(numbers);
+		return ArrayKernels.getInstance().product(numbers, 0, numbers.length);
+	}
+	
+	public static Number PRODUCT(long[] numbers){
+		if(numbers.length==0) return null;
+		if(isExactArithmetic()) return ExactArithmetic.product(numbers);
+		return ArrayKernels.getInstance().product(numbers, 0, numbers.length);
+	}
+	
+	public static Number PRODUCT(double[] numbers){
+		if(numbers.length==0) return null;
+		if(isExactArithmetic()) return ExactArithmetic.product(numbers);
+		return ArrayKernels.getInstance().product(numbers, 0, numbers.length);
+	}
+	
+	// ===================== PRODUCT_EXACT function ===================== //
+	@JRExprFunction(name="PRODUCT_EXACT",description="Returns the exact product of a list of numbers, without rounding through floating point values. " +
+			"The result is a Long if all the numbers are integers and the result fits, " +
+			"a BigInteger if it does not fit, a BigDecimal if there are decimal numbers.")
+	@JRExprFunctionParameters({
+			@JRExprFunctionParameter(name="Number",description="Factor")})
+	@JRExprFunctionCategories({MATH})
+	public static Number PRODUCT_EXACT(Number ...numbers){
+		return ExactArithmetic.product(numbers);
+	}
+	
+	public static Number PRODUCT_EXACT(Iterable<? extends Number> numbers){
+		if(numbers==null) return null;
+		return ExactArithmetic.product(numbers);
+	}
 
 	// ===================== RAND function ===================== //
 	@JRExprFunction(name="RAND",description="Returns a random number between 0.0 and 1.0.")
 	@JRExprFunctionCategories({MATH})
+	@JRExprFunctionPurity(pure=false,deterministic=false)
 	public static Double RAND(){
-		return Math.random();
+		return RandomSource.current().nextDouble();
+	}
+	
+	/*
+	 * Bulk version, returns the specified number of random numbers. 
+	 */
+	public static double[] RAND(int count){
+		return RAND(new double[count]);
+	}
+	
+	/*
+	 * Columnar version, fills the result column with random numbers and returns it. 
+	 */
+	public static double[] RAND(double[] result){
+		RandomSource source=RandomSource.current();
+		for(int i=0;i<result.length;i++){
+			result[i]=source.nextDouble();
+		}
+		return result;
 	}
 	
 	// ===================== RAND function ===================== //
@@ -122,12 +312,25 @@ public final class MathFunctions {
 	@JRExprFunctionParameters({
 		@JRExprFunctionParameter(name="Bottom range",description="Integer number for the bottom range"),
 		@JRExprFunctionParameter(name="Top range",description="Integer number for the top range")})
+	@JRExprFunctionPurity(pure=false,deterministic=false)
 	public static Integer RANDBETWEEN(Integer bottomRange, Integer topRange){
-		int min=bottomRange.intValue();
-		int max=topRange.intValue();
-		return min + (int)(Math.random() * ((max - min) + 1));
+		if(bottomRange==null || topRange==null) return null;
+		checkRange(bottomRange, topRange);
+		return RandomSource.current().nextInt(bottomRange, topRange);
 	}	
 	
+	/*
+	 * Columnar version, fills the result column with random integers between the bounds (both inclusive) and returns it. 
+	 */
+	public static int[] RANDBETWEEN(int bottomRange, int topRange, int[] result){
+		checkRange(bottomRange, topRange);
+		RandomSource source=RandomSource.current();
+		for(int i=0;i<result.length;i++){
+			result[i]=source.nextInt(bottomRange, topRange);
+		}
+		return result;
+	}
+	
 	// ===================== SIGN function ===================== //
 	@JRExprFunction(name="SIGN",description="Returns the sign of a number.")
 	@JRExprFunctionParameters({
@@ -142,6 +345,15 @@ public final class MathFunctions {
 		}
 	}
 	
+	/*
+	 * Columnar version, stores the signs of a column into the result column and returns it.
+	 */
+	public static int[] SIGN(double[] column, int[] result){
+		Columns.checkResult(column.length, result.length);
+		ArrayKernels.getInstance().sign(column, result, column.length);
+		return result;
+	}
+	
 	// ===================== SQRT function ===================== //
 	@JRExprFunction(name="SQRT",description="Returns the positive square root of a number. The number must be positive")
 	@JRExprFunctionParameters({
@@ -156,13 +368,27 @@ public final class MathFunctions {
 		}
 	}
 	
+	/*
+	 * Columnar version, stores the square roots of a column into the result column 
+	 * (that can be the column itself) and returns it.
+	 */
+	public static double[] SQRT(double[] column, double[] result){
+		Columns.checkResult(column.length, result.length);
+		ArrayKernels.getInstance().sqrt(column, result, column.length);
+		return result;
+	}
+	
 	// ===================== SUM function ===================== //
 	@JRExprFunction(name="SUM",description="Returns the sum of a list of numbers")
 	@JRExprFunctionParameters({
 			@JRExprFunctionParameter(name="Number",description="Addendum")})
 	@JRExprFunctionCategories({MATH})
+	@JRExprFunctionAccumulator(MathAccumulators.Sum.class)
 	public static Number SUM(Number ...numbers){
 		if(numbers.length==0) return null;		
+		if(isExactArithmetic()) return ExactArithmetic.sum(numbers);
+		ParallelAggregation aggregation=FunctionContext.getParallelAggregation();
+		if(aggregation.isSplit(numbers.length)) return splitSum(aggregation, numbers);
 		double result=0;
 		for (int i=0;i<numbers.length;i++){
 			result+=numbers[i].doubleValue();
@@ -170,38 +396,202 @@ public final class MathFunctions {
 		return result;
 	}
 	
+	public static Number SUM(Iterable<? extends Number> numbers){
+		if(numbers==null) return null;
+		if(isExactArithmetic()) return ExactArithmetic.sum(numbers);
+		Number[] values=toSplitArray(numbers);
+		if(values!=null) return SUM(values);
+		double result=0;
+		boolean empty=true;
+		for (Number number : numbers){
+			result+=number.doubleValue();
+			empty=false;
+		}
+		return empty ? null : result;
+	}
+	
+	/*
+	 * Array versions. As the other versions, they return null when there are no numbers.
+	 * The int and long values give a Long, the double values a Double, or a BigDecimal when 
+	 * exact arithmetic is enabled. A long sum that does not fit a Long gives an error, 
+	 * or a BigInteger when exact arithmetic is enabled.
+	 */
+	public static Long SUM(int[] numbers){
+		return SUM(numbers, 0, numbers.length);
+	}
+	
+	public static Number SUM(long[] numbers){
+		return SUM(numbers, 0, numbers.length);
+	}
+	
+	public static Number SUM(double[] numbers){
+		return SUM(numbers, 0, numbers.length);
+	}
+	
+	/*
+	 * Columnar versions, sum the values in the range [from, to) of a column, 
+	 * as the array versions do (null for an empty range). 
+	 */
+	public static Long SUM(int[] column, int from, int to){
+		Columns.checkRange(column.length, from, to);
+		if(from==to) return null;
+		// less than 2^31 int values, the sum always fits a long
+		return ArrayKernels.getInstance().sum(column, from, to);
+	}
+	
+	public static Number SUM(long[] column, int from, int to){
+		Columns.checkRange(column.length, from, to);
+		if(from==to) return null;
+		try {
+			return ArrayKernels.getInstance().sum(column, from, to);
+		} catch (ArithmeticException e) {
+			if(isExactArithmetic()) return ExactArithmetic.sum(column, from, to);
+			throw new JRExpressionFunctionException("The sum of the numbers is too large for a Long value, " +
+					"exact arithmetic can be enabled for larger sums.");
+		}
+	}
+	
+	public static Number SUM(double[] column, int from, int to){
+		Columns.checkRange(column.length, from, to);
+		if(from==to) return null;
+		if(isExactArithmetic()) return ExactArithmetic.sum(column, from, to);
+		return ArrayKernels.getInstance().sum(column, from, to);
+	}
+	
+	// ===================== SUM_EXACT function ===================== //
+	@JRExprFunction(name="SUM_EXACT",description="Returns the exact sum of a list of numbers, without rounding through floating point values. " +
+			"The result is a Long if all the numbers are integers and the result fits, " +
+			"a BigInteger if it does not fit, a BigDecimal if there are decimal numbers.")
+	@JRExprFunctionParameters({
+			@JRExprFunctionParameter(name="Number",description="Addendum")})
+	@JRExprFunctionCategories({MATH})
+	public static Number SUM_EXACT(Number ...numbers){
+		return ExactArithmetic.sum(numbers);
+	}
+	
+	public static Number SUM_EXACT(Iterable<? extends Number> numbers){
+		if(numbers==null) return null;
+		return ExactArithmetic.sum(numbers);
+	}
+	
 	// ===================== MIN function ===================== //
 	@JRExprFunction(name="MIN",description="Returns the minimum of a list of numeric values.")
 	@JRExprFunctionParameters({
 		@JRExprFunctionParameter(name="Number",description="Number to compare")})
 	@JRExprFunctionCategories({MATH})
+	@JRExprFunctionAccumulator(MathAccumulators.Min.class)
 	public static Number MIN(Number ...numbers){
 		if(numbers.length==0) throw new IllegalArgumentException("No numbers have been specified");
+		ParallelAggregation aggregation=FunctionContext.getParallelAggregation();
+		if(aggregation.isSplit(numbers.length)) return splitExtreme(aggregation, numbers, -1);
 		if(!isNumberListValid(numbers)) throw new IllegalArgumentException("No null element are allowed");
-		double min= numbers[0].doubleValue();
+		Number min=numbers[0];
+		Class<?> commonType=min.getClass();
 		for (int i=1;i<numbers.length;i++){
-			if(numbers[i].doubleValue()<min){
-				min = numbers[i].doubleValue();
+			if(ExactArithmetic.compare(numbers[i], min)<0){
+				min = numbers[i];
 			}
+			commonType=commonType(commonType, numbers[i]);
 		}
-		return fixNumberReturnType(min, numbers);
+		return fixNumberReturnType(min, commonType);
 	}	
 	
+	public static Number MIN(Iterable<? extends Number> numbers){
+		if(numbers==null) throw new IllegalArgumentException("No numbers have been specified");
+		Number[] values=toSplitArray(numbers);
+		if(values!=null) return MIN(values);
+		Number min=null;
+		Class<?> commonType=null;
+		for (Number number : numbers){
+			if(number==null) throw new IllegalArgumentException("No null element are allowed");
+			if(min==null){
+				min = number;
+				commonType = number.getClass();
+			}
+			else{
+				if(ExactArithmetic.compare(number, min)<0){
+					min = number;
+				}
+				commonType=commonType(commonType, number);
+			}
+		}
+		if(min==null) throw new IllegalArgumentException("No numbers have been specified");
+		return fixNumberReturnType(min, commonType);
+	}
+	
+	public static int MIN(int[] numbers){
+		if(numbers.length==0) throw new IllegalArgumentException("No numbers have been specified");
+		return ArrayKernels.getInstance().min(numbers, 0, numbers.length);
+	}
+	
+	public static long MIN(long[] numbers){
+		if(numbers.length==0) throw new IllegalArgumentException("No numbers have been specified");
+		return ArrayKernels.getInstance().min(numbers, 0, numbers.length);
+	}
+	
+	public static double MIN(double[] numbers){
+		if(numbers.length==0) throw new IllegalArgumentException("No numbers have been specified");
+		return ArrayKernels.getInstance().min(numbers, 0, numbers.length);
+	}
+	
 	// ===================== MAX function ===================== //
 	@JRExprFunction(name="MAX",description="Returns the maximum of a list of numeric values.")
 	@JRExprFunctionParameters({
 		@JRExprFunctionParameter(name="Number",description="Number to compare")})
 	@JRExprFunctionCategories({MATH})
+	@JRExprFunctionAccumulator(MathAccumulators.Max.class)
 	public static Number MAX(Number ...numbers){
 		if(numbers.length==0) throw new IllegalArgumentException("No numbers have been specified");
+		ParallelAggregation aggregation=FunctionContext.getParallelAggregation();
+		if(aggregation.isSplit(numbers.length)) return splitExtreme(aggregation, numbers, 1);
 		if(!isNumberListValid(numbers)) throw new IllegalArgumentException("No null element are allowed");
-		double max= numbers[0].doubleValue();
+		Number max=numbers[0];
+		Class<?> commonType=max.getClass();
 		for (int i=1;i<numbers.length;i++){
-			if(numbers[i].doubleValue()>max){
-				max = numbers[i].doubleValue();
+			if(ExactArithmetic.compare(numbers[i], max)>0){
+				max = numbers[i];
 			}
+			commonType=commonType(commonType, numbers[i]);
 		}
-		return fixNumberReturnType(max, numbers);
+		return fixNumberReturnType(max, commonType);
+	}	
+	
+	public static Number MAX(Iterable<? extends Number> numbers){
+		if(numbers==null) throw new IllegalArgumentException("No numbers have been specified");
+		Number[] values=toSplitArray(numbers);
+		if(values!=null) return MAX(values);
+		Number max=null;
+		Class<?> commonType=null;
+		for (Number number : numbers){
+			if(number==null) throw new IllegalArgumentException("No null element are allowed");
+			if(max==null){
+				max = number;
+				commonType = number.getClass();
+			}
+			else{
+				if(ExactArithmetic.compare(number, max)>0){
+					max = number;
+				}
+				commonType=commonType(commonType, number);
+			}
+		}
+		if(max==null) throw new IllegalArgumentException("No numbers have been specified");
+		return fixNumberReturnType(max, commonType);
+	}
+	
+	public static int MAX(int[] numbers){
+		if(numbers.length==0) throw new IllegalArgumentException("No numbers have been specified");
+		return ArrayKernels.getInstance().max(numbers, 0, numbers.length);
+	}
+	
+	public static long MAX(long[] numbers){
+		if(numbers.length==0) throw new IllegalArgumentException("No numbers have been specified");
+		return ArrayKernels.getInstance().max(numbers, 0, numbers.length);
+	}
+	
+	public static double MAX(double[] numbers){
+		if(numbers.length==0) throw new IllegalArgumentException("No numbers have been specified");
+		return ArrayKernels.getInstance().max(numbers, 0, numbers.length);
 	}
 	
 	// ===================== FLOOR function ===================== //
@@ -215,6 +605,16 @@ public final class MathFunctions {
 		if(number == null) throw new IllegalArgumentException("The value number can not be null");
 		return Math.floor(number.doubleValue());
 	}
+	
+	/*
+	 * Columnar version, stores the floor values of a column into the result column 
+	 * (that can be the column itself) and returns it.
+	 */
+	public static double[] FLOOR(double[] column, double[] result){
+		Columns.checkResult(column.length, result.length);
+		ArrayKernels.getInstance().floor(column, result, column.length);
+		return result;
+	}
 
 	// ===================== CEIL function ===================== //
 	@JRExprFunction(name="CEIL",description="" +
@@ -228,6 +628,129 @@ public final class MathFunctions {
 		return Math.ceil(number.doubleValue());
 	}
 	
+	/*
+	 * Columnar version, stores the ceiling values of a column into the result column 
+	 * (that can be the column itself) and returns it.
+	 */
+	public static double[] CEIL(double[] column, double[] result){
+		Columns.checkResult(column.length, result.length);
+		ArrayKernels.getInstance().ceil(column, result, column.length);
+		return result;
+	}
+	
+	/*
+	 * Returns the numbers of a collection large enough to be split in chunks, null otherwise.
+	 */
+	private static Number[] toSplitArray(Iterable<? extends Number> numbers){
+		if(numbers instanceof Collection){
+			Collection<? extends Number> collection=(Collection<? extends Number>) numbers;
+			if(FunctionContext.getParallelAggregation().isSplit(collection.size())){
+				return collection.toArray(new Number[collection.size()]);
+			}
+		}
+		return null;
+	}
+	
+	/*
+	 * Compensated sum of the chunks, added in their order.
+	 */
+	private static Number splitSum(ParallelAggregation aggregation, final Number[] numbers){
+		final CompensatedSum[] sums=new CompensatedSum[ParallelAggregation.getChunkCount(numbers.length)];
+		aggregation.run(numbers.length, new ParallelAggregation.Chunks() {
+			public void compute(int chunk, int from, int to){
+				CompensatedSum sum=new CompensatedSum();
+				for (int i=from;i<to;i++){
+					sum.add(numbers[i].doubleValue());
+				}
+				sums[chunk]=sum;
+			}
+		});
+		CompensatedSum result=new CompensatedSum();
+		for (int i=0;i<sums.length;i++){
+			result.add(sums[i]);
+		}
+		return result.getResult();
+	}
+	
+	/*
+	 * Product of the chunks, multiplied in their order.
+	 */
+	private static Number splitProduct(ParallelAggregation aggregation, final Number[] numbers){
+		final double[] products=new double[ParallelAggregation.getChunkCount(numbers.length)];
+		aggregation.run(numbers.length, new ParallelAggregation.Chunks() {
+			public void compute(int chunk, int from, int to){
+				double product=1;
+				for (int i=from;i<to;i++){
+					product*=numbers[i].doubleValue();
+				}
+				products[chunk]=product;
+			}
+		});
+		double result=1;
+		for (int i=0;i<products.length;i++){
+			result*=products[i];
+		}
+		return result;
+	}
+	
+	/*
+	 * Minimum (direction -1) or maximum (direction 1) of the chunks, compared in their order
+	 * so that the first of equal numbers is returned, as done by MIN and MAX.
+	 */
+	private static Number splitExtreme(ParallelAggregation aggregation, final Number[] numbers, final int direction){
+		int chunkCount=ParallelAggregation.getChunkCount(numbers.length);
+		final Number[] extremes=new Number[chunkCount];
+		final Class<?>[] commonTypes=new Class<?>[chunkCount];
+		aggregation.run(numbers.length, new ParallelAggregation.Chunks() {
+			public void compute(int chunk, int from, int to){
+				if(numbers[from]==null) throw new IllegalArgumentException("No null element are allowed");
+				Number extreme=numbers[from];
+				Class<?> commonType=extreme.getClass();
+				for (int i=from+1;i<to;i++){
+					if(numbers[i]==null) throw new IllegalArgumentException("No null element are allowed");
+					if(ExactArithmetic.compare(numbers[i], extreme)*direction>0){
+						extreme=numbers[i];
+					}
+					commonType=commonType(commonType, numbers[i]);
+				}
+				extremes[chunk]=extreme;
+				commonTypes[chunk]=commonType;
+			}
+		});
+		Number extreme=extremes[0];
+		Class<?> commonType=commonTypes[0];
+		for (int i=1;i<chunkCount;i++){
+			if(ExactArithmetic.compare(extremes[i], extreme)*direction>0){
+				extreme=extremes[i];
+			}
+			if(commonTypes[i]!=commonType){
+				commonType=null;
+			}
+		}
+		return fixNumberReturnType(extreme, commonType);
+	}
+	
+	/*
+	 * Checks the arguments of the COMBIN and PERMUT functions.
+	 */
+	private static void checkCombinatorics(int number, int chosenNumber){
+		if(number<0 || chosenNumber<0){
+			throw new JRExpressionFunctionException("Unable to calculate the combinatorics of negative numbers.");
+		}
+		if(chosenNumber>number){
+			throw new JRExpressionFunctionException("The chosen elements " + chosenNumber + " are more than the elements " + number + ".");
+		}
+	}
+	
+	/*
+	 * Checks the bounds of the RANDBETWEEN function.
+	 */
+	private static void checkRange(int bottomRange, int topRange){
+		if(bottomRange>topRange){
+			throw new JRExpressionFunctionException("The bottom range " + bottomRange + " is greater than the top range " + topRange + ".");
+		}
+	}
+	
 	/*
 	 * Checks if the array of numbers is valid. 
 	 * No null element must be contained.
@@ -240,26 +763,22 @@ public final class MathFunctions {
 	}
 	
 	/*
-	 * Fixes the return type for the numeric result value.
+	 * Fixes the return type for the numeric result value, given the type shared by
+	 * all the numbers (null if they have different types): the value is returned as is
+	 * if all the numbers have the same type, otherwise it is converted to a Double
+	 * (unless exact arithmetic is enabled).
 	 */
-	private static Number fixNumberReturnType(Number returnValue, Number ...numbers){
-		if(haveSameType(Integer.class, numbers)) return returnValue.intValue();
-		if(haveSameType(Long.class, numbers)) return returnValue.intValue();
-		if(haveSameType(Float.class, numbers)) return returnValue.intValue();
+	static Number fixNumberReturnType(Number returnValue, Class<?> commonType){
+		if(commonType!=null || isExactArithmetic()) return returnValue;
 		return returnValue.doubleValue();
 	}
 	
 	/*
-	 * Checks if the list of generic numbers have all the same type.
+	 * Returns the type shared by the numbers seen so far and the next one,
+	 * null if they do not have all the same type.
 	 */
-	private static boolean haveSameType(
-			Class<? extends Number> clazz, Number ...numbers){
-		for(int i=0; i<numbers.length; i++){
-			if(numbers[i].getClass() != clazz){
-				return false;
-			}
-		}
-		return true;
+	private static Class<?> commonType(Class<?> currentType, Number number){
+		return number.getClass()==currentType ? currentType : null;
 	}
 	
 	
@@ -0,0 +1,259 @@
+package net.sf.jasperreports.expressions.functions;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JRPropertiesUtil;
+import net.sf.jasperreports.engine.JasperReportsContext;
+import net.sf.jasperreports.expressions.functions.errors.JRExpressionFunctionException;
+
+/**
+ * Splits the aggregation of large lists of values, like the ones done by the <code>SUM</code>,
+ * <code>PRODUCT</code>, <code>MIN</code>, <code>MAX</code>, <code>AND</code>, <code>OR</code>
+ * and <code>CONCATENATE</code> functions, among several threads.
+ *
+ * <p>
+ * Lists with at least {@link #getThreshold()} values are split into chunks of {@link #CHUNK_SIZE} values,
+ * which are processed by the calling thread and by the threads of a pool shared by all the
+ * functions. The chunks do not depend on the number of threads, and the functions combine the results
+ * of the chunks in their order, so the results do not depend on the number of threads nor on their scheduling.
+ *
+ * <p>
+ * The threshold and the number of threads are read from the properties of a {@link JasperReportsContext},
+ * each context has its own pool. The functions use the instance of the context specified by the
+ * {@link net.sf.jasperreports.expressions.annotations.JRExprEvaluationContext} bound to the current thread,
+ * or the one of the default context. The pool threads are daemon threads, they are stopped when not used for a minute.
+ */
+public final class ParallelAggregation {
+
+	/**
+	 * Property specifying the minimum number of values for which the aggregations are split in chunks
+	 * (100000 by default).
+	 */
+	public static final String PROPERTY_THRESHOLD = "net.sf.jasperreports.expression.functions.parallel.threshold";
+
+	/**
+	 * Property specifying the number of threads, including the calling one, that process the chunks
+	 * of an aggregation. It is the number of available processors by default, 1 disables the pool.
+	 */
+	public static final String PROPERTY_THREADS = "net.sf.jasperreports.expression.functions.parallel.threads";
+
+	/**
+	 * Number of values of each chunk.
+	 */
+	public static final int CHUNK_SIZE = 8192;
+
+	private static final int DEFAULT_THRESHOLD = 100000;
+
+	private static final long KEEP_ALIVE_SECONDS = 60;
+
+	private static final Map<JasperReportsContext, ParallelAggregation> INSTANCES = new WeakHashMap<JasperReportsContext, ParallelAggregation>();
+
+	private static volatile ParallelAggregation defaultInstance;
+
+	private final int threshold;
+	private final int threads;
+	private ExecutorService executor;
+
+	private ParallelAggregation(int threshold, int threads){
+		this.threshold = threshold;
+		this.threads = threads;
+	}
+
+	/**
+	 * Returns the instance configured by the properties of a context.
+	 * The instance is created by the first call for the context, later changes of its properties are not seen.
+	 */
+	public static ParallelAggregation getInstance(JasperReportsContext context){
+		synchronized (INSTANCES) {
+			ParallelAggregation aggregation = INSTANCES.get(context);
+			if(aggregation==null){
+				JRPropertiesUtil properties = JRPropertiesUtil.getInstance(context);
+				int threshold = getIntegerProperty(properties, PROPERTY_THRESHOLD, DEFAULT_THRESHOLD);
+				int threads = getIntegerProperty(properties, PROPERTY_THREADS, Runtime.getRuntime().availableProcessors());
+				aggregation = new ParallelAggregation(Math.max(1, threshold), Math.max(1, threads));
+				INSTANCES.put(context, aggregation);
+			}
+			return aggregation;
+		}
+	}
+
+	/**
+	 * Returns the instance used by the functions when the evaluation context does not specify a
+	 * {@link JasperReportsContext}, configured by the default context.
+	 * The instance is kept once created, later changes of the properties are not seen.
+	 */
+	public static ParallelAggregation getDefault(){
+		ParallelAggregation aggregation = defaultInstance;
+		if(aggregation==null){
+			aggregation = getInstance(DefaultJasperReportsContext.getInstance());
+			defaultInstance = aggregation;
+		}
+		return aggregation;
+	}
+
+	private static int getIntegerProperty(JRPropertiesUtil properties, String name, int defaultValue){
+		String value = properties.getProperty(name);
+		if(value==null || value.trim().length()==0){
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new JRExpressionFunctionException("Invalid value " + value + " for the property " + name);
+		}
+	}
+
+	public int getThreshold(){
+		return threshold;
+	}
+
+	public int getThreads(){
+		return threads;
+	}
+
+	/**
+	 * Returns whether a list of values should be split in chunks.
+	 */
+	public boolean isSplit(int length){
+		return length>=threshold;
+	}
+
+	/**
+	 * Returns the number of chunks of a list of values.
+	 */
+	public static int getChunkCount(int length){
+		return (length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+	}
+
+	/**
+	 * Processes all the chunks of a list of values, and returns when all of them have been processed.
+	 * An exception thrown by a chunk is thrown by this method, once the chunks being processed are completed.
+	 */
+	public void run(final int length, final Chunks chunks){
+		final int chunkCount = getChunkCount(length);
+		final AtomicInteger nextChunk = new AtomicInteger();
+		Runnable worker = new Runnable() {
+			public void run(){
+				int chunk;
+				while((chunk=nextChunk.getAndIncrement())<chunkCount){
+					int from = chunk*CHUNK_SIZE;
+					chunks.compute(chunk, from, Math.min(length, from + CHUNK_SIZE));
+				}
+			}
+		};
+		Helper[] helpers = new Helper[Math.max(0, Math.min(threads, chunkCount) - 1)];
+		for(int i=0; i<helpers.length; i++){
+			helpers[i] = new Helper(worker);
+			helpers[i].future = getExecutor().submit(helpers[i]);
+		}
+		Throwable failure = null;
+		try {
+			worker.run();
+		} catch (RuntimeException e) {
+			failure = e;
+		} catch (Error e) {
+			failure = e;
+		}
+		// no other chunk is started after a failure
+		nextChunk.set(chunkCount);
+		for(Helper helper : helpers){
+			// the helpers not yet started have nothing left to do, this also avoids waiting
+			// for a pool busy with other aggregations (for instance when nested)
+			if(!helper.claim()){
+				try {
+					helper.future.get();
+				} catch (ExecutionException e) {
+					if(failure==null){
+						failure = e.getCause();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new JRExpressionFunctionException(e);
+				}
+			}
+		}
+		if(failure instanceof RuntimeException){
+			throw (RuntimeException) failure;
+		}
+		else if(failure instanceof Error){
+			throw (Error) failure;
+		}
+		else if(failure!=null){
+			throw new JRExpressionFunctionException(failure);
+		}
+	}
+
+	private synchronized ExecutorService getExecutor(){
+		if(executor==null){
+			// the calling thread processes chunks too
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(threads-1, threads-1,
+					KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new AggregationThreadFactory());
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+		}
+		return executor;
+	}
+
+	/**
+	 * Computes the partial results of the chunks of a list of values.
+	 */
+	public interface Chunks {
+
+		/**
+		 * Computes the partial result of the values in the range <code>[from, to)</code>.
+		 * The method is called by several threads at once, for different chunks.
+		 */
+		void compute(int chunk, int from, int to);
+
+	}
+
+	/*
+	 * Runs the worker in a pool thread, unless claimed by the calling thread before starting.
+	 */
+	private static final class Helper implements Runnable {
+
+		private final Runnable worker;
+		private final AtomicBoolean started = new AtomicBoolean();
+		private Future<?> future;
+
+		Helper(Runnable worker){
+			this.worker = worker;
+		}
+
+		public void run(){
+			if(claim()){
+				worker.run();
+			}
+		}
+
+		boolean claim(){
+			return started.compareAndSet(false, true);
+		}
+	}
+
+	private static final class AggregationThreadFactory implements ThreadFactory {
+
+		private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+		private final int poolNumber = POOL_NUMBER.incrementAndGet();
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		public Thread newThread(Runnable runnable){
+			Thread thread = new Thread(runnable, "jr-expression-functions-aggregation-" + poolNumber + "-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
@@ -0,0 +1,135 @@
+package net.sf.jasperreports.expressions.functions;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sf.jasperreports.expressions.annotations.JRExprEvaluationContext;
+
+/**
+ * Random numbers used by the <code>RAND</code> and <code>RANDBETWEEN</code> functions.
+ *
+ * <p>
+ * Each thread draws from its own stream, so that threads filling reports in parallel do not contend
+ * on a shared generator as they do with <code>Math.random()</code>. The streams use the SplitMix64 algorithm
+ * (the one of <code>java.util.SplittableRandom</code>, not available in Java 6).
+ *
+ * <p>
+ * By default the streams are seeded from the clock and give different numbers on each run.
+ * When a seed is set by {@link #setSeed(JRExprEvaluationContext, long)}, the streams used while the
+ * {@link JRExprEvaluationContext} is bound are derived from it, so that a report filled by a single thread
+ * gets the same numbers on each run, for instance to generate test data.
+ */
+public final class RandomSource {
+
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+
+	// key of the seeded root stream cached in the evaluation context
+	private static final Object ROOT_KEY = new Object();
+
+	// source of the seeds of the streams that are not seeded explicitly
+	private static final AtomicLong SEEDER = new AtomicLong(mix64(System.currentTimeMillis()) ^ mix64(System.nanoTime()));
+
+	private static final ThreadLocal<RandomSource> THREAD_SOURCES = new ThreadLocal<RandomSource>(){
+		@Override
+		protected RandomSource initialValue(){
+			return createFree();
+		}
+	};
+
+	// the root stream this stream is derived from, null for a stream seeded from the clock
+	private final Root root;
+	private long seed;
+
+	private RandomSource(Root root, long seed){
+		this.root=root;
+		this.seed=seed;
+	}
+
+	/**
+	 * Sets the seed of the random numbers generated while an evaluation context is bound.
+	 *
+	 * @throws IllegalStateException if the context already has a different seed
+	 */
+	public static void setSeed(JRExprEvaluationContext context, long seed){
+		Root root=new Root(seed);
+		Root contextRoot=(Root) context.cache(ROOT_KEY, root);
+		if(contextRoot!=root && contextRoot.initialSeed!=seed){
+			throw new IllegalStateException("The random seed of the evaluation context is already set");
+		}
+	}
+
+	/**
+	 * Returns the stream of the current thread, not to be shared with other threads.
+	 */
+	static RandomSource current(){
+		RandomSource source=THREAD_SOURCES.get();
+		JRExprEvaluationContext context=JRExprEvaluationContext.getCurrent();
+		Root contextRoot=context==null ? null : (Root) context.getCached(ROOT_KEY);
+		if(source.root!=contextRoot){
+			source=contextRoot==null ? createFree() : new RandomSource(contextRoot, contextRoot.split());
+			THREAD_SOURCES.set(source);
+		}
+		return source;
+	}
+
+	private static RandomSource createFree(){
+		return new RandomSource(null, mix64(SEEDER.getAndAdd(GOLDEN_GAMMA)));
+	}
+
+	long nextLong(){
+		seed+=GOLDEN_GAMMA;
+		return mix64(seed);
+	}
+
+	/**
+	 * Returns a number uniformly distributed in <code>[0, 1)</code>.
+	 */
+	double nextDouble(){
+		return (nextLong()>>>11)*DOUBLE_UNIT;
+	}
+
+	/**
+	 * Returns an integer uniformly distributed between the bounds, both inclusive.
+	 */
+	int nextInt(int bottom, int top){
+		// at most 2^32 values, so the range fits a positive long
+		long range=(long) top-bottom+1;
+		long mask=range-1;
+		long r=nextLong()>>>1;
+		if((range&mask)==0){
+			r&=mask;
+		}
+		else{
+			// rejects the values of the last incomplete range, that would make some results more likely
+			for(long u=r; u+mask-(r=u%range)<0; u=nextLong()>>>1);
+		}
+		return (int) (bottom+r);
+	}
+
+	private static long mix64(long z){
+		z=(z^(z>>>30))*0xbf58476d1ce4e5b9L;
+		z=(z^(z>>>27))*0x94d049bb133111ebL;
+		return z^(z>>>31);
+	}
+
+	/*
+	 * Seeded stream of an evaluation context, giving the seeds of the streams of the threads.
+	 */
+	private static final class Root {
+
+		private final long initialSeed;
+		private long seed;
+
+		Root(long initialSeed){
+			this.initialSeed=initialSeed;
+			this.seed=initialSeed;
+		}
+
+		synchronized long split(){
+			seed+=GOLDEN_GAMMA;
+			return mix64(seed);
+		}
+	}
+
+}
@@ -0,0 +1,101 @@
+package net.sf.jasperreports.expressions.functions;
+
+import java.io.IOException;
+
+import net.sf.jasperreports.expressions.functions.errors.JRExpressionFunctionException;
+
+/**
+ * Support for the text functions that build their result, either in a new buffer
+ * or in an <code>Appendable</code> received from the caller.
+ *
+ * <p>
+ * The functions compute the length of the result before building it, so that the new buffers
+ * are created with their final capacity and never grow. Nested functions can append into the
+ * buffer of the enclosing one, without creating the intermediate strings.
+ */
+final class TextBuilder {
+
+	// the text appended for a null string
+	private static final int NULL_LENGTH = 4;
+
+	private TextBuilder(){
+		// Prevents instantiation
+	}
+
+	/**
+	 * Creates a buffer for a text of the specified length.
+	 */
+	static StringBuilder create(long length){
+		if(length>Integer.MAX_VALUE){
+			throw new JRExpressionFunctionException("Unable to create a text of " + length + " characters.");
+		}
+		return new StringBuilder((int) Math.max(0, length));
+	}
+
+	/**
+	 * Returns the number of characters appended for a string, <code>null</code> included.
+	 */
+	static int length(String text){
+		return text==null ? NULL_LENGTH : text.length();
+	}
+
+	static <T extends Appendable> T append(T out, CharSequence text){
+		if(out instanceof StringBuilder){
+			((StringBuilder) out).append(text);
+			return out;
+		}
+		try {
+			out.append(text);
+		} catch (IOException e) {
+			throw new JRExpressionFunctionException(e);
+		}
+		return out;
+	}
+
+	static <T extends Appendable> T append(T out, CharSequence text, int start, int end){
+		if(out instanceof StringBuilder){
+			((StringBuilder) out).append(text, start, end);
+			return out;
+		}
+		try {
+			out.append(text, start, end);
+		} catch (IOException e) {
+			throw new JRExpressionFunctionException(e);
+		}
+		return out;
+	}
+
+	static <T extends Appendable> T append(T out, char c){
+		if(out instanceof StringBuilder){
+			((StringBuilder) out).append(c);
+			return out;
+		}
+		try {
+			out.append(c);
+		} catch (IOException e) {
+			throw new JRExpressionFunctionException(e);
+		}
+		return out;
+	}
+
+	/**
+	 * Appends a text the specified number of times, nothing if the number is not positive.
+	 */
+	static <T extends Appendable> T repeat(T out, CharSequence text, int count){
+		for(int i=0;i<count;i++){
+			append(out, text);
+		}
+		return out;
+	}
+
+	/**
+	 * Appends a character the specified number of times, nothing if the number is not positive.
+	 */
+	static <T extends Appendable> T repeat(T out, char c, int count){
+		for(int i=0;i<count;i++){
+			append(out, c);
+		}
+		return out;
+	}
+
+}
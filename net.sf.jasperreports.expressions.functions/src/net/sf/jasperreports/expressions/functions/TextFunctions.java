@@ -3,14 +3,16 @@ package net.sf.jasperreports.expressions.functions;
 import static net.sf.jasperreports.expressions.functions.CategoryKeys.TEXT;
 
 import java.text.DecimalFormat;
-import java.text.NumberFormat;
-import java.util.regex.Matcher;
+import java.text.DecimalFormatSymbols;
+import java.util.Collection;
+import java.util.Locale;
 import java.util.regex.Pattern;
 
 import net.sf.jasperreports.expressions.annotations.JRExprFunction;
 import net.sf.jasperreports.expressions.annotations.JRExprFunctionCategories;
 import net.sf.jasperreports.expressions.annotations.JRExprFunctionParameter;
 import net.sf.jasperreports.expressions.annotations.JRExprFunctionParameters;
+import net.sf.jasperreports.expressions.annotations.JRExprFunctionPurity;
 import net.sf.jasperreports.expressions.functions.errors.JRExpressionFunctionException;
 
 /**
@@ -19,8 +21,84 @@ import net.sf.jasperreports.expressions.functions.errors.JRExpressionFunctionExc
  * @author Massimo Rabbi (mrabbi@users.sourceforge.net)
  *
  */
+@JRExprFunctionPurity
 public final class TextFunctions {
 	
+	private static final FormatCache<FormatCache.Key, DecimalFormat> NUMBER_FORMATS = 
+			new FormatCache<FormatCache.Key, DecimalFormat>() {
+				@Override
+				protected DecimalFormat createFormat(FormatCache.Key key){
+					return new DecimalFormat(key.getPattern(), DecimalFormatSymbols.getInstance(key.getLocale()));
+				}
+			};
+	
+	private static final int FIXED_OMIT_SEPARATORS = 1;
+	
+	private static final FormatCache<FormatCache.Key, DecimalFormat> FIXED_FORMATS = 
+			new FormatCache<FormatCache.Key, DecimalFormat>() {
+				@Override
+				protected DecimalFormat createFormat(FormatCache.Key key){
+					// Pattern samples:
+					// 123456.789	###,###.###	123,456.789
+					// 123456.789	###.##	123456.79
+					// 123.78	000000.000	000123.780
+					int decimals=key.getOptions()>>1;
+					StringBuilder patternBuf=new StringBuilder(8+decimals);
+					patternBuf.append("###");
+					if((key.getOptions() & FIXED_OMIT_SEPARATORS)==0){
+						patternBuf.append(",###");
+					}
+					patternBuf.append(".");
+					for(int i=0;i<decimals;i++){
+						patternBuf.append("0");
+					}
+					return new DecimalFormat(patternBuf.toString(), DecimalFormatSymbols.getInstance(key.getLocale()));
+				}
+			};
+	
+	/**
+	 * Returns the cache of the formatters used by the {@link #TEXT(Number, String)} function,
+	 * exposing the hit and miss counters.
+	 */
+	public static FormatCache<FormatCache.Key, DecimalFormat> getTextFormatCache(){
+		return NUMBER_FORMATS;
+	}
+	
+	/**
+	 * Returns the cache of the formatters used by the {@link #FIXED(Number, Integer, Boolean)} function,
+	 * exposing the hit and miss counters.
+	 */
+	public static FormatCache<FormatCache.Key, DecimalFormat> getFixedFormatCache(){
+		return FIXED_FORMATS;
+	}
+	
+	private static final FormatCache<FormatCache.Key, Pattern> REGEX_PATTERNS = 
+			new FormatCache<FormatCache.Key, Pattern>(FormatCache.DEFAULT_MAX_SIZE, true) {
+				@Override
+				protected Pattern createFormat(FormatCache.Key key){
+					return Pattern.compile(key.getPattern(), key.getOptions());
+				}
+			};
+	
+	/**
+	 * Returns the cache of the compiled regular expressions, shared by all the threads,
+	 * exposing the hit and miss counters.
+	 */
+	public static FormatCache<FormatCache.Key, Pattern> getRegexCache(){
+		return REGEX_PATTERNS;
+	}
+	
+	/**
+	 * Returns the compiled regular expression, from the cache of the functions that
+	 * receive the expression as argument.
+	 * 
+	 * @param regex the regular expression
+	 * @param flags the {@link Pattern} match flags
+	 */
+	public static Pattern getRegex(String regex, int flags){
+		return REGEX_PATTERNS.getFormat(new FormatCache.Key(null, regex, flags));
+	}
+	
 	private static final int BASE_MIN_RADIX=2;
 	private static final int BASE_MAX_RADIX=36;
 
@@ -44,8 +122,21 @@ public final class TextFunctions {
 
 	public static String BASE(Integer number, Integer radix, Integer minlength){
 		if (number==null || radix==null || minlength==null) return null;
-		String spacePaddedStr = String.format("%"+minlength+"s",BASE(number, radix));
-		return spacePaddedStr.replace(' ', '0');
+		String text=BASE(number, radix);
+		if(text==null) return null;
+		long length=Math.abs((long) minlength);
+		if(length<=text.length()) return text;
+		return appendPadded(TextBuilder.create(length), text, minlength).toString();
+	}
+	
+	/*
+	 * Appends the text to the specified buffer and returns it, null (nothing appended) if the text is null.
+	 */
+	public static <T extends Appendable> T BASE(T out, Integer number, Integer radix, Integer minlength){
+		if (number==null || radix==null || minlength==null) return null;
+		String text=BASE(number, radix);
+		if(text==null) return null;
+		return appendPadded(out, text, minlength);
 	}
 
 	// ===================== CHAR function ===================== //
@@ -70,8 +161,21 @@ public final class TextFunctions {
 		if(text==null){
 			return null;
 		}
-		String cleanedString = text.replaceAll("\\p{Cntrl}", "");
-		return cleanedString;
+		int length=text.length();
+		int i=0;
+		while(i<length && !isControl(text.charAt(i))){
+			i++;
+		}
+		if(i==length) return text;
+		StringBuilder sb=new StringBuilder(length-1);
+		sb.append(text, 0, i);
+		for (i++;i<length;i++){
+			char c=text.charAt(i);
+			if(!isControl(c)){
+				sb.append(c);
+			}
+		}
+		return sb.toString();
 	}
 
 	// ===================== CODE function ===================== //
@@ -95,11 +199,45 @@ public final class TextFunctions {
 			@JRExprFunctionParameter(name="Text",description="The string containing the character to convert.")})
 	public static String CONCATENATE(String ...strings){
 		if(strings.length==0) return null;
-		StringBuffer sb=new StringBuffer();
+		ParallelAggregation aggregation=FunctionContext.getParallelAggregation();
+		if(aggregation.isSplit(strings.length)) return splitConcatenate(aggregation, strings);
+		return CONCATENATE(TextBuilder.create(concatenatedLength(strings, 0, strings.length)), strings).toString();
+	}
+	
+	/*
+	 * Appends the strings to the specified buffer and returns it, null (nothing appended) if there are no strings.
+	 */
+	public static <T extends Appendable> T CONCATENATE(T out, String ...strings){
+		if(strings.length==0) return null;
 		for (int i=0;i<strings.length;i++){
-			sb.append(strings[i]);
+			TextBuilder.append(out, strings[i]);
 		}
-		return sb.toString();
+		return out;
+	}
+	
+	public static String CONCATENATE(Iterable<String> strings){
+		if(strings==null) return null;
+		StringBuilder sb;
+		if(strings instanceof Collection){
+			Collection<String> collection=(Collection<String>) strings;
+			if(FunctionContext.getParallelAggregation().isSplit(collection.size())){
+				return CONCATENATE(collection.toArray(new String[collection.size()]));
+			}
+			long length=0;
+			for (String string : collection){
+				length+=TextBuilder.length(string);
+			}
+			sb=TextBuilder.create(length);
+		}
+		else{
+			sb=new StringBuilder();
+		}
+		boolean empty=true;
+		for (String string : strings){
+			sb.append(string);
+			empty=false;
+		}
+		return empty ? null : sb.toString();
 	}
 	
 	// ===================== CONCATENATE function ===================== //
@@ -119,6 +257,15 @@ public final class TextFunctions {
 			return null;
 		}
 	}
+	
+	/*
+	 * CharSequence version, compares the characters of texts of any type.
+	 */
+	public static Boolean EXACT(CharSequence text1, CharSequence text2){
+		if(text1==null && text2==null) return null;
+		if(text1==null || text2==null) return false;
+		return TextView.contentEquals(text1, text2);
+	}
 
 	// ===================== DOUBLE_VALUE function ===================== //
 	@JRExprFunction(name="DOUBLE_VALUE", description="Returns a Double number representing the given text string.")
@@ -147,6 +294,18 @@ public final class TextFunctions {
 		return position;
 	}
 	
+	/*
+	 * CharSequence versions, search texts of any type without converting them to strings.
+	 */
+	public static Integer FIND(CharSequence findText, CharSequence searchText){
+		return FIND(findText, searchText, 0);
+	}
+	
+	public static Integer FIND(CharSequence findText, CharSequence searchText, Integer startPosition){
+		if(findText==null || searchText==null || startPosition==null) return null;
+		return TextView.indexOf(findText, searchText, startPosition);
+	}
+	
 	// ===================== FIXED function ===================== //
 	@JRExprFunction(name="FIXED", description="Returns the text representing number with the specified decimal places.")
 	@JRExprFunctionCategories({TEXT})
@@ -154,28 +313,27 @@ public final class TextFunctions {
 			@JRExprFunctionParameter(name="Number",description="The number to print out."),
 			@JRExprFunctionParameter(name="Decimals",description="The number of decimal places."),
 			@JRExprFunctionParameter(name="Omit separators",description="The flag to specify if the thousands separators shoud be included or not.")})
+	@JRExprFunctionPurity(deterministic=false)
 	public static String FIXED(Number number, Integer decimals){
 		return FIXED(number, decimals,false);
 	}
 
 	public static String FIXED(Number number, Integer decimals, Boolean omitSeparators){
 		if(number==null || decimals==null || omitSeparators==null) return null;
-		// Pattern samples:
-		// 123456.789	###,###.###	123,456.789
-		// 123456.789	###.##	123456.79
-		// 123.78	000000.000	000123.780
-		StringBuffer patternBuf=new StringBuffer("###");
-		if(!omitSeparators){
-			patternBuf.append(",###");
-		}
-		patternBuf.append(".");
-		for(int i=0;i<decimals;i++){
-			patternBuf.append("0");
-		}
-		DecimalFormat myFormatter = new DecimalFormat(patternBuf.toString());
+		int options=(Math.max(decimals, 0)<<1) | (omitSeparators ? FIXED_OMIT_SEPARATORS : 0);
+		DecimalFormat myFormatter = FIXED_FORMATS.getFormat(new FormatCache.Key(FunctionContext.getLocale(), null, options));
 	    return myFormatter.format(number);
 	}
 	
+	/*
+	 * Appends the formatted number to the specified buffer and returns it, null (nothing appended) if any argument is null.
+	 */
+	public static <T extends Appendable> T FIXED(T out, Number number, Integer decimals, Boolean omitSeparators){
+		String text=FIXED(number, decimals, omitSeparators);
+		if(text==null) return null;
+		return TextBuilder.append(out, text);
+	}
+	
 	// ===================== FLOAT_VALUE function ===================== //
 	@JRExprFunction(name="FLOAT_VALUE", description="Returns a Float number representing the given text string.")
 	@JRExprFunctionCategories({TEXT})
@@ -211,6 +369,18 @@ public final class TextFunctions {
 		return text.substring(0,charactersNum);
 	}
 	
+	/*
+	 * CharSequence versions, return a view of the characters of the text instead of copying them.
+	 */
+	public static CharSequence LEFT(CharSequence text){
+		return LEFT(text,1);
+	}
+	
+	public static CharSequence LEFT(CharSequence text, Integer charactersNum){
+		if(text==null || charactersNum==null) return null;
+		return TextView.slice(text,0,charactersNum);
+	}
+	
 	// ===================== LEN function ===================== //
 	@JRExprFunction(name="LEN", description="Returns the length of the specified text string.")
 	@JRExprFunctionCategories({TEXT})
@@ -220,6 +390,11 @@ public final class TextFunctions {
 		if(text==null) return null;
 		return text.length();
 	}
+	
+	public static Integer LEN(CharSequence text){
+		if(text==null) return null;
+		return text.length();
+	}
 
 	// ===================== LONG_VALUE function ===================== //
 	@JRExprFunction(name="LONG_VALUE", description="Returns a Long number representing the given text string.")
@@ -236,9 +411,18 @@ public final class TextFunctions {
 	@JRExprFunctionCategories({TEXT})
 	@JRExprFunctionParameters({
 			@JRExprFunctionParameter(name="Text",description="The input text string.")})
+	@JRExprFunctionPurity(deterministic=false)
 	public static String LOWER(String text){
 		if(text==null) return null;
-		return text.toLowerCase();
+		return text.toLowerCase(FunctionContext.getLocale());
+	}
+	
+	/*
+	 * CharSequence version, creates a single string for any type of text.
+	 */
+	public static String LOWER(CharSequence text){
+		if(text==null) return null;
+		return TextView.toCase(text, false);
 	}
 
 	// ===================== LTRIM function ===================== //
@@ -248,7 +432,11 @@ public final class TextFunctions {
 			@JRExprFunctionParameter(name="Text",description="The text string to be trimmed.")})
 	public static String LTRIM(String text){
 		if(text==null) return null;
-		return text.replaceAll("^\\s+", "");
+		int start=0;
+		while(start<text.length() && isWhitespace(text.charAt(start))){
+			start++;
+		}
+		return text.substring(start);
 	}
 		
 	// ===================== MID function ===================== //
@@ -263,35 +451,33 @@ public final class TextFunctions {
 		return text.substring(startPosition-1,startPosition-1+charactersNum);
 	}
 	
+	/*
+	 * CharSequence version, returns a view of the characters of the text instead of copying them.
+	 */
+	public static CharSequence MID(CharSequence text, Integer startPosition, Integer charactersNum){
+		if(text==null || startPosition==null || charactersNum==null) return null;
+		return TextView.slice(text,startPosition-1,startPosition-1+charactersNum);
+	}
+	
 	// ===================== PROPER function ===================== //
 	@JRExprFunction(name="PROPER", description="Capitalizes each words of the specified text. The remaining parts of words are in lowercase.")
 	@JRExprFunctionCategories({TEXT})
 	@JRExprFunctionParameters({
 			@JRExprFunctionParameter(name="Text",description="The input text.")})
+	@JRExprFunctionPurity(deterministic=false)
 	public static String PROPER(String text){
 		if(text==null) return null;
+		// the lower case text can have a different length
 		String lowerCaseString=LOWER(text);
-		StringBuffer result=new StringBuffer();
-		boolean capitalizeNext=false;
-		
-		for (int i=0; i<lowerCaseString.length(); i++){
-			char c = lowerCaseString.charAt(i);
-			if(!isDelimiter(c)){
-				if(capitalizeNext){
-					result.append(Character.toTitleCase(c));
-				}
-				else{
-					result.append(c);
-				}
-				capitalizeNext=false;
-			}
-			else{
-				result.append(c);
-				capitalizeNext=true;
-			}
-		}
-		
-		return result.toString();
+		return appendProper(TextBuilder.create(lowerCaseString.length()), lowerCaseString).toString();
+	}
+	
+	/*
+	 * Appends the capitalized text to the specified buffer and returns it, null (nothing appended) if the text is null.
+	 */
+	public static <T extends Appendable> T PROPER(T out, String text){
+		if(text==null) return null;
+		return appendProper(out, LOWER(text));
 	}
 	
 	// ===================== REPLACE function ===================== //
@@ -305,11 +491,23 @@ public final class TextFunctions {
 			@JRExprFunctionParameter(name="New Text",description="The text that will replace the old one.")})
 	public static String REPLACE(String originalText, Integer startPosition, Integer charsNum, String newText){
 		if(originalText==null || startPosition==null || charsNum==null || newText==null) return null;		
-		StringBuffer output=new StringBuffer();
-		output.append(originalText.substring(0, startPosition-1));
-		output.append(newText);
-		output.append(originalText.substring(startPosition+charsNum-1, originalText.length()));
-		return output.toString();
+		long length=(long) originalText.length() - charsNum + newText.length();
+		return REPLACE(TextBuilder.create(length), originalText, startPosition, charsNum, newText).toString();
+	}
+	
+	/*
+	 * Appends the modified text to the specified buffer and returns it, null (nothing appended) if any argument is null.
+	 */
+	public static <T extends Appendable> T REPLACE(T out, String originalText, Integer startPosition, Integer charsNum, String newText){
+		if(originalText==null || startPosition==null || charsNum==null || newText==null) return null;
+		int start=startPosition-1;
+		int end=startPosition+charsNum-1;
+		// checked before appending anything
+		if(start<0 || start>originalText.length()) throw new StringIndexOutOfBoundsException(start);
+		if(end<0 || end>originalText.length()) throw new StringIndexOutOfBoundsException(end);
+		TextBuilder.append(out, originalText, 0, start);
+		TextBuilder.append(out, newText);
+		return TextBuilder.append(out, originalText, end, originalText.length());
 	}
 	
 	// ===================== REPT function ===================== //
@@ -320,11 +518,15 @@ public final class TextFunctions {
 			@JRExprFunctionParameter(name="Number of copies",description="The desiderata number of copies.")})
 	public static String REPT(String originalText, Integer numberOfTimes){
 		if(originalText==null || numberOfTimes==null) return null;
-		StringBuffer output=new StringBuffer();
-		for(int i=0;i<numberOfTimes;i++){
-			output.append(originalText);
-		}
-		return output.toString();
+		return REPT(TextBuilder.create((long) originalText.length() * Math.max(0, numberOfTimes)), originalText, numberOfTimes).toString();
+	}
+	
+	/*
+	 * Appends the copies of the text to the specified buffer and returns it, null (nothing appended) if any argument is null.
+	 */
+	public static <T extends Appendable> T REPT(T out, String originalText, Integer numberOfTimes){
+		if(originalText==null || numberOfTimes==null) return null;
+		return TextBuilder.repeat(out, originalText, numberOfTimes);
 	}
 	
 	// ===================== RIGHT function ===================== //
@@ -343,6 +545,19 @@ public final class TextFunctions {
 		return text.substring(length-charactersNum,length);
 	}
 	
+	/*
+	 * CharSequence versions, return a view of the characters of the text instead of copying them.
+	 */
+	public static CharSequence RIGHT(CharSequence text){
+		return RIGHT(text,1);
+	}
+	
+	public static CharSequence RIGHT(CharSequence text, Integer charactersNum){
+		if(text==null || charactersNum==null) return null;
+		int length = text.length();
+		return TextView.slice(text,length-charactersNum,length);
+	}
+	
 	// ===================== RTRIM function ===================== //
 	@JRExprFunction(name="RTRIM", description="Clear a string, removing trailing whitespaces.")
 	@JRExprFunctionCategories({TEXT})
@@ -350,7 +565,20 @@ public final class TextFunctions {
 			@JRExprFunctionParameter(name="Text",description="The text string to be trimmed.")})
 	public static String RTRIM(String text){
 		if(text==null) return null;
-		return text.replaceAll("\\s+$", "");
+		int end=text.length();
+		while(end>0 && isWhitespace(text.charAt(end-1))){
+			end--;
+		}
+		if(end<text.length()) return text.substring(0, end);
+		// the end of the text also includes a final line separator that is not a whitespace
+		if(end>0 && isLineSeparator(text.charAt(end-1))){
+			int separator=end-1;
+			while(separator>0 && isWhitespace(text.charAt(separator-1))){
+				separator--;
+			}
+			if(separator<end-1) return text.substring(0, separator) + text.charAt(end-1);
+		}
+		return text;
 	}	
 	
 	// ===================== SEARCH function ===================== //
@@ -369,6 +597,18 @@ public final class TextFunctions {
 		return textToSearch.indexOf(findText, startPosition-1);
 	}
 	
+	/*
+	 * CharSequence versions, search texts of any type without converting them to strings.
+	 */
+	public static Integer SEARCH(CharSequence findText, CharSequence textToSearch){
+		return SEARCH(findText, textToSearch,1);
+	}
+	
+	public static Integer SEARCH(CharSequence findText, CharSequence textToSearch, Integer startPosition){
+		if(findText==null || textToSearch==null || startPosition==null) return null;
+		return TextView.indexOf(textToSearch, findText, startPosition-1);
+	}
+	
 	// ===================== SUBSTITUTE function ===================== //
 	@JRExprFunction(name="SUBSTITUTE", description="Substitutes new text for old text in a text string. " +
 			"When no occurrence is specified all occurrences are replaced.")
@@ -386,7 +626,17 @@ public final class TextFunctions {
 		if(originalText==null || oldText==null || newText==null) return null;
 		if(occurrenceNum==null){
 			// Replace all occurrences
-			return oldText.replaceAll(Pattern.quote(oldText), Matcher.quoteReplacement(newText));
+			int foundPosition=oldText.length()==0 ? -1 : originalText.indexOf(oldText);
+			if(foundPosition<0) return originalText;
+			StringBuilder sb=new StringBuilder(originalText.length());
+			int startIdx=0;
+			do{
+				sb.append(originalText, startIdx, foundPosition).append(newText);
+				startIdx=foundPosition+oldText.length();
+				foundPosition=originalText.indexOf(oldText, startIdx);
+			}while(foundPosition>=0);
+			sb.append(originalText, startIdx, originalText.length());
+			return sb.toString();
 		}
 		else{
 			int startIdx=0;
@@ -429,9 +679,10 @@ public final class TextFunctions {
 	@JRExprFunctionParameters({
 			@JRExprFunctionParameter(name="Number",description="The number to be formatted."),
 			@JRExprFunctionParameter(name="Format",description="The format pattern.")})
+	@JRExprFunctionPurity(deterministic=false)
 	public static String TEXT(Number number, String numberFormat){
 		if(number==null || numberFormat==null) return null;
-		NumberFormat nformat=new DecimalFormat(numberFormat);
+		DecimalFormat nformat=NUMBER_FORMATS.getFormat(new FormatCache.Key(FunctionContext.getLocale(), numberFormat, 0));
 		return nformat.format(number);
 	}	
 	
@@ -450,12 +701,123 @@ public final class TextFunctions {
 	@JRExprFunctionCategories({TEXT})
 	@JRExprFunctionParameters({
 			@JRExprFunctionParameter(name="Text",description="The input text string.")})
+	@JRExprFunctionPurity(deterministic=false)
 	public static String UPPER(String text){
 		if(text==null) return null;
-		return text.toUpperCase();
+		return text.toUpperCase(FunctionContext.getLocale());
+	}
+	
+	/*
+	 * CharSequence version, creates a single string for any type of text.
+	 */
+	public static String UPPER(CharSequence text){
+		if(text==null) return null;
+		return TextView.toCase(text, true);
+	}
+	
+	/*
+	 * Columnar version, stores the upper case texts of a column into the result column 
+	 * (that can be the column itself) and returns it.
+	 */
+	public static String[] UPPER(String[] column, String[] result){
+		Columns.checkResult(column.length, result.length);
+		Locale locale=FunctionContext.getLocale();
+		for (int i=0; i<column.length; i++){
+			String text=column[i];
+			result[i]=text==null ? null : text.toUpperCase(locale);
+		}
+		return result;
 	}
 	
 	// Internal private methods
+	/*
+	 * Concatenates the chunks of the strings in parallel, then the chunks in their order.
+	 */
+	private static String splitConcatenate(ParallelAggregation aggregation, final String[] strings){
+		final String[] chunks=new String[ParallelAggregation.getChunkCount(strings.length)];
+		aggregation.run(strings.length, new ParallelAggregation.Chunks() {
+			public void compute(int chunk, int from, int to){
+				StringBuilder sb=TextBuilder.create(concatenatedLength(strings, from, to));
+				for (int i=from;i<to;i++){
+					sb.append(strings[i]);
+				}
+				chunks[chunk]=sb.toString();
+			}
+		});
+		int length=0;
+		for (int i=0;i<chunks.length;i++){
+			length+=chunks[i].length();
+		}
+		StringBuilder sb=new StringBuilder(length);
+		for (int i=0;i<chunks.length;i++){
+			sb.append(chunks[i]);
+		}
+		return sb.toString();
+	}
+	
+	/*
+	 * Returns the length of the concatenation of the strings in the range [from, to).
+	 */
+	private static long concatenatedLength(String[] strings, int from, int to){
+		long length=0;
+		for (int i=from;i<to;i++){
+			length+=TextBuilder.length(strings[i]);
+		}
+		return length;
+	}
+	
+	/*
+	 * Appends a number text padded with zeroes up to the minimum length, 
+	 * on the left or on the right if the minimum length is negative.
+	 */
+	private static <T extends Appendable> T appendPadded(T out, String text, int minlength){
+		int padding=(int) Math.min(Math.abs((long) minlength) - text.length(), Integer.MAX_VALUE);
+		if(minlength>0) TextBuilder.repeat(out, '0', padding);
+		TextBuilder.append(out, text);
+		if(minlength<0) TextBuilder.repeat(out, '0', padding);
+		return out;
+	}
+	
+	/*
+	 * Appends the lower case text, with the first letter of each word in title case.
+	 */
+	private static <T extends Appendable> T appendProper(T out, String lowerCaseString){
+		boolean capitalizeNext=false;
+		for (int i=0; i<lowerCaseString.length(); i++){
+			char c = lowerCaseString.charAt(i);
+			if(!isDelimiter(c)){
+				TextBuilder.append(out, capitalizeNext ? Character.toTitleCase(c) : c);
+				capitalizeNext=false;
+			}
+			else{
+				TextBuilder.append(out, c);
+				capitalizeNext=true;
+			}
+		}
+		return out;
+	}
+	
+	/*
+	 * The characters of the \p{Cntrl} regular expression class.
+	 */
+	private static boolean isControl(char c){
+		return c<0x20 || c==0x7F;
+	}
+	
+	/*
+	 * The characters of the \s regular expression class.
+	 */
+	private static boolean isWhitespace(char c){
+		return c==' ' || (c>='\t' && c<='\r');
+	}
+	
+	/*
+	 * The line separators matched by the end of input of a regular expression, besides the whitespaces.
+	 */
+	private static boolean isLineSeparator(char c){
+		return c==0x85 || c==0x2028 || c==0x2029;
+	}
+	
 	private static boolean isDelimiter(char c){
 		return Character.isWhitespace(c) || Character.isSpaceChar(c);
 	}
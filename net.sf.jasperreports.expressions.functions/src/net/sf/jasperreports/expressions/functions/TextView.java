@@ -0,0 +1,133 @@
+package net.sf.jasperreports.expressions.functions;
+
+import java.util.Locale;
+
+/**
+ * Read-only view of a range of characters of another <code>CharSequence</code>, returned by the
+ * <code>CharSequence</code> versions of the slicing text functions (<code>LEFT</code>, <code>RIGHT</code>
+ * and <code>MID</code>).
+ *
+ * <p>
+ * The characters are copied only by {@link #toString()}, when the text is stored or passed to code
+ * that needs a <code>String</code>. The view reflects the changes of a mutable source text, like a
+ * <code>StringBuilder</code>, so it should not be kept after the source is modified.
+ * The class also contains the searches and comparisons used by the <code>CharSequence</code>
+ * versions of the other text functions.
+ */
+final class TextView implements CharSequence {
+
+	private final CharSequence text;
+	private final int start;
+	private final int end;
+
+	private TextView(CharSequence text, int start, int end){
+		this.text=text;
+		this.start=start;
+		this.end=end;
+	}
+
+	/**
+	 * Returns the characters in the range <code>[start, end)</code> of a text, with the same checks
+	 * of <code>String.substring</code>.
+	 */
+	static CharSequence slice(CharSequence text, int start, int end){
+		if(start<0) throw new StringIndexOutOfBoundsException(start);
+		if(end>text.length()) throw new StringIndexOutOfBoundsException(end);
+		if(start>end) throw new StringIndexOutOfBoundsException(end-start);
+		if(start==0 && end==text.length()) return text;
+		if(text instanceof TextView){
+			TextView view=(TextView) text;
+			return new TextView(view.text, view.start+start, view.start+end);
+		}
+		return new TextView(text, start, end);
+	}
+
+	public int length(){
+		return end-start;
+	}
+
+	public char charAt(int index){
+		if(index<0 || index>=end-start) throw new StringIndexOutOfBoundsException(index);
+		return text.charAt(start+index);
+	}
+
+	public CharSequence subSequence(int start, int end){
+		return slice(this, start, end);
+	}
+
+	@Override
+	public String toString(){
+		if(text instanceof String){
+			return ((String) text).substring(start, end);
+		}
+		// the source knows how to copy its characters best, for instance a CharBuffer
+		return text.subSequence(start, end).toString();
+	}
+
+	/**
+	 * Returns the index of the first occurrence of a text, with the same rules of <code>String.indexOf</code>.
+	 */
+	static int indexOf(CharSequence text, CharSequence target, int fromIndex){
+		if(text instanceof String && target instanceof String){
+			return ((String) text).indexOf((String) target, fromIndex);
+		}
+		int length=text.length();
+		int targetLength=target.length();
+		int from=Math.max(fromIndex, 0);
+		if(targetLength==0) return Math.min(from, length);
+		if(targetLength>length) return -1;
+		char first=target.charAt(0);
+		for(int i=from, max=length-targetLength; i<=max; i++){
+			if(text.charAt(i)!=first) continue;
+			int j=1;
+			while(j<targetLength && text.charAt(i+j)==target.charAt(j)){
+				j++;
+			}
+			if(j==targetLength) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns whether two texts contain the same characters.
+	 */
+	static boolean contentEquals(CharSequence text1, CharSequence text2){
+		if(text1 instanceof String){
+			return ((String) text1).contentEquals(text2);
+		}
+		int length=text1.length();
+		if(length!=text2.length()) return false;
+		for(int i=0; i<length; i++){
+			if(text1.charAt(i)!=text2.charAt(i)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Converts a text to upper or lower case with the rules of the locale of the context, creating a single string.
+	 */
+	static String toCase(CharSequence text, boolean upperCase){
+		int length=text.length();
+		Locale locale=FunctionContext.getLocale();
+		String language=locale.getLanguage();
+		// the ASCII letters are converted as in English, except for the dotted and dotless i of these languages
+		if(!(text instanceof String) && !"tr".equals(language) && !"az".equals(language)){
+			char[] chars=new char[length];
+			int i=0;
+			for(; i<length; i++){
+				char c=text.charAt(i);
+				if(c>=0x80) break;
+				if(upperCase){
+					chars[i]=c>='a' && c<='z' ? (char) (c-'a'+'A') : c;
+				}
+				else{
+					chars[i]=c>='A' && c<='Z' ? (char) (c-'A'+'a') : c;
+				}
+			}
+			if(i==length) return new String(chars);
+		}
+		String string=text.toString();
+		return upperCase ? string.toUpperCase(locale) : string.toLowerCase(locale);
+	}
+
+}
@@ -0,0 +1,142 @@
+package net.sf.jasperreports.expressions.functions.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.expressions.annotations.JRExprEvaluationContext;
+import net.sf.jasperreports.expressions.functions.DateFields;
+import net.sf.jasperreports.expressions.functions.DateParser;
+import net.sf.jasperreports.expressions.functions.DateTimeFunctions;
+
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the formats accepted and rejected by {@link DateParser}.
+ */
+public class DateParserTest {
+
+	private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+	private JRExprEvaluationContext previousContext;
+
+	@Before
+	public void bindContext() {
+		previousContext = JRExprEvaluationContext.bind(new JRExprEvaluationContext(Locale.US, UTC));
+	}
+
+	@After
+	public void restoreContext() {
+		JRExprEvaluationContext.bind(previousContext);
+	}
+
+	private static long utc(int year, int month, int day, int hour, int minute, int second, int millis) {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+		format.setTimeZone(UTC);
+		try {
+			return format.parse(String.format("%04d-%02d-%02d %02d:%02d:%02d.%03d", year, month, day, hour, minute, second, millis)).getTime();
+		} catch (ParseException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	@Test
+	public void testISOFormats() {
+		DateParser parser = new DateParser(Locale.US);
+		assertEquals(utc(2020, 3, 15, 0, 0, 0, 0), parser.parse("2020-03-15").getTime());
+		assertEquals(utc(2020, 3, 15, 13, 45, 0, 0), parser.parse(" 2020-03-15T13:45 ").getTime());
+		assertEquals(utc(2020, 3, 15, 13, 45, 30, 500), parser.parse("2020-03-15 13:45:30.5Z").getTime());
+		assertEquals(utc(2020, 3, 15, 11, 45, 30, 0), parser.parse("2020-03-15T13:45:30+02:00").getTime());
+		assertEquals(utc(2020, 2, 29, 0, 0, 0, 0), parser.parse("2020-02-29").getTime());
+	}
+
+	@Test
+	public void testISOContextTimeZone() {
+		JRExprEvaluationContext.bind(new JRExprEvaluationContext(Locale.US, TimeZone.getTimeZone("Europe/Rome")));
+		assertEquals(utc(2020, 7, 1, 10, 0, 0, 0), new DateParser(Locale.US).parse("2020-07-01T12:00").getTime());
+	}
+
+	@Test
+	public void testRejectedISOFormats() {
+		DateParser parser = new DateParser(Locale.US);
+		assertNull(parser.parse("2019-02-29"));
+		assertNull(parser.parse("2020-13-01"));
+		assertNull(parser.parse("2020-03-15T24:00"));
+		assertNull(parser.parse("2020-03-15T13:45 trailing"));
+		assertNull(parser.parse("2020/03/15"));
+		assertNull(parser.parse(null));
+	}
+
+	@Test
+	public void testPatterns() {
+		DateParser parser = new DateParser(Locale.US, "M/d/yy h:mm a", "dd.MM.yyyy");
+		assertEquals(utc(2020, 3, 15, 13, 0, 0, 0), parser.parse("3/15/20 1:00 PM").getTime());
+		assertEquals(utc(2020, 3, 15, 0, 0, 0, 0), parser.parse("15.03.2020").getTime());
+		// the pattern that matched last is tried first, the result is the same
+		assertEquals(utc(2020, 3, 16, 13, 0, 0, 0), parser.parse("3/16/20 1:00 PM").getTime());
+		assertEquals(utc(2020, 3, 16, 13, 0, 0, 0), parser.forColumn().parse("3/16/20 1:00 PM").getTime());
+	}
+
+	@Test
+	public void testRejectedPatterns() {
+		DateParser parser = new DateParser(Locale.US, "M/d/yy h:mm a");
+		assertNull(parser.parse("3/15/20 1:00 PM trailing"));
+		assertNull(parser.parse("2/30/20 1:00 PM"));
+		assertNull(parser.parse("13/15/20 1:00 PM"));
+		assertNull(parser.parse("3/15/20"));
+	}
+
+	@Test
+	public void testLegacyPattern() {
+		DateFormat legacyFormat = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT, Locale.US);
+		legacyFormat.setTimeZone(UTC);
+		Date date = new Date(utc(2020, 3, 15, 13, 0, 0, 0));
+		String text = legacyFormat.format(date);
+		assertEquals(date, DateParser.getDefault().parse(text));
+		assertEquals(Long.valueOf(date.getTime()), DateTimeFunctions.DATEVALUE(text));
+		assertEquals(Integer.valueOf(2020), DateTimeFunctions.YEAR(text));
+		assertNull(DateTimeFunctions.YEAR(text + " trailing"));
+	}
+
+	@Test
+	public void testConfiguredTimeZone() {
+		// no context, the time zone property differs from the default time zone
+		JRExprEvaluationContext.bind(null);
+		DefaultJasperReportsContext context = DefaultJasperReportsContext.getInstance();
+		TimeZone defaultTimeZone = TimeZone.getDefault();
+		DateTimeZone defaultDateTimeZone = DateTimeZone.getDefault();
+		TimeZone.setDefault(TimeZone.getTimeZone("Europe/Rome"));
+		DateTimeZone.setDefault(DateTimeZone.forID("Europe/Rome"));
+		context.setProperty(DateFields.PROPERTY_TIME_ZONE, "UTC");
+		try {
+			assertEquals(utc(2024, 1, 1, 0, 0, 0, 0), DateParser.getDefault().parse("2024-01-01").getTime());
+			assertEquals(Integer.valueOf(2024), DateTimeFunctions.YEAR("2024-01-01"));
+			assertEquals(Integer.valueOf(1), DateTimeFunctions.MONTH("2024-01-01"));
+			assertEquals(Integer.valueOf(1), DateTimeFunctions.DAY("2024-01-01"));
+			assertEquals(Integer.valueOf(10), DateTimeFunctions.HOUR("2024-01-01T10:30"));
+			Date date = DateTimeFunctions.DATE(2024, 1, 1);
+			assertEquals(utc(2024, 1, 1, 0, 0, 0, 0), date.getTime());
+			assertEquals(Integer.valueOf(2024), DateTimeFunctions.YEAR(date));
+			assertEquals("2024-01-01 00:00", DateTimeFunctions.DATEFORMAT(date, "yyyy-MM-dd HH:mm"));
+
+			// property changes apply to the next calls
+			context.removeProperty(DateFields.PROPERTY_TIME_ZONE);
+			assertEquals(Integer.valueOf(2023), DateTimeFunctions.YEAR(new Date(utc(2023, 12, 31, 23, 30, 0, 0) - 3600000L)));
+			assertEquals(Integer.valueOf(2024), DateTimeFunctions.YEAR(new Date(utc(2023, 12, 31, 23, 30, 0, 0))));
+		} finally {
+			context.removeProperty(DateFields.PROPERTY_TIME_ZONE);
+			TimeZone.setDefault(defaultTimeZone);
+			DateTimeZone.setDefault(defaultDateTimeZone);
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package net.sf.jasperreports.expressions.functions.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import net.sf.jasperreports.engine.SimpleJasperReportsContext;
+import net.sf.jasperreports.expressions.annotations.JRExprAnnotationsUtils;
+import net.sf.jasperreports.expressions.annotations.JRExprFunctionBean;
+import net.sf.jasperreports.expressions.annotations.JRExprFunctionParameterBean;
+import net.sf.jasperreports.expressions.annotations.JRExprFunctionsDescriptor;
+import net.sf.jasperreports.expressions.functions.DateTimeFunctions;
+import net.sf.jasperreports.expressions.functions.LogicalFunctions;
+import net.sf.jasperreports.expressions.functions.MathFunctions;
+import net.sf.jasperreports.expressions.functions.TextFunctions;
+
+import org.junit.Test;
+
+/**
+ * Tests the function descriptors of the function libraries built through reflection,
+ * when no generated descriptor is available.
+ */
+public class FunctionsMetadataTest {
+
+	private static final String FUNCTIONS_PACKAGE = "net.sf.jasperreports.expressions.functions.";
+
+	private static final Class<?>[] LIBRARIES = new Class<?>[]{
+		MathFunctions.class, TextFunctions.class, LogicalFunctions.class, DateTimeFunctions.class};
+
+	/**
+	 * Loads again the classes of the functions package, without the generated descriptors.
+	 */
+	private static class NoDescriptorClassLoader extends ClassLoader {
+
+		public NoDescriptorClassLoader() {
+			super(FunctionsMetadataTest.class.getClassLoader());
+		}
+
+		@Override
+		protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (name.endsWith(JRExprFunctionsDescriptor.DESCRIPTOR_SUFFIX)) {
+				throw new ClassNotFoundException(name);
+			}
+			if (!name.startsWith(FUNCTIONS_PACKAGE) || name.startsWith(FUNCTIONS_PACKAGE + "tests.")) {
+				return super.loadClass(name, resolve);
+			}
+			Class<?> clazz = findLoadedClass(name);
+			if (clazz == null) {
+				byte[] bytes = readClass(name);
+				clazz = defineClass(name, bytes, 0, bytes.length);
+			}
+			if (resolve) {
+				resolveClass(clazz);
+			}
+			return clazz;
+		}
+
+		private byte[] readClass(String name) throws ClassNotFoundException {
+			InputStream input = getParent().getResourceAsStream(name.replace('.', '/') + ".class");
+			if (input == null) {
+				throw new ClassNotFoundException(name);
+			}
+			try {
+				ByteArrayOutputStream output = new ByteArrayOutputStream();
+				byte[] buffer = new byte[4096];
+				for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+					output.write(buffer, 0, read);
+				}
+				return output.toByteArray();
+			} catch (IOException e) {
+				throw new ClassNotFoundException(name, e);
+			} finally {
+				try {
+					input.close();
+				} catch (IOException e) {
+					// ignored
+				}
+			}
+		}
+	}
+
+	private static List<JRExprFunctionBean> getReflectionFunctions(Class<?> library) throws ClassNotFoundException {
+		Class<?> clazz = Class.forName(library.getName(), true, new NoDescriptorClassLoader());
+		assertNotSame(library, clazz);
+		return JRExprAnnotationsUtils.getInstance(new SimpleJasperReportsContext()).getFunctionsList(clazz, Locale.ENGLISH);
+	}
+
+	private static JRExprFunctionBean getFunction(List<JRExprFunctionBean> functions, String id) {
+		for (JRExprFunctionBean function : functions) {
+			if (function.getId().equals(id)) {
+				return function;
+			}
+		}
+		throw new AssertionError("Missing function " + id);
+	}
+
+	private static List<String> getParameterTypes(JRExprFunctionBean function) {
+		List<String> types = new ArrayList<String>();
+		for (JRExprFunctionParameterBean parameter : function.getParameters()) {
+			assertNotNull(function.getId() + " parameter type", parameter.getParameterType());
+			types.add((parameter.isOptional() ? "optional " : "") + parameter.getParameterType().getName());
+		}
+		return types;
+	}
+
+	@Test
+	public void testReflectionParameterTypes() throws ClassNotFoundException {
+		for (Class<?> library : LIBRARIES) {
+			List<JRExprFunctionBean> functions = getReflectionFunctions(library);
+			List<JRExprFunctionBean> descriptorFunctions =
+					JRExprAnnotationsUtils.getInstance(new SimpleJasperReportsContext()).getFunctionsList(library, Locale.ENGLISH);
+			assertFalse(functions.isEmpty());
+			assertEquals(descriptorFunctions.size(), functions.size());
+			for (JRExprFunctionBean function : functions) {
+				assertEquals(function.getId(),
+						getParameterTypes(getFunction(descriptorFunctions, function.getId())), getParameterTypes(function));
+			}
+		}
+	}
+
+	@Test
+	public void testAppendableOverloadsIgnored() throws ClassNotFoundException {
+		List<JRExprFunctionBean> functions = getReflectionFunctions(TextFunctions.class);
+		List<String> fixedTypes = getParameterTypes(getFunction(functions, "FIXED"));
+		assertEquals(3, fixedTypes.size());
+		assertEquals(Number.class.getName(), fixedTypes.get(0));
+		assertEquals(Integer.class.getName(), fixedTypes.get(1));
+		assertEquals("optional " + Boolean.class.getName(), fixedTypes.get(2));
+		List<String> baseTypes = getParameterTypes(getFunction(functions, "BASE"));
+		assertEquals(3, baseTypes.size());
+		assertEquals(Integer.class.getName(), baseTypes.get(0));
+		assertEquals("optional " + Integer.class.getName(), baseTypes.get(2));
+	}
+}
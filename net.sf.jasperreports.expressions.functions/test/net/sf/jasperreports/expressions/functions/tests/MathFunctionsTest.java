@@ -0,0 +1,212 @@
+package net.sf.jasperreports.expressions.functions.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+
+import net.sf.jasperreports.engine.SimpleJasperReportsContext;
+import net.sf.jasperreports.expressions.annotations.JRExprEvaluationContext;
+import net.sf.jasperreports.expressions.functions.ArrayKernels;
+import net.sf.jasperreports.expressions.functions.MathFunctions;
+import net.sf.jasperreports.expressions.functions.ParallelAggregation;
+import net.sf.jasperreports.expressions.functions.errors.JRExpressionFunctionException;
+
+import org.junit.Test;
+
+/**
+ * Tests the array and list versions of the aggregate functions and the combinatorics functions of {@link MathFunctions}.
+ */
+public class MathFunctionsTest {
+
+	@Test
+	public void testEmptyValues() {
+		assertNull(MathFunctions.SUM());
+		assertNull(MathFunctions.SUM(Collections.<Number>emptyList()));
+		assertNull(MathFunctions.SUM(new int[0]));
+		assertNull(MathFunctions.SUM(new long[0]));
+		assertNull(MathFunctions.SUM(new double[0]));
+		assertNull(MathFunctions.SUM(new long[]{1, 2, 3}, 1, 1));
+		assertNull(MathFunctions.PRODUCT());
+		assertNull(MathFunctions.PRODUCT(Collections.<Number>emptyList()));
+		assertNull(MathFunctions.PRODUCT(new int[0]));
+		assertNull(MathFunctions.PRODUCT(new long[0]));
+		assertNull(MathFunctions.PRODUCT(new double[0]));
+	}
+
+	@Test
+	public void testArrays() {
+		assertEquals(Long.valueOf(6), MathFunctions.SUM(new int[]{1, 2, 3}));
+		assertEquals(Long.valueOf(5), MathFunctions.SUM(new long[]{1, 2, 3}, 1, 3));
+		assertEquals(Double.valueOf(6.5), MathFunctions.SUM(new double[]{1, 2, 3.5}));
+		assertEquals(Double.valueOf(7), MathFunctions.PRODUCT(new double[]{2, 3.5}));
+		// more than 2^32 int values would be needed to overflow the long sum
+		assertEquals(Long.valueOf(2L * Integer.MAX_VALUE), MathFunctions.SUM(new int[]{Integer.MAX_VALUE, Integer.MAX_VALUE}));
+	}
+
+	@Test
+	public void testLongSumOverflow() {
+		// intermediate overflows are allowed as long as the result fits
+		long[] values = new long[]{Long.MAX_VALUE, 10, -20, Long.MIN_VALUE, 5};
+		assertEquals(Long.valueOf(-6), MathFunctions.SUM(values));
+		assertEquals(Long.valueOf(-6), Long.valueOf(ArrayKernels.getScalar().sum(values, 0, values.length)));
+		assertEquals(Long.valueOf(Long.MIN_VALUE), MathFunctions.SUM(new long[]{Long.MIN_VALUE + 1, -1}));
+	}
+
+	private static JRExprEvaluationContext bindParallelContext(String threshold) {
+		SimpleJasperReportsContext jasperReportsContext = new SimpleJasperReportsContext();
+		jasperReportsContext.setProperty(ParallelAggregation.PROPERTY_THRESHOLD, threshold);
+		jasperReportsContext.setProperty(ParallelAggregation.PROPERTY_THREADS, "2");
+		return JRExprEvaluationContext.bind(new JRExprEvaluationContext(jasperReportsContext, System.currentTimeMillis(), null, null));
+	}
+
+	@Test
+	public void testContextParallelAggregation() {
+		Number[] numbers = new Number[3 * ParallelAggregation.CHUNK_SIZE];
+		for (int i = 0; i < numbers.length; i++) {
+			numbers[i] = Integer.valueOf(i % 10);
+		}
+		JRExprEvaluationContext previousContext = bindParallelContext("2");
+		try {
+			assertEquals(Double.valueOf(MathFunctions.SUM(Arrays.asList(numbers)).doubleValue()), MathFunctions.SUM(numbers));
+			assertEquals(Integer.valueOf(9), MathFunctions.MAX(numbers));
+			assertEquals(Integer.valueOf(0), MathFunctions.MIN(numbers));
+		} finally {
+			JRExprEvaluationContext.bind(previousContext);
+		}
+	}
+
+	@Test(expected=JRExpressionFunctionException.class)
+	public void testContextParallelAggregationProperties() {
+		// the properties of the context of the evaluation are read, not the ones of the default context
+		JRExprEvaluationContext previousContext = bindParallelContext("invalid");
+		try {
+			MathFunctions.SUM(1, 2);
+		} finally {
+			JRExprEvaluationContext.bind(previousContext);
+		}
+	}
+
+	@Test(expected=JRExpressionFunctionException.class)
+	public void testLongSumTooLarge() {
+		MathFunctions.SUM(new long[]{Long.MAX_VALUE, 1});
+	}
+
+	@Test(expected=JRExpressionFunctionException.class)
+	public void testLongSumTooSmall() {
+		MathFunctions.SUM(new long[]{Long.MIN_VALUE, -3, 2}, 0, 2);
+	}
+
+	@Test(expected=ArithmeticException.class)
+	public void testScalarKernelOverflow() {
+		long[] values = new long[1000];
+		Arrays.fill(values, Long.MAX_VALUE / 500);
+		ArrayKernels.getScalar().sum(values, 0, values.length);
+	}
+
+	private static Number toNumber(BigInteger value) {
+		return value.bitLength() < Long.SIZE ? (Number) Long.valueOf(value.longValue()) : value;
+	}
+
+	@Test
+	public void testFactorials() {
+		BigInteger expected = BigInteger.ONE;
+		for (int n = 0; n <= 25; n++) {
+			if (n > 0) {
+				expected = expected.multiply(BigInteger.valueOf(n));
+			}
+			assertEquals(expected, MathFunctions.FACT(BigInteger.valueOf(n)));
+			if (n <= 20) {
+				assertEquals(Long.valueOf(expected.longValue()), MathFunctions.FACT(n));
+			} else {
+				try {
+					MathFunctions.FACT(n);
+					fail("The factorial of " + n + " does not fit a Long value");
+				} catch (JRExpressionFunctionException e) {
+					// expected
+				}
+			}
+		}
+		// larger than the cached factorials
+		for (int n = 26; n <= 1100; n++) {
+			expected = expected.multiply(BigInteger.valueOf(n));
+		}
+		assertEquals(expected, MathFunctions.FACT(BigInteger.valueOf(1100)));
+		assertNull(MathFunctions.FACT((Integer) null));
+	}
+
+	@Test
+	public void testCombinationsAndPermutations() {
+		// rows of the Pascal triangle, beyond the coefficients that all fit a long
+		BigInteger[] row = new BigInteger[]{BigInteger.ONE};
+		for (int n = 0; n <= 100; n++) {
+			if (n > 0) {
+				BigInteger[] nextRow = new BigInteger[n + 1];
+				nextRow[0] = BigInteger.ONE;
+				nextRow[n] = BigInteger.ONE;
+				for (int k = 1; k < n; k++) {
+					nextRow[k] = row[k - 1].add(row[k]);
+				}
+				row = nextRow;
+			}
+			BigInteger factorial = BigInteger.ONE;
+			for (int k = 0; k <= n; k++) {
+				if (k > 0) {
+					factorial = factorial.multiply(BigInteger.valueOf(k));
+				}
+				assertEquals(toNumber(row[k]), MathFunctions.COMBIN(n, k));
+				assertEquals(toNumber(row[k].multiply(factorial)), MathFunctions.PERMUT(n, k));
+			}
+		}
+		assertNull(MathFunctions.COMBIN(null, 1));
+		assertNull(MathFunctions.PERMUT(1, null));
+	}
+
+	@Test(expected=JRExpressionFunctionException.class)
+	public void testNegativeFactorial() {
+		MathFunctions.FACT(-1);
+	}
+
+	@Test(expected=JRExpressionFunctionException.class)
+	public void testNegativeBigFactorial() {
+		MathFunctions.FACT(BigInteger.valueOf(-1));
+	}
+
+	@Test(expected=JRExpressionFunctionException.class)
+	public void testNegativeCombinations() {
+		MathFunctions.COMBIN(-1, 0);
+	}
+
+	@Test(expected=JRExpressionFunctionException.class)
+	public void testTooManyChosenCombinations() {
+		MathFunctions.COMBIN(3, 4);
+	}
+
+	@Test(expected=JRExpressionFunctionException.class)
+	public void testNegativePermutations() {
+		MathFunctions.PERMUT(2, -1);
+	}
+
+	@Test(expected=JRExpressionFunctionException.class)
+	public void testTooManyChosenPermutations() {
+		MathFunctions.PERMUT(3, 4);
+	}
+
+	@Test(expected=JRExpressionFunctionException.class)
+	public void testBigFactorialLimit() {
+		MathFunctions.FACT(BigInteger.valueOf(100001));
+	}
+
+	@Test(expected=JRExpressionFunctionException.class)
+	public void testCombinationsLimit() {
+		MathFunctions.COMBIN(300000, 150000);
+	}
+
+	@Test(expected=JRExpressionFunctionException.class)
+	public void testPermutationsLimit() {
+		MathFunctions.PERMUT(200000, 100001);
+	}
+}
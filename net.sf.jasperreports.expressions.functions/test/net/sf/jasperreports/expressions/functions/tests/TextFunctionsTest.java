@@ -0,0 +1,101 @@
+package net.sf.jasperreports.expressions.functions.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Locale;
+import java.util.Random;
+
+import net.sf.jasperreports.expressions.annotations.JRExprEvaluationContext;
+import net.sf.jasperreports.expressions.functions.TextFunctions;
+
+import org.junit.Test;
+
+/**
+ * Tests the results of the functions of {@link TextFunctions}.
+ */
+public class TextFunctionsTest {
+
+	// letters, whitespaces, line terminators that are not whitespaces and control characters
+	private static final String ALPHABET = "ab \t\n\r\u000B\f\u0085\u2028\u2029\u0001\u001F\u007F\u00A0";
+
+	private static String randomText(Random random) {
+		int length = random.nextInt(8);
+		StringBuilder text = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+		}
+		return text.toString();
+	}
+
+	@Test
+	public void testCleanAndTrimAsRegex() {
+		// the results of the regular expressions used before
+		Random random = new Random(17);
+		for (int i = 0; i < 20000; i++) {
+			String text = randomText(random);
+			assertEquals(text.replaceAll("\\p{Cntrl}", ""), TextFunctions.CLEAN(text));
+			assertEquals(text.replaceAll("^\\s+", ""), TextFunctions.LTRIM(text));
+			assertEquals(text.replaceAll("\\s+$", ""), TextFunctions.RTRIM(text));
+		}
+	}
+
+	@Test
+	public void testCleanAndTrim() {
+		String text = "no change";
+		assertSame(text, TextFunctions.CLEAN(text));
+		assertSame(text, TextFunctions.LTRIM(text));
+		assertSame(text, TextFunctions.RTRIM(text));
+		assertEquals("ab", TextFunctions.CLEAN("\u0000a\tb\u007F"));
+		assertEquals("a \t", TextFunctions.LTRIM(" \r\n\ta \t"));
+		assertEquals(" a", TextFunctions.RTRIM(" a \t\r\n"));
+		assertNull(TextFunctions.CLEAN(null));
+		assertNull(TextFunctions.LTRIM(null));
+		assertNull(TextFunctions.RTRIM(null));
+	}
+
+	@Test
+	public void testRightTrimFinalLineTerminator() {
+		// as the regular expression end, the whitespaces before a final line terminator are removed
+		assertEquals("a\u2028", TextFunctions.RTRIM("a \t\u2028"));
+		assertEquals("a\u0085", TextFunctions.RTRIM("a \u0085"));
+		assertEquals("a \u2028b", TextFunctions.RTRIM("a \u2028b"));
+		assertEquals("a\u2028", TextFunctions.RTRIM("a\u2028"));
+		assertEquals("a \u2028\u2028", TextFunctions.RTRIM("a \u2028\u2028"));
+	}
+
+	@Test
+	public void testSubstitute() {
+		assertEquals("a+b+c", TextFunctions.SUBSTITUTE("a-b-c", "-", "+"));
+		assertEquals("a$1b", TextFunctions.SUBSTITUTE("a.*b", ".*", "$1"));
+		assertEquals("a\\b", TextFunctions.SUBSTITUTE("a/b", "/", "\\"));
+		assertEquals("xxx", TextFunctions.SUBSTITUTE("aaaaaa", "aa", "x"));
+		assertEquals("abc", TextFunctions.SUBSTITUTE("abc", "d", "e"));
+		assertEquals("a-b+c", TextFunctions.SUBSTITUTE("a-b-c", "-", "+", 2));
+		assertNull(TextFunctions.SUBSTITUTE(null, "-", "+"));
+		assertNull(TextFunctions.SUBSTITUTE("a-b", null, "+"));
+	}
+
+	@Test
+	public void testSubstituteEmptyOldText() {
+		String text = "abc";
+		assertSame(text, TextFunctions.SUBSTITUTE(text, "", "x"));
+		assertEquals("", TextFunctions.SUBSTITUTE("", "", "x"));
+	}
+
+	@Test
+	public void testLocaleNumberFormats() {
+		JRExprEvaluationContext previousContext = JRExprEvaluationContext.bind(new JRExprEvaluationContext(Locale.GERMAN, null));
+		try {
+			assertEquals("1.234,50", TextFunctions.FIXED(1234.5, 2));
+			assertEquals("1234,50", TextFunctions.FIXED(1234.5, 2, true));
+			assertEquals("1.234,50", TextFunctions.TEXT(1234.5, "#,##0.00"));
+			JRExprEvaluationContext.bind(new JRExprEvaluationContext(Locale.US, null));
+			assertEquals("1,234.50", TextFunctions.FIXED(1234.5, 2));
+			assertEquals("1,234.50", TextFunctions.TEXT(1234.5, "#,##0.00"));
+		} finally {
+			JRExprEvaluationContext.bind(previousContext);
+		}
+	}
+}
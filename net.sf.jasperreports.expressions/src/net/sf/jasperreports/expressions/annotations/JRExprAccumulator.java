@@ -0,0 +1,44 @@
+package net.sf.jasperreports.expressions.annotations;
+
+/**
+ * Incremental computation of an aggregate function, like <code>SUM</code> or <code>MAX</code>,
+ * over values received one at a time, for instance the ones of the records of a report fill.
+ *
+ * <p>
+ * An accumulator keeps a constant amount of state, whatever the number of values added.
+ * Accumulators of the same class that received consecutive ranges of values, for instance
+ * in partitioned fills, are combined by {@link #merge(JRExprAccumulator)}.
+ * Accumulators are not thread safe.
+ *
+ * @see JRExprFunctionAccumulator
+ */
+public interface JRExprAccumulator {
+
+	/**
+	 * Adds an integral value.
+	 */
+	void add(long value);
+
+	/**
+	 * Adds a decimal value.
+	 */
+	void add(double value);
+
+	/**
+	 * Adds a value, of any of the types accepted by the function.
+	 */
+	void add(Number value);
+
+	/**
+	 * Adds the values received by another accumulator of the same class,
+	 * as if they were received after the values of this accumulator.
+	 */
+	void merge(JRExprAccumulator other);
+
+	/**
+	 * @return the result of the function for the values added so far,
+	 * 	the same returned by the function called with all of them
+	 */
+	Object result();
+
+}
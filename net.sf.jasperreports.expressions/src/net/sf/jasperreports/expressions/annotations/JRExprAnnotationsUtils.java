@@ -1,15 +1,24 @@
 package net.sf.jasperreports.expressions.annotations;
 
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 import net.sf.jasperreports.engine.DefaultJasperReportsContext;
 import net.sf.jasperreports.engine.JasperReportsContext;
 import net.sf.jasperreports.engine.util.MessageUtil;
+import net.sf.jasperreports.extensions.ExtensionsEnvironment;
+import net.sf.jasperreports.extensions.ExtensionsRegistry;
+import net.sf.jasperreports.functions.FunctionsBundle;
 import net.sf.jasperreports.functions.annotations.Function;
 import net.sf.jasperreports.functions.annotations.FunctionCategories;
 import net.sf.jasperreports.functions.annotations.FunctionCategory;
@@ -26,22 +35,195 @@ import net.sf.jasperreports.functions.annotations.FunctionParameters;
 public final class JRExprAnnotationsUtils 
 {
 
+	/**
+	 * Key under which the shared instance is kept in the {@link JasperReportsContext}.
+	 */
+	private static final String INSTANCE_CONTEXT_KEY = JRExprAnnotationsUtils.class.getName() + ".instance";
+
 	private final JasperReportsContext jasperReportsContext;
 	private final MessageUtil messageUtil;
+	private final ExtensionsRegistry extensionsRegistry;
+	
+	/**
+	 * Function classes contributed by the extensions when the instance was created.
+	 * The classes are held weakly not to keep the class loaders of redeployed extensions alive.
+	 */
+	private final List<WeakReference<Class<?>>> extensionFunctionClasses;
+	
+	/**
+	 * Function bundles last seen contributing the function classes, 
+	 * checked first so that the classes are collected again only when the bundles change.
+	 */
+	private volatile ExtensionBundles extensionBundles;
+	
+	/**
+	 * Function descriptors already built, by function class and locale.
+	 * Classes loaded by different class loaders are distinct keys.
+	 * The keys are weak and the descriptors, that refer to the classes, are soft, 
+	 * so that the cache does not keep the classes alive.
+	 */
+	private final Map<Class<?>, SoftReference<Map<Locale, List<JRExprFunctionBean>>>> functionsCache = 
+			new WeakHashMap<Class<?>, SoftReference<Map<Locale, List<JRExprFunctionBean>>>>();
+	
+	/**
+	 * Function invokers already built, by function class, held as the descriptors.
+	 */
+	private final Map<Class<?>, SoftReference<JRExprFunctionInvoker>> invokersCache = 
+			new WeakHashMap<Class<?>, SoftReference<JRExprFunctionInvoker>>();
 
-	private JRExprAnnotationsUtils(JasperReportsContext jasperReportsContext)
+	private JRExprAnnotationsUtils(JasperReportsContext jasperReportsContext, ExtensionsRegistry extensionsRegistry,
+			List<FunctionsBundle> bundles, List<Class<?>> extensionFunctionClasses)
 	{
 		this.jasperReportsContext = jasperReportsContext;
 		this.messageUtil = MessageUtil.getInstance(jasperReportsContext);
+		this.extensionsRegistry = extensionsRegistry;
+		this.extensionFunctionClasses = new ArrayList<WeakReference<Class<?>>>(extensionFunctionClasses.size());
+		for (Class<?> functionClass : extensionFunctionClasses)
+		{
+			this.extensionFunctionClasses.add(new WeakReference<Class<?>>(functionClass));
+		}
+		this.extensionBundles = new ExtensionBundles(bundles);
+	}
+	
+	/**
+	 * Identities of the function bundles contributed by the extensions, held weakly as the classes.
+	 */
+	private static final class ExtensionBundles
+	{
+		private final WeakReference<List<FunctionsBundle>> list;
+		private final List<WeakReference<FunctionsBundle>> bundles;
+		
+		ExtensionBundles(List<FunctionsBundle> bundles)
+		{
+			this.list = new WeakReference<List<FunctionsBundle>>(bundles);
+			this.bundles = new ArrayList<WeakReference<FunctionsBundle>>(bundles.size());
+			for (FunctionsBundle bundle : bundles)
+			{
+				this.bundles.add(new WeakReference<FunctionsBundle>(bundle));
+			}
+		}
+		
+		boolean matches(List<FunctionsBundle> bundles)
+		{
+			// some contexts return the same list until the extensions change, others a new list of the same bundles
+			if (list.get() == bundles)
+			{
+				return true;
+			}
+			if (bundles.size() != this.bundles.size())
+			{
+				return false;
+			}
+			for (int i = 0; i < bundles.size(); i++)
+			{
+				if (this.bundles.get(i).get() != bundles.get(i))
+				{
+					return false;
+				}
+			}
+			return true;
+		}
 	}
 	
 	
 	/**
-	 *
+	 * Returns the instance associated with the specified context.
+	 * 
+	 * <p>
+	 * The instance is kept in the context, so that the function descriptors it builds 
+	 * are reused by all the callers working with the same context.
+	 * A new instance is created when the extensions registry has been replaced, or when
+	 * the function classes it contributes have changed, as after the extension bundles are reloaded. 
+	 * The function classes are compared only when the bundles are not the ones already seen.
 	 */
 	public static JRExprAnnotationsUtils getInstance(JasperReportsContext jasperReportsContext)
 	{
-		return new JRExprAnnotationsUtils(jasperReportsContext);
+		ExtensionsRegistry extensionsRegistry = ExtensionsEnvironment.getExtensionsRegistry();
+		List<FunctionsBundle> bundles = getFunctionsBundles(jasperReportsContext);
+		Object instance = jasperReportsContext.getValue(INSTANCE_CONTEXT_KEY);
+		if (instance instanceof JRExprAnnotationsUtils)
+		{
+			// contexts can inherit values from a parent context, the instance needs to match exactly
+			JRExprAnnotationsUtils utils = (JRExprAnnotationsUtils) instance;
+			if (utils.jasperReportsContext == jasperReportsContext
+					&& utils.extensionsRegistry == extensionsRegistry)
+			{
+				if (utils.extensionBundles.matches(bundles))
+				{
+					return utils;
+				}
+				
+				List<Class<?>> extensionFunctionClasses = getExtensionFunctionClasses(bundles);
+				if (utils.hasExtensionFunctionClasses(extensionFunctionClasses))
+				{
+					// reloaded bundles contributing the same classes
+					utils.extensionBundles = new ExtensionBundles(bundles);
+					return utils;
+				}
+			}
+		}
+		
+		// concurrent callers might create distinct instances, the last one stays in the context
+		JRExprAnnotationsUtils utils = new JRExprAnnotationsUtils(jasperReportsContext, extensionsRegistry, 
+				bundles, getExtensionFunctionClasses(bundles));
+		jasperReportsContext.setValue(INSTANCE_CONTEXT_KEY, utils);
+		return utils;
+	}
+	
+	private static List<FunctionsBundle> getFunctionsBundles(JasperReportsContext jasperReportsContext)
+	{
+		List<FunctionsBundle> bundles = jasperReportsContext.getExtensions(FunctionsBundle.class);
+		return bundles == null ? Collections.<FunctionsBundle>emptyList() : bundles;
+	}
+	
+	/**
+	 * Collects the function classes contributed by the function bundles.
+	 */
+	private static List<Class<?>> getExtensionFunctionClasses(List<FunctionsBundle> bundles)
+	{
+		List<Class<?>> functionClasses = new ArrayList<Class<?>>();
+		for (FunctionsBundle bundle : bundles)
+		{
+			if (bundle.getFunctionClasses() != null)
+			{
+				functionClasses.addAll(bundle.getFunctionClasses());
+			}
+		}
+		return functionClasses;
+	}
+	
+	private boolean hasExtensionFunctionClasses(List<Class<?>> functionClasses)
+	{
+		if (functionClasses.size() != extensionFunctionClasses.size())
+		{
+			return false;
+		}
+		for (int i = 0; i < functionClasses.size(); i++)
+		{
+			if (extensionFunctionClasses.get(i).get() != functionClasses.get(i))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	
+	/**
+	 * Discards the function descriptors cached for the specified context.
+	 * 
+	 * <p>
+	 * Changes of the function classes contributed by the extensions are detected automatically, 
+	 * this method should be called when function classes are contributed by other means, 
+	 * or when the classes of an already registered bundle are changed.
+	 */
+	public static void clearCache(JasperReportsContext jasperReportsContext)
+	{
+		// some contexts do not accept null values, replacing the instance discards its cache
+		List<FunctionsBundle> bundles = getFunctionsBundles(jasperReportsContext);
+		jasperReportsContext.setValue(INSTANCE_CONTEXT_KEY, 
+				new JRExprAnnotationsUtils(jasperReportsContext, ExtensionsEnvironment.getExtensionsRegistry(), 
+						bundles, getExtensionFunctionClasses(bundles)));
 	}
 	
 	
@@ -54,19 +236,16 @@ public final class JRExprAnnotationsUtils
 	}
 
 	/**
-	 * 
+	 * Collects the annotations information of a function.
 	 */
 	@SuppressWarnings("deprecation")
-	private JRExprFunctionBean createJRFunction(List<Method> methods, Class<?> clazz) 
+	private JRExprFunctionMetadata createFunctionMetadata(List<Method> methods, Class<?> clazz) 
 	{
-		JRExprFunctionBean funct = new JRExprFunctionBean(clazz.getCanonicalName());
 		// The first instance is the one annotated with @JRFunction
 		// that maintains all the necessary infos to prepare the skeleton of the function bean
 		Method first = methods.get(0);
-		funct.setId(first.getName());
-		funct.setReturnType(first.getReturnType());
+		JRExprFunctionMetadata metadata = new JRExprFunctionMetadata(first.getName(), first.getReturnType());
 
-		String functionMessBundle = clazz.getPackage().getName() + ".jasperreports_messages";//FIXMEFUNCT use constant
 		FunctionMessagesBundle functionMessBundleAnn = first.getAnnotation(FunctionMessagesBundle.class);
 		if (functionMessBundleAnn == null)
 		{
@@ -74,29 +253,122 @@ public final class JRExprAnnotationsUtils
 		}
 		if (functionMessBundleAnn != null)
 		{
-			functionMessBundle = functionMessBundleAnn.value();
+			metadata.setMessagesBundle(functionMessBundleAnn.value());
 		}
 
-		String functionName = null;
-		String functionDescription = null;
-		
 		Function newFunctionAnnotation = first.getAnnotation(Function.class);
 		if (newFunctionAnnotation == null)
 		{
 			JRExprFunction functionAnnotation = first.getAnnotation(JRExprFunction.class);
-			functionName = functionAnnotation.name();
-			functionDescription = functionAnnotation.description();
+			metadata.setName(functionAnnotation.name());
+			metadata.setDescription(functionAnnotation.description());
+		}
+		else
+		{
+			metadata.setAnnotatedWithFunction(true);
+			metadata.setName(newFunctionAnnotation.value());
+		}
+		
+		JRExprFunctionCategories functionCategoriesAnnotation = first.getAnnotation(JRExprFunctionCategories.class);
+		if (functionCategoriesAnnotation == null)
+		{
+			FunctionCategories newFunctionCategoriesAnnotation = first.getAnnotation(FunctionCategories.class);
+			
+			if (newFunctionCategoriesAnnotation == null)
+			{
+				newFunctionCategoriesAnnotation = clazz.getAnnotation(FunctionCategories.class);
+			}
+			
+			if (newFunctionCategoriesAnnotation != null)
+			{
+				metadata.setCategoryClasses(newFunctionCategoriesAnnotation.value());
+			}
+		}
+		else
+		{
+			metadata.setLegacyCategories(functionCategoriesAnnotation.value());
+		}
+		
+		JRExprFunctionAccumulator accumulatorAnnotation = first.getAnnotation(JRExprFunctionAccumulator.class);
+		if (accumulatorAnnotation != null)
+		{
+			metadata.setAccumulatorClass(accumulatorAnnotation.value());
+		}
+		
+		JRExprFunctionPurity purityAnnotation = first.getAnnotation(JRExprFunctionPurity.class);
+		if (purityAnnotation == null)
+		{
+			purityAnnotation = clazz.getAnnotation(JRExprFunctionPurity.class);
+		}
+		if (purityAnnotation != null)
+		{
+			metadata.setPure(purityAnnotation.pure());
+			metadata.setDeterministic(purityAnnotation.deterministic());
+		}
+		
+		FunctionParameters newParametersAnnotation = first.getAnnotation(FunctionParameters.class);
+		if(newParametersAnnotation == null)
+		{
+			JRExprFunctionParameters parametersAnnotation = first.getAnnotation(JRExprFunctionParameters.class);
+			if(parametersAnnotation != null)
+			{
+				for(JRExprFunctionParameter param : parametersAnnotation.value()){
+					metadata.addLegacyParameter(param.name(), param.description());
+				}
+			}
+		}
+		else
+		{
+			for(FunctionParameter param : newParametersAnnotation.value())
+			{
+				metadata.addParameterId(param.value());
+			}
+		}
+		
+		for (Method method : methods)
+		{
+			metadata.addOverload(method.getParameterTypes());
+		}
+		
+		return metadata;
+	}
+
+	/**
+	 * Creates the localized function bean.
+	 */
+	private JRExprFunctionBean createJRFunction(JRExprFunctionMetadata metadata, Class<?> clazz, Locale locale) 
+	{
+		JRExprFunctionBean funct = new JRExprFunctionBean(clazz.getCanonicalName());
+		funct.setId(metadata.getId());
+		funct.setReturnType(metadata.getReturnType());
+		funct.setAccumulatorClass(metadata.getAccumulatorClass());
+		funct.setPure(metadata.isPure());
+		funct.setDeterministic(metadata.isDeterministic());
+
+		String functionMessBundle = clazz.getPackage().getName() + ".jasperreports_messages";//FIXMEFUNCT use constant
+		if (metadata.getMessagesBundle() != null)
+		{
+			functionMessBundle = metadata.getMessagesBundle();
+		}
+
+		String functionName = null;
+		String functionDescription = null;
+		
+		if (!metadata.isAnnotatedWithFunction())
+		{
+			functionName = metadata.getName();
+			functionDescription = metadata.getDescription();
 		}
 		else
 		{
-			functionName = newFunctionAnnotation.value();
+			functionName = metadata.getName();
 			
-			String name = messageUtil.getMessageProvider(functionMessBundle).getMessage(clazz.getName() + "." + funct.getId() + ".name", null, Locale.getDefault());//FIXMEFUNCT provide locale
+			String name = messageUtil.getMessageProvider(functionMessBundle).getMessage(clazz.getName() + "." + funct.getId() + ".name", null, locale);
 			if (name != null)
 			{
 				functionName = name;
 			}
-			String description = messageUtil.getMessageProvider(functionMessBundle).getMessage(clazz.getName() + "." + funct.getId() + ".description", null, Locale.getDefault());//FIXMEFUNCT provide locale
+			String description = messageUtil.getMessageProvider(functionMessBundle).getMessage(clazz.getName() + "." + funct.getId() + ".description", null, locale);
 			if (description != null)
 			{
 				functionDescription = description;
@@ -106,19 +378,11 @@ public final class JRExprAnnotationsUtils
 		funct.setName(functionName);
 		funct.setDescription(functionDescription);
 		
-		JRExprFunctionCategories functionCategoriesAnnotation = first.getAnnotation(JRExprFunctionCategories.class);
-		if (functionCategoriesAnnotation == null)
+		if (metadata.getLegacyCategories() == null)
 		{
-			FunctionCategories newFunctionCategoriesAnnotation = first.getAnnotation(FunctionCategories.class);
-			
-			if (newFunctionCategoriesAnnotation == null)
+			if (metadata.getCategoryClasses() != null)
 			{
-				newFunctionCategoriesAnnotation = clazz.getAnnotation(FunctionCategories.class);
-			}
-			
-			if (newFunctionCategoriesAnnotation != null)
-			{
-				Class<?>[] categories = newFunctionCategoriesAnnotation.value();
+				Class<?>[] categories = metadata.getCategoryClasses();
 				for (Class<?> categoryClass : categories)
 				{
 					String categoryId = categoryClass.getName();
@@ -143,12 +407,12 @@ public final class JRExprAnnotationsUtils
 						categoryMessBundle = categMessBundleAnn.value();
 					}
 
-					String name = messageUtil.getMessageProvider(categoryMessBundle).getMessage(categoryId + ".name", null, Locale.getDefault());//FIXMEFUNCT provide locale and optimize by getting localized provider everywhere
+					String name = messageUtil.getMessageProvider(categoryMessBundle).getMessage(categoryId + ".name", null, locale);//FIXMEFUNCT optimize by getting localized provider everywhere
 					if (name != null)
 					{
 						categoryName = name;
 					}
-					String description = messageUtil.getMessageProvider(categoryMessBundle).getMessage(categoryId + ".description", null, Locale.getDefault());//FIXMEFUNCT provide locale
+					String description = messageUtil.getMessageProvider(categoryMessBundle).getMessage(categoryId + ".description", null, locale);
 					if (description != null)
 					{
 						categoryDescription = description;
@@ -164,48 +428,45 @@ public final class JRExprAnnotationsUtils
 		}
 		else
 		{
-			for (String category : functionCategoriesAnnotation.value())
+			for (String category : metadata.getLegacyCategories())
 			{
 				JRExprFunctionCategoryBean categDescriptor = new JRExprFunctionCategoryBean();
 				categDescriptor.setId(category);
-				categDescriptor.setName(messageUtil.getMessageProvider("MessagesBundle").getMessage("Category." + category + ".display", null, Locale.getDefault()));
-				categDescriptor.setDescription(messageUtil.getMessageProvider("MessagesBundle").getMessage("Category." + category + ".description", null, Locale.getDefault()));
+				categDescriptor.setName(messageUtil.getMessageProvider("MessagesBundle").getMessage("Category." + category + ".display", null, locale));
+				categDescriptor.setDescription(messageUtil.getMessageProvider("MessagesBundle").getMessage("Category." + category + ".description", null, locale));
 				funct.getCategories().add(categDescriptor);
 			}
 		}
 		
-		FunctionParameters newParametersAnnotation = first.getAnnotation(FunctionParameters.class);
-		if(newParametersAnnotation == null)
+		if(metadata.getParameterIds() == null)
 		{
-			JRExprFunctionParameters parametersAnnotation = first.getAnnotation(JRExprFunctionParameters.class);
-			if(parametersAnnotation != null)
+			if(metadata.getLegacyParameterNames() != null)
 			{
-				for(JRExprFunctionParameter param : parametersAnnotation.value()){
+				for(int i=0; i<metadata.getLegacyParameterNames().size(); i++){
 					// Get basic info from the annotation
 					JRExprFunctionParameterBean paramDescriptor=new JRExprFunctionParameterBean();
-					paramDescriptor.setName(param.name());
-					paramDescriptor.setDescription(param.description());
+					paramDescriptor.setName(metadata.getLegacyParameterNames().get(i));
+					paramDescriptor.setDescription(metadata.getLegacyParameterDescriptions().get(i));
 					funct.getParameters().add(paramDescriptor);
 				}
 			}
 		}
 		else
 		{
-			for(FunctionParameter param : newParametersAnnotation.value())
+			for(String parameterId : metadata.getParameterIds())
 			{
 				// Get basic info from the annotation
 				JRExprFunctionParameterBean paramDescriptor = new JRExprFunctionParameterBean();
-				String parameterId = param.value();
 				String parameterName = null;
 				String parameterDescription = null;
 				if (parameterId != null && parameterId.trim().length() > 0)
 				{
-					String name = messageUtil.getMessageProvider(functionMessBundle).getMessage(clazz.getName() + "." + funct.getId() + "." + parameterId + ".name", null, Locale.getDefault());//FIXMEFUNCT provide locale
+					String name = messageUtil.getMessageProvider(functionMessBundle).getMessage(clazz.getName() + "." + funct.getId() + "." + parameterId + ".name", null, locale);
 					if (name != null)
 					{
 						parameterName = name;
 					}
-					String description = messageUtil.getMessageProvider(functionMessBundle).getMessage(clazz.getName() + "." + funct.getId() + "." + parameterId + ".description", null, Locale.getDefault());//FIXMEFUNCT provide locale
+					String description = messageUtil.getMessageProvider(functionMessBundle).getMessage(clazz.getName() + "." + funct.getId() + "." + parameterId + ".description", null, locale);
 					if (description != null)
 					{
 						parameterDescription = description;
@@ -220,11 +481,11 @@ public final class JRExprAnnotationsUtils
 		// Now computes the mandatory and cardinality of the parameters
 		int paramIndex=0;
 		int paramsNum=funct.getParameters().size();
-		for (int i=0; i<methods.size() && paramIndex<paramsNum; i++){
-			Method currMethod = methods.get(i);
-			Class<?>[] parameterTypes = currMethod.getParameterTypes();
-			boolean isOptional=(i==0)?false:true; // all parameters of the first method are for sure mandatory			
-			for(int j=paramIndex;j<parameterTypes.length;j++,paramIndex++){
+		List<Class<?>[]> overloads = getParameterOverloads(metadata.getOverloads());
+		for (int i=0; i<overloads.size() && paramIndex<paramsNum; i++){
+			Class<?>[] parameterTypes = overloads.get(i);
+			boolean isOptional=(i==0)?false:true; // all parameters of the first method are for sure mandatory
+			for(int j=paramIndex;j<parameterTypes.length && paramIndex<paramsNum;j++,paramIndex++){
 				boolean isMulti=parameterTypes[j].isArray();
 				JRExprFunctionParameterBean paramFunctBean = funct.getParameters().get(paramIndex);
 				if(paramFunctBean!=null){
@@ -242,6 +503,57 @@ public final class JRExprAnnotationsUtils
 		return funct;
 	}
 
+	/**
+	 * Selects the overloads that describe the parameters of the function: the annotated one,
+	 * that comes first, and the ones adding optional parameters after all the parameters of a shorter one,
+	 * ordered by number of parameters.
+	 * Other overloads, as the ones taking a different first parameter, are ignored so that
+	 * the parameter types do not depend on the order of the methods.
+	 */
+	private static List<Class<?>[]> getParameterOverloads(List<Class<?>[]> overloads)
+	{
+		List<Class<?>[]> parameterOverloads = new ArrayList<Class<?>[]>();
+		if (overloads.isEmpty())
+		{
+			return parameterOverloads;
+		}
+
+		List<Class<?>[]> candidates = new ArrayList<Class<?>[]>(overloads.subList(1, overloads.size()));
+		Collections.sort(candidates, new Comparator<Class<?>[]>()
+		{
+			@Override
+			public int compare(Class<?>[] types1, Class<?>[] types2)
+			{
+				if (types1.length != types2.length)
+				{
+					return types1.length - types2.length;
+				}
+				for (int i = 0; i < types1.length; i++)
+				{
+					int result = types1[i].getName().compareTo(types2[i].getName());
+					if (result != 0)
+					{
+						return result;
+					}
+				}
+				return 0;
+			}
+		});
+
+		Class<?>[] previousTypes = overloads.get(0);
+		parameterOverloads.add(previousTypes);
+		for (Class<?>[] parameterTypes : candidates)
+		{
+			if (parameterTypes.length > previousTypes.length
+					&& Arrays.equals(previousTypes, Arrays.copyOf(parameterTypes, previousTypes.length)))
+			{
+				parameterOverloads.add(parameterTypes);
+				previousTypes = parameterTypes;
+			}
+		}
+		return parameterOverloads;
+	}
+
 	/**
 	 * Creates a support map that maintain for each method name (name as key) 
 	 * a list of Methods found in the Class.
@@ -273,7 +585,7 @@ public final class JRExprAnnotationsUtils
 		for (Method m : clazz.getMethods()){
 			JRExprFunction jrFunctionAnn = m.getAnnotation(JRExprFunction.class);
 			Function jrNewFunctionAnn = m.getAnnotation(Function.class);
-			if (jrNewFunctionAnn == null || jrFunctionAnn == null)
+			if (jrNewFunctionAnn == null && jrFunctionAnn == null)
 			{
 				String methodName = m.getName();
 				List<Method> methods=methodsByNameMap.get(methodName);
@@ -287,28 +599,174 @@ public final class JRExprAnnotationsUtils
 		return methodsByNameMap;
 	}
 
+	/**
+	 * Retrieves the list of functions contributed in the specified class reference,
+	 * localized for the locale of the current {@link JRExprEvaluationContext}, or for the default locale.
+	 * 
+	 * @param clazz the class reference that is supposed to contain expression functions
+	 * @return a list of JR expression functions
+	 * @see #getFunctionsList(Class, Locale)
+	 */
+	public List<JRExprFunctionBean> getFunctionsList(Class<?> clazz)
+	{
+		JRExprEvaluationContext context = JRExprEvaluationContext.getCurrent();
+		Locale locale = context!=null ? context.getLocale() : null;
+		return getFunctionsList(clazz, locale!=null ? locale : Locale.getDefault());
+	}
+
 	/**
 	 * Retrieves the list of functions contributed in the specified class reference.
 	 * 
 	 * <p>
 	 * The method seeks for annotated methods with the annotation {@link JRExprFunction} 
 	 * in order to build the basic set of functions, and then scan for similar ones to
-	 * decide which parameters are mandatory and which optional. 
+	 * decide which parameters are mandatory and which optional.
+	 * 
+	 * <p>
+	 * The result is cached, so subsequent calls for the same class and locale return 
+	 * the same read-only list of read-only function beans.
 	 * 
 	 * @param clazz the class reference that is supposed to contain expression functions
+	 * @param locale the locale used for names and descriptions
 	 * @return a list of JR expression functions
 	 */
-	public List<JRExprFunctionBean> getFunctionsList(Class<?> clazz)
+	public List<JRExprFunctionBean> getFunctionsList(Class<?> clazz, Locale locale)
 	{
-		Map<String, List<Method>> methodsCache = buildAnnotatedMethodsCache(clazz);
+		synchronized (functionsCache)
+		{
+			Map<Locale, List<JRExprFunctionBean>> localeFunctions = getCachedFunctions(clazz);
+			if (localeFunctions != null)
+			{
+				List<JRExprFunctionBean> functionsList = localeFunctions.get(locale);
+				if (functionsList != null)
+				{
+					return functionsList;
+				}
+			}
+		}
 		
+		// built outside the lock, concurrent callers may both build the list but only the first one is kept
+		List<JRExprFunctionBean> functionsList = createFunctionsList(clazz, locale);
+		
+		synchronized (functionsCache)
+		{
+			Map<Locale, List<JRExprFunctionBean>> localeFunctions = getCachedFunctions(clazz);
+			if (localeFunctions == null)
+			{
+				localeFunctions = new HashMap<Locale, List<JRExprFunctionBean>>();
+				functionsCache.put(clazz, new SoftReference<Map<Locale, List<JRExprFunctionBean>>>(localeFunctions));
+			}
+			List<JRExprFunctionBean> existingList = localeFunctions.get(locale);
+			if (existingList != null)
+			{
+				return existingList;
+			}
+			localeFunctions.put(locale, functionsList);
+			return functionsList;
+		}
+	}
+	
+	private Map<Locale, List<JRExprFunctionBean>> getCachedFunctions(Class<?> clazz)
+	{
+		SoftReference<Map<Locale, List<JRExprFunctionBean>>> reference = functionsCache.get(clazz);
+		return reference == null ? null : reference.get();
+	}
+	
+	private List<JRExprFunctionBean> createFunctionsList(Class<?> clazz, Locale locale)
+	{
 		List<JRExprFunctionBean> functionsList=new ArrayList<JRExprFunctionBean>();
-		for (String functionName : methodsCache.keySet()){
-			JRExprFunctionBean jrFunction = createJRFunction(methodsCache.get(functionName), clazz);
+		for (JRExprFunctionMetadata metadata : getFunctionsMetadata(clazz)){
+			JRExprFunctionBean jrFunction = createJRFunction(metadata, clazz, locale);
+			jrFunction.lock();
 			functionsList.add(jrFunction);
 		}
 		
-		return functionsList;
+		return Collections.unmodifiableList(functionsList);
+	}
+	
+	/**
+	 * Returns the registry of the methods implementing the functions contributed in the specified class.
+	 * 
+	 * <p>
+	 * The result is cached, subsequent calls for the same class return the same invoker.
+	 * 
+	 * @param clazz the class reference that is supposed to contain expression functions
+	 * @return the function invoker
+	 */
+	public JRExprFunctionInvoker getFunctionInvoker(Class<?> clazz)
+	{
+		synchronized (invokersCache)
+		{
+			SoftReference<JRExprFunctionInvoker> reference = invokersCache.get(clazz);
+			JRExprFunctionInvoker invoker = reference == null ? null : reference.get();
+			if (invoker == null)
+			{
+				invoker = new JRExprFunctionInvoker(clazz, getFunctionsMetadata(clazz));
+				invokersCache.put(clazz, new SoftReference<JRExprFunctionInvoker>(invoker));
+			}
+			return invoker;
+		}
+	}
+	
+	/**
+	 * Retrieves the not localized information about the functions contributed in the specified class.
+	 * 
+	 * <p>
+	 * The information is read from the {@link JRExprFunctionsDescriptor} generated at compile time 
+	 * when present, and collected through reflection otherwise.
+	 * 
+	 * @param clazz the class reference that is supposed to contain expression functions
+	 * @return a list of function metadata
+	 */
+	public List<JRExprFunctionMetadata> getFunctionsMetadata(Class<?> clazz)
+	{
+		JRExprFunctionsDescriptor descriptor = loadFunctionsDescriptor(clazz);
+		if (descriptor != null)
+		{
+			return descriptor.getFunctions();
+		}
+		
+		Map<String, List<Method>> methodsCache = buildAnnotatedMethodsCache(clazz);
+		
+		List<JRExprFunctionMetadata> metadataList = new ArrayList<JRExprFunctionMetadata>();
+		for (String functionName : methodsCache.keySet()){
+			metadataList.add(createFunctionMetadata(methodsCache.get(functionName), clazz));
+		}
+		return metadataList;
+	}
+	
+	/**
+	 * Loads the descriptor generated for the function class, if any. 
+	 */
+	private static JRExprFunctionsDescriptor loadFunctionsDescriptor(Class<?> clazz)
+	{
+		String descriptorClassName = clazz.getName().replace('$', '_') + JRExprFunctionsDescriptor.DESCRIPTOR_SUFFIX;
+		try
+		{
+			Class<?> descriptorClass = Class.forName(descriptorClassName, true, clazz.getClassLoader());
+			if (JRExprFunctionsDescriptor.class.isAssignableFrom(descriptorClass))
+			{
+				JRExprFunctionsDescriptor descriptor = (JRExprFunctionsDescriptor) descriptorClass.newInstance();
+				// making sure the descriptor has not been generated for a different version of the class
+				if (descriptor.getFunctionClass() == clazz)
+				{
+					return descriptor;
+				}
+			}
+		}
+		catch (ClassNotFoundException e)
+		{
+			// no generated descriptor, falling back to reflection
+		}
+		catch (InstantiationException e)
+		{
+			// falling back to reflection
+		}
+		catch (IllegalAccessException e)
+		{
+			// falling back to reflection
+		}
+		return null;
 	}
 
 }
@@ -0,0 +1,177 @@
+package net.sf.jasperreports.expressions.annotations;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JasperReportsContext;
+
+/**
+ * Values shared by all the function calls of an evaluation scope, typically a report fill:
+ * the current instant, the locale, the time zone and caches of objects derived from them.
+ *
+ * <p>
+ * The context is bound to the current thread by {@link #bind(JRExprEvaluationContext)}, and the functions
+ * read it through {@link #getCurrent()}. The clock is read once when the context is created, so that
+ * functions like <code>NOW</code> and <code>TODAY</code> return the same instant for all the records,
+ * and the locale and the time zone are not looked up on each call. A <code>null</code> locale or time zone
+ * means that the functions use their defaults, the ones used when no context is bound.
+ * The context can also specify the {@link JasperReportsContext} whose properties configure the functions,
+ * the default one is used otherwise.
+ *
+ * <p>
+ * The binding is scoped to a thread, so that reports filled in parallel by different threads can use
+ * different contexts. The fill does not bind a context by itself: the caller binds it on the thread
+ * that fills the report, and restores the previous one afterwards:
+ * <pre>
+ * JRExprEvaluationContext previous = JRExprEvaluationContext.bind(JRExprEvaluationContext.forParameters(parameters));
+ * try {
+ * 	JasperFillManager.fillReport(jasperReport, parameters, connection);
+ * } finally {
+ * 	JRExprEvaluationContext.bind(previous);
+ * }
+ * </pre>
+ *
+ * <p>
+ * The binding is not passed to other threads. The subreports filled by the default
+ * <code>JRThreadSubreportRunnerFactory</code>, or by a thread pool runner, run on their own threads,
+ * where no context is bound unless they bind one themselves, so their functions use the defaults.
+ * Subreports see the context of the master report only when they are filled on the same thread, as with
+ * the <code>JRContinuationSubreportRunnerFactory</code> set by the
+ * <code>net.sf.jasperreports.subreport.runner.factory</code> property. The context itself is thread-safe,
+ * the same instance can be bound on all the threads that fill parts of a report.
+ */
+public final class JRExprEvaluationContext {
+
+	private static final ThreadLocal<JRExprEvaluationContext> CURRENT = new ThreadLocal<JRExprEvaluationContext>();
+
+	private final JasperReportsContext jasperReportsContext;
+	private final long currentTimeMillis;
+	private final Locale locale;
+	private final TimeZone timeZone;
+	private final ConcurrentMap<Object, Object> caches;
+
+	/**
+	 * Creates a context reading the clock now.
+	 *
+	 * @param locale the locale used by the functions, <code>null</code> for their default one
+	 * @param timeZone the time zone used by the functions, <code>null</code> for their default one
+	 */
+	public JRExprEvaluationContext(Locale locale, TimeZone timeZone) {
+		this(System.currentTimeMillis(), locale, timeZone);
+	}
+
+	/**
+	 * @param currentTimeMillis the current instant seen by the functions, as epoch millis
+	 * @param locale the locale used by the functions, <code>null</code> for their default one
+	 * @param timeZone the time zone used by the functions, <code>null</code> for their default one
+	 */
+	public JRExprEvaluationContext(long currentTimeMillis, Locale locale, TimeZone timeZone) {
+		this(null, currentTimeMillis, locale, timeZone);
+	}
+
+	/**
+	 * @param jasperReportsContext the context whose properties configure the functions, <code>null</code> for the default one
+	 * @param currentTimeMillis the current instant seen by the functions, as epoch millis
+	 * @param locale the locale used by the functions, <code>null</code> for their default one
+	 * @param timeZone the time zone used by the functions, <code>null</code> for their default one
+	 */
+	public JRExprEvaluationContext(JasperReportsContext jasperReportsContext, long currentTimeMillis, Locale locale, TimeZone timeZone) {
+		this.jasperReportsContext=jasperReportsContext;
+		this.currentTimeMillis=currentTimeMillis;
+		this.locale=locale;
+		this.timeZone=timeZone==null ? null : (TimeZone) timeZone.clone();
+		this.caches=new ConcurrentHashMap<Object, Object>();
+	}
+
+	/**
+	 * Creates a context for a report fill, reading the clock now, with the locale and the time zone
+	 * of the {@link JRParameter#REPORT_LOCALE} and {@link JRParameter#REPORT_TIME_ZONE} parameters.
+	 *
+	 * @param parameterValues the values of the report parameters, can be <code>null</code>
+	 */
+	public static JRExprEvaluationContext forParameters(Map<String, ?> parameterValues) {
+		Locale locale=null;
+		TimeZone timeZone=null;
+		if(parameterValues!=null){
+			locale=(Locale) parameterValues.get(JRParameter.REPORT_LOCALE);
+			timeZone=(TimeZone) parameterValues.get(JRParameter.REPORT_TIME_ZONE);
+		}
+		return new JRExprEvaluationContext(locale, timeZone);
+	}
+
+	/**
+	 * Returns the context bound to the current thread.
+	 *
+	 * @return the context, <code>null</code> if none is bound
+	 */
+	public static JRExprEvaluationContext getCurrent() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Binds a context to the current thread.
+	 *
+	 * @param context the context, <code>null</code> to remove the current one
+	 * @return the context previously bound, to be restored at the end of the scope
+	 */
+	public static JRExprEvaluationContext bind(JRExprEvaluationContext context) {
+		JRExprEvaluationContext previous=CURRENT.get();
+		if(context==null){
+			CURRENT.remove();
+		}
+		else{
+			CURRENT.set(context);
+		}
+		return previous;
+	}
+
+	/**
+	 * @return the context whose properties configure the functions, <code>null</code> if they use the default one
+	 */
+	public JasperReportsContext getJasperReportsContext() {
+		return jasperReportsContext;
+	}
+
+	public long getCurrentTimeMillis() {
+		return currentTimeMillis;
+	}
+
+	/**
+	 * @return the locale, <code>null</code> if the functions use their default one
+	 */
+	public Locale getLocale() {
+		return locale;
+	}
+
+	/**
+	 * @return the time zone, that must not be modified, <code>null</code> if the functions use their default one
+	 */
+	public TimeZone getTimeZone() {
+		return timeZone;
+	}
+
+	/**
+	 * Returns an object cached in the context.
+	 *
+	 * @param key the key of the object, usually a constant of the class that caches it
+	 * @return the cached object, <code>null</code> if not found
+	 */
+	public Object getCached(Object key) {
+		return caches.get(key);
+	}
+
+	/**
+	 * Caches an object in the context, if no object is cached with the same key.
+	 *
+	 * @return the object cached with the key, either the specified one or the one cached before
+	 */
+	public Object cache(Object key, Object value) {
+		Object previous=caches.putIfAbsent(key, value);
+		return previous!=null ? previous : value;
+	}
+
+}
@@ -0,0 +1,19 @@
+package net.sf.jasperreports.expressions.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation to specify the {@link JRExprAccumulator} that computes a function incrementally.
+ * It goes on the same method as the {@link JRExprFunction} or <code>Function</code> annotation,
+ * the accumulator class must have a public constructor without arguments.
+ *
+ * @see JRExprFunctionBean#createAccumulator()
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface JRExprFunctionAccumulator {
+	Class<? extends JRExprAccumulator> value();
+}
@@ -1,8 +1,11 @@
 package net.sf.jasperreports.expressions.annotations;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import net.sf.jasperreports.engine.JRRuntimeException;
+
 
 /**
  * Bean to describe the a function of the expression library.
@@ -19,6 +22,10 @@ public class JRExprFunctionBean implements Comparable<JRExprFunctionBean>{
 	private Class<?> returnType;
 	private List<JRExprFunctionCategoryBean> categories;
 	private String functionClassName;
+	private Class<? extends JRExprAccumulator> accumulatorClass;
+	private boolean pure;
+	private boolean deterministic;
+	private boolean locked;
 	
 	public JRExprFunctionBean(String functionClassName) {
 		this.functionClassName=functionClassName;
@@ -27,18 +34,21 @@ public class JRExprFunctionBean implements Comparable<JRExprFunctionBean>{
 		return name;
 	}
 	public void setName(String name) {
+		checkUnlocked();
 		this.name = name;
 	}
 	public String getId() {
 		return id;
 	}
 	public void setId(String id) {
+		checkUnlocked();
 		this.id = id;
 	}
 	public String getDescription() {
 		return description;
 	}
 	public void setDescription(String description) {
+		checkUnlocked();
 		this.description = description;
 	}
 	public List<JRExprFunctionParameterBean> getParameters() {
@@ -48,12 +58,14 @@ public class JRExprFunctionBean implements Comparable<JRExprFunctionBean>{
 		return parameters;
 	}
 	public void setParameters(List<JRExprFunctionParameterBean> parameters) {
+		checkUnlocked();
 		this.parameters = parameters;
 	}
 	public Class<?> getReturnType() {
 		return returnType;
 	}
 	public void setReturnType(Class<?> returnType) {
+		checkUnlocked();
 		this.returnType = returnType;
 	}
 	public List<JRExprFunctionCategoryBean> getCategories() {
@@ -63,14 +75,82 @@ public class JRExprFunctionBean implements Comparable<JRExprFunctionBean>{
 		return categories;
 	}
 	public void setCategories(List<JRExprFunctionCategoryBean> categories) {
+		checkUnlocked();
 		this.categories = categories;
 	}
 	public String getFunctionClassName() {
 		return functionClassName;
 	}
+	public Class<? extends JRExprAccumulator> getAccumulatorClass() {
+		return accumulatorClass;
+	}
+	public void setAccumulatorClass(Class<? extends JRExprAccumulator> accumulatorClass) {
+		checkUnlocked();
+		this.accumulatorClass = accumulatorClass;
+	}
+
+	/**
+	 * @return whether the function has no side effects, as described by its {@link JRExprFunctionPurity} annotation
+	 */
+	public boolean isPure() {
+		return pure;
+	}
+	public void setPure(boolean pure) {
+		checkUnlocked();
+		this.pure = pure;
+	}
+	/**
+	 * @return whether the function result depends only on its arguments, as described by its {@link JRExprFunctionPurity} annotation
+	 */
+	public boolean isDeterministic() {
+		return deterministic;
+	}
+	public void setDeterministic(boolean deterministic) {
+		checkUnlocked();
+		this.deterministic = deterministic;
+	}
+
+	/**
+	 * Creates a new accumulator computing the function incrementally.
+	 * 
+	 * @return the new accumulator, <code>null</code> if the function has no {@link JRExprFunctionAccumulator}
+	 */
+	public JRExprAccumulator createAccumulator() {
+		if(accumulatorClass==null){
+			return null;
+		}
+		try {
+			return accumulatorClass.newInstance();
+		} catch (InstantiationException e) {
+			throw new JRRuntimeException(e);
+		} catch (IllegalAccessException e) {
+			throw new JRRuntimeException(e);
+		}
+	}
 	@Override
 	public int compareTo(JRExprFunctionBean o) {
 		return name.compareTo(o.getName());
 	}
+
+	/**
+	 * Makes the bean read-only, further changes will result in an {@link UnsupportedOperationException}.
+	 */
+	void lock() {
+		for(JRExprFunctionParameterBean parameter : getParameters()){
+			parameter.lock();
+		}
+		for(JRExprFunctionCategoryBean category : getCategories()){
+			category.lock();
+		}
+		parameters=Collections.unmodifiableList(parameters);
+		categories=Collections.unmodifiableList(categories);
+		locked=true;
+	}
 	
+	private void checkUnlocked() {
+		if(locked){
+			throw new UnsupportedOperationException("The bean is read-only");
+		}
+	}
+
 }
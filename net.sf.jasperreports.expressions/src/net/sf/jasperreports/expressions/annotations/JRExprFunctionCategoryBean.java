@@ -14,11 +14,13 @@ public class JRExprFunctionCategoryBean
 //	private String messagesBundle;
 	private String name;
 	private String description;
+	private boolean locked;
 	
 	public String getId() {
 		return id;
 	}
 	public void setId(String id) {
+		checkUnlocked();
 		this.id = id;
 	}
 //	public String getMessagesBundle() {
@@ -31,13 +33,28 @@ public class JRExprFunctionCategoryBean
 		return name;
 	}
 	public void setName(String name) {
+		checkUnlocked();
 		this.name = name;
 	}
 	public String getDescription() {
 		return description;
 	}
 	public void setDescription(String description) {
+		checkUnlocked();
 		this.description = description;
 	}
+
+	/**
+	 * Makes the bean read-only, further changes will result in an {@link UnsupportedOperationException}.
+	 */
+	void lock() {
+		locked=true;
+	}
 	
+	private void checkUnlocked() {
+		if(locked){
+			throw new UnsupportedOperationException("The bean is read-only");
+		}
+	}
+
 }
@@ -0,0 +1,294 @@
+package net.sf.jasperreports.expressions.annotations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.sf.jasperreports.engine.JRRuntimeException;
+
+/**
+ * Dispatch table that selects the method implementing a function call.
+ *
+ * <p>
+ * The overloads accepting each number of arguments are computed when the table is built,
+ * so that a call resolves with an array lookup when the number of arguments identifies a
+ * single overload, as for <code>FIND(a,b)</code> and <code>FIND(a,b,c)</code>.
+ * When several overloads accept the same number of arguments, the most specific one for
+ * the argument types is chosen and remembered for the next calls with the same types.
+ *
+ * @see JRExprFunctionInvoker#getDispatcher(String)
+ */
+public class JRExprFunctionDispatcher {
+
+	private static final JRExprFunctionOverload[] NO_OVERLOADS = new JRExprFunctionOverload[0];
+
+	private final String functionId;
+	private final JRExprFunctionOverload[][] overloadsByArity;
+	private final JRExprFunctionOverload[] varArgsOverloads;
+	private final ConcurrentMap<Signature, JRExprFunctionOverload> overloadsBySignature;
+
+	/**
+	 * @param functionId the function id
+	 * @param overloads the methods implementing the function, in order of preference
+	 */
+	public JRExprFunctionDispatcher(String functionId, List<JRExprFunctionOverload> overloads) {
+		this.functionId=functionId;
+
+		int maxArity=0;
+		List<JRExprFunctionOverload> varArgs=new ArrayList<JRExprFunctionOverload>();
+		for(JRExprFunctionOverload overload : overloads){
+			maxArity=Math.max(maxArity, overload.getFixedArity());
+			if(overload.isVarArgs()){
+				varArgs.add(overload);
+			}
+		}
+		this.varArgsOverloads=varArgs.toArray(new JRExprFunctionOverload[varArgs.size()]);
+
+		this.overloadsByArity=new JRExprFunctionOverload[maxArity+1][];
+		for(int arity=0;arity<=maxArity;arity++){
+			// fixed arity overloads come before the variable arguments ones, as in Java
+			List<JRExprFunctionOverload> candidates=new ArrayList<JRExprFunctionOverload>();
+			for(JRExprFunctionOverload overload : overloads){
+				if(!overload.isVarArgs() && overload.acceptsArity(arity)){
+					candidates.add(overload);
+				}
+			}
+			for(JRExprFunctionOverload overload : varArgsOverloads){
+				if(overload.acceptsArity(arity)){
+					candidates.add(overload);
+				}
+			}
+			overloadsByArity[arity]=candidates.toArray(new JRExprFunctionOverload[candidates.size()]);
+		}
+
+		this.overloadsBySignature=new ConcurrentHashMap<Signature, JRExprFunctionOverload>();
+	}
+
+	public String getFunctionId() {
+		return functionId;
+	}
+
+	/**
+	 * Returns the overloads accepting the specified number of arguments, in order of preference.
+	 */
+	public JRExprFunctionOverload[] getCandidates(int argumentsCount) {
+		if(argumentsCount<overloadsByArity.length){
+			return overloadsByArity[argumentsCount];
+		}
+		return varArgsOverloads.length==0 ? NO_OVERLOADS : varArgsOverloads;
+	}
+
+	/**
+	 * Selects the overload by the number of arguments only.
+	 *
+	 * @param argumentsCount the number of arguments, variable arguments being counted one by one
+	 * @return the preferred overload accepting the arguments, <code>null</code> if none
+	 */
+	public JRExprFunctionOverload dispatch(int argumentsCount) {
+		JRExprFunctionOverload[] candidates=getCandidates(argumentsCount);
+		return candidates.length==0 ? null : candidates[0];
+	}
+
+	/**
+	 * Selects the overload by the argument types.
+	 *
+	 * @param argumentTypes the argument types, <code>null</code> entries standing for unknown types
+	 * @return the most specific overload accepting the arguments, <code>null</code> if none
+	 */
+	public JRExprFunctionOverload dispatch(Class<?>... argumentTypes) {
+		JRExprFunctionOverload[] candidates=getCandidates(argumentTypes.length);
+		if(candidates.length<=1){
+			return candidates.length==0 ? null : candidates[0];
+		}
+
+		Signature signature=new Signature(argumentTypes);
+		JRExprFunctionOverload overload=overloadsBySignature.get(signature);
+		if(overload==null){
+			overload=selectOverload(candidates, argumentTypes);
+			if(overload==null){
+				return null;
+			}
+			overloadsBySignature.putIfAbsent(signature, overload);
+		}
+		return overload;
+	}
+
+	/**
+	 * Invokes the function, selecting the overload for the arguments.
+	 *
+	 * @param arguments the function arguments, variable arguments being passed one by one
+	 * @return the function result
+	 */
+	public Object invoke(Object... arguments) {
+		JRExprFunctionOverload[] candidates=getCandidates(arguments.length);
+		JRExprFunctionOverload overload;
+		if(candidates.length==1){
+			overload=candidates[0];
+		}
+		else{
+			Class<?>[] argumentTypes=new Class<?>[arguments.length];
+			for(int i=0;i<arguments.length;i++){
+				argumentTypes[i]=arguments[i]==null ? null : arguments[i].getClass();
+			}
+			overload=dispatch(argumentTypes);
+		}
+		if(overload==null){
+			throw new JRRuntimeException("No method of function " + functionId + " accepts the arguments "
+					+ Arrays.asList(arguments) + ".");
+		}
+		return overload.invoke(arguments);
+	}
+
+	/**
+	 * Invokes the function on columns of arguments, one call for each row.
+	 *
+	 * <p>
+	 * The overload is selected again only when the argument types change from one row to the next,
+	 * and the arguments array is reused, so that the per-row cost is the method call itself.
+	 * A column with a single element provides the same argument to all the rows.
+	 *
+	 * @param rowCount the number of rows to evaluate
+	 * @param columns the argument columns, one for each function argument
+	 * @return the function results, one for each row
+	 */
+	public Object[] invokeBulk(int rowCount, Object[]... columns) {
+		for(Object[] column : columns){
+			if(column.length!=1 && column.length<rowCount){
+				throw new JRRuntimeException("Column of " + column.length + " arguments for " 
+						+ rowCount + " rows of function " + functionId + ".");
+			}
+		}
+		Object[] results=new Object[rowCount];
+		JRExprFunctionOverload[] candidates=getCandidates(columns.length);
+		JRExprFunctionOverload overload=candidates.length==1 ? candidates[0] : null;
+		Object[] arguments=new Object[columns.length];
+		Class<?>[] argumentTypes=new Class<?>[columns.length];
+		for(int row=0;row<rowCount;row++){
+			boolean typesChanged=row==0;
+			for(int i=0;i<columns.length;i++){
+				Object[] column=columns[i];
+				Object argument=column.length==1 ? column[0] : column[row];
+				arguments[i]=argument;
+				Class<?> argumentType=argument==null ? null : argument.getClass();
+				if(argumentType!=argumentTypes[i]){
+					argumentTypes[i]=argumentType;
+					typesChanged=true;
+				}
+			}
+			if(typesChanged && candidates.length>1){
+				overload=dispatch(argumentTypes);
+			}
+			if(overload==null){
+				throw new JRRuntimeException("No method of function " + functionId + " accepts the arguments "
+						+ Arrays.asList(arguments) + ".");
+			}
+			results[row]=overload.invoke(arguments);
+		}
+		return results;
+	}
+
+	private static JRExprFunctionOverload selectOverload(JRExprFunctionOverload[] candidates, Class<?>[] argumentTypes) {
+		List<JRExprFunctionOverload> applicable=new ArrayList<JRExprFunctionOverload>();
+		for(JRExprFunctionOverload candidate : candidates){
+			if(isApplicable(candidate, argumentTypes)){
+				applicable.add(candidate);
+			}
+		}
+		if(applicable.isEmpty()){
+			return null;
+		}
+
+		for(JRExprFunctionOverload candidate : applicable){
+			boolean mostSpecific=true;
+			for(JRExprFunctionOverload other : applicable){
+				if(other!=candidate && !isMoreSpecific(candidate, other, argumentTypes.length)){
+					mostSpecific=false;
+					break;
+				}
+			}
+			if(mostSpecific){
+				return candidate;
+			}
+		}
+		// ambiguous call, falling back to the preferred overload
+		return applicable.get(0);
+	}
+
+	private static boolean isApplicable(JRExprFunctionOverload overload, Class<?>[] argumentTypes) {
+		for(int i=0;i<argumentTypes.length;i++){
+			Class<?> parameterType=getParameterType(overload, i);
+			if(argumentTypes[i]==null){
+				if(parameterType.isPrimitive()){
+					return false;
+				}
+			}
+			else if(!wrap(parameterType).isAssignableFrom(wrap(argumentTypes[i]))){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isMoreSpecific(JRExprFunctionOverload overload, JRExprFunctionOverload other, int argumentsCount) {
+		if(overload.isVarArgs()!=other.isVarArgs()){
+			return !overload.isVarArgs();
+		}
+		for(int i=0;i<argumentsCount;i++){
+			if(!wrap(getParameterType(other, i)).isAssignableFrom(wrap(getParameterType(overload, i)))){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Class<?> getParameterType(JRExprFunctionOverload overload, int argumentIndex) {
+		Class<?>[] parameterTypes=overload.getMethod().getParameterTypes();
+		if(argumentIndex<overload.getFixedArity()){
+			return parameterTypes[argumentIndex];
+		}
+		return parameterTypes[overload.getFixedArity()].getComponentType();
+	}
+
+	private static Class<?> wrap(Class<?> type) {
+		if(!type.isPrimitive()){
+			return type;
+		}
+		if(type==int.class) return Integer.class;
+		if(type==long.class) return Long.class;
+		if(type==double.class) return Double.class;
+		if(type==boolean.class) return Boolean.class;
+		if(type==float.class) return Float.class;
+		if(type==short.class) return Short.class;
+		if(type==byte.class) return Byte.class;
+		if(type==char.class) return Character.class;
+		return Void.class;
+	}
+
+	/**
+	 * Key of the argument types.
+	 */
+	private static final class Signature {
+
+		private final Class<?>[] types;
+		private final int hash;
+
+		Signature(Class<?>[] types) {
+			this.types=types.clone();
+			this.hash=Arrays.hashCode(types);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Signature && Arrays.equals(types, ((Signature) obj).types);
+		}
+
+	}
+
+}
@@ -0,0 +1,586 @@
+package net.sf.jasperreports.expressions.annotations;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.sf.jasperreports.engine.JRExpression;
+import net.sf.jasperreports.engine.JRExpressionChunk;
+import net.sf.jasperreports.engine.JRExpressionCollector;
+import net.sf.jasperreports.engine.JRReport;
+import net.sf.jasperreports.engine.JasperReportsContext;
+import net.sf.jasperreports.engine.design.JRDesignExpression;
+import net.sf.jasperreports.engine.design.JRDesignExpressionChunk;
+
+/**
+ * Constant folding of the function calls in Java report expressions.
+ *
+ * <p>
+ * The calls of the functions that are pure and deterministic (see {@link JRExprFunctionPurity})
+ * and whose arguments are all literals, or calls that can be folded themselves, are evaluated once
+ * and replaced by a literal of their result, so that they are not evaluated again for each record
+ * when the report is filled. For instance <code>BASE(255, 16)</code> becomes <code>"ff"</code>.
+ *
+ * <p>
+ * Only the <code>String</code>, <code>Boolean</code>, <code>Character</code>, primitive wrapper,
+ * <code>BigDecimal</code> and <code>BigInteger</code> results are folded, with a cast to the declared
+ * type of the function when it differs, so that the type of the expression does not change.
+ * A call is left unchanged when the function fails, returns <code>null</code>, or has overloads
+ * with primitive parameters, since those would be chosen differently by the Java compiler.
+ * A call is left unchanged too when the literal of its result would be longer than {@link #MAX_LITERAL_LENGTH}
+ * characters, as the Java compiler limits the size of the constants. When the result type can hold values of any size,
+ * the call is not evaluated if an integral argument, multiplied by the length of the text arguments, is larger
+ * than that limit, as for <code>REPT("-", 70000)</code>, so that large results are not even computed.
+ */
+public class JRExprFunctionFolder {
+
+	/**
+	 * Maximum length of the Java source of a folded result.
+	 */
+	public static final int MAX_LITERAL_LENGTH = 4096;
+
+	private static final Object NOT_FOLDABLE = new Object();
+
+	private final JasperReportsContext jasperReportsContext;
+	private final Map<String, JRExprFunctionDispatcher> dispatchersById;
+
+	/**
+	 * @param jasperReportsContext the context used to read the functions metadata
+	 * @param functionClasses the classes of the functions used by the expressions
+	 */
+	public JRExprFunctionFolder(JasperReportsContext jasperReportsContext, Class<?>... functionClasses) {
+		this.jasperReportsContext=jasperReportsContext;
+		this.dispatchersById=new HashMap<String, JRExprFunctionDispatcher>();
+		JRExprAnnotationsUtils utils=JRExprAnnotationsUtils.getInstance(jasperReportsContext);
+		Set<String> ids=new HashSet<String>();
+		for(Class<?> functionClass : functionClasses){
+			JRExprFunctionInvoker invoker=utils.getFunctionInvoker(functionClass);
+			for(JRExprFunctionMetadata metadata : utils.getFunctionsMetadata(functionClass)){
+				// a function defined by more than one class is not folded, the call is ambiguous
+				if(!ids.add(metadata.getId())){
+					dispatchersById.remove(metadata.getId());
+				}
+				else if(metadata.isPure() && metadata.isDeterministic()){
+					dispatchersById.put(metadata.getId(), invoker.getDispatcher(metadata.getId()));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the calls of a function can be folded.
+	 */
+	public boolean isFoldable(String functionId) {
+		return dispatchersById.containsKey(functionId);
+	}
+
+	/**
+	 * Folds the function calls in all the expressions of a report design.
+	 *
+	 * @param report the report, whose expressions language must be Java
+	 * @return the number of expressions changed
+	 */
+	public int fold(JRReport report) {
+		if(!JRReport.LANGUAGE_JAVA.equals(report.getLanguage())){
+			return 0;
+		}
+		int count=0;
+		for(JRExpression expression : JRExpressionCollector.collectExpressions(jasperReportsContext, report)){
+			if(expression instanceof JRDesignExpression && fold((JRDesignExpression) expression)){
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Folds the function calls in the text chunks of an expression.
+	 *
+	 * @return whether the expression has been changed
+	 */
+	public boolean fold(JRDesignExpression expression) {
+		JRExpressionChunk[] chunks=expression.getChunks();
+		if(chunks==null){
+			return false;
+		}
+		boolean folded=false;
+		List<JRExpressionChunk> foldedChunks=new ArrayList<JRExpressionChunk>(chunks.length);
+		for(JRExpressionChunk chunk : chunks){
+			if(chunk.getType()==JRExpressionChunk.TYPE_TEXT && chunk.getText()!=null){
+				String text=fold(chunk.getText());
+				if(!text.equals(chunk.getText())){
+					JRDesignExpressionChunk foldedChunk=new JRDesignExpressionChunk();
+					foldedChunk.setType(JRExpressionChunk.TYPE_TEXT);
+					foldedChunk.setText(text);
+					foldedChunks.add(foldedChunk);
+					folded=true;
+					continue;
+				}
+			}
+			foldedChunks.add(chunk);
+		}
+		if(folded){
+			expression.setChunks(foldedChunks);
+		}
+		return folded;
+	}
+
+	/**
+	 * Folds the function calls in the text of a Java expression.
+	 *
+	 * @return the folded text, the same text if there is nothing to fold
+	 */
+	public String fold(String text) {
+		Parser parser=new Parser(text);
+		StringBuilder folded=null;
+		int copied=0;
+		while(parser.position<text.length()){
+			char c=text.charAt(parser.position);
+			if(c=='"' || c=='\''){
+				parser.skipQuoted();
+			}
+			else if(c=='/' && parser.startsWith("//")){
+				parser.skipTo("\n");
+			}
+			else if(c=='/' && parser.startsWith("/*")){
+				parser.skipTo("*/");
+			}
+			else if(Character.isJavaIdentifierStart(c)){
+				int start=parser.position;
+				if(!parser.isMemberOrConstructor()){
+					Literal call=parser.parseCall();
+					String literal=call==null ? null : call.toJava();
+					if(literal!=null){
+						if(folded==null){
+							folded=new StringBuilder(text.length());
+						}
+						folded.append(text, copied, start).append(literal);
+						copied=parser.position;
+						continue;
+					}
+				}
+				parser.position=start;
+				parser.identifier();
+			}
+			else if(Character.isDigit(c)){
+				// skips the number, so that its suffixes and exponents are not taken for identifiers
+				while(parser.position<text.length()
+						&& (Character.isJavaIdentifierPart(text.charAt(parser.position)) || text.charAt(parser.position)=='.')){
+					parser.position++;
+				}
+			}
+			else{
+				parser.position++;
+			}
+		}
+		if(folded==null){
+			return text;
+		}
+		return folded.append(text, copied, text.length()).toString();
+	}
+
+	/*
+	 * A value known before the report is filled, with the type the Java compiler sees.
+	 */
+	private static final class Literal {
+
+		private final Object value;
+		private final Class<?> type;
+
+		Literal(Object value, Class<?> type) {
+			this.value=value;
+			this.type=type;
+		}
+
+		/*
+		 * Returns the Java source of the value, null if it has no literal representation.
+		 */
+		String toJava() {
+			String literal;
+			if(value instanceof String){
+				literal=quote((String) value);
+			}
+			else if(value instanceof Boolean){
+				literal=((Boolean) value).booleanValue() ? "Boolean.TRUE" : "Boolean.FALSE";
+			}
+			else if(value instanceof Integer){
+				literal="Integer.valueOf(" + value + ")";
+			}
+			else if(value instanceof Long){
+				literal="Long.valueOf(" + value + "L)";
+			}
+			else if(value instanceof Double){
+				literal="Double.valueOf(" + doubleLiteral((Double) value) + ")";
+			}
+			else if(value instanceof Float){
+				Float f=(Float) value;
+				literal="Float.valueOf(" + (f.isNaN() || f.isInfinite() ? "(float) " + doubleLiteral(f.doubleValue()) : f + "F") + ")";
+			}
+			else if(value instanceof Short){
+				literal="Short.valueOf((short) " + value + ")";
+			}
+			else if(value instanceof Byte){
+				literal="Byte.valueOf((byte) " + value + ")";
+			}
+			else if(value instanceof Character){
+				literal="Character.valueOf((char) " + (int) ((Character) value).charValue() + ")";
+			}
+			else if(value instanceof BigDecimal || value instanceof BigInteger){
+				literal="new " + value.getClass().getName() + "(\"" + value + "\")";
+			}
+			else{
+				return null;
+			}
+			if(type!=value.getClass()){
+				literal="((" + type.getCanonicalName() + ") " + literal + ")";
+			}
+			return literal;
+		}
+
+		private static String doubleLiteral(double value) {
+			if(Double.isNaN(value)) return "Double.NaN";
+			if(value==Double.POSITIVE_INFINITY) return "Double.POSITIVE_INFINITY";
+			if(value==Double.NEGATIVE_INFINITY) return "Double.NEGATIVE_INFINITY";
+			return Double.toString(value);
+		}
+
+		private static String quote(String value) {
+			StringBuilder quoted=new StringBuilder(value.length() + 2);
+			quoted.append('"');
+			for(int i=0;i<value.length();i++){
+				char c=value.charAt(i);
+				switch(c){
+					case '"': quoted.append("\\\""); break;
+					case '\\': quoted.append("\\\\"); break;
+					case '\n': quoted.append("\\n"); break;
+					case '\r': quoted.append("\\r"); break;
+					case '\t': quoted.append("\\t"); break;
+					case '\b': quoted.append("\\b"); break;
+					case '\f': quoted.append("\\f"); break;
+					default:
+						if(c<0x20 || c>=0x7F){
+							String hex=Integer.toHexString(c);
+							quoted.append("\\u");
+							for(int j=hex.length();j<4;j++){
+								quoted.append('0');
+							}
+							quoted.append(hex);
+						}
+						else{
+							quoted.append(c);
+						}
+				}
+			}
+			return quoted.append('"').toString();
+		}
+	}
+
+	/*
+	 * Reads the calls and the literals of an expression text.
+	 */
+	private final class Parser {
+
+		private final String text;
+		private int position;
+
+		Parser(String text) {
+			this.text=text;
+		}
+
+		boolean startsWith(String prefix) {
+			return text.startsWith(prefix, position);
+		}
+
+		void skipTo(String end) {
+			int index=text.indexOf(end, position + 2);
+			position=index<0 ? text.length() : index + end.length();
+		}
+
+		void skipQuoted() {
+			char quote=text.charAt(position++);
+			while(position<text.length()){
+				char c=text.charAt(position++);
+				if(c=='\\'){
+					position++;
+				}
+				else if(c==quote){
+					return;
+				}
+			}
+		}
+
+		void skipWhitespace() {
+			while(position<text.length() && Character.isWhitespace(text.charAt(position))){
+				position++;
+			}
+		}
+
+		boolean consume(char c) {
+			if(position<text.length() && text.charAt(position)==c){
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		String identifier() {
+			int start=position;
+			while(position<text.length() && Character.isJavaIdentifierPart(text.charAt(position))){
+				position++;
+			}
+			return text.substring(start, position);
+		}
+
+		/*
+		 * Returns whether the identifier at the current position is a method of an object or class,
+		 * or the class of a constructor call.
+		 */
+		boolean isMemberOrConstructor() {
+			int index=position-1;
+			while(index>=0 && Character.isWhitespace(text.charAt(index))){
+				index--;
+			}
+			if(index>=0 && text.charAt(index)=='.'){
+				return true;
+			}
+			int end=index+1;
+			while(index>=0 && Character.isJavaIdentifierPart(text.charAt(index))){
+				index--;
+			}
+			return text.substring(index+1, end).equals("new");
+		}
+
+		/*
+		 * Parses a function call and evaluates it, null if it cannot be folded.
+		 */
+		Literal parseCall() {
+			JRExprFunctionDispatcher dispatcher=dispatchersById.get(identifier());
+			if(dispatcher==null){
+				return null;
+			}
+			skipWhitespace();
+			if(!consume('(')){
+				return null;
+			}
+			List<Literal> arguments=new ArrayList<Literal>();
+			skipWhitespace();
+			if(!consume(')')){
+				do{
+					skipWhitespace();
+					Literal argument=parseArgument();
+					if(argument==null){
+						return null;
+					}
+					arguments.add(argument);
+					skipWhitespace();
+				}while(consume(','));
+				if(!consume(')')){
+					return null;
+				}
+			}
+			return evaluate(dispatcher, arguments);
+		}
+
+		private Literal parseArgument() {
+			if(position>=text.length()){
+				return null;
+			}
+			char c=text.charAt(position);
+			if(c=='"'){
+				Object value=parseString();
+				return value==NOT_FOLDABLE ? null : new Literal(value, String.class);
+			}
+			if(c=='-' || Character.isDigit(c)){
+				Object value=parseNumber();
+				return value==NOT_FOLDABLE ? null : new Literal(value, value.getClass());
+			}
+			if(Character.isJavaIdentifierStart(c)){
+				int start=position;
+				String identifier=identifier();
+				int end=position;
+				skipWhitespace();
+				if(position<text.length() && text.charAt(position)=='('){
+					position=start;
+					return parseCall();
+				}
+				position=end;
+				if(identifier.equals("true")) return new Literal(Boolean.TRUE, Boolean.class);
+				if(identifier.equals("false")) return new Literal(Boolean.FALSE, Boolean.class);
+				if(identifier.equals("null")) return new Literal(null, null);
+			}
+			return null;
+		}
+
+		private Object parseString() {
+			StringBuilder value=new StringBuilder();
+			position++;
+			while(position<text.length()){
+				char c=text.charAt(position++);
+				if(c=='"'){
+					return value.toString();
+				}
+				if(c=='\n' || c=='\r'){
+					return NOT_FOLDABLE;
+				}
+				if(c!='\\'){
+					value.append(c);
+					continue;
+				}
+				if(position>=text.length()){
+					return NOT_FOLDABLE;
+				}
+				char escape=text.charAt(position++);
+				switch(escape){
+					case 'b': value.append('\b'); break;
+					case 't': value.append('\t'); break;
+					case 'n': value.append('\n'); break;
+					case 'f': value.append('\f'); break;
+					case 'r': value.append('\r'); break;
+					case '"': value.append('"'); break;
+					case '\'': value.append('\''); break;
+					case '\\': value.append('\\'); break;
+					case 'u':
+						if(position+4>text.length()){
+							return NOT_FOLDABLE;
+						}
+						try{
+							value.append((char) Integer.parseInt(text.substring(position, position+4), 16));
+						}
+						catch(NumberFormatException e){
+							return NOT_FOLDABLE;
+						}
+						position+=4;
+						break;
+					default:
+						// octal escapes
+						return NOT_FOLDABLE;
+				}
+			}
+			return NOT_FOLDABLE;
+		}
+
+		/*
+		 * Parses a decimal literal, hexadecimal, octal and binary ones are not folded.
+		 */
+		private Object parseNumber() {
+			int start=position;
+			consume('-');
+			int digitsStart=position;
+			boolean decimal=false;
+			while(position<text.length() && Character.isDigit(text.charAt(position))){
+				position++;
+			}
+			int integerDigits=position-digitsStart;
+			if(integerDigits==0){
+				return NOT_FOLDABLE;
+			}
+			if(consume('.')){
+				decimal=true;
+				while(position<text.length() && Character.isDigit(text.charAt(position))){
+					position++;
+				}
+			}
+			if(consume('e') || consume('E')){
+				decimal=true;
+				if(!consume('+')){
+					consume('-');
+				}
+				int exponentStart=position;
+				while(position<text.length() && Character.isDigit(text.charAt(position))){
+					position++;
+				}
+				if(position==exponentStart){
+					return NOT_FOLDABLE;
+				}
+			}
+			String number=text.substring(start, position);
+			char suffix=position<text.length() ? Character.toUpperCase(text.charAt(position)) : 0;
+			if(suffix=='L' || suffix=='F' || suffix=='D'){
+				position++;
+			}
+			if(position<text.length() && (Character.isJavaIdentifierPart(text.charAt(position)) || text.charAt(position)=='.')){
+				return NOT_FOLDABLE;
+			}
+			if(!decimal && suffix!='F' && suffix!='D' && integerDigits>1 && text.charAt(digitsStart)=='0'){
+				return NOT_FOLDABLE;
+			}
+			try{
+				if(suffix=='F') return Float.valueOf(number);
+				if(decimal || suffix=='D') return Double.valueOf(number);
+				if(suffix=='L') return Long.valueOf(number);
+				return Integer.valueOf(number);
+			}
+			catch(NumberFormatException e){
+				return NOT_FOLDABLE;
+			}
+		}
+
+		private Literal evaluate(JRExprFunctionDispatcher dispatcher, List<Literal> arguments) {
+			Class<?>[] argumentTypes=new Class<?>[arguments.size()];
+			Object[] values=new Object[arguments.size()];
+			for(int i=0;i<argumentTypes.length;i++){
+				argumentTypes[i]=arguments.get(i).type;
+				values[i]=arguments.get(i).value;
+			}
+			for(JRExprFunctionOverload candidate : dispatcher.getCandidates(argumentTypes.length)){
+				for(Class<?> parameterType : candidate.getParameterTypes()){
+					if(parameterType.isPrimitive()){
+						return null;
+					}
+				}
+			}
+			JRExprFunctionOverload overload=dispatcher.dispatch(argumentTypes);
+			if(overload==null || mightExceedLiteralLength(overload.getReturnType(), values)){
+				return null;
+			}
+			Object value;
+			try{
+				value=overload.invoke(values);
+			}
+			catch(RuntimeException e){
+				// the call fails again when the report is filled
+				return null;
+			}
+			if(value==null){
+				return null;
+			}
+			Literal literal=new Literal(value, overload.getReturnType());
+			String java=literal.toJava();
+			if(java!=null && java.length()>MAX_LITERAL_LENGTH){
+				// neither this call nor the calls using its result are folded
+				return null;
+			}
+			return literal;
+		}
+
+		/*
+		 * Returns whether the result of a call, whose type can hold values of any size, might be too large:
+		 * the largest integral argument, as a number of copies or of elements, multiplied by the total length
+		 * of the text arguments, is larger than the maximum length of a literal.
+		 */
+		private boolean mightExceedLiteralLength(Class<?> returnType, Object[] values) {
+			if(returnType==Boolean.class || returnType==Character.class || returnType==Integer.class || returnType==Long.class
+					|| returnType==Double.class || returnType==Float.class || returnType==Short.class || returnType==Byte.class){
+				return false;
+			}
+			long textLength=0;
+			long maxIntegral=0;
+			for(Object value : values){
+				if(value instanceof String){
+					textLength+=((String) value).length();
+				}
+				else if(value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte){
+					maxIntegral=Math.max(maxIntegral, Math.abs(((Number) value).longValue()));
+				}
+			}
+			// the product could overflow, each factor is compared first
+			return maxIntegral>MAX_LITERAL_LENGTH || maxIntegral*Math.max(textLength, 1)>MAX_LITERAL_LENGTH;
+		}
+	}
+
+}
@@ -0,0 +1,154 @@
+package net.sf.jasperreports.expressions.annotations;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.sf.jasperreports.engine.JRRuntimeException;
+
+/**
+ * Registry of the methods implementing the functions of a class, resolved once
+ * so that the functions can be invoked without any further lookup.
+ *
+ * <p>
+ * Instances are obtained through {@link JRExprAnnotationsUtils#getFunctionInvoker(Class)},
+ * and are cached along with the function descriptors.
+ */
+public class JRExprFunctionInvoker {
+
+	private final Class<?> functionClass;
+	private final Map<String, List<JRExprFunctionOverload>> overloadsById;
+	private final Map<String, JRExprFunctionDispatcher> dispatchersById;
+
+	JRExprFunctionInvoker(Class<?> functionClass, List<JRExprFunctionMetadata> metadataList) {
+		this.functionClass=functionClass;
+		this.overloadsById=new LinkedHashMap<String, List<JRExprFunctionOverload>>();
+		this.dispatchersById=new HashMap<String, JRExprFunctionDispatcher>();
+		for(JRExprFunctionMetadata metadata : metadataList){
+			List<JRExprFunctionOverload> overloads=new ArrayList<JRExprFunctionOverload>();
+			List<Method> methods=new ArrayList<Method>();
+			for(Class<?>[] parameterTypes : metadata.getOverloads()){
+				Method method=resolveMethod(metadata.getId(), parameterTypes);
+				if(!methods.contains(method)){
+					methods.add(method);
+					overloads.add(new JRExprFunctionOverload(method));
+				}
+			}
+			overloadsById.put(metadata.getId(), Collections.unmodifiableList(overloads));
+			dispatchersById.put(metadata.getId(), new JRExprFunctionDispatcher(metadata.getId(), overloads));
+		}
+	}
+
+	private Method resolveMethod(String functionId, Class<?>[] parameterTypes) {
+		try{
+			return functionClass.getMethod(functionId, parameterTypes);
+		}
+		catch(NoSuchMethodException e){
+			throw new JRRuntimeException("Method " + functionId + Arrays.asList(parameterTypes)
+					+ " not found in function class " + functionClass.getName() + ".", e);
+		}
+	}
+
+	public Class<?> getFunctionClass() {
+		return functionClass;
+	}
+
+	/**
+	 * @return the ids of the functions in the class
+	 */
+	public Set<String> getFunctionIds() {
+		return Collections.unmodifiableSet(overloadsById.keySet());
+	}
+
+	/**
+	 * Returns the methods implementing a function, the annotated one first.
+	 *
+	 * @param functionId the function id
+	 * @return the list of overloads, empty if there is no such function
+	 */
+	public List<JRExprFunctionOverload> getOverloads(String functionId) {
+		List<JRExprFunctionOverload> overloads=overloadsById.get(functionId);
+		if(overloads==null){
+			return Collections.emptyList();
+		}
+		return overloads;
+	}
+
+	/**
+	 * Returns the overload having exactly the specified parameter types.
+	 *
+	 * @param functionId the function id
+	 * @param parameterTypes the parameter types of the method
+	 * @return the overload, <code>null</code> if not found
+	 */
+	public JRExprFunctionOverload getOverload(String functionId, Class<?>... parameterTypes) {
+		for(JRExprFunctionOverload overload : getOverloads(functionId)){
+			if(Arrays.equals(overload.getMethod().getParameterTypes(), parameterTypes)){
+				return overload;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the dispatch table of a function.
+	 *
+	 * @param functionId the function id
+	 * @return the dispatch table, <code>null</code> if there is no such function
+	 */
+	public JRExprFunctionDispatcher getDispatcher(String functionId) {
+		return dispatchersById.get(functionId);
+	}
+
+	/**
+	 * Returns the dispatch table of a function described by a bean.
+	 *
+	 * @param function the function bean, obtained for the same function class
+	 * @return the dispatch table, <code>null</code> if there is no such function
+	 */
+	public JRExprFunctionDispatcher getDispatcher(JRExprFunctionBean function) {
+		return getDispatcher(function.getId());
+	}
+
+	/**
+	 * Invokes a function, choosing the overload that best matches the arguments.
+	 *
+	 * @param functionId the function id
+	 * @param arguments the function arguments, variable arguments being passed one by one
+	 * @return the function result
+	 * @see JRExprFunctionDispatcher#invoke(Object...)
+	 */
+	public Object invoke(String functionId, Object... arguments) {
+		JRExprFunctionDispatcher dispatcher=getDispatcher(functionId);
+		if(dispatcher==null){
+			throw new JRRuntimeException("Function " + functionId + " not found in class " 
+					+ functionClass.getName() + ".");
+		}
+		return dispatcher.invoke(arguments);
+	}
+
+	/**
+	 * Invokes a function on columns of arguments, one call for each row.
+	 *
+	 * @param functionId the function id
+	 * @param rowCount the number of rows to evaluate
+	 * @param columns the argument columns, a column with a single element being used for all the rows
+	 * @return the function results, one for each row
+	 * @see JRExprFunctionDispatcher#invokeBulk(int, Object[][])
+	 */
+	public Object[] invokeBulk(String functionId, int rowCount, Object[]... columns) {
+		JRExprFunctionDispatcher dispatcher=getDispatcher(functionId);
+		if(dispatcher==null){
+			throw new JRRuntimeException("Function " + functionId + " not found in class " 
+					+ functionClass.getName() + ".");
+		}
+		return dispatcher.invokeBulk(rowCount, columns);
+	}
+
+}
@@ -0,0 +1,195 @@
+package net.sf.jasperreports.expressions.annotations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.jasperreports.functions.annotations.Function;
+import net.sf.jasperreports.functions.annotations.FunctionCategories;
+import net.sf.jasperreports.functions.annotations.FunctionMessagesBundle;
+import net.sf.jasperreports.functions.annotations.FunctionParameters;
+
+/**
+ * Raw, not localized, information about a function as found in its annotations.
+ *
+ * <p>
+ * It is either collected at runtime from the annotated methods, or
+ * generated at compile time in a {@link JRExprFunctionsDescriptor}.
+ *
+ * @see JRExprAnnotationsUtils
+ */
+public class JRExprFunctionMetadata {
+
+	private final String id;
+	private final Class<?> returnType;
+	private String messagesBundle;
+	private boolean annotatedWithFunction;
+	private String name;
+	private String description;
+	private String[] legacyCategories;
+	private Class<?>[] categoryClasses;
+	private Class<? extends JRExprAccumulator> accumulatorClass;
+	private boolean pure;
+	private boolean deterministic;
+	private List<String> parameterIds;
+	private List<String> legacyParameterNames;
+	private List<String> legacyParameterDescriptions;
+	private List<Class<?>[]> overloads;
+
+	public JRExprFunctionMetadata(String id, Class<?> returnType) {
+		this.id=id;
+		this.returnType=returnType;
+	}
+
+	/**
+	 * @return the function id, i.e. the name of the methods implementing it
+	 */
+	public String getId() {
+		return id;
+	}
+	public Class<?> getReturnType() {
+		return returnType;
+	}
+
+	/**
+	 * @return the value of the {@link FunctionMessagesBundle} annotation,
+	 * <code>null</code> if the default bundle of the function class package is used
+	 */
+	public String getMessagesBundle() {
+		return messagesBundle;
+	}
+	public void setMessagesBundle(String messagesBundle) {
+		this.messagesBundle = messagesBundle;
+	}
+
+	/**
+	 * @return <code>true</code> if the function is annotated with {@link Function},
+	 * <code>false</code> if it is annotated with {@link JRExprFunction}
+	 */
+	public boolean isAnnotatedWithFunction() {
+		return annotatedWithFunction;
+	}
+	public void setAnnotatedWithFunction(boolean annotatedWithFunction) {
+		this.annotatedWithFunction = annotatedWithFunction;
+	}
+
+	/**
+	 * @return the function name, the {@link Function} value or the {@link JRExprFunction} name
+	 */
+	public String getName() {
+		return name;
+	}
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @return the {@link JRExprFunction} description
+	 */
+	public String getDescription() {
+		return description;
+	}
+	public void setDescription(String description) {
+		this.description = description;
+	}
+
+	/**
+	 * @return the {@link JRExprFunctionCategories} values, <code>null</code> if not present
+	 */
+	public String[] getLegacyCategories() {
+		return legacyCategories;
+	}
+	public void setLegacyCategories(String[] legacyCategories) {
+		this.legacyCategories = legacyCategories;
+	}
+
+	/**
+	 * @return the {@link FunctionCategories} values, <code>null</code> if not present
+	 */
+	public Class<?>[] getCategoryClasses() {
+		return categoryClasses;
+	}
+	public void setCategoryClasses(Class<?>[] categoryClasses) {
+		this.categoryClasses = categoryClasses;
+	}
+
+	/**
+	 * @return the {@link JRExprFunctionAccumulator} value, <code>null</code> if not present
+	 */
+	public Class<? extends JRExprAccumulator> getAccumulatorClass() {
+		return accumulatorClass;
+	}
+	public void setAccumulatorClass(Class<? extends JRExprAccumulator> accumulatorClass) {
+		this.accumulatorClass = accumulatorClass;
+	}
+
+	/**
+	 * @return the {@link JRExprFunctionPurity} pure value, <code>false</code> if not present
+	 */
+	public boolean isPure() {
+		return pure;
+	}
+	public void setPure(boolean pure) {
+		this.pure = pure;
+	}
+
+	/**
+	 * @return the {@link JRExprFunctionPurity} deterministic value, <code>false</code> if not present
+	 */
+	public boolean isDeterministic() {
+		return deterministic;
+	}
+	public void setDeterministic(boolean deterministic) {
+		this.deterministic = deterministic;
+	}
+
+	/**
+	 * @return the {@link FunctionParameters} values, <code>null</code> if not present
+	 */
+	public List<String> getParameterIds() {
+		return parameterIds;
+	}
+	public void addParameterId(String parameterId) {
+		if(parameterIds==null){
+			parameterIds=new ArrayList<String>();
+		}
+		parameterIds.add(parameterId);
+	}
+
+	/**
+	 * @return the names from the {@link JRExprFunctionParameters} values, <code>null</code> if not present
+	 */
+	public List<String> getLegacyParameterNames() {
+		return legacyParameterNames;
+	}
+
+	/**
+	 * @return the descriptions from the {@link JRExprFunctionParameters} values, <code>null</code> if not present
+	 */
+	public List<String> getLegacyParameterDescriptions() {
+		return legacyParameterDescriptions;
+	}
+	public void addLegacyParameter(String name, String description) {
+		if(legacyParameterNames==null){
+			legacyParameterNames=new ArrayList<String>();
+			legacyParameterDescriptions=new ArrayList<String>();
+		}
+		legacyParameterNames.add(name);
+		legacyParameterDescriptions.add(description);
+	}
+
+	/**
+	 * Returns the parameter types of the methods implementing the function.
+	 * The first one is the annotated method, the others are the overloads
+	 * used to detect optional parameters.
+	 */
+	public List<Class<?>[]> getOverloads() {
+		if(overloads==null){
+			overloads=new ArrayList<Class<?>[]>();
+		}
+		return overloads;
+	}
+	public void addOverload(Class<?>... parameterTypes) {
+		getOverloads().add(parameterTypes);
+	}
+
+}
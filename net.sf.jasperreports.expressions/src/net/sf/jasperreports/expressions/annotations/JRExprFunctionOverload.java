@@ -0,0 +1,131 @@
+package net.sf.jasperreports.expressions.annotations;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import net.sf.jasperreports.engine.JRRuntimeException;
+
+/**
+ * One of the methods implementing a function, resolved once and ready to be invoked.
+ *
+ * <p>
+ * The information needed to adapt the arguments, like the variable arguments array type,
+ * is computed upfront so that each invocation only pays for the method call itself.
+ *
+ * @see JRExprFunctionInvoker
+ */
+public class JRExprFunctionOverload {
+
+	private final Method method;
+	private final Class<?>[] parameterTypes;
+	private final boolean varArgs;
+	private final int fixedArity;
+	private final Class<?> varArgsComponentType;
+
+	public JRExprFunctionOverload(Method method) {
+		if(!Modifier.isStatic(method.getModifiers())){
+			throw new JRRuntimeException("Function method " + method + " is not static.");
+		}
+		this.method=method;
+		// skips the access checks on each invocation
+		this.method.setAccessible(true);
+		this.parameterTypes=method.getParameterTypes();
+		this.varArgs=method.isVarArgs();
+		this.fixedArity=varArgs ? parameterTypes.length-1 : parameterTypes.length;
+		this.varArgsComponentType=varArgs ? parameterTypes[fixedArity].getComponentType() : null;
+	}
+
+	public Method getMethod() {
+		return method;
+	}
+
+	public Class<?>[] getParameterTypes() {
+		return parameterTypes.clone();
+	}
+
+	public Class<?> getReturnType() {
+		return method.getReturnType();
+	}
+
+	public boolean isVarArgs() {
+		return varArgs;
+	}
+
+	/**
+	 * @return the number of parameters, not counting the variable arguments one
+	 */
+	public int getFixedArity() {
+		return fixedArity;
+	}
+
+	/**
+	 * Checks if the overload can be called with the specified number of arguments,
+	 * the variable arguments being passed one by one.
+	 */
+	public boolean acceptsArity(int argumentsCount) {
+		return varArgs ? argumentsCount>=fixedArity : argumentsCount==fixedArity;
+	}
+
+	/**
+	 * Invokes the method, collecting the trailing arguments in an array when the method
+	 * has variable arguments.
+	 *
+	 * @param arguments the arguments, variable arguments being passed one by one
+	 * @return the function result
+	 */
+	public Object invoke(Object... arguments) {
+		if(!varArgs){
+			return invokeMethod(arguments);
+		}
+
+		Object[] methodArguments=new Object[fixedArity+1];
+		System.arraycopy(arguments, 0, methodArguments, 0, fixedArity);
+		int varArgsCount=arguments.length-fixedArity;
+		Object varArgsArray=Array.newInstance(varArgsComponentType, varArgsCount);
+		if(varArgsComponentType.isPrimitive()){
+			for(int i=0;i<varArgsCount;i++){
+				Array.set(varArgsArray, i, arguments[fixedArity+i]);
+			}
+		}
+		else{
+			System.arraycopy(arguments, fixedArity, varArgsArray, 0, varArgsCount);
+		}
+		methodArguments[fixedArity]=varArgsArray;
+		return invokeMethod(methodArguments);
+	}
+
+	/**
+	 * Invokes the method with arguments that already match its parameters,
+	 * variable arguments being passed as an array.
+	 *
+	 * @param arguments the method arguments
+	 * @return the function result
+	 */
+	public Object invokeMethod(Object[] arguments) {
+		try{
+			return method.invoke(null, arguments);
+		}
+		catch(IllegalAccessException e){
+			throw new JRRuntimeException(e);
+		}
+		catch(InvocationTargetException e){
+			// exceptions raised by the function are propagated as they are
+			Throwable cause=e.getCause();
+			if(cause instanceof RuntimeException){
+				throw (RuntimeException) cause;
+			}
+			if(cause instanceof Error){
+				throw (Error) cause;
+			}
+			throw new JRRuntimeException(cause);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return method.toString();
+	}
+
+}
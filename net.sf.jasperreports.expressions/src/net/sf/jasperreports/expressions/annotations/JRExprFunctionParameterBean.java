@@ -15,36 +15,55 @@ public class JRExprFunctionParameterBean {
 	private Class<?> parameterType;
 	private boolean isOptional;
 	private boolean isMulti;
+	private boolean locked;
 	
 	public String getName() {
 		return name;
 	}
 	public void setName(String name) {
+		checkUnlocked();
 		this.name = name;
 	}
 	public String getDescription() {
 		return description;
 	}
 	public void setDescription(String description) {
+		checkUnlocked();
 		this.description = description;
 	}
 	public Class<?> getParameterType() {
 		return parameterType;
 	}
 	public void setParameterType(Class<?> parameterType) {
+		checkUnlocked();
 		this.parameterType = parameterType;
 	}
 	public boolean isOptional() {
 		return isOptional;
 	}
 	public void setOptional(boolean isOptional) {
+		checkUnlocked();
 		this.isOptional = isOptional;
 	}
 	public boolean isMulti() {
 		return isMulti;
 	}
 	public void setMulti(boolean isMulti) {
+		checkUnlocked();
 		this.isMulti = isMulti;
 	}
+
+	/**
+	 * Makes the bean read-only, further changes will result in an {@link UnsupportedOperationException}.
+	 */
+	void lock() {
+		locked=true;
+	}
 	
+	private void checkUnlocked() {
+		if(locked){
+			throw new UnsupportedOperationException("The bean is read-only");
+		}
+	}
+
 }
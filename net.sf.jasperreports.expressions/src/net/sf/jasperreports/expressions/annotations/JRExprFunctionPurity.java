@@ -0,0 +1,33 @@
+package net.sf.jasperreports.expressions.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation to describe whether a function has side effects and whether its result depends
+ * only on its arguments. It goes on the same method as the {@link JRExprFunction} or <code>Function</code>
+ * annotation, or on the function class to describe all the functions it contains.
+ * The functions without the annotation are neither pure nor deterministic.
+ *
+ * <p>
+ * The calls of functions both pure and deterministic whose arguments are all literals can be
+ * replaced by their result before the report is filled, see {@link JRExprFunctionFolder}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface JRExprFunctionPurity {
+
+	/**
+	 * Whether the function has no side effects, for the overloads that receive values only
+	 * (and not, for instance, an <code>Appendable</code> to write to).
+	 */
+	boolean pure() default true;
+
+	/**
+	 * Whether the function always returns the same result for the same arguments, regardless of
+	 * the clock, the default locale and time zone, or any other state.
+	 */
+	boolean deterministic() default true;
+}
@@ -0,0 +1,33 @@
+package net.sf.jasperreports.expressions.annotations;
+
+import java.util.List;
+
+import net.sf.jasperreports.expressions.annotations.processor.JRExprFunctionsProcessor;
+
+/**
+ * Precompiled metadata for the functions contributed by a class.
+ *
+ * <p>
+ * Implementations are generated by {@link JRExprFunctionsProcessor} and are named after the
+ * function class, see {@link #DESCRIPTOR_SUFFIX}. When found, {@link JRExprAnnotationsUtils}
+ * uses them instead of scanning the function class through reflection.
+ */
+public interface JRExprFunctionsDescriptor {
+
+	/**
+	 * Suffix appended to the binary name of the function class, with <code>$</code>
+	 * replaced by <code>_</code>, to obtain the name of the descriptor class.
+	 */
+	String DESCRIPTOR_SUFFIX = "_JRExprFunctions";
+
+	/**
+	 * @return the class the descriptor has been generated for
+	 */
+	Class<?> getFunctionClass();
+
+	/**
+	 * @return the metadata of all the functions in the function class
+	 */
+	List<JRExprFunctionMetadata> getFunctions();
+
+}
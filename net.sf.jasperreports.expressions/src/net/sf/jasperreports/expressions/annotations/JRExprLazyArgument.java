@@ -0,0 +1,23 @@
+package net.sf.jasperreports.expressions.annotations;
+
+/**
+ * Argument of a function evaluated only if and when the function needs its value,
+ * like the branches of an <code>IF</code>.
+ *
+ * <p>
+ * Functions declare the arguments that can be evaluated lazily with overloads
+ * taking this type in place of the value type. The calls of these functions in the report
+ * expressions are rewritten to pass the lazy arguments by {@link JRExprLazyCallRewriter}.
+ *
+ * @param <T> the type of the value
+ */
+public interface JRExprLazyArgument<T> {
+
+	/**
+	 * Evaluates the argument. The result is not cached, each call evaluates the argument again.
+	 *
+	 * @return the value of the argument
+	 */
+	T evaluate();
+
+}
@@ -0,0 +1,425 @@
+package net.sf.jasperreports.expressions.annotations;
+
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.sf.jasperreports.engine.JRExpression;
+import net.sf.jasperreports.engine.JRExpressionCollector;
+import net.sf.jasperreports.engine.JRReport;
+import net.sf.jasperreports.engine.JasperReportsContext;
+import net.sf.jasperreports.engine.design.JRDesignExpression;
+
+/**
+ * Rewrites the calls of the functions having overloads with {@link JRExprLazyArgument} parameters
+ * in Java report expressions, so that those arguments are evaluated only when the function needs them.
+ *
+ * <p>
+ * The arguments passed to the lazy parameters of a call are wrapped in anonymous classes,
+ * for instance <code>IF($F{Amount} &gt; 0, LOOKUP($F{Id}), "")</code> becomes:
+ * <pre>
+ * IF($F{Amount} &gt; 0, new net.sf.jasperreports.expressions.annotations.JRExprLazyArgument&lt;java.lang.Object&gt;(){public java.lang.Object evaluate(){return LOOKUP($F{Id});}}, ...)
+ * </pre>
+ * so that the Java compiler selects the lazy overload. A call is rewritten only when an overload
+ * with lazy parameters accepts its number of arguments, and all the lazy parameters of that overload are wrapped.
+ *
+ * <p>
+ * A call is left unchanged when the arguments of the lazy parameters are all literals or
+ * <code>$P{}</code>, <code>$F{}</code> and <code>$V{}</code> references, that are not worth wrapping,
+ * or when a variable arity lazy overload would receive a single variable argument,
+ * that can be an array or an <code>Iterable</code> bound by another overload, as in <code>AND($P{Flags})</code>.
+ */
+public class JRExprLazyCallRewriter {
+
+	private static final String LAZY_ARGUMENT_CLASS = JRExprLazyArgument.class.getName();
+
+	private final JasperReportsContext jasperReportsContext;
+	private final Map<String, List<JRExprFunctionOverload>> lazyOverloadsById;
+
+	/**
+	 * @param jasperReportsContext the context used to read the functions metadata
+	 * @param functionClasses the classes of the functions used by the expressions
+	 */
+	public JRExprLazyCallRewriter(JasperReportsContext jasperReportsContext, Class<?>... functionClasses) {
+		this.jasperReportsContext=jasperReportsContext;
+		this.lazyOverloadsById=new HashMap<String, List<JRExprFunctionOverload>>();
+		JRExprAnnotationsUtils utils=JRExprAnnotationsUtils.getInstance(jasperReportsContext);
+		Set<String> ids=new HashSet<String>();
+		for(Class<?> functionClass : functionClasses){
+			JRExprFunctionInvoker invoker=utils.getFunctionInvoker(functionClass);
+			for(JRExprFunctionMetadata metadata : utils.getFunctionsMetadata(functionClass)){
+				// a function defined by more than one class is not rewritten, the call is ambiguous
+				if(!ids.add(metadata.getId())){
+					lazyOverloadsById.remove(metadata.getId());
+					continue;
+				}
+				List<JRExprFunctionOverload> lazyOverloads=new ArrayList<JRExprFunctionOverload>();
+				for(JRExprFunctionOverload overload : invoker.getOverloads(metadata.getId())){
+					if(hasLazyParameters(overload)){
+						lazyOverloads.add(overload);
+					}
+				}
+				if(!lazyOverloads.isEmpty()){
+					lazyOverloadsById.put(metadata.getId(), lazyOverloads);
+				}
+			}
+		}
+	}
+
+	private static boolean hasLazyParameters(JRExprFunctionOverload overload) {
+		for(Class<?> parameterType : overload.getParameterTypes()){
+			if(parameterType==JRExprLazyArgument.class || parameterType.getComponentType()==JRExprLazyArgument.class){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether a function has arguments that can be evaluated lazily.
+	 */
+	public boolean isLazy(String functionId) {
+		return lazyOverloadsById.containsKey(functionId);
+	}
+
+	/**
+	 * Rewrites the function calls in all the expressions of a report design.
+	 *
+	 * @param report the report, whose expressions language must be Java
+	 * @return the number of expressions changed
+	 */
+	public int rewrite(JRReport report) {
+		if(!JRReport.LANGUAGE_JAVA.equals(report.getLanguage())){
+			return 0;
+		}
+		int count=0;
+		for(JRExpression expression : JRExpressionCollector.collectExpressions(jasperReportsContext, report)){
+			if(expression instanceof JRDesignExpression && rewrite((JRDesignExpression) expression)){
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Rewrites the function calls of an expression.
+	 *
+	 * @return whether the expression has been changed
+	 */
+	public boolean rewrite(JRDesignExpression expression) {
+		String text=expression.getText();
+		if(text==null){
+			return false;
+		}
+		String rewritten=rewrite(text);
+		if(rewritten==text){
+			return false;
+		}
+		// the parameters, fields and variables references are parsed again
+		expression.setText(rewritten);
+		return true;
+	}
+
+	/**
+	 * Rewrites the function calls in the text of a Java expression, that can contain
+	 * the <code>$P{}</code>, <code>$F{}</code>, <code>$V{}</code> and <code>$R{}</code> references.
+	 *
+	 * @return the rewritten text, the same text if there is nothing to rewrite
+	 */
+	public String rewrite(String text) {
+		String rewritten=rewrite(text, 0, text.length());
+		return rewritten.equals(text) ? text : rewritten;
+	}
+
+	private String rewrite(String text, int from, int to) {
+		StringBuilder rewritten=null;
+		int copied=from;
+		int position=from;
+		while(position<to){
+			char c=text.charAt(position);
+			if(c=='"' || c=='\''){
+				position=skipQuoted(text, position, to);
+			}
+			else if(c=='/' && text.startsWith("//", position)){
+				position=skipTo(text, position + 2, to, "\n");
+			}
+			else if(c=='/' && text.startsWith("/*", position)){
+				position=skipTo(text, position + 2, to, "*/");
+			}
+			else if(c=='$' && isReference(text, position, to)){
+				position=skipTo(text, position, to, "}");
+			}
+			else if(Character.isJavaIdentifierStart(c)){
+				int start=position;
+				position=skipIdentifier(text, position, to);
+				List<JRExprFunctionOverload> lazyOverloads=lazyOverloadsById.get(text.substring(start, position));
+				if(lazyOverloads!=null && !isMemberOrConstructor(text, from, start)){
+					int open=skipWhitespace(text, position, to);
+					List<int[]> arguments=open<to && text.charAt(open)=='(' ? splitArguments(text, open + 1, to) : null;
+					JRExprFunctionOverload overload=arguments==null || arguments.isEmpty() ? null : selectOverload(lazyOverloads, arguments.size());
+					if(overload!=null && hasComplexLazyArgument(overload, text, arguments)){
+						if(rewritten==null){
+							rewritten=new StringBuilder(text.length() + 256);
+						}
+						rewritten.append(text, copied, open + 1);
+						for(int i=0;i<arguments.size();i++){
+							int[] range=arguments.get(i);
+							if(i>0){
+								rewritten.append(',');
+							}
+							appendArgument(rewritten, text, range[0], range[1], getLazyValueType(overload, i));
+						}
+						position=arguments.get(arguments.size() - 1)[1] + 1;
+						rewritten.append(')');
+						copied=position;
+					}
+				}
+			}
+			else if(Character.isDigit(c)){
+				// skips the number, so that its suffixes and exponents are not taken for identifiers
+				while(position<to && (Character.isJavaIdentifierPart(text.charAt(position)) || text.charAt(position)=='.')){
+					position++;
+				}
+			}
+			else{
+				position++;
+			}
+		}
+		if(rewritten==null){
+			return text.substring(from, to);
+		}
+		return rewritten.append(text, copied, to).toString();
+	}
+
+	/*
+	 * Appends an argument, with its calls rewritten, wrapped in a lazy argument
+	 * if the value type is not null.
+	 */
+	private void appendArgument(StringBuilder rewritten, String text, int from, int to, String valueType) {
+		int start=skipWhitespace(text, from, to);
+		int end=to;
+		while(end>start && Character.isWhitespace(text.charAt(end - 1))){
+			end--;
+		}
+		rewritten.append(text, from, start);
+		String argument=rewrite(text, start, end);
+		if(valueType==null){
+			rewritten.append(argument);
+		}
+		else{
+			rewritten.append("new ").append(LAZY_ARGUMENT_CLASS).append('<').append(valueType).append(">(){public ")
+					.append(valueType).append(" evaluate(){return ").append(argument).append(";}}");
+		}
+		rewritten.append(text, end, to);
+	}
+
+	private static JRExprFunctionOverload selectOverload(List<JRExprFunctionOverload> lazyOverloads, int argumentsCount) {
+		for(JRExprFunctionOverload overload : lazyOverloads){
+			// a single variable argument is not rewritten, it might be an array or an Iterable
+			if(overload.acceptsArity(argumentsCount) && (!overload.isVarArgs() || argumentsCount>overload.getFixedArity() + 1)){
+				return overload;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Returns whether one of the arguments of the lazy parameters is worth evaluating lazily.
+	 */
+	private static boolean hasComplexLazyArgument(JRExprFunctionOverload overload, String text, List<int[]> arguments) {
+		for(int i=0;i<arguments.size();i++){
+			int[] range=arguments.get(i);
+			if(getLazyValueType(overload, i)!=null && !isSimpleArgument(text, range[0], range[1])){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Returns whether an argument is a literal or a parameter, field or variable reference.
+	 */
+	private static boolean isSimpleArgument(String text, int from, int to) {
+		int start=skipWhitespace(text, from, to);
+		int end=to;
+		while(end>start && Character.isWhitespace(text.charAt(end - 1))){
+			end--;
+		}
+		if(start==end){
+			return false;
+		}
+		char c=text.charAt(start);
+		if(c=='"' || c=='\''){
+			return skipQuoted(text, start, end)==end;
+		}
+		if(c=='$'){
+			return end - start>3 && "PFV".indexOf(text.charAt(start + 1))>=0 && text.charAt(start + 2)=='{'
+					&& skipTo(text, start, end, "}")==end;
+		}
+		if(Character.isDigit(c)){
+			for(int position=start;position<end;position++){
+				if(!Character.isJavaIdentifierPart(text.charAt(position)) && text.charAt(position)!='.'){
+					return false;
+				}
+			}
+			return true;
+		}
+		String argument=text.substring(start, end);
+		return argument.equals("true") || argument.equals("false") || argument.equals("null");
+	}
+
+	/*
+	 * Returns the name of the type of the lazy parameter at the specified index,
+	 * null if the parameter is not lazy.
+	 */
+	private static String getLazyValueType(JRExprFunctionOverload overload, int index) {
+		Class<?>[] parameterTypes=overload.getParameterTypes();
+		Type[] genericTypes=overload.getMethod().getGenericParameterTypes();
+		int parameterIndex=Math.min(index, parameterTypes.length - 1);
+		Type genericType=genericTypes[parameterIndex];
+		if(overload.isVarArgs() && index>=overload.getFixedArity()){
+			if(parameterTypes[parameterIndex].getComponentType()!=JRExprLazyArgument.class){
+				return null;
+			}
+			genericType=genericType instanceof GenericArrayType ? ((GenericArrayType) genericType).getGenericComponentType() : null;
+		}
+		else if(parameterTypes[parameterIndex]!=JRExprLazyArgument.class){
+			return null;
+		}
+		Type valueType=genericType instanceof ParameterizedType ? ((ParameterizedType) genericType).getActualTypeArguments()[0] : null;
+		if(valueType instanceof WildcardType){
+			valueType=((WildcardType) valueType).getUpperBounds()[0];
+		}
+		if(valueType instanceof ParameterizedType){
+			valueType=((ParameterizedType) valueType).getRawType();
+		}
+		return valueType instanceof Class ? ((Class<?>) valueType).getCanonicalName() : Object.class.getName();
+	}
+
+	/*
+	 * Returns the ranges of the arguments of a call, starting after the open parenthesis,
+	 * null if the closing parenthesis is not found. The end of the last range is the closing parenthesis.
+	 */
+	private static List<int[]> splitArguments(String text, int from, int to) {
+		List<int[]> arguments=new ArrayList<int[]>();
+		if(skipWhitespace(text, from, to)<to && text.charAt(skipWhitespace(text, from, to))==')'){
+			return arguments;
+		}
+		int depth=0;
+		int start=from;
+		int position=from;
+		while(position<to){
+			char c=text.charAt(position);
+			if(c=='"' || c=='\''){
+				position=skipQuoted(text, position, to);
+				continue;
+			}
+			if(c=='/' && text.startsWith("//", position)){
+				position=skipTo(text, position + 2, to, "\n");
+				continue;
+			}
+			if(c=='/' && text.startsWith("/*", position)){
+				position=skipTo(text, position + 2, to, "*/");
+				continue;
+			}
+			if(c=='$' && isReference(text, position, to)){
+				position=skipTo(text, position, to, "}");
+				continue;
+			}
+			if(c=='(' || c=='[' || c=='{'){
+				depth++;
+			}
+			else if(c==')' || c==']' || c=='}'){
+				if(depth==0){
+					if(c!=')'){
+						return null;
+					}
+					arguments.add(new int[]{start, position});
+					return arguments;
+				}
+				depth--;
+			}
+			else if(c==',' && depth==0){
+				arguments.add(new int[]{start, position});
+				start=position + 1;
+			}
+			position++;
+		}
+		return null;
+	}
+
+	/*
+	 * Returns whether the identifier at the specified position is a method of an object or class,
+	 * or the class of a constructor call.
+	 */
+	private static boolean isMemberOrConstructor(String text, int from, int position) {
+		int index=position - 1;
+		while(index>=from && Character.isWhitespace(text.charAt(index))){
+			index--;
+		}
+		if(index>=from && text.charAt(index)=='.'){
+			return true;
+		}
+		int end=index + 1;
+		while(index>=from && Character.isJavaIdentifierPart(text.charAt(index))){
+			index--;
+		}
+		return text.substring(index + 1, end).equals("new");
+	}
+
+	/*
+	 * Returns whether a parameter, field, variable or resource reference starts at the specified position.
+	 */
+	private static boolean isReference(String text, int position, int to) {
+		int index=position + 1;
+		if(index<to && Character.isLetter(text.charAt(index))){
+			index++;
+			if(index<to && text.charAt(index)=='!'){
+				index++;
+			}
+			return index<to && text.charAt(index)=='{';
+		}
+		return false;
+	}
+
+	private static int skipQuoted(String text, int position, int to) {
+		char quote=text.charAt(position++);
+		while(position<to){
+			char c=text.charAt(position++);
+			if(c=='\\'){
+				position++;
+			}
+			else if(c==quote){
+				break;
+			}
+		}
+		return Math.min(position, to);
+	}
+
+	private static int skipTo(String text, int position, int to, String end) {
+		int index=text.indexOf(end, position);
+		return index<0 || index + end.length()>to ? to : index + end.length();
+	}
+
+	private static int skipIdentifier(String text, int position, int to) {
+		while(position<to && Character.isJavaIdentifierPart(text.charAt(position))){
+			position++;
+		}
+		return position;
+	}
+
+	private static int skipWhitespace(String text, int position, int to) {
+		while(position<to && Character.isWhitespace(text.charAt(position))){
+			position++;
+		}
+		return position;
+	}
+
+}
@@ -0,0 +1,428 @@
+package net.sf.jasperreports.expressions.annotations.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+
+import net.sf.jasperreports.expressions.annotations.JRExprAnnotationsUtils;
+import net.sf.jasperreports.expressions.annotations.JRExprFunctionsDescriptor;
+
+/**
+ * Annotation processor that generates a {@link JRExprFunctionsDescriptor} for each class
+ * containing expression functions, so that {@link JRExprAnnotationsUtils} does not need to
+ * scan the class through reflection.
+ *
+ * <p>
+ * The processor is registered as a service and is picked up by <code>javac</code> when this
+ * library is on the compile classpath. Classes that are not accessible from their package
+ * are skipped and keep being scanned at runtime.
+ */
+@SupportedAnnotationTypes({
+	JRExprFunctionsProcessor.JREXPR_FUNCTION_ANNOTATION,
+	JRExprFunctionsProcessor.FUNCTION_ANNOTATION})
+public class JRExprFunctionsProcessor extends AbstractProcessor
+{
+
+	static final String JREXPR_FUNCTION_ANNOTATION = "net.sf.jasperreports.expressions.annotations.JRExprFunction";
+	static final String JREXPR_FUNCTION_ACCUMULATOR_ANNOTATION = "net.sf.jasperreports.expressions.annotations.JRExprFunctionAccumulator";
+	static final String JREXPR_FUNCTION_CATEGORIES_ANNOTATION = "net.sf.jasperreports.expressions.annotations.JRExprFunctionCategories";
+	static final String JREXPR_FUNCTION_PURITY_ANNOTATION = "net.sf.jasperreports.expressions.annotations.JRExprFunctionPurity";
+	static final String JREXPR_FUNCTION_PARAMETERS_ANNOTATION = "net.sf.jasperreports.expressions.annotations.JRExprFunctionParameters";
+	static final String FUNCTION_ANNOTATION = "net.sf.jasperreports.functions.annotations.Function";
+	static final String FUNCTION_CATEGORIES_ANNOTATION = "net.sf.jasperreports.functions.annotations.FunctionCategories";
+	static final String FUNCTION_MESSAGES_BUNDLE_ANNOTATION = "net.sf.jasperreports.functions.annotations.FunctionMessagesBundle";
+	static final String FUNCTION_PARAMETERS_ANNOTATION = "net.sf.jasperreports.functions.annotations.FunctionParameters";
+
+	private static final String METADATA_CLASS = "net.sf.jasperreports.expressions.annotations.JRExprFunctionMetadata";
+	private static final String DESCRIPTOR_INTERFACE = "net.sf.jasperreports.expressions.annotations.JRExprFunctionsDescriptor";
+
+	@Override
+	public SourceVersion getSupportedSourceVersion()
+	{
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+	{
+		Set<TypeElement> functionClasses = new LinkedHashSet<TypeElement>();
+		for (TypeElement annotation : annotations)
+		{
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation))
+			{
+				if (element.getKind() == ElementKind.METHOD)
+				{
+					functionClasses.add((TypeElement) element.getEnclosingElement());
+				}
+			}
+		}
+
+		for (TypeElement functionClass : functionClasses)
+		{
+			if (isAccessible(functionClass))
+			{
+				generateDescriptor(functionClass);
+			}
+		}
+
+		// the annotations are only meaningful to this processor, claiming them avoids the unclaimed annotations warning
+		return true;
+	}
+
+	/**
+	 * Checks if the class can be referenced from a class in the same package.
+	 */
+	protected boolean isAccessible(TypeElement functionClass)
+	{
+		Element element = functionClass;
+		while (element instanceof TypeElement)
+		{
+			TypeElement type = (TypeElement) element;
+			if (type.getModifiers().contains(Modifier.PRIVATE)
+					|| type.getNestingKind() == NestingKind.LOCAL
+					|| type.getNestingKind() == NestingKind.ANONYMOUS)
+			{
+				return false;
+			}
+			element = type.getEnclosingElement();
+		}
+		return true;
+	}
+
+	/**
+	 * Groups the public methods of the class by function, same as {@link JRExprAnnotationsUtils} does at runtime:
+	 * the annotated method comes first, followed by the overloads having the same name.
+	 */
+	protected Map<String, List<ExecutableElement>> collectFunctionMethods(TypeElement functionClass)
+	{
+		List<ExecutableElement> publicMethods = new ArrayList<ExecutableElement>();
+		for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(functionClass)))
+		{
+			if (method.getModifiers().contains(Modifier.PUBLIC))
+			{
+				publicMethods.add(method);
+			}
+		}
+
+		Map<String, List<ExecutableElement>> methodsByName = new LinkedHashMap<String, List<ExecutableElement>>();
+		for (ExecutableElement method : publicMethods)
+		{
+			if (findAnnotation(method, JREXPR_FUNCTION_ANNOTATION) != null
+					|| findAnnotation(method, FUNCTION_ANNOTATION) != null)
+			{
+				String methodName = method.getSimpleName().toString();
+				List<ExecutableElement> methods = methodsByName.get(methodName);
+				if (methods == null)
+				{
+					methods = new ArrayList<ExecutableElement>();
+					methodsByName.put(methodName, methods);
+				}
+				methods.add(method);
+			}
+		}
+
+		for (ExecutableElement method : publicMethods)
+		{
+			if (findAnnotation(method, JREXPR_FUNCTION_ANNOTATION) == null
+					&& findAnnotation(method, FUNCTION_ANNOTATION) == null)
+			{
+				List<ExecutableElement> methods = methodsByName.get(method.getSimpleName().toString());
+				if (methods != null)
+				{
+					methods.add(method);
+				}
+			}
+		}
+		return methodsByName;
+	}
+
+	protected void generateDescriptor(TypeElement functionClass)
+	{
+		Elements elements = processingEnv.getElementUtils();
+		PackageElement packageElement = elements.getPackageOf(functionClass);
+		String packageName = packageElement.isUnnamed() ? null : packageElement.getQualifiedName().toString();
+		String binaryName = elements.getBinaryName(functionClass).toString();
+		String simpleBinaryName = packageName == null ? binaryName : binaryName.substring(packageName.length() + 1);
+		String descriptorName = simpleBinaryName.replace('$', '_') + JRExprFunctionsDescriptor.DESCRIPTOR_SUFFIX;
+		String descriptorQualifiedName = packageName == null ? descriptorName : packageName + "." + descriptorName;
+
+		Map<String, List<ExecutableElement>> functions = collectFunctionMethods(functionClass);
+
+		PrintWriter writer = null;
+		try
+		{
+			writer = new PrintWriter(processingEnv.getFiler().createSourceFile(descriptorQualifiedName, functionClass).openWriter());
+			if (packageName != null)
+			{
+				writer.println("package " + packageName + ";");
+				writer.println();
+			}
+			writer.println("/**");
+			writer.println(" * Functions descriptor for {@link " + functionClass.getQualifiedName() + "}.");
+			writer.println(" * Generated by " + getClass().getName() + ", do not edit.");
+			writer.println(" */");
+			writer.println("public final class " + descriptorName + " implements " + DESCRIPTOR_INTERFACE);
+			writer.println("{");
+			writer.println();
+			writer.println("\tpublic Class<?> getFunctionClass()");
+			writer.println("\t{");
+			writer.println("\t\treturn " + functionClass.getQualifiedName() + ".class;");
+			writer.println("\t}");
+			writer.println();
+			writer.println("\tpublic java.util.List<" + METADATA_CLASS + "> getFunctions()");
+			writer.println("\t{");
+			writer.println("\t\tjava.util.List<" + METADATA_CLASS + "> functions = new java.util.ArrayList<" + METADATA_CLASS + ">(" + functions.size() + ");");
+			for (int i = 0; i < functions.size(); i++)
+			{
+				writer.println("\t\tfunctions.add(function" + i + "());");
+			}
+			writer.println("\t\treturn functions;");
+			writer.println("\t}");
+
+			// one method per function to stay away from the method size limit
+			int functionIndex = 0;
+			for (List<ExecutableElement> methods : functions.values())
+			{
+				writer.println();
+				writer.println("\tprivate static " + METADATA_CLASS + " function" + functionIndex + "()");
+				writer.println("\t{");
+				writeFunction(writer, functionClass, methods);
+				writer.println("\t}");
+				functionIndex++;
+			}
+			writer.println();
+			writer.println("}");
+		}
+		catch (IOException e)
+		{
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+					"Unable to generate the functions descriptor: " + e.getMessage(), functionClass);
+		}
+		finally
+		{
+			if (writer != null)
+			{
+				writer.close();
+			}
+		}
+	}
+
+	/**
+	 * Writes the statements creating the metadata, mirroring the runtime reflection based scan.
+	 */
+	protected void writeFunction(PrintWriter writer, TypeElement functionClass, List<ExecutableElement> methods)
+	{
+		ExecutableElement first = methods.get(0);
+		writer.println("\t\t" + METADATA_CLASS + " function = new " + METADATA_CLASS + "("
+				+ literal(first.getSimpleName().toString()) + ", " + classLiteral(first.getReturnType()) + ");");
+
+		AnnotationMirror messagesBundle = findAnnotation(first, FUNCTION_MESSAGES_BUNDLE_ANNOTATION);
+		if (messagesBundle == null)
+		{
+			messagesBundle = findAnnotation(functionClass, FUNCTION_MESSAGES_BUNDLE_ANNOTATION);
+		}
+		if (messagesBundle != null)
+		{
+			writer.println("\t\tfunction.setMessagesBundle(" + literal((String) getValue(messagesBundle, "value")) + ");");
+		}
+
+		AnnotationMirror function = findAnnotation(first, FUNCTION_ANNOTATION);
+		if (function == null)
+		{
+			AnnotationMirror legacyFunction = findAnnotation(first, JREXPR_FUNCTION_ANNOTATION);
+			writer.println("\t\tfunction.setName(" + literal((String) getValue(legacyFunction, "name")) + ");");
+			writer.println("\t\tfunction.setDescription(" + literal((String) getValue(legacyFunction, "description")) + ");");
+		}
+		else
+		{
+			writer.println("\t\tfunction.setAnnotatedWithFunction(true);");
+			writer.println("\t\tfunction.setName(" + literal((String) getValue(function, "value")) + ");");
+		}
+
+		AnnotationMirror legacyCategories = findAnnotation(first, JREXPR_FUNCTION_CATEGORIES_ANNOTATION);
+		if (legacyCategories == null)
+		{
+			AnnotationMirror categories = findAnnotation(first, FUNCTION_CATEGORIES_ANNOTATION);
+			if (categories == null)
+			{
+				categories = findAnnotation(functionClass, FUNCTION_CATEGORIES_ANNOTATION);
+			}
+			if (categories != null)
+			{
+				StringBuilder classes = new StringBuilder();
+				for (AnnotationValue category : getValues(categories, "value"))
+				{
+					classes.append(classes.length() == 0 ? "" : ", ").append(classLiteral((TypeMirror) category.getValue()));
+				}
+				writer.println("\t\tfunction.setCategoryClasses(new Class<?>[]{" + classes + "});");
+			}
+		}
+		else
+		{
+			StringBuilder ids = new StringBuilder();
+			for (AnnotationValue category : getValues(legacyCategories, "value"))
+			{
+				ids.append(ids.length() == 0 ? "" : ", ").append(literal((String) category.getValue()));
+			}
+			writer.println("\t\tfunction.setLegacyCategories(new String[]{" + ids + "});");
+		}
+
+		AnnotationMirror accumulator = findAnnotation(first, JREXPR_FUNCTION_ACCUMULATOR_ANNOTATION);
+		if (accumulator != null)
+		{
+			writer.println("\t\tfunction.setAccumulatorClass(" + classLiteral((TypeMirror) getValue(accumulator, "value")) + ");");
+		}
+
+		AnnotationMirror purity = findAnnotation(first, JREXPR_FUNCTION_PURITY_ANNOTATION);
+		if (purity == null)
+		{
+			purity = findAnnotation(functionClass, JREXPR_FUNCTION_PURITY_ANNOTATION);
+		}
+		if (purity != null)
+		{
+			writer.println("\t\tfunction.setPure(" + getValue(purity, "pure") + ");");
+			writer.println("\t\tfunction.setDeterministic(" + getValue(purity, "deterministic") + ");");
+		}
+
+		AnnotationMirror parameters = findAnnotation(first, FUNCTION_PARAMETERS_ANNOTATION);
+		if (parameters == null)
+		{
+			AnnotationMirror legacyParameters = findAnnotation(first, JREXPR_FUNCTION_PARAMETERS_ANNOTATION);
+			if (legacyParameters != null)
+			{
+				for (AnnotationValue parameterValue : getValues(legacyParameters, "value"))
+				{
+					AnnotationMirror parameter = (AnnotationMirror) parameterValue.getValue();
+					writer.println("\t\tfunction.addLegacyParameter(" + literal((String) getValue(parameter, "name"))
+							+ ", " + literal((String) getValue(parameter, "description")) + ");");
+				}
+			}
+		}
+		else
+		{
+			for (AnnotationValue parameterValue : getValues(parameters, "value"))
+			{
+				AnnotationMirror parameter = (AnnotationMirror) parameterValue.getValue();
+				writer.println("\t\tfunction.addParameterId(" + literal((String) getValue(parameter, "value")) + ");");
+			}
+		}
+
+		for (ExecutableElement method : methods)
+		{
+			StringBuilder types = new StringBuilder();
+			for (VariableElement parameter : method.getParameters())
+			{
+				types.append(types.length() == 0 ? "" : ", ").append(classLiteral(parameter.asType()));
+			}
+			writer.println("\t\tfunction.addOverload(new Class<?>[]{" + types + "});");
+		}
+		writer.println("\t\treturn function;");
+	}
+
+	protected AnnotationMirror findAnnotation(Element element, String annotationType)
+	{
+		for (AnnotationMirror annotation : element.getAnnotationMirrors())
+		{
+			TypeElement type = (TypeElement) annotation.getAnnotationType().asElement();
+			if (type.getQualifiedName().contentEquals(annotationType))
+			{
+				return annotation;
+			}
+		}
+		return null;
+	}
+
+	protected Object getValue(AnnotationMirror annotation, String name)
+	{
+		Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+				processingEnv.getElementUtils().getElementValuesWithDefaults(annotation);
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : values.entrySet())
+		{
+			if (entry.getKey().getSimpleName().contentEquals(name))
+			{
+				return entry.getValue().getValue();
+			}
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	protected List<? extends AnnotationValue> getValues(AnnotationMirror annotation, String name)
+	{
+		return (List<? extends AnnotationValue>) getValue(annotation, name);
+	}
+
+	protected String classLiteral(TypeMirror type)
+	{
+		return processingEnv.getTypeUtils().erasure(type).toString() + ".class";
+	}
+
+	protected static String literal(String value)
+	{
+		if (value == null)
+		{
+			return "null";
+		}
+
+		StringBuilder literal = new StringBuilder(value.length() + 2);
+		literal.append('"');
+		for (int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			switch (c)
+			{
+				case '"':
+					literal.append("\\\"");
+					break;
+				case '\\':
+					literal.append("\\\\");
+					break;
+				case '\n':
+					literal.append("\\n");
+					break;
+				case '\r':
+					literal.append("\\r");
+					break;
+				case '\t':
+					literal.append("\\t");
+					break;
+				default:
+					if (c < 0x20 || c > 0x7e)
+					{
+						literal.append(String.format("\\u%04x", (int) c));
+					}
+					else
+					{
+						literal.append(c);
+					}
+			}
+		}
+		literal.append('"');
+		return literal.toString();
+	}
+
+}
@@ -0,0 +1,185 @@
+package net.sf.jasperreports.expressions.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JasperReportsContext;
+import net.sf.jasperreports.engine.SimpleJasperReportsContext;
+import net.sf.jasperreports.expressions.annotations.JRExprAccumulator;
+import net.sf.jasperreports.expressions.annotations.JRExprAnnotationsUtils;
+import net.sf.jasperreports.expressions.annotations.JRExprFunctionBean;
+import net.sf.jasperreports.expressions.annotations.JRExprFunctionMetadata;
+import net.sf.jasperreports.expressions.annotations.JRExprFunctionsDescriptor;
+import net.sf.jasperreports.functions.FunctionsBundle;
+
+import org.junit.Test;
+
+/**
+ * Tests the caching of the function descriptors and the generated metadata.
+ */
+public class JRExprAnnotationsUtilsTest {
+
+	@Test
+	public void testSharedInstance() {
+		JasperReportsContext context = DefaultJasperReportsContext.getInstance();
+		assertSame(JRExprAnnotationsUtils.getInstance(context), JRExprAnnotationsUtils.getInstance(context));
+		
+		JasperReportsContext otherContext = new SimpleJasperReportsContext();
+		assertNotSame(JRExprAnnotationsUtils.getInstance(context), JRExprAnnotationsUtils.getInstance(otherContext));
+	}
+	
+	@Test
+	public void testCachedFunctionsList() {
+		JasperReportsContext context = new SimpleJasperReportsContext();
+		JRExprAnnotationsUtils utils = JRExprAnnotationsUtils.getInstance(context);
+		List<JRExprFunctionBean> functions = utils.getFunctionsList(SampleFunctions.class, Locale.ENGLISH);
+		assertEquals(8, functions.size());
+		assertSame(functions, utils.getFunctionsList(SampleFunctions.class, Locale.ENGLISH));
+		assertNotSame(functions, utils.getFunctionsList(SampleFunctions.class, Locale.ITALIAN));
+		
+		JRExprAnnotationsUtils.clearCache(context);
+		assertNotSame(functions, JRExprAnnotationsUtils.getInstance(context).getFunctionsList(SampleFunctions.class, Locale.ENGLISH));
+	}
+	
+	@Test
+	public void testExtensionsReload() {
+		SimpleJasperReportsContext context = new SimpleJasperReportsContext();
+		FunctionsBundle bundle = new FunctionsBundle();
+		bundle.addFunctionClass(SampleFunctions.class);
+		context.setExtensions(FunctionsBundle.class, Collections.singletonList(bundle));
+		JRExprAnnotationsUtils utils = JRExprAnnotationsUtils.getInstance(context);
+		assertSame(utils, JRExprAnnotationsUtils.getInstance(context));
+		
+		// same classes contributed by reloaded bundles
+		FunctionsBundle reloadedBundle = new FunctionsBundle();
+		reloadedBundle.addFunctionClass(SampleFunctions.class);
+		context.setExtensions(FunctionsBundle.class, Collections.singletonList(reloadedBundle));
+		assertSame(utils, JRExprAnnotationsUtils.getInstance(context));
+		
+		FunctionsBundle otherBundle = new FunctionsBundle();
+		otherBundle.addFunctionClass(SampleClassA.class);
+		context.setExtensions(FunctionsBundle.class, Arrays.asList(reloadedBundle, otherBundle));
+		JRExprAnnotationsUtils reloadedUtils = JRExprAnnotationsUtils.getInstance(context);
+		assertNotSame(utils, reloadedUtils);
+		assertSame(reloadedUtils, JRExprAnnotationsUtils.getInstance(context));
+	}
+	
+	/**
+	 * Counts the lookups of its function classes.
+	 */
+	private static class CountingFunctionsBundle extends FunctionsBundle {
+		
+		private int lookups;
+		
+		@Override
+		public List<Class<?>> getFunctionClasses() {
+			lookups++;
+			return super.getFunctionClasses();
+		}
+	}
+	
+	@Test
+	public void testUnchangedBundlesNotCollected() {
+		final CountingFunctionsBundle bundle = new CountingFunctionsBundle();
+		bundle.addFunctionClass(SampleFunctions.class);
+		// a new list of the same bundles on each lookup, as the default extensions registry
+		SimpleJasperReportsContext context = new SimpleJasperReportsContext() {
+			@Override
+			@SuppressWarnings("unchecked")
+			public <T> List<T> getExtensions(Class<T> extensionType) {
+				if (extensionType == FunctionsBundle.class) {
+					return (List<T>) new ArrayList<FunctionsBundle>(Collections.singletonList(bundle));
+				}
+				return super.getExtensions(extensionType);
+			}
+		};
+		JRExprAnnotationsUtils utils = JRExprAnnotationsUtils.getInstance(context);
+		int lookups = bundle.lookups;
+		for (int i = 0; i < 10; i++) {
+			assertSame(utils, JRExprAnnotationsUtils.getInstance(context));
+		}
+		assertEquals(lookups, bundle.lookups);
+	}
+	
+	@Test(expected=UnsupportedOperationException.class)
+	public void testReadOnlyList() {
+		List<JRExprFunctionBean> functions = JRExprAnnotationsUtils.getInstance(new SimpleJasperReportsContext()).getFunctionsList(SampleFunctions.class);
+		functions.clear();
+	}
+
+	@Test(expected=UnsupportedOperationException.class)
+	public void testReadOnlyBean() {
+		List<JRExprFunctionBean> functions = JRExprAnnotationsUtils.getInstance(new SimpleJasperReportsContext()).getFunctionsList(SampleFunctions.class);
+		functions.get(0).getParameters().get(0).setOptional(true);
+	}
+
+	@Test
+	public void testGeneratedDescriptor() throws Exception {
+		Class<?> descriptorClass = Class.forName(SampleFunctions.class.getName() + JRExprFunctionsDescriptor.DESCRIPTOR_SUFFIX);
+		JRExprFunctionsDescriptor descriptor = (JRExprFunctionsDescriptor) descriptorClass.newInstance();
+		assertSame(SampleFunctions.class, descriptor.getFunctionClass());
+		
+		List<JRExprFunctionMetadata> functions = descriptor.getFunctions();
+		assertEquals(8, functions.size());
+		JRExprFunctionMetadata twice = functions.get(0);
+		assertEquals("TWICE", twice.getId());
+		assertEquals(Integer.class, twice.getReturnType());
+		assertEquals(2, twice.getOverloads().size());
+		assertEquals(1, twice.getOverloads().get(0).length);
+		assertEquals(2, twice.getOverloads().get(1).length);
+		assertNull(twice.getAccumulatorClass());
+		assertEquals(SampleFunctions.Total.class, functions.get(3).getAccumulatorClass());
+		assertTrue(twice.isPure());
+		assertTrue(twice.isDeterministic());
+		assertFalse(functions.get(4).isPure());
+		assertFalse(functions.get(4).isDeterministic());
+	}
+	
+	@Test
+	public void testFunctionBeans() {
+		List<JRExprFunctionBean> functions = JRExprAnnotationsUtils.getInstance(new SimpleJasperReportsContext()).getFunctionsList(SampleFunctions.class);
+		for (JRExprFunctionBean function : functions) {
+			if (function.getId().equals("TWICE")) {
+				assertEquals("Number", function.getParameters().get(0).getName());
+				assertFalse(function.getParameters().get(0).isOptional());
+				assertTrue(function.getParameters().get(1).isOptional());
+				assertEquals(Integer.class, function.getParameters().get(1).getParameterType());
+				assertNull(function.createAccumulator());
+				assertTrue(function.isPure());
+				assertTrue(function.isDeterministic());
+			}
+			else if (function.getId().equals("NEXT")) {
+				assertFalse(function.isPure());
+				assertFalse(function.isDeterministic());
+			}
+			else if (function.getId().equals("TOTAL")) {
+				JRExprAccumulator accumulator = function.createAccumulator();
+				accumulator.add(2);
+				accumulator.add(Integer.valueOf(3));
+				JRExprAccumulator other = function.createAccumulator();
+				other.add(4.0);
+				accumulator.merge(other);
+				assertEquals(Long.valueOf(9), accumulator.result());
+			}
+			else if (function.getId().equals("PICK")) {
+				assertEquals(3, function.getParameters().size());
+				assertFalse(function.getParameters().get(2).isOptional());
+			}
+			else if (!function.getId().equals("HALF")) {
+				assertTrue(function.getId().equals("JOIN") || function.getId().equals("ALL") || function.getId().equals("REPEAT"));
+				assertEquals(!function.getId().equals("REPEAT"), function.getParameters().get(0).isMulti());
+			}
+		}
+	}
+}
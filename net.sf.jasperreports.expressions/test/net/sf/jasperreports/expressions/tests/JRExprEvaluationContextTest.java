@@ -0,0 +1,80 @@
+package net.sf.jasperreports.expressions.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.SimpleJasperReportsContext;
+import net.sf.jasperreports.expressions.annotations.JRExprAnnotationsUtils;
+import net.sf.jasperreports.expressions.annotations.JRExprEvaluationContext;
+import net.sf.jasperreports.expressions.annotations.JRExprFunctionBean;
+
+import org.junit.Test;
+
+/**
+ * Tests the binding and the values of {@link JRExprEvaluationContext}.
+ */
+public class JRExprEvaluationContextTest {
+
+	@Test
+	public void testBinding() {
+		assertNull(JRExprEvaluationContext.getCurrent());
+		JRExprEvaluationContext outer = new JRExprEvaluationContext(null, null);
+		JRExprEvaluationContext inner = new JRExprEvaluationContext(null, null);
+		assertNull(JRExprEvaluationContext.bind(outer));
+		try {
+			JRExprEvaluationContext previous = JRExprEvaluationContext.bind(inner);
+			assertSame(outer, previous);
+			assertSame(inner, JRExprEvaluationContext.getCurrent());
+			JRExprEvaluationContext.bind(previous);
+			assertSame(outer, JRExprEvaluationContext.getCurrent());
+		} finally {
+			JRExprEvaluationContext.bind(null);
+		}
+		assertNull(JRExprEvaluationContext.getCurrent());
+	}
+
+	@Test
+	public void testParameters() {
+		Map<String, Object> parameters = new HashMap<String, Object>();
+		parameters.put(JRParameter.REPORT_LOCALE, Locale.ITALIAN);
+		parameters.put(JRParameter.REPORT_TIME_ZONE, TimeZone.getTimeZone("Europe/Rome"));
+		JRExprEvaluationContext context = JRExprEvaluationContext.forParameters(parameters);
+		assertEquals(Locale.ITALIAN, context.getLocale());
+		assertEquals("Europe/Rome", context.getTimeZone().getID());
+
+		context = JRExprEvaluationContext.forParameters(null);
+		assertNull(context.getLocale());
+		assertNull(context.getTimeZone());
+	}
+
+	@Test
+	public void testCache() {
+		JRExprEvaluationContext context = new JRExprEvaluationContext(1000L, null, null);
+		assertEquals(1000L, context.getCurrentTimeMillis());
+		Object key = new Object();
+		assertNull(context.getCached(key));
+		assertEquals("first", context.cache(key, "first"));
+		assertEquals("first", context.cache(key, "second"));
+		assertEquals("first", context.getCached(key));
+	}
+
+	@Test
+	public void testFunctionsLocale() {
+		JRExprAnnotationsUtils utils = JRExprAnnotationsUtils.getInstance(new SimpleJasperReportsContext());
+		JRExprEvaluationContext previous = JRExprEvaluationContext.bind(new JRExprEvaluationContext(Locale.ITALIAN, null));
+		try {
+			List<JRExprFunctionBean> functions = utils.getFunctionsList(SampleFunctions.class);
+			assertSame(utils.getFunctionsList(SampleFunctions.class, Locale.ITALIAN), functions);
+		} finally {
+			JRExprEvaluationContext.bind(previous);
+		}
+	}
+}
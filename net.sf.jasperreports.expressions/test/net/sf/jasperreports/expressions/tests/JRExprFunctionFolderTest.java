@@ -0,0 +1,98 @@
+package net.sf.jasperreports.expressions.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import net.sf.jasperreports.engine.JRExpressionChunk;
+import net.sf.jasperreports.engine.SimpleJasperReportsContext;
+import net.sf.jasperreports.engine.design.JRDesignExpression;
+import net.sf.jasperreports.expressions.annotations.JRExprFunctionFolder;
+
+import org.junit.Test;
+
+/**
+ * Tests the constant folding of function calls through {@link JRExprFunctionFolder}.
+ */
+public class JRExprFunctionFolderTest {
+
+	private JRExprFunctionFolder getFolder() {
+		return new JRExprFunctionFolder(new SimpleJasperReportsContext(), SampleFunctions.class);
+	}
+
+	@Test
+	public void testFoldableFunctions() {
+		JRExprFunctionFolder folder = getFolder();
+		assertTrue(folder.isFoldable("TWICE"));
+		assertTrue(folder.isFoldable("JOIN"));
+		assertFalse(folder.isFoldable("NEXT"));
+		assertFalse(folder.isFoldable("MISSING"));
+	}
+
+	@Test
+	public void testFoldedCalls() {
+		JRExprFunctionFolder folder = getFolder();
+		assertEquals("Integer.valueOf(6)", folder.fold("TWICE(3)"));
+		assertEquals("Integer.valueOf(6) + 1", folder.fold("TWICE( 3 ) + 1"));
+		assertEquals("Integer.valueOf(6)", folder.fold("TWICE(TWICE(1), 3)"));
+		assertEquals("Integer.valueOf(2)", folder.fold("HALF(4)"));
+		assertEquals("((java.lang.Number) Double.valueOf(1.5))", folder.fold("HALF(3.0)"));
+		assertEquals("\"a\\\"b\"", folder.fold("JOIN(\"a\", \"\\\"b\")"));
+	}
+
+	@Test
+	public void testUnchangedCalls() {
+		JRExprFunctionFolder folder = getFolder();
+		String[] texts = {
+				"TWICE(x)",
+				"TWICE(NEXT())",
+				"TWICE(null)",
+				"TWICE(\"3\")",
+				"obj.TWICE(3)",
+				"new TWICE(3)",
+				"\"TWICE(3)\"",
+				"// TWICE(3)",
+				"TWICE(010)",
+				"NEXT()"};
+		for (String text : texts) {
+			assertSame(text, folder.fold(text));
+		}
+	}
+
+	@Test
+	public void testLargeResults() {
+		JRExprFunctionFolder folder = getFolder();
+		assertEquals("\"----\"", folder.fold("REPEAT(\"-\", 4)"));
+		StringBuilder dashes = new StringBuilder();
+		for (int i = 0; i < 2100; i++) {
+			dashes.append('-');
+		}
+		String[] texts = {
+				// the literal would be too long
+				"JOIN(\"" + dashes + "\", \"" + dashes + "\")",
+				"TWICE(JOIN(\"" + dashes + "\", \"" + dashes + "\").length())",
+				// the results are not computed
+				"REPEAT(\"--\", 3000)",
+				"REPEAT(\"-\", 70000)",
+				"REPEAT(\"x\", 1000000000)"};
+		for (String text : texts) {
+			assertSame(text, folder.fold(text));
+		}
+		int length = JRExprFunctionFolder.MAX_LITERAL_LENGTH - 2;
+		assertEquals(JRExprFunctionFolder.MAX_LITERAL_LENGTH, folder.fold("REPEAT(\"-\", " + length + ")").length());
+		assertEquals("REPEAT(\"-\", " + (length + 1) + ")", folder.fold("REPEAT(\"-\", " + (length + 1) + ")"));
+	}
+
+	@Test
+	public void testFoldedExpression() {
+		JRDesignExpression expression = new JRDesignExpression();
+		expression.setText("$F{Amount} * TWICE(2)");
+		assertTrue(getFolder().fold(expression));
+		JRExpressionChunk[] chunks = expression.getChunks();
+		assertEquals(2, chunks.length);
+		assertEquals(JRExpressionChunk.TYPE_FIELD, chunks[0].getType());
+		assertEquals(" * Integer.valueOf(4)", chunks[1].getText());
+		assertFalse(getFolder().fold(expression));
+	}
+}
@@ -0,0 +1,99 @@
+package net.sf.jasperreports.expressions.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import net.sf.jasperreports.engine.JRRuntimeException;
+import net.sf.jasperreports.engine.SimpleJasperReportsContext;
+import net.sf.jasperreports.expressions.annotations.JRExprAnnotationsUtils;
+import net.sf.jasperreports.expressions.annotations.JRExprFunctionDispatcher;
+import net.sf.jasperreports.expressions.annotations.JRExprFunctionInvoker;
+
+import org.junit.Test;
+
+/**
+ * Tests the invocation of functions through {@link JRExprFunctionInvoker}.
+ */
+public class JRExprFunctionInvokerTest {
+
+	private JRExprFunctionInvoker getInvoker() {
+		return JRExprAnnotationsUtils.getInstance(new SimpleJasperReportsContext()).getFunctionInvoker(SampleFunctions.class);
+	}
+
+	@Test
+	public void testCachedInvoker() {
+		JRExprAnnotationsUtils utils = JRExprAnnotationsUtils.getInstance(new SimpleJasperReportsContext());
+		assertSame(utils.getFunctionInvoker(SampleFunctions.class), utils.getFunctionInvoker(SampleFunctions.class));
+	}
+
+	@Test
+	public void testOverloads() {
+		JRExprFunctionInvoker invoker = getInvoker();
+		assertEquals(2, invoker.getOverloads("TWICE").size());
+		assertNotNull(invoker.getOverload("TWICE", Integer.class, Integer.class));
+		assertNull(invoker.getOverload("TWICE", String.class));
+		assertEquals(0, invoker.getOverloads("MISSING").size());
+	}
+
+	@Test
+	public void testInvoke() {
+		JRExprFunctionInvoker invoker = getInvoker();
+		assertEquals(8, invoker.invoke("TWICE", 4));
+		assertEquals(12, invoker.invoke("TWICE", 4, 3));
+		assertEquals(12, invoker.getOverload("TWICE", Integer.class, Integer.class).invokeMethod(new Object[]{4, 3}));
+		assertNull(invoker.invoke("TWICE", (Object) null));
+	}
+
+	@Test
+	public void testInvokeVarArgs() {
+		JRExprFunctionInvoker invoker = getInvoker();
+		assertEquals("", invoker.invoke("JOIN"));
+		assertEquals("abc", invoker.invoke("JOIN", "a", "b", "c"));
+		assertEquals("ab", invoker.getOverloads("JOIN").get(0).invokeMethod(new Object[]{new String[]{"a", "b"}}));
+	}
+
+	@Test
+	public void testDispatchByArity() {
+		JRExprFunctionDispatcher dispatcher = getInvoker().getDispatcher("TWICE");
+		assertEquals(1, dispatcher.dispatch(1).getFixedArity());
+		assertEquals(2, dispatcher.dispatch(2).getFixedArity());
+		assertNull(dispatcher.dispatch(3));
+		assertTrue(getInvoker().getDispatcher("JOIN").dispatch(5).isVarArgs());
+	}
+
+	@Test
+	public void testDispatchByType() {
+		JRExprFunctionInvoker invoker = getInvoker();
+		JRExprFunctionDispatcher dispatcher = invoker.getDispatcher("HALF");
+		assertEquals(Integer.class, dispatcher.dispatch(Integer.class).getReturnType());
+		assertEquals(Number.class, dispatcher.dispatch(Double.class).getReturnType());
+		assertNull(dispatcher.dispatch(String.class));
+		assertEquals(2, invoker.invoke("HALF", 5));
+		assertEquals(2.5, invoker.invoke("HALF", 5d));
+	}
+
+	@Test
+	public void testInvokeBulk() {
+		JRExprFunctionInvoker invoker = getInvoker();
+		assertArrayEquals(new Object[]{2, null, 6}, invoker.invokeBulk("TWICE", 3, new Object[]{1, null, 3}));
+		assertArrayEquals(new Object[]{3, 6, 9}, invoker.invokeBulk("TWICE", 3, new Object[]{1, 2, 3}, new Object[]{3}));
+		assertArrayEquals(new Object[]{"ac", "bd"}, invoker.invokeBulk("JOIN", 2, new Object[]{"a", "b"}, new Object[]{"c", "d"}));
+		// the overload changes with the argument types
+		assertArrayEquals(new Object[]{2, 2.5, 3}, invoker.invokeBulk("HALF", 3, new Object[]{5, 5d, 6}));
+		assertEquals(0, invoker.invokeBulk("TWICE", 0, new Object[0]).length);
+	}
+
+	@Test(expected=JRRuntimeException.class)
+	public void testInvokeBulkShortColumn() {
+		getInvoker().invokeBulk("TWICE", 3, new Object[]{1, 2});
+	}
+
+	@Test(expected=JRRuntimeException.class)
+	public void testInvokeWrongArity() {
+		getInvoker().invoke("TWICE", 1, 2, 3);
+	}
+}
@@ -0,0 +1,104 @@
+package net.sf.jasperreports.expressions.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import net.sf.jasperreports.engine.JRExpressionChunk;
+import net.sf.jasperreports.engine.SimpleJasperReportsContext;
+import net.sf.jasperreports.engine.design.JRDesignExpression;
+import net.sf.jasperreports.expressions.annotations.JRExprLazyCallRewriter;
+
+import org.junit.Test;
+
+/**
+ * Tests the rewriting of the lazy arguments through {@link JRExprLazyCallRewriter}.
+ */
+public class JRExprLazyCallRewriterTest {
+
+	private static final String LAZY_START = "new net.sf.jasperreports.expressions.annotations.JRExprLazyArgument<java.lang.String>(){public java.lang.String evaluate(){return ";
+	private static final String LAZY_BOOLEAN_START = "new net.sf.jasperreports.expressions.annotations.JRExprLazyArgument<java.lang.Boolean>(){public java.lang.Boolean evaluate(){return ";
+	private static final String LAZY_END = ";}}";
+
+	private JRExprLazyCallRewriter getRewriter() {
+		return new JRExprLazyCallRewriter(new SimpleJasperReportsContext(), SampleFunctions.class);
+	}
+
+	@Test
+	public void testLazyFunctions() {
+		JRExprLazyCallRewriter rewriter = getRewriter();
+		assertTrue(rewriter.isLazy("PICK"));
+		assertTrue(rewriter.isLazy("ALL"));
+		assertFalse(rewriter.isLazy("TWICE"));
+	}
+
+	@Test
+	public void testRewrittenCalls() {
+		JRExprLazyCallRewriter rewriter = getRewriter();
+		assertEquals("PICK(x > 0, " + LAZY_START + "a(1, 2)" + LAZY_END + ", " + LAZY_START + "\"b,)\"" + LAZY_END + ")",
+				rewriter.rewrite("PICK(x > 0, a(1, 2), \"b,)\")"));
+		assertEquals("PICK(t, " + LAZY_START + "PICK(u, \"a\", \"b\")" + LAZY_END + ", " + LAZY_START + "$F{Name}" + LAZY_END + ")",
+				rewriter.rewrite("PICK(t, PICK(u, \"a\", \"b\"), $F{Name})"));
+		assertEquals("PICK(t, " + LAZY_START + "PICK(u, " + LAZY_START + "a()" + LAZY_END + ", " + LAZY_START + "\"b\"" + LAZY_END + ")" + LAZY_END + ", " + LAZY_START + "null" + LAZY_END + ")",
+				rewriter.rewrite("PICK(t, PICK(u, a(), \"b\"), null)"));
+		assertEquals("ALL(" + LAZY_BOOLEAN_START + "$F{Flag}" + LAZY_END + ", " + LAZY_BOOLEAN_START + "x > 0" + LAZY_END + ")",
+				rewriter.rewrite("ALL($F{Flag}, x > 0)"));
+	}
+
+	@Test
+	public void testSimpleArguments() {
+		JRExprLazyCallRewriter rewriter = getRewriter();
+		String[] texts = {
+				"PICK(t, \"a\", 'b')",
+				"PICK(t, $F{Name}, $P{Default})",
+				"PICK(x > 0, $V{Total} , null)",
+				"PICK(t, 10, 1.5d)",
+				"ALL(true, $F{Flag}, $P{Flag})"};
+		for (String text : texts) {
+			assertSame(text, rewriter.rewrite(text));
+		}
+		assertEquals("PICK(t, " + LAZY_START + "$R{key}" + LAZY_END + ", " + LAZY_START + "\"a\" + b" + LAZY_END + ")",
+				rewriter.rewrite("PICK(t, $R{key}, \"a\" + b)"));
+	}
+
+	@Test
+	public void testSingleVariableArgument() {
+		JRExprLazyCallRewriter rewriter = getRewriter();
+		// the argument can be an Iterable or an array
+		String[] texts = {
+				"ALL($P{Flags})",
+				"ALL(getFlags())",
+				"ALL(java.util.Arrays.asList(a, b))"};
+		for (String text : texts) {
+			assertSame(text, rewriter.rewrite(text));
+		}
+	}
+
+	@Test
+	public void testUnchangedCalls() {
+		JRExprLazyCallRewriter rewriter = getRewriter();
+		String[] texts = {
+				"PICK(t, \"a\")",
+				"TWICE(3)",
+				"obj.PICK(t, a, b)",
+				"\"PICK(t, a, b)\"",
+				"/* PICK(t, a, b) */ 1"};
+		for (String text : texts) {
+			assertSame(text, rewriter.rewrite(text));
+		}
+	}
+
+	@Test
+	public void testRewrittenExpression() {
+		JRDesignExpression expression = new JRDesignExpression();
+		expression.setText("PICK($P{Flag}, $F{Name}.trim(), \"\")");
+		assertTrue(getRewriter().rewrite(expression));
+		JRExpressionChunk[] chunks = expression.getChunks();
+		assertEquals(JRExpressionChunk.TYPE_PARAMETER, chunks[1].getType());
+		assertEquals(JRExpressionChunk.TYPE_FIELD, chunks[3].getType());
+		assertEquals("Name", chunks[3].getText());
+		assertFalse(getRewriter().rewrite(new JRDesignExpression("TWICE(1)")));
+		assertFalse(getRewriter().rewrite(new JRDesignExpression("PICK($P{Flag}, $F{Name}, \"\")")));
+	}
+}
@@ -0,0 +1,152 @@
+package net.sf.jasperreports.expressions.tests;
+
+import net.sf.jasperreports.expressions.annotations.JRExprAccumulator;
+import net.sf.jasperreports.expressions.annotations.JRExprFunction;
+import net.sf.jasperreports.expressions.annotations.JRExprFunctionAccumulator;
+import net.sf.jasperreports.expressions.annotations.JRExprFunctionParameter;
+import net.sf.jasperreports.expressions.annotations.JRExprFunctionParameters;
+import net.sf.jasperreports.expressions.annotations.JRExprFunctionPurity;
+import net.sf.jasperreports.expressions.annotations.JRExprLazyArgument;
+
+/**
+ * Sample function library used by the tests.
+ */
+@SuppressWarnings("deprecation")
+@JRExprFunctionPurity
+public final class SampleFunctions {
+
+	@JRExprFunction(name="TWICE",description="Returns the double of a number.")
+	@JRExprFunctionParameters({
+		@JRExprFunctionParameter(name="Number",description="The number to double."),
+		@JRExprFunctionParameter(name="Times",description="The optional multiplier.")})
+	public static Integer TWICE(Integer number){
+		return TWICE(number, 2);
+	}
+
+	public static Integer TWICE(Integer number, Integer times){
+		if(number==null || times==null) return null;
+		return number*times;
+	}
+
+	@JRExprFunction(name="JOIN",description="Joins a list of strings.")
+	@JRExprFunctionParameters({
+		@JRExprFunctionParameter(name="Text",description="The strings to join.")})
+	public static String JOIN(String ...strings){
+		StringBuilder sb=new StringBuilder();
+		for(String s : strings){
+			sb.append(s);
+		}
+		return sb.toString();
+	}
+
+	@JRExprFunction(name="HALF",description="Returns the half of a number.")
+	@JRExprFunctionParameters({
+		@JRExprFunctionParameter(name="Number",description="The number to divide.")})
+	public static Number HALF(Number number){
+		return number==null ? null : number.doubleValue()/2;
+	}
+
+	public static Integer HALF(Integer number){
+		return number==null ? null : number/2;
+	}
+
+	@JRExprFunction(name="TOTAL",description="Returns the sum of integral numbers.")
+	@JRExprFunctionParameters({
+		@JRExprFunctionParameter(name="Numbers",description="The numbers to add.")})
+	@JRExprFunctionAccumulator(Total.class)
+	public static Long TOTAL(Long ...numbers){
+		long total=0;
+		for(Long number : numbers){
+			total+=number;
+		}
+		return total;
+	}
+
+	private static int counter;
+
+	@JRExprFunction(name="NEXT",description="Returns the next value of a counter.")
+	@JRExprFunctionPurity(pure=false,deterministic=false)
+	public static Integer NEXT(){
+		return ++counter;
+	}
+
+	@JRExprFunction(name="PICK",description="Returns one of two texts.")
+	@JRExprFunctionParameters({
+		@JRExprFunctionParameter(name="Test",description="The condition."),
+		@JRExprFunctionParameter(name="Text 1",description="The text returned when the condition is true."),
+		@JRExprFunctionParameter(name="Text 2",description="The text returned when the condition is false.")})
+	public static String PICK(Boolean test, String text1, String text2){
+		return test ? text1 : text2;
+	}
+
+	public static String PICK(Boolean test, JRExprLazyArgument<String> text1, JRExprLazyArgument<String> text2){
+		return test ? text1.evaluate() : text2.evaluate();
+	}
+
+	@JRExprFunction(name="ALL",description="Returns whether all the values are true.")
+	@JRExprFunctionParameters({
+		@JRExprFunctionParameter(name="Values",description="The values to check.")})
+	public static Boolean ALL(Boolean ...values){
+		for(Boolean value : values){
+			if(!value) return false;
+		}
+		return true;
+	}
+
+	public static Boolean ALL(Iterable<Boolean> values){
+		for(Boolean value : values){
+			if(!value) return false;
+		}
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static Boolean ALL(JRExprLazyArgument<Boolean> ...values){
+		for(JRExprLazyArgument<Boolean> value : values){
+			if(!value.evaluate()) return false;
+		}
+		return true;
+	}
+
+	@JRExprFunction(name="REPEAT",description="Repeats a text.")
+	@JRExprFunctionParameters({
+		@JRExprFunctionParameter(name="Text",description="The text to repeat."),
+		@JRExprFunctionParameter(name="Times",description="The number of copies.")})
+	public static String REPEAT(String text, Integer times){
+		if(text==null || times==null) return null;
+		if(times>100000){
+			// the tests check that large results are not computed
+			throw new AssertionError("Too many copies " + times);
+		}
+		StringBuilder sb=new StringBuilder();
+		for(int i=0;i<times;i++){
+			sb.append(text);
+		}
+		return sb.toString();
+	}
+
+	public static final class Total implements JRExprAccumulator {
+
+		private long total;
+
+		public void add(long value){
+			total+=value;
+		}
+
+		public void add(double value){
+			add((long) value);
+		}
+
+		public void add(Number value){
+			add(value.longValue());
+		}
+
+		public void merge(JRExprAccumulator other){
+			total+=((Total) other).total;
+		}
+
+		public Object result(){
+			return total;
+		}
+	}
+}